@@ -0,0 +1,29 @@
+#!/bin/bash
+# usage:
+# benchmark/jmh.sh <results_file> <osm_map_path> [additional JMH options, e.g. a benchmark regex like RoutingBenchmark]
+#
+# where:
+# <results_file> = the JMH results are written to this file in JSON format, which can be compared between releases
+# <osm_map_path> = path to the osm map the benchmarks are run on
+#
+# run this script from the root directory of the repository
+
+# make this script exit if a command fails, a variable is missing etc.
+set -euo pipefail
+# print all commands
+set -o xtrace
+
+defaultResultsFile=benchmark/target/jmh-results.json
+defaultOsmMap=core/files/andorra.osm.pbf
+
+RESULTS_FILE=${1:-$defaultResultsFile}
+OSM_MAP=${2:-$defaultOsmMap}
+shift $(( $# > 2 ? 2 : $# ))
+
+mvn -B clean package -DskipTests -pl benchmark -am
+# remove the graph of the previous run in case the map or the code changed
+rm -rf benchmark/target/benchmark-gh
+
+java -Dgh.benchmark.osm=${OSM_MAP} -Dgh.benchmark.graph=benchmark/target/benchmark-gh \
+-jar benchmark/target/graphhopper-benchmark-*-jar-with-dependencies.jar \
+-rf json -rff ${RESULTS_FILE} "$@"
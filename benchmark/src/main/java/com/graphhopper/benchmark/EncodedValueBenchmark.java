@@ -0,0 +1,81 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.IntEncodedValue;
+import com.graphhopper.routing.ev.RoadClass;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.IntsRef;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures IntEncodedValueImpl.getInt, which is called for every edge a routing algorithm visits, e.g. when the
+ * weighting reads the speed or the road class. The edge flags are copied from the graph first so only the decoding is
+ * measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodedValueBenchmark {
+    private IntsRef[] edgeFlags;
+    private IntEncodedValue roadClassEnc;
+    private IntEncodedValue avgSpeedEnc;
+
+    @Setup
+    public void setup(GraphHopperState state) {
+        EncodingManager em = state.getHopper().getEncodingManager();
+        roadClassEnc = em.getEnumEncodedValue(RoadClass.KEY, RoadClass.class);
+        // the DecimalEncodedValue is also an IntEncodedValueImpl and stores two directions
+        DecimalEncodedValue speedEnc = em.getDecimalEncodedValue(EncodingManager.getKey(GraphHopperState.PROFILE, "average_speed"));
+        avgSpeedEnc = (IntEncodedValue) speedEnc;
+
+        BaseGraph graph = state.getHopper().getGraphHopperStorage().getBaseGraph();
+        edgeFlags = new IntsRef[graph.getEdges()];
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            // the iterator reuses its IntsRef, so we need a copy for every edge
+            edgeFlags[iter.getEdge()] = IntsRef.deepCopyOf(iter.getFlags());
+        }
+    }
+
+    @Benchmark
+    public long getIntRoadClass() {
+        long sum = 0;
+        for (IntsRef flags : edgeFlags) {
+            sum += roadClassEnc.getInt(false, flags);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long getIntSpeedBothDirections() {
+        long sum = 0;
+        for (IntsRef flags : edgeFlags) {
+            sum += avgSpeedEnc.getInt(false, flags) + avgSpeedEnc.getInt(true, flags);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.Profile;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Imports the OSM file given by the system property 'gh.benchmark.osm' (default: core/files/andorra.osm.pbf) once and
+ * shares the resulting GraphHopper instance between all invocations of a benchmark. The graph is stored in
+ * 'gh.benchmark.graph' (default: benchmark/target/benchmark-gh) so that only the first fork does the import and
+ * the CH preparation, all following forks just load the graph.
+ */
+@State(Scope.Benchmark)
+public class GraphHopperState {
+    public static final String PROFILE = "car";
+    private GraphHopper hopper;
+
+    @Setup
+    public void setup() {
+        hopper = new GraphHopper();
+        hopper.setOSMFile(System.getProperty("gh.benchmark.osm", "core/files/andorra.osm.pbf"));
+        hopper.setGraphHopperLocation(System.getProperty("gh.benchmark.graph", "benchmark/target/benchmark-gh"));
+        hopper.setProfiles(new Profile(PROFILE).setVehicle("car").setWeighting("fastest"));
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile(PROFILE));
+        hopper.importOrLoad();
+    }
+
+    @TearDown
+    public void tearDown() {
+        hopper.close();
+    }
+
+    public GraphHopper getHopper() {
+        return hopper;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.Profile;
+import com.graphhopper.util.Helper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the import of the OSM file given by 'gh.benchmark.osm' into an in-memory graph: reading and parsing the
+ * file, encoding the ways, the subnetwork removal and the creation of the location index. Unlike the other benchmarks
+ * this does not use {@link GraphHopperState}, every invocation imports the file again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark {
+    private final String graphLocation = System.getProperty("gh.benchmark.graph", "benchmark/target/benchmark-gh") + "-import";
+    private GraphHopper hopper;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        Helper.removeDir(new File(graphLocation));
+        hopper = new GraphHopper();
+        hopper.setOSMFile(System.getProperty("gh.benchmark.osm", "core/files/andorra.osm.pbf"));
+        hopper.setGraphHopperLocation(graphLocation);
+        hopper.setStoreOnFlush(false);
+        hopper.setProfiles(new Profile(GraphHopperState.PROFILE).setVehicle("car").setWeighting("fastest"));
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        hopper.close();
+        Helper.removeDir(new File(graphLocation));
+    }
+
+    @Benchmark
+    public int importOSM() {
+        hopper.importOrLoad();
+        return hopper.getGraphHopperStorage().getEdges();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.DijkstraBidirectionCH;
+import com.graphhopper.storage.RoutingCHGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures node-based CH queries with DijkstraBidirectionCH between random pairs of nodes, including the path
+ * extraction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingBenchmark {
+    private static final int QUERIES = 1024;
+    private RoutingCHGraph chGraph;
+    private final int[] from = new int[QUERIES];
+    private final int[] to = new int[QUERIES];
+    private int index;
+
+    @Setup
+    public void setup(GraphHopperState state) {
+        chGraph = state.getHopper().getCHGraphs().get(GraphHopperState.PROFILE);
+        Random rnd = new Random(123);
+        for (int i = 0; i < QUERIES; i++) {
+            from[i] = rnd.nextInt(chGraph.getNodes());
+            to[i] = rnd.nextInt(chGraph.getNodes());
+        }
+    }
+
+    @Benchmark
+    public double dijkstraBidirectionCH() {
+        index = (index + 1) % QUERIES;
+        return new DijkstraBidirectionCH(chGraph).calcPath(from[index], to[index]).getWeight();
+    }
+}
@@ -22,11 +22,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.LMProfile;
 import com.graphhopper.config.Profile;
+import com.graphhopper.isochrone.algorithm.PhastPreparation;
 import com.graphhopper.reader.dem.*;
 import com.graphhopper.reader.osm.OSMReader;
 import com.graphhopper.reader.osm.conditional.DateRangeParser;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.ch.CHPreparationHandler;
+import com.graphhopper.routing.ch.CustomizableCH;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.lm.LMConfig;
@@ -39,6 +41,7 @@ import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.DefaultTagParserFactory;
 import com.graphhopper.routing.util.parsers.TagParserFactory;
+import com.graphhopper.routing.weighting.MaterializedWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomProfile;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
@@ -63,6 +66,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import static com.graphhopper.util.GHUtility.readCountries;
@@ -94,6 +100,8 @@ public class GraphHopper {
     private DAType dataAccessDefaultType = DAType.RAM_STORE;
     private final LinkedHashMap<String, String> dataAccessConfig = new LinkedHashMap<>();
     private boolean sortGraph = false;
+    private boolean hilbertSortGraph = false;
+    private boolean compressGeometry = false;
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
     private boolean allowWrites = true;
@@ -101,12 +109,27 @@ public class GraphHopper {
     private final OSMReaderConfig osmReaderConfig = new OSMReaderConfig();
     // for routing
     private final RouterConfig routerConfig = new RouterConfig();
+    private RouteCache routeCache;
+    private SearchStatePool searchStatePool;
+    private int phastMaxIdle = 4;
+    private final Map<String, PhastPreparation> phastPreparations = new ConcurrentHashMap<>();
     // for index
     private LocationIndex locationIndex;
     private int preciseIndexResolution = 300;
     private int maxRegionSearch = 4;
+    private int locationIndexThreads = 1;
     // for prepare
     private int minNetworkSize = 200;
+    private boolean materializeWeights = false;
+    private Map<String, EdgeWeightStorage> edgeWeights = Collections.emptyMap();
+    private boolean customizableCHEnabled = false;
+    private int customizableCHThreads = 1;
+    private long customizableCHCacheBytes = 256L << 20;
+    private CustomizableCH customizableCH;
+    // shared by all customizations, so concurrent requests do not create more threads
+    private ExecutorService customizableCHExecutorService;
+    // shared by all batch requests, see Router#routeBatch
+    private ExecutorService batchExecutorService;
 
     // preparation handlers
     private final LMPreparationHandler lmPreparationHandler = new LMPreparationHandler();
@@ -175,6 +198,26 @@ public class GraphHopper {
         return this;
     }
 
+    /**
+     * Precalculates the edge weights and travel times of all custom profiles and stores them with the graph, which
+     * makes the routing faster for requests that do not change the custom model.
+     */
+    public GraphHopper setMaterializeWeights(boolean materializeWeights) {
+        ensureNotLoaded();
+        this.materializeWeights = materializeWeights;
+        return this;
+    }
+
+    /**
+     * Enables the customizable CH, which is used for requests with a custom model and for the (node-based) profiles
+     * without a CH preparation.
+     */
+    public GraphHopper setCustomizableCHEnabled(boolean customizableCHEnabled) {
+        ensureNotLoaded();
+        this.customizableCHEnabled = customizableCHEnabled;
+        return this;
+    }
+
     /**
      * Only valid option for in-memory graph and if you e.g. want to disable store on flush for unit
      * tests. Specify storeOnFlush to true if you want that existing data will be loaded FROM disc
@@ -319,6 +362,17 @@ public class GraphHopper {
         return chGraphs;
     }
 
+    /**
+     * @return the PHAST preparation of the CH graph of the given profile, which is created on first use and shared by
+     * all isochrone and shortest path tree requests, or null if there is no CH graph for this profile
+     */
+    public PhastPreparation getPhastPreparation(String profileName) {
+        RoutingCHGraph chGraph = chGraphs.get(profileName);
+        if (chGraph == null)
+            return null;
+        return phastPreparations.computeIfAbsent(profileName, p -> new PhastPreparation(chGraph, phastMaxIdle));
+    }
+
     /**
      * @return a mapping between profile names and according landmark preparations. The map will be empty before loading
      * or import.
@@ -352,6 +406,26 @@ public class GraphHopper {
         return this;
     }
 
+    /**
+     * Sorts the nodes along a Hilbert curve and the edges by their nodes after the import. Unlike
+     * {@link #setSortGraph(boolean)} this is done in place and also works with turn costs.
+     */
+    public GraphHopper setHilbertSortGraph(boolean hilbertSortGraph) {
+        ensureNotLoaded();
+        this.hilbertSortGraph = hilbertSortGraph;
+        return this;
+    }
+
+    /**
+     * Stores the pillar nodes of new graphs as variable length deltas, which makes the geometry about half as large.
+     * Existing graphs are loaded in the format they were created with.
+     */
+    public GraphHopper setCompressGeometry(boolean compressGeometry) {
+        ensureNotLoaded();
+        this.compressGeometry = compressGeometry;
+        return this;
+    }
+
     public boolean isAllowWrites() {
         return allowWrites;
     }
@@ -455,6 +529,10 @@ public class GraphHopper {
         }
 
         sortGraph = ghConfig.getBool("graph.do_sort", sortGraph);
+        hilbertSortGraph = ghConfig.getBool("graph.do_hilbert_sort", hilbertSortGraph);
+        if (sortGraph && hilbertSortGraph)
+            throw new IllegalArgumentException("graph.do_sort and graph.do_hilbert_sort cannot be used together");
+        compressGeometry = ghConfig.getBool("graph.compress_geometry", compressGeometry);
         removeZipped = ghConfig.getBool("graph.remove_zipped", removeZipped);
 
         if (!ghConfig.getString("spatial_rules.location", "").isEmpty())
@@ -490,6 +568,10 @@ public class GraphHopper {
 
         // optimizable prepare
         minNetworkSize = ghConfig.getInt("prepare.min_network_size", minNetworkSize);
+        materializeWeights = ghConfig.getBool("prepare.materialize_weights", materializeWeights);
+        customizableCHEnabled = ghConfig.getBool("prepare.cch.enabled", customizableCHEnabled);
+        customizableCHThreads = ghConfig.getInt("routing.cch.threads", customizableCHThreads);
+        customizableCHCacheBytes = ghConfig.getLong("routing.cch.max_cache_mb", customizableCHCacheBytes >> 20) << 20;
 
         // prepare CH&LM
         chPreparationHandler.init(ghConfig);
@@ -500,21 +582,32 @@ public class GraphHopper {
         osmReaderConfig.setPreferredLanguage(ghConfig.getString("datareader.preferred_language", osmReaderConfig.getPreferredLanguage()));
         osmReaderConfig.setMaxWayPointDistance(ghConfig.getDouble(Routing.INIT_WAY_POINT_MAX_DISTANCE, osmReaderConfig.getMaxWayPointDistance()));
         osmReaderConfig.setWorkerThreads(ghConfig.getInt("datareader.worker_threads", osmReaderConfig.getWorkerThreads()));
+        osmReaderConfig.setWayThreads(ghConfig.getInt("datareader.way_threads", osmReaderConfig.getWayThreads()));
 
         // index
         preciseIndexResolution = ghConfig.getInt("index.high_resolution", preciseIndexResolution);
         maxRegionSearch = ghConfig.getInt("index.max_region_search", maxRegionSearch);
+        locationIndexThreads = ghConfig.getInt("index.threads", locationIndexThreads);
 
         // routing
         routerConfig.setMaxVisitedNodes(ghConfig.getInt(Routing.INIT_MAX_VISITED_NODES, routerConfig.getMaxVisitedNodes()));
         routerConfig.setMaxRoundTripRetries(ghConfig.getInt(RoundTrip.INIT_MAX_RETRIES, routerConfig.getMaxRoundTripRetries()));
         routerConfig.setNonChMaxWaypointDistance(ghConfig.getInt(Parameters.NON_CH.MAX_NON_CH_POINT_DISTANCE, routerConfig.getNonChMaxWaypointDistance()));
         routerConfig.setInstructionsEnabled(ghConfig.getBool(Routing.INIT_INSTRUCTIONS, routerConfig.isInstructionsEnabled()));
+        routerConfig.setBatchThreads(ghConfig.getInt("routing.batch_threads", routerConfig.getBatchThreads()));
         int activeLandmarkCount = ghConfig.getInt(Landmark.ACTIVE_COUNT_DEFAULT, Math.min(8, lmPreparationHandler.getLandmarks()));
         if (activeLandmarkCount > lmPreparationHandler.getLandmarks())
             throw new IllegalArgumentException("Default value for active landmarks " + activeLandmarkCount
                     + " should be less or equal to landmark count of " + lmPreparationHandler.getLandmarks());
         routerConfig.setActiveLandmarkCount(activeLandmarkCount);
+        int routeCacheEntries = ghConfig.getInt("routing.route_cache.max_entries", 0);
+        if (routeCacheEntries > 0)
+            routeCache = new RouteCache(routeCacheEntries, ghConfig.getLong("routing.route_cache.max_points", 10_000_000),
+                    ghConfig.getLong("routing.route_cache.ttl", 0) * 1000);
+        int searchStatePoolSize = ghConfig.getInt("routing.search_state_pool.max_idle", 0);
+        if (searchStatePoolSize > 0)
+            searchStatePool = new SearchStatePool(searchStatePoolSize);
+        phastMaxIdle = ghConfig.getInt("routing.phast.max_idle", phastMaxIdle);
 
         return this;
     }
@@ -667,7 +760,11 @@ public class GraphHopper {
     }
 
     protected void postImport() {
-        if (sortGraph) {
+        if (hilbertSortGraph) {
+            StopWatch sw = new StopWatch().start();
+            HilbertGraphSorter.sort(ghStorage.getBaseGraph());
+            logger.info("graph sorted along Hilbert curve, took: " + sw.stop().getSeconds() + "s, " + getMemInfo());
+        } else if (sortGraph) {
             GraphHopperStorage newGraph = GHUtility.newStorage(ghStorage);
             GHUtility.sortDFS(ghStorage, newGraph);
             logger.info("graph sorted (" + getMemInfo() + ")");
@@ -778,6 +875,7 @@ public class GraphHopper {
                 .set3D(hasElevation())
                 .withTurnCosts(tagParserManager.needsTurnCostsSupport())
                 .setSegmentSize(defaultSegmentSize)
+                .setCompressedGeometry(compressGeometry)
                 .build();
         checkProfilesConsistency();
 
@@ -915,6 +1013,7 @@ public class GraphHopper {
      * @param closeEarly release resources as early as possible
      */
     protected void postProcessing(boolean closeEarly) {
+        loadOrPrepareEdgeWeights();
         initLocationIndex();
         importPublicTransit();
 
@@ -935,11 +1034,43 @@ public class GraphHopper {
 
         if (chPreparationHandler.isEnabled())
             loadOrPrepareCH(closeEarly);
+
+        if (customizableCHEnabled)
+            loadOrPrepareCustomizableCH();
     }
 
     protected void importPublicTransit() {
     }
 
+    /**
+     * Loads or calculates the materialized edge weights of the custom profiles, see {@link #setMaterializeWeights}.
+     * This must happen before the LM and CH preparations, so they use the materialized weights as well.
+     */
+    protected void loadOrPrepareEdgeWeights() {
+        edgeWeights = new LinkedHashMap<>();
+        if (!materializeWeights)
+            return;
+        BaseGraph baseGraph = ghStorage.getBaseGraph();
+        for (Profile profile : profilesByName.values()) {
+            if (!(profile instanceof CustomProfile))
+                continue;
+            String versionKey = "graph.profiles.edge_weights." + profile.getName() + ".version";
+            EdgeWeightStorage storage = new EdgeWeightStorage(ghStorage.getDirectory(), profile.getName(), baseGraph.getSegmentSize());
+            if (storage.loadExisting()) {
+                if (!ghStorage.getProperties().get(versionKey).equals("" + profile.getVersion()))
+                    throw new IllegalArgumentException("Materialized edge weights of " + profile.getName() + " already exist in storage and don't match configuration");
+            } else {
+                ensureWriteAccess();
+                StopWatch sw = new StopWatch().start();
+                storage.prepare(baseGraph, createWeighting(profile, new PMap()));
+                storage.flush();
+                ghStorage.getProperties().put(versionKey, profile.getVersion());
+                logger.info("materialized edge weights of " + profile.getName() + ", took: " + sw.stop().getSeconds() + "s, " + getMemInfo());
+            }
+            edgeWeights.put(profile.getName(), storage);
+        }
+    }
+
     void interpolateBridgesTunnelsAndFerries() {
         if (ghStorage.getEncodingManager().hasEncodedValue(RoadEnvironment.KEY)) {
             EnumEncodedValue<RoadEnvironment> roadEnvEnc = ghStorage.getEncodingManager().getEnumEncodedValue(RoadEnvironment.KEY, RoadEnvironment.class);
@@ -966,13 +1097,37 @@ public class GraphHopper {
     }
 
     protected WeightingFactory createWeightingFactory() {
-        return new DefaultWeightingFactory(ghStorage.getBaseGraph(), getEncodingManager());
+        WeightingFactory weightingFactory = new DefaultWeightingFactory(ghStorage.getBaseGraph(), getEncodingManager());
+        if (edgeWeights.isEmpty())
+            return weightingFactory;
+        return (profile, hints, disableTurnCosts) -> {
+            Weighting weighting = weightingFactory.createWeighting(profile, hints, disableTurnCosts);
+            EdgeWeightStorage storage = edgeWeights.get(profile.getName());
+            // a custom model in the request changes the edge weights, so they need to be calculated on the fly
+            if (storage == null || hints.getObject(CustomModel.KEY, null) != null)
+                return weighting;
+            return new MaterializedWeighting(weighting, storage);
+        };
     }
 
     public GHResponse route(GHRequest request) {
         return createRouter().route(request);
     }
 
+    /**
+     * Calculates the weights, times and distances between many points, see {@link Router#matrix(GHMatrixRequest)}
+     */
+    public GHMatrixResponse matrix(GHMatrixRequest request) {
+        return createRouter().matrix(request);
+    }
+
+    /**
+     * Calculates many routes for the same profile at once, see {@link Router#routeBatch(GHBatchRequest)}
+     */
+    public GHBatchResponse routeBatch(GHBatchRequest request) {
+        return createRouter().routeBatch(request);
+    }
+
     private Router createRouter() {
         if (ghStorage == null || !fullyLoaded)
             throw new IllegalStateException("Do a successful call to load or importOrLoad before routing");
@@ -982,7 +1137,11 @@ public class GraphHopper {
             throw new IllegalStateException("Location index not initialized");
 
         return doCreateRouter(ghStorage, locationIndex, profilesByName, pathBuilderFactory,
-                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks);
+                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks).
+                setRouteCache(routeCache).
+                setCustomizableCH(customizableCH).
+                setSearchStatePool(searchStatePool).
+                setBatchExecutorService(batchExecutorService);
     }
 
     protected Router doCreateRouter(GraphHopperStorage ghStorage, LocationIndex locationIndex, Map<String, Profile> profilesByName,
@@ -997,6 +1156,7 @@ public class GraphHopper {
         LocationIndexTree tmpIndex = new LocationIndexTree(ghStorage, dir);
         tmpIndex.setResolution(preciseIndexResolution);
         tmpIndex.setMaxRegionSearch(maxRegionSearch);
+        tmpIndex.setThreads(locationIndexThreads);
         if (!tmpIndex.loadExisting()) {
             ensureWriteAccess();
             tmpIndex.prepareIndex();
@@ -1059,6 +1219,23 @@ public class GraphHopper {
         }
     }
 
+    /**
+     * Loads the node ordering of the customizable CH or calculates it. The topology is rebuilt from the ordering.
+     */
+    protected void loadOrPrepareCustomizableCH() {
+        ghStorage.freeze();
+        customizableCH = CustomizableCH.load(ghStorage.getBaseGraph());
+        if (customizableCH == null) {
+            ensureWriteAccess();
+            customizableCH = CustomizableCH.prepare(ghStorage.getBaseGraph());
+            customizableCH.flush();
+        }
+        if (customizableCHThreads > 1 && customizableCHExecutorService == null)
+            customizableCHExecutorService = Executors.newFixedThreadPool(customizableCHThreads);
+        customizableCH.setExecutorService(customizableCHExecutorService, customizableCHThreads).setMaxCacheBytes(customizableCHCacheBytes);
+        logger.info("customizable CH ready, arcs: " + customizableCH.getArcs() + ", " + getMemInfo());
+    }
+
     protected Map<String, PrepareContractionHierarchies.Result> prepareCH(boolean closeEarly, List<CHConfig> configsToPrepare) {
         if (!configsToPrepare.isEmpty())
             ensureWriteAccess();
@@ -1144,10 +1321,21 @@ public class GraphHopper {
 
         chGraphs.values().forEach(RoutingCHGraph::close);
         landmarks.values().forEach(LandmarkStorage::close);
+        edgeWeights.values().forEach(EdgeWeightStorage::close);
 
         if (locationIndex != null)
             locationIndex.close();
 
+        if (customizableCHExecutorService != null) {
+            customizableCHExecutorService.shutdown();
+            customizableCHExecutorService = null;
+        }
+
+        if (batchExecutorService != null) {
+            batchExecutorService.shutdown();
+            batchExecutorService = null;
+        }
+
         try {
             lockFactory.forceRemove(fileLockName, true);
         } catch (Exception ex) {
@@ -1178,6 +1366,8 @@ public class GraphHopper {
     }
 
     private void setFullyLoaded() {
+        if (routerConfig.getBatchThreads() > 1 && batchExecutorService == null)
+            batchExecutorService = Executors.newFixedThreadPool(routerConfig.getBatchThreads());
         fullyLoaded = true;
     }
 
@@ -1189,6 +1379,44 @@ public class GraphHopper {
         return routerConfig;
     }
 
+    /**
+     * @return the cache for route responses or null if caching is disabled (the default)
+     */
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    /**
+     * @return the customizable CH or null if it is not enabled (the default)
+     */
+    public CustomizableCH getCustomizableCH() {
+        return customizableCH;
+    }
+
+    /**
+     * Enables caching of route responses, see {@link RouteCache}. Use null to disable caching.
+     */
+    public GraphHopper setRouteCache(RouteCache routeCache) {
+        this.routeCache = routeCache;
+        return this;
+    }
+
+    /**
+     * @return the pool of search states for node-based CH requests or null if pooling is disabled (the default)
+     */
+    public SearchStatePool getSearchStatePool() {
+        return searchStatePool;
+    }
+
+    /**
+     * Enables the reuse of search states between node-based CH requests, see {@link SearchStatePool}. Use null to
+     * disable pooling.
+     */
+    public GraphHopper setSearchStatePool(SearchStatePool searchStatePool) {
+        this.searchStatePool = searchStatePool;
+        return this;
+    }
+
     public OSMReaderConfig getReaderConfig() {
         return osmReaderConfig;
     }
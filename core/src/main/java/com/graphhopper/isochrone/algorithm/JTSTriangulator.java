@@ -22,6 +22,7 @@ import com.graphhopper.routing.RouterConfig;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.FetchMode;
 import com.graphhopper.util.PointList;
@@ -35,6 +36,7 @@ import org.locationtech.jts.triangulate.quadedge.Vertex;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.IntToDoubleFunction;
 import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
@@ -71,7 +73,34 @@ public class JTSTriangulator implements Triangulator {
                 }
             }
         });
+        return triangulate(sites, tolerance);
+    }
+
+    public Result triangulate(Snap snap, QueryGraph queryGraph, PhastShortestPathTree shortestPathTree, IntToDoubleFunction fz, double tolerance) {
+        final NodeAccess na = queryGraph.getNodeAccess();
+        Collection<Coordinate> sites = new ArrayList<>();
+        shortestPathTree.search(snap.getClosestNode(), node -> {
+            double exploreValue = fz.applyAsDouble(node);
+            Coordinate site = new Coordinate(na.getLon(node), na.getLat(node));
+            site.z = exploreValue;
+            sites.add(site);
+
+            // add a pillar node to increase precision a bit for longer roads
+            int edge = shortestPathTree.getEdge(node);
+            if (edge != EdgeIterator.NO_EDGE) {
+                PointList innerPoints = queryGraph.getEdgeIteratorState(edge, node).fetchWayGeometry(FetchMode.PILLAR_ONLY);
+                if (innerPoints.size() > 0) {
+                    int midIndex = innerPoints.size() / 2;
+                    Coordinate site2 = new Coordinate(innerPoints.getLon(midIndex), innerPoints.getLat(midIndex));
+                    site2.z = exploreValue;
+                    sites.add(site2);
+                }
+            }
+        });
+        return triangulate(sites, tolerance);
+    }
 
+    private Result triangulate(Collection<Coordinate> sites, double tolerance) {
         if (sites.size() > routerConfig.getMaxVisitedNodes() / 3)
             throw new IllegalArgumentException("Too many nodes would be included in post processing (" + sites.size() + "). Let us know if you need this increased.");
 
@@ -0,0 +1,137 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.graphhopper.storage.RoutingCHGraph;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The part of a {@link PhastShortestPathTree} that only depends on the CH graph: the level of every node and the order
+ * of the downward sweep. It is calculated once per CH graph and shared by all trees. It also keeps the per-node arrays
+ * of released trees so later trees can reuse them, at most maxIdle of them. Thread safe.
+ */
+public class PhastPreparation {
+    private final int baseNodes;
+    private final int[] levels;
+    private final int[] sweepOrder;
+    private final int maxIdle;
+    private final ArrayDeque<Labels> idle = new ArrayDeque<>();
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+
+    /**
+     * @param chGraph a fully contracted node-based CH graph
+     * @param maxIdle the maximum number of released per-node arrays that are kept for later trees, can be 0
+     */
+    public PhastPreparation(RoutingCHGraph chGraph, int maxIdle) {
+        this(chGraph, chGraph.getNodes(), maxIdle);
+    }
+
+    PhastPreparation(RoutingCHGraph graph, int baseNodes, int maxIdle) {
+        if (graph.isEdgeBased())
+            throw new IllegalArgumentException("PHAST is only supported for node-based CH graphs");
+        if (maxIdle < 0)
+            throw new IllegalArgumentException("maxIdle must not be negative, but was: " + maxIdle);
+        this.baseNodes = baseNodes;
+        this.maxIdle = maxIdle;
+        levels = new int[baseNodes];
+        sweepOrder = new int[baseNodes];
+        Arrays.fill(sweepOrder, -1);
+        for (int node = 0; node < baseNodes; node++) {
+            int level = graph.getLevel(node);
+            if (level < 0 || level >= baseNodes || sweepOrder[baseNodes - 1 - level] >= 0)
+                throw new IllegalArgumentException("PHAST requires a fully contracted CH graph, but level " + level + " of node " + node + " is not unique");
+            levels[node] = level;
+            sweepOrder[baseNodes - 1 - level] = node;
+        }
+    }
+
+    int getBaseNodes() {
+        return baseNodes;
+    }
+
+    int[] getLevels() {
+        return levels;
+    }
+
+    /**
+     * @return the nodes in descending level order
+     */
+    int[] getSweepOrder() {
+        return sweepOrder;
+    }
+
+    /**
+     * @return arrays for at least the given number of nodes, their content is undefined
+     */
+    Labels lease(int nodes) {
+        leases.incrementAndGet();
+        synchronized (idle) {
+            // the query graphs only differ in the number of virtual nodes, so most idle arrays are large enough
+            Labels labels = idle.pollFirst();
+            if (labels != null && labels.weights.length >= nodes)
+                return labels;
+        }
+        created.incrementAndGet();
+        return new Labels(nodes);
+    }
+
+    void release(Labels labels) {
+        synchronized (idle) {
+            if (idle.size() < maxIdle)
+                idle.addFirst(labels);
+        }
+    }
+
+    public int getIdle() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * @return the number of arrays that had to be allocated because no (large enough) idle arrays were available
+     */
+    public long getCreated() {
+        return created.get();
+    }
+
+    /**
+     * @return the number of leases that reused idle arrays
+     */
+    public long getReused() {
+        return leases.get() - created.get();
+    }
+
+    static class Labels {
+        final double[] weights;
+        final long[] times;
+        final double[] distances;
+        final int[] parentEdges;
+
+        Labels(int nodes) {
+            weights = new double[nodes];
+            times = new long[nodes];
+            distances = new double[nodes];
+            parentEdges = new int[nodes];
+        }
+    }
+}
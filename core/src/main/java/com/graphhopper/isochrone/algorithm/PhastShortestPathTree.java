@@ -0,0 +1,366 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.LongArrayList;
+import com.graphhopper.apache.commons.collections.IntFloatBinaryHeap;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import static com.graphhopper.isochrone.algorithm.ShortestPathTree.ExploreType.*;
+
+/**
+ * Computes a shortest path tree like {@link ShortestPathTree}, but on a node-based CH graph using PHAST: an upward CH
+ * search from the start node is followed by a single sweep over all nodes in descending level order, where every node
+ * pulls its weight from its higher-level neighbors. There is no priority queue for the sweep and all labels are kept in
+ * per-node arrays.
+ * <p>
+ * The weight of every node is calculated, but travel time and distance are only calculated (by unpacking the shortcut
+ * that leads to the node) for nodes whose parent is within the limit. The start node may be a virtual node of a
+ * {@link com.graphhopper.routing.querygraph.QueryRoutingCHGraph}, but no other virtual nodes are visited.
+ */
+public class PhastShortestPathTree {
+    private final RoutingCHGraph graph;
+    private final Graph baseGraph;
+    private final Weighting weighting;
+    private final boolean reverseFlow;
+    private final int baseNodes;
+    private final int[] levels;
+    private final int[] sweepOrder;
+    private final PhastPreparation preparation;
+    private PhastPreparation.Labels labels;
+    private final double[] weights;
+    private final long[] times;
+    private final double[] distances;
+    private final int[] parentEdges;
+    // the time and distance of the shortcuts that were already unpacked, by direction
+    private final IntIntHashMap shortcutIndex = new IntIntHashMap();
+    private final LongArrayList shortcutTimes = new LongArrayList();
+    private final DoubleArrayList shortcutDistances = new DoubleArrayList();
+    private double limit = -1;
+    private ShortestPathTree.ExploreType exploreType = TIME;
+    private int startNode = -1;
+    private int visitedNodes;
+    private long arcTime;
+    private double arcDistance;
+
+    /**
+     * @param graph       a node-based CH graph, usually a query graph on top of the prepared CH graph
+     * @param baseCHNodes the number of nodes of the prepared CH graph, i.e. without virtual nodes
+     * @param reverseFlow if true the tree contains the shortest paths to (instead of from) the start node
+     */
+    public PhastShortestPathTree(RoutingCHGraph graph, int baseCHNodes, boolean reverseFlow) {
+        this(graph, new PhastPreparation(graph, baseCHNodes, 0), reverseFlow);
+    }
+
+    /**
+     * Uses the sweep order of the given preparation and reuses its idle per-node arrays. Call {@link #release} when
+     * the tree is no longer needed, so the arrays can be reused by the next tree.
+     *
+     * @param graph       a node-based CH graph, usually a query graph on top of the CH graph of the preparation
+     * @param preparation the preparation of the CH graph
+     */
+    public PhastShortestPathTree(RoutingCHGraph graph, PhastPreparation preparation, boolean reverseFlow) {
+        if (graph.isEdgeBased())
+            throw new IllegalArgumentException("PHAST is only supported for node-based CH graphs");
+        this.graph = graph;
+        this.baseGraph = graph.getBaseGraph();
+        this.weighting = graph.getWeighting();
+        this.reverseFlow = reverseFlow;
+        this.preparation = preparation;
+        this.baseNodes = preparation.getBaseNodes();
+        levels = preparation.getLevels();
+        sweepOrder = preparation.getSweepOrder();
+        labels = preparation.lease(graph.getNodes());
+        weights = labels.weights;
+        times = labels.times;
+        distances = labels.distances;
+        parentEdges = labels.parentEdges;
+    }
+
+    /**
+     * Returns the per-node arrays to the preparation. The tree must not be used afterwards.
+     */
+    public void release() {
+        if (labels == null)
+            return;
+        preparation.release(labels);
+        labels = null;
+    }
+
+    /**
+     * Time limit in milliseconds
+     */
+    public void setTimeLimit(double limit) {
+        exploreType = TIME;
+        this.limit = limit;
+    }
+
+    /**
+     * Distance limit in meter
+     */
+    public void setDistanceLimit(double limit) {
+        exploreType = DISTANCE;
+        this.limit = limit;
+    }
+
+    public void setWeightLimit(double limit) {
+        exploreType = WEIGHT;
+        this.limit = limit;
+    }
+
+    /**
+     * Calculates the tree and calls the consumer for the start node and every other node whose time, distance or
+     * weight (depending on the limit) does not exceed the limit. Unlike {@link ShortestPathTree} the nodes are not
+     * ordered by their weight.
+     */
+    public void search(int from, IntConsumer consumer) {
+        if (startNode >= 0)
+            throw new IllegalStateException("Create a new instance per call");
+        startNode = from;
+        Arrays.fill(weights, Double.POSITIVE_INFINITY);
+        Arrays.fill(times, Long.MAX_VALUE);
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(parentEdges, EdgeIterator.NO_EDGE);
+        weights[from] = 0;
+        times[from] = 0;
+        distances[from] = 0;
+
+        IntArrayList upwardNodes = searchUpward(from);
+        calcUpwardTimes(upwardNodes);
+        sweepDownward();
+
+        consumer.accept(from);
+        for (int node : sweepOrder) {
+            if (node != from && getExploreValue(node) <= limit)
+                consumer.accept(node);
+        }
+    }
+
+    /**
+     * Finds the exact weights of all nodes that can be reached from the start node using only edges that lead to
+     * higher levels. The upward search space is small, so the search simply continues until no weight changes.
+     */
+    private IntArrayList searchUpward(int from) {
+        RoutingCHEdgeExplorer explorer = reverseFlow ? graph.createInEdgeExplorer() : graph.createOutEdgeExplorer();
+        IntFloatBinaryHeap heap = new IntFloatBinaryHeap(1000);
+        IntArrayList upwardNodes = new IntArrayList();
+        heap.insert(0, from);
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            visitedNodes++;
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                int adj = iter.getAdjNode();
+                // only the start node may be virtual and there is no need to go back to it
+                if (adj >= baseNodes || !isHigher(iter, adj, node))
+                    continue;
+                double weight = weights[node] + iter.getWeight(reverseFlow);
+                if (weight < weights[adj]) {
+                    if (parentEdges[adj] == EdgeIterator.NO_EDGE)
+                        upwardNodes.add(adj);
+                    weights[adj] = weight;
+                    parentEdges[adj] = iter.getEdge();
+                    heap.insert(weight, adj);
+                }
+            }
+        }
+        return upwardNodes;
+    }
+
+    /**
+     * Calculates the time and distance of the nodes found by the upward search. Their parents always have a lower
+     * level (or are the start node) so they are processed in ascending level order.
+     */
+    private void calcUpwardTimes(IntArrayList upwardNodes) {
+        long[] byLevel = new long[upwardNodes.size()];
+        for (int i = 0; i < upwardNodes.size(); i++) {
+            int node = upwardNodes.get(i);
+            byLevel[i] = ((long) levels[node] << 32) | node;
+        }
+        Arrays.sort(byLevel);
+        for (long l : byLevel)
+            calcTime((int) l);
+    }
+
+    private void sweepDownward() {
+        RoutingCHEdgeExplorer explorer = reverseFlow ? graph.createOutEdgeExplorer() : graph.createInEdgeExplorer();
+        for (int node : sweepOrder) {
+            visitedNodes++;
+            double bestWeight = weights[node];
+            int bestEdge = EdgeIterator.NO_EDGE;
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                int adj = iter.getAdjNode();
+                if (!isHigher(iter, adj, node))
+                    continue;
+                double weight = weights[adj] + iter.getWeight(!reverseFlow);
+                if (weight < bestWeight) {
+                    bestWeight = weight;
+                    bestEdge = iter.getEdge();
+                }
+            }
+            if (bestEdge != EdgeIterator.NO_EDGE) {
+                weights[node] = bestWeight;
+                parentEdges[node] = bestEdge;
+                calcTime(node);
+            }
+        }
+    }
+
+    private boolean isHigher(RoutingCHEdgeIteratorState edge, int adj, int node) {
+        // virtual nodes count as the highest nodes and shortcuts always lead to higher nodes
+        return adj >= baseNodes || node >= baseNodes || edge.isShortcut() || levels[adj] > levels[node];
+    }
+
+    private void calcTime(int node) {
+        RoutingCHEdgeIteratorState edge = graph.getEdgeIteratorState(parentEdges[node], node);
+        int parent = edge.getBaseNode();
+        if (getExploreValue(parent) > limit) {
+            times[node] = Long.MAX_VALUE;
+            distances[node] = Double.POSITIVE_INFINITY;
+            return;
+        }
+        calcArc(edge);
+        times[node] = times[parent] + arcTime;
+        distances[node] = distances[parent] + arcDistance;
+    }
+
+    /**
+     * Sets arcTime and arcDistance to the travel time and distance of the given (CH) edge from its base to its
+     * adjacent node, or the other way around for reverseFlow.
+     */
+    private void calcArc(RoutingCHEdgeIteratorState edge) {
+        if (!edge.isShortcut()) {
+            EdgeIteratorState origEdge = baseGraph.getEdgeIteratorState(edge.getOrigEdge(), edge.getAdjNode());
+            arcTime = weighting.calcEdgeMillis(origEdge, reverseFlow);
+            arcDistance = origEdge.getDistance();
+            return;
+        }
+        int key = edge.getEdge() << 1 | (edge.getBaseNode() < edge.getAdjNode() ? 0 : 1);
+        int index = shortcutIndex.getOrDefault(key, -1);
+        if (index >= 0) {
+            arcTime = shortcutTimes.get(index);
+            arcDistance = shortcutDistances.get(index);
+            return;
+        }
+        RoutingCHEdgeIteratorState second = getSecondSkippedEdge(edge);
+        RoutingCHEdgeIteratorState first = graph.getEdgeIteratorState(
+                second.getEdge() == edge.getSkippedEdge2() ? edge.getSkippedEdge1() : edge.getSkippedEdge2(), second.getBaseNode());
+        calcArc(first);
+        long time = arcTime;
+        double distance = arcDistance;
+        calcArc(second);
+        arcTime += time;
+        arcDistance += distance;
+        shortcutIndex.put(key, shortcutTimes.size());
+        shortcutTimes.add(arcTime);
+        shortcutDistances.add(arcDistance);
+    }
+
+    /**
+     * @return the skipped edge of the given shortcut that is attached to its adjacent node, oriented towards it
+     */
+    private RoutingCHEdgeIteratorState getSecondSkippedEdge(RoutingCHEdgeIteratorState shortcut) {
+        RoutingCHEdgeIteratorState second = graph.getEdgeIteratorState(shortcut.getSkippedEdge2(), shortcut.getAdjNode());
+        return second == null ? graph.getEdgeIteratorState(shortcut.getSkippedEdge1(), shortcut.getAdjNode()) : second;
+    }
+
+    /**
+     * @return the last original edge on the path to the given node, oriented towards the node, or null for the start
+     * node and nodes that were not reached
+     */
+    private EdgeIteratorState getLastOrigEdge(int node) {
+        if (parentEdges[node] == EdgeIterator.NO_EDGE)
+            return null;
+        RoutingCHEdgeIteratorState edge = graph.getEdgeIteratorState(parentEdges[node], node);
+        while (edge.isShortcut())
+            edge = getSecondSkippedEdge(edge);
+        return baseGraph.getEdgeIteratorState(edge.getOrigEdge(), node);
+    }
+
+    private double getExploreValue(int node) {
+        if (exploreType == TIME)
+            return times[node] == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : times[node];
+        if (exploreType == WEIGHT)
+            return weights[node];
+        return distances[node];
+    }
+
+    public double getWeight(int node) {
+        return weights[node];
+    }
+
+    /**
+     * @return the time in milliseconds or Long.MAX_VALUE if the node was not reached within the limit
+     */
+    public long getTime(int node) {
+        return times[node];
+    }
+
+    public double getDistance(int node) {
+        return distances[node];
+    }
+
+    /**
+     * @return the original edge that leads to the given node, or {@link EdgeIterator#NO_EDGE} for the start node
+     */
+    public int getEdge(int node) {
+        EdgeIteratorState edge = getLastOrigEdge(node);
+        return edge == null ? EdgeIterator.NO_EDGE : edge.getEdge();
+    }
+
+    /**
+     * @return the previous node on the (unpacked) path to the given node, or -1 for the start node
+     */
+    public int getParentNode(int node) {
+        EdgeIteratorState edge = getLastOrigEdge(node);
+        return edge == null ? -1 : edge.getBaseNode();
+    }
+
+    /**
+     * @return the time of the previous node on the path to the given node. This is the time of the given node minus
+     * the time of the last edge, so it is consistent with the path even if the tree reaches the previous node on an
+     * equally short path.
+     */
+    public long getParentTime(int node) {
+        EdgeIteratorState edge = getLastOrigEdge(node);
+        return edge == null ? 0 : times[node] - weighting.calcEdgeMillis(edge, reverseFlow);
+    }
+
+    public double getParentDistance(int node) {
+        EdgeIteratorState edge = getLastOrigEdge(node);
+        return edge == null ? 0 : distances[node] - edge.getDistance();
+    }
+
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+}
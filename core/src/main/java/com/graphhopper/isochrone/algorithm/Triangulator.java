@@ -22,6 +22,7 @@ import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.storage.index.Snap;
 
 import java.util.Collection;
+import java.util.function.IntToDoubleFunction;
 import java.util.function.ToDoubleFunction;
 
 public interface Triangulator {
@@ -40,4 +41,9 @@ public interface Triangulator {
 
     Result triangulate(Snap snap, QueryGraph queryGraph, ShortestPathTree shortestPathTree, ToDoubleFunction<ShortestPathTree.IsoLabel> fz, double tolerance);
 
+    /**
+     * Same as above, but for a tree calculated on a CH graph, where fz returns the value of a node.
+     */
+    Result triangulate(Snap snap, QueryGraph queryGraph, PhastShortestPathTree shortestPathTree, IntToDoubleFunction fz, double tolerance);
+
 }
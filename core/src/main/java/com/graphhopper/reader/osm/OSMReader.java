@@ -56,6 +56,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.LongToIntFunction;
 import java.util.regex.Pattern;
 
@@ -90,7 +91,7 @@ public class OSMReader {
 
     private final IntsRef tempRelFlags;
     private Date osmDataDate;
-    private long zeroCounter = 0;
+    private final AtomicLong zeroCounter = new AtomicLong();
 
     private GHLongLongHashMap osmWayIdToRelationFlagsMap = new GHLongLongHashMap(200, .5f);
     // stores osm way ids used by relations to identify which edge ids needs to be mapped later
@@ -178,15 +179,21 @@ public class OSMReader {
                 .setWayPreprocessor(this::preprocessWay)
                 .setRelationPreprocessor(this::preprocessRelations)
                 .setRelationProcessor(this::processRelation)
-                .setEdgeHandler(this::addEdge)
+                .setEdgeHandler(config.getWayThreads() > 1 ? new ParallelEdgeHandler() : this::addEdge)
                 .setWorkerThreads(config.getWorkerThreads())
+                .setWayThreads(config.getWayThreads())
                 .build();
+        // the turn restrictions are added in bulk and stored in the read-optimized layout once all of them are known
+        if (turnCostStorage != null)
+            turnCostStorage.startBulkLoad();
         waySegmentParser.readOSM(osmFile);
+        if (turnCostStorage != null)
+            turnCostStorage.finishBulkLoad();
         osmDataDate = waySegmentParser.getTimeStamp();
         if (baseGraph.getNodes() == 0)
             throw new RuntimeException("Graph after reading OSM must not be empty");
         LOGGER.info("Finished reading OSM file: {}, nodes: {}, edges: {}, zero distance edges: {}",
-                osmFile.getAbsolutePath(), nf(baseGraph.getNodes()), nf(baseGraph.getEdges()), nf(zeroCounter));
+                osmFile.getAbsolutePath(), nf(baseGraph.getNodes()), nf(baseGraph.getEdges()), nf(zeroCounter.get()));
         finishedReading();
     }
 
@@ -298,6 +305,19 @@ public class OSMReader {
      * @param nodeTags  node tags of this segment if it is an artificial edge, empty otherwise
      */
     protected void addEdge(int fromIndex, int toIndex, PointList pointList, ReaderWay way, Map<String, Object> nodeTags) {
+        PreparedEdge preparedEdge = prepareEdge(fromIndex, toIndex, pointList, way, nodeTags, tempRelFlags);
+        if (preparedEdge != null)
+            addPreparedEdge(preparedEdge);
+    }
+
+    /**
+     * Does all the work for a new edge that does not modify the graph, i.e. simplifying the geometry, calculating the
+     * distance and parsing the tags. This method can be called concurrently for different ways, as long as the
+     * relation flags are not shared.
+     *
+     * @return the prepared edge or null if no edge shall be added, because it is not accessible for any vehicle
+     */
+    private PreparedEdge prepareEdge(int fromIndex, int toIndex, PointList pointList, ReaderWay way, Map<String, Object> nodeTags, IntsRef relationFlags) {
         // sanity checks
         if (fromIndex < 0 || toIndex < 0)
             throw new AssertionError("to or from index is invalid for this edge " + fromIndex + "->" + toIndex + ", points:" + pointList);
@@ -314,8 +334,12 @@ public class OSMReader {
             GraphElevationSmoothing.smoothElevation(pointList);
 
         // sample points along long edges
-        if (config.getLongEdgeSamplingDistance() < Double.MAX_VALUE && pointList.is3D())
-            pointList = EdgeSampling.sample(pointList, config.getLongEdgeSamplingDistance(), distCalc, eleProvider);
+        if (config.getLongEdgeSamplingDistance() < Double.MAX_VALUE && pointList.is3D()) {
+            // the elevation providers are not thread-safe
+            synchronized (eleProvider) {
+                pointList = EdgeSampling.sample(pointList, config.getLongEdgeSamplingDistance(), distCalc, eleProvider);
+            }
+        }
 
         if (config.getMaxWayPointDistance() > 0 && pointList.size() > 2)
             simplifyAlgo.simplify(pointList);
@@ -333,7 +357,7 @@ public class OSMReader {
         if (distance < 0.001) {
             // As investigation shows often two paths should have crossed via one identical point
             // but end up in two very close points.
-            zeroCounter++;
+            zeroCounter.incrementAndGet();
             distance = 0.001;
         }
 
@@ -352,16 +376,29 @@ public class OSMReader {
         }
 
         setArtificialWayTags(pointList, way, distance, nodeTags);
-        IntsRef relationFlags = getRelFlagsMap(way.getId());
-        IntsRef edgeFlags = tagParserManager.handleWayTags(way, relationFlags);
+        IntsRef edgeFlags = tagParserManager.handleWayTags(way, getRelFlagsMap(way.getId(), relationFlags));
         if (edgeFlags.isEmpty())
-            return;
-          
+            return null;
+        return new PreparedEdge(fromIndex, toIndex, pointList, way, distance, grade, edgeFlags);
+    }
+
+    /**
+     * Adds an edge that was created by {@link #prepareEdge} to the graph. The edges must be added in a deterministic
+     * order, because this determines the edge IDs.
+     */
+    private void addPreparedEdge(PreparedEdge preparedEdge) {
+        final int fromIndex = preparedEdge.fromIndex;
+        final int toIndex = preparedEdge.toIndex;
+        final PointList pointList = preparedEdge.pointList;
+        final ReaderWay way = preparedEdge.way;
+        final int grade = preparedEdge.grade;
+        final IntsRef edgeFlags = preparedEdge.edgeFlags;
+
         // Store whether or not the edge is a ferry edge
         boolean isFerry = way.getTag("route", "").equals("ferry");
 
         String name = way.getTag("way_name", "");
-        EdgeIteratorState edge = baseGraph.edge(fromIndex, toIndex).setDistance(distance).setGrade(grade)
+        EdgeIteratorState edge = baseGraph.edge(fromIndex, toIndex).setDistance(preparedEdge.distance).setGrade(grade)
                 .setIsFerry(isFerry).setFlags(edgeFlags).setName(name);
 
         // If the entire way is just the first and last point, do not waste space storing an empty way geometry
@@ -683,10 +720,14 @@ public class OSMReader {
     }
 
     IntsRef getRelFlagsMap(long osmId) {
+        return getRelFlagsMap(osmId, tempRelFlags);
+    }
+
+    private IntsRef getRelFlagsMap(long osmId, IntsRef relFlags) {
         long relFlagsAsLong = osmWayIdToRelationFlagsMap.get(osmId);
-        tempRelFlags.ints[0] = (int) relFlagsAsLong;
-        tempRelFlags.ints[1] = (int) (relFlagsAsLong >> 32);
-        return tempRelFlags;
+        relFlags.ints[0] = (int) relFlagsAsLong;
+        relFlags.ints[1] = (int) (relFlagsAsLong >> 32);
+        return relFlags;
     }
 
     void putRelFlagsMap(long osmId, IntsRef relFlags) {
@@ -699,4 +740,44 @@ public class OSMReader {
         return getClass().getSimpleName();
     }
 
+
+    /**
+     * Prepares the edges of different ways in parallel, see {@link WaySegmentParser.ParallelEdgeHandler}. Note that
+     * this does not call {@link #addEdge}.
+     */
+    private class ParallelEdgeHandler implements WaySegmentParser.ParallelEdgeHandler<PreparedEdge> {
+        @Override
+        public PreparedEdge prepareEdge(int from, int to, PointList pointList, ReaderWay way, Map<String, Object> nodeTags) {
+            // the artificial tags are set on the way for every edge, so every edge needs its own copy of the way
+            ReaderWay wayCopy = new ReaderWay(way.getId());
+            wayCopy.getTags().putAll(way.getTags());
+            wayCopy.getNodes().addAll(way.getNodes());
+            return OSMReader.this.prepareEdge(from, to, pointList, wayCopy, nodeTags, tagParserManager.createRelationFlags());
+        }
+
+        @Override
+        public void addEdge(PreparedEdge preparedEdge) {
+            addPreparedEdge(preparedEdge);
+        }
+    }
+
+    private static class PreparedEdge {
+        final int fromIndex;
+        final int toIndex;
+        final PointList pointList;
+        final ReaderWay way;
+        final double distance;
+        final int grade;
+        final IntsRef edgeFlags;
+
+        PreparedEdge(int fromIndex, int toIndex, PointList pointList, ReaderWay way, double distance, int grade, IntsRef edgeFlags) {
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.pointList = pointList;
+            this.way = way;
+            this.distance = distance;
+            this.grade = grade;
+            this.edgeFlags = edgeFlags;
+        }
+    }
 }
@@ -42,7 +42,14 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.function.LongToIntFunction;
 import java.util.function.Predicate;
 
@@ -65,9 +72,15 @@ import static java.util.Collections.emptyMap;
  * The main difficulty is that the OSM ID range is very large (64bit integers) and to be able to provide the full
  * node information for each segment we have to efficiently store the node data temporarily. This is addressed by
  * {@link OSMNodeData}.
+ * <p>
+ * If more than one way thread is configured the OSM ways of the second pass are processed in blocks: The way filter,
+ * the way preprocessor and (for a {@link ParallelEdgeHandler}) the preparation of the edges run in parallel, while the
+ * splitting of the ways into segments and the insertion of the edges happen in the order of the OSM file. Therefore
+ * the resulting graph does not depend on the number of threads.
  */
 public class WaySegmentParser {
     private static final Logger LOGGER = LoggerFactory.getLogger(WaySegmentParser.class);
+    private static final int WAY_BLOCK_SIZE = 10_000;
 
     private final ElevationProvider eleProvider;
     private final Predicate<ReaderWay> wayFilter;
@@ -77,6 +90,7 @@ public class WaySegmentParser {
     private final RelationProcessor relationProcessor;
     private final EdgeHandler edgeHandler;
     private final int workerThreads;
+    private final int wayThreads;
 
     private final OSMNodeData nodeData;
     private Date timestamp;
@@ -84,7 +98,7 @@ public class WaySegmentParser {
     private WaySegmentParser(PointAccess nodeAccess, Directory directory, ElevationProvider eleProvider,
                              Predicate<ReaderWay> wayFilter, Predicate<ReaderNode> splitNodeFilter, WayPreprocessor wayPreprocessor,
                              Consumer<ReaderRelation> relationPreprocessor, RelationProcessor relationProcessor,
-                             EdgeHandler edgeHandler, int workerThreads) {
+                             EdgeHandler edgeHandler, int workerThreads, int wayThreads) {
         this.eleProvider = eleProvider;
         this.wayFilter = wayFilter;
         this.splitNodeFilter = splitNodeFilter;
@@ -93,6 +107,7 @@ public class WaySegmentParser {
         this.relationProcessor = relationProcessor;
         this.edgeHandler = edgeHandler;
         this.workerThreads = workerThreads;
+        this.wayThreads = wayThreads;
 
         this.nodeData = new OSMNodeData(nodeAccess, directory);
     }
@@ -116,7 +131,13 @@ public class WaySegmentParser {
 
         LOGGER.info("pass2 - start");
         StopWatch sw2 = new StopWatch().start();
-        readOSM(osmFile, new Pass2Handler());
+        ExecutorService wayExecutor = wayThreads > 1 ? Executors.newFixedThreadPool(wayThreads) : null;
+        try {
+            readOSM(osmFile, new Pass2Handler(wayExecutor));
+        } finally {
+            if (wayExecutor != null)
+                wayExecutor.shutdownNow();
+        }
         LOGGER.info("pass2 - finished, took: {}", sw2.stop().getTimeString());
 
         nodeData.release();
@@ -195,6 +216,8 @@ public class WaySegmentParser {
     }
 
     private class Pass2Handler implements ReaderElementHandler {
+        private final ExecutorService wayExecutor;
+        private final List<ReaderWay> wayBlock = new ArrayList<>(WAY_BLOCK_SIZE);
         private boolean handledNodes;
         private boolean handledWays;
         private boolean handledRelations;
@@ -203,6 +226,13 @@ public class WaySegmentParser {
         private long ignoredSplitNodes = 0;
         private long wayCounter = -1;
 
+        /**
+         * @param wayExecutor used to process the ways in parallel, or null if they shall be processed sequentially
+         */
+        Pass2Handler(ExecutorService wayExecutor) {
+            this.wayExecutor = wayExecutor;
+        }
+
         @Override
         public void handleNode(ReaderNode node) {
             if (!handledNodes) {
@@ -247,16 +277,98 @@ public class WaySegmentParser {
             if (++wayCounter % 10_000_000 == 0)
                 LOGGER.info("pass2 - processed ways: " + nf(wayCounter) + ", " + Helper.getMemInfo());
 
+            if (wayExecutor != null) {
+                wayBlock.add(way);
+                if (wayBlock.size() == WAY_BLOCK_SIZE)
+                    handleWayBlock();
+                return;
+            }
+
             if (!wayFilter.test(way))
                 return;
+            List<SegmentNode> segment = preprocessWay(way);
+            splitWayAtJunctionsAndEmptySections(segment, way, edgeHandler);
+        }
+
+        private List<SegmentNode> preprocessWay(ReaderWay way) {
             List<SegmentNode> segment = new ArrayList<>(way.getNodes().size());
             for (LongCursor node : way.getNodes())
                 segment.add(new SegmentNode(node.value, nodeData.getId(node.value)));
             wayPreprocessor.preprocessWay(way, osmNodeId -> nodeData.getCoordinates(nodeData.getId(osmNodeId)));
-            splitWayAtJunctionsAndEmptySections(segment, way);
+            return segment;
+        }
+
+        /**
+         * Processes the buffered ways. Only the node data is read while the ways are filtered and preprocessed in
+         * parallel. The node data is modified while we split the ways, so this is done in order, and so is the final
+         * insertion of the edges.
+         */
+        @SuppressWarnings("unchecked")
+        private void handleWayBlock() {
+            if (wayBlock.isEmpty())
+                return;
+            final int size = wayBlock.size();
+            final List<List<SegmentNode>> fullSegments = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                fullSegments.add(null);
+            runInParallel(size, i -> {
+                ReaderWay way = wayBlock.get(i);
+                if (wayFilter.test(way))
+                    fullSegments.set(i, preprocessWay(way));
+            });
+
+            final List<List<PendingEdge>> pendingEdges = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                List<PendingEdge> edges = new ArrayList<>();
+                pendingEdges.add(edges);
+                if (fullSegments.get(i) != null)
+                    splitWayAtJunctionsAndEmptySections(fullSegments.get(i), wayBlock.get(i),
+                            (from, to, pointList, way, nodeTags) -> edges.add(new PendingEdge(from, to, pointList, way, nodeTags)));
+            }
+
+            if (edgeHandler instanceof ParallelEdgeHandler) {
+                final ParallelEdgeHandler<Object> parallelEdgeHandler = (ParallelEdgeHandler<Object>) edgeHandler;
+                // all segments of a way are handled by the same thread, because the edge handler might modify the way
+                runInParallel(size, i -> {
+                    for (PendingEdge e : pendingEdges.get(i))
+                        e.preparedEdge = parallelEdgeHandler.prepareEdge(e.from, e.to, e.pointList, e.way, e.nodeTags);
+                });
+                for (List<PendingEdge> edges : pendingEdges)
+                    for (PendingEdge e : edges)
+                        if (e.preparedEdge != null)
+                            parallelEdgeHandler.addEdge(e.preparedEdge);
+            } else {
+                for (List<PendingEdge> edges : pendingEdges)
+                    for (PendingEdge e : edges)
+                        edgeHandler.handleEdge(e.from, e.to, e.pointList, e.way, e.nodeTags);
+            }
+            wayBlock.clear();
+        }
+
+        private void runInParallel(int size, IntConsumer task) {
+            AtomicInteger nextIndex = new AtomicInteger();
+            List<Callable<Object>> callables = new ArrayList<>(wayThreads);
+            for (int t = 0; t < wayThreads; t++) {
+                callables.add(() -> {
+                    for (int i = nextIndex.getAndIncrement(); i < size; i = nextIndex.getAndIncrement())
+                        task.accept(i);
+                    return null;
+                });
+            }
+            try {
+                for (Future<Object> future : wayExecutor.invokeAll(callables))
+                    future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Thread was interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
         }
 
-        private void splitWayAtJunctionsAndEmptySections(List<SegmentNode> fullSegment, ReaderWay way) {
+        private void splitWayAtJunctionsAndEmptySections(List<SegmentNode> fullSegment, ReaderWay way, EdgeHandler handler) {
             List<SegmentNode> segment = new ArrayList<>();
             for (SegmentNode node : fullSegment) {
                 if (!isNodeId(node.id)) {
@@ -265,13 +377,13 @@ public class WaySegmentParser {
                     // back into it. we do not want to connect the exit/entry points using a straight line. this usually
                     // should only happen for OSM extracts
                     if (segment.size() > 1) {
-                        splitLoopSegments(segment, way);
+                        splitLoopSegments(segment, way, handler);
                         segment = new ArrayList<>();
                     }
                 } else if (isTowerNode(node.id)) {
                     if (!segment.isEmpty()) {
                         segment.add(node);
-                        splitLoopSegments(segment, way);
+                        splitLoopSegments(segment, way, handler);
                         segment = new ArrayList<>();
                     }
                     segment.add(node);
@@ -281,10 +393,10 @@ public class WaySegmentParser {
             }
             // the last segment might end at the end of the way
             if (segment.size() > 1)
-                splitLoopSegments(segment, way);
+                splitLoopSegments(segment, way, handler);
         }
 
-        private void splitLoopSegments(List<SegmentNode> segment, ReaderWay way) {
+        private void splitLoopSegments(List<SegmentNode> segment, ReaderWay way, EdgeHandler handler) {
             if (segment.size() < 2)
                 throw new IllegalStateException("Segment size must be >= 2, but was: " + segment.size());
 
@@ -293,14 +405,14 @@ public class WaySegmentParser {
                 LOGGER.warn("Loop in OSM way: {}, will be ignored, duplicate node: {}", way.getId(), segment.get(0).osmNodeId);
             } else if (isLoop) {
                 // split into two segments
-                splitSegmentAtSplitNodes(segment.subList(0, segment.size() - 1), way);
-                splitSegmentAtSplitNodes(segment.subList(segment.size() - 2, segment.size()), way);
+                splitSegmentAtSplitNodes(segment.subList(0, segment.size() - 1), way, handler);
+                splitSegmentAtSplitNodes(segment.subList(segment.size() - 2, segment.size()), way, handler);
             } else {
-                splitSegmentAtSplitNodes(segment, way);
+                splitSegmentAtSplitNodes(segment, way, handler);
             }
         }
 
-        private void splitSegmentAtSplitNodes(List<SegmentNode> parentSegment, ReaderWay way) {
+        private void splitSegmentAtSplitNodes(List<SegmentNode> parentSegment, ReaderWay way, EdgeHandler handler) {
             List<SegmentNode> segment = new ArrayList<>();
             for (int i = 0; i < parentSegment.size(); i++) {
                 SegmentNode node = parentSegment.get(i);
@@ -318,12 +430,12 @@ public class WaySegmentParser {
                     }
                     if (!segment.isEmpty()) {
                         segment.add(barrierFrom);
-                        handleSegment(segment, way, emptyMap());
+                        handleSegment(segment, way, emptyMap(), handler);
                         segment = new ArrayList<>();
                     }
                     segment.add(barrierFrom);
                     segment.add(barrierTo);
-                    handleSegment(segment, way, nodeTags);
+                    handleSegment(segment, way, nodeTags, handler);
                     segment = new ArrayList<>();
                     segment.add(barrierTo);
 
@@ -335,10 +447,10 @@ public class WaySegmentParser {
                 }
             }
             if (segment.size() > 1)
-                handleSegment(segment, way, emptyMap());
+                handleSegment(segment, way, emptyMap(), handler);
         }
 
-        void handleSegment(List<SegmentNode> segment, ReaderWay way, Map<String, Object> nodeTags) {
+        void handleSegment(List<SegmentNode> segment, ReaderWay way, Map<String, Object> nodeTags, EdgeHandler handler) {
             final PointList pointList = new PointList(segment.size(), nodeData.is3D());
             int from = -1;
             int to = -1;
@@ -362,12 +474,14 @@ public class WaySegmentParser {
             }
             if (from < 0 || to < 0)
                 throw new IllegalStateException("The first and last nodes of a segment must be tower nodes, way: " + way.getId());
-            edgeHandler.handleEdge(from, to, pointList, way, nodeTags);
+            handler.handleEdge(from, to, pointList, way, nodeTags);
         }
 
         @Override
         public void handleRelation(ReaderRelation relation) {
             if (!handledRelations) {
+                // all edges must exist before we process the relations
+                handleWayBlock();
                 LOGGER.info("pass2 - start reading OSM relations");
                 handledRelations = true;
             }
@@ -377,6 +491,7 @@ public class WaySegmentParser {
 
         @Override
         public void onFinish() {
+            handleWayBlock();
             LOGGER.info("pass2 - finished, processed ways: {}, way nodes: {}, with tags: {}, ignored barriers at junctions: {}",
                     nf(wayCounter), nf(acceptedNodes), nf(nodeData.getTaggedNodeCount()), nf(ignoredSplitNodes));
         }
@@ -421,6 +536,7 @@ public class WaySegmentParser {
         private EdgeHandler edgeHandler = (from, to, pointList, way, nodeTags) ->
                 System.out.println("edge " + from + "->" + to + " (" + pointList.size() + " points)");
         private int workerThreads = 2;
+        private int wayThreads = 1;
 
         /**
          * @param nodeAccess used to store tower node coordinates while parsing the ways
@@ -502,10 +618,22 @@ public class WaySegmentParser {
             return this;
         }
 
+        /**
+         * @param wayThreads the number of threads used to process the OSM ways during the second pass. The way filter,
+         *                   the way preprocessor and {@link ParallelEdgeHandler#prepareEdge} must be thread-safe
+         *                   if this is larger than one.
+         */
+        public Builder setWayThreads(int wayThreads) {
+            if (wayThreads < 1)
+                throw new IllegalArgumentException("way threads must be positive, but was: " + wayThreads);
+            this.wayThreads = wayThreads;
+            return this;
+        }
+
         public WaySegmentParser build() {
             return new WaySegmentParser(
                     nodeAccess, directory, elevationProvider, wayFilter, splitNodeFilter, wayPreprocessor, relationPreprocessor, relationProcessor,
-                    edgeHandler, workerThreads
+                    edgeHandler, workerThreads, wayThreads
             );
         }
     }
@@ -550,6 +678,47 @@ public class WaySegmentParser {
         void handleEdge(int from, int to, PointList pointList, ReaderWay way, Map<String, Object> nodeTags);
     }
 
+    /**
+     * An edge handler that splits its work into a part that can run in parallel and the insertion of the edge, which
+     * is done in the order of the OSM file. This is only used if there is more than one way thread.
+     */
+    public interface ParallelEdgeHandler<T> extends EdgeHandler {
+        /**
+         * Called concurrently for the segments of different ways. The segments of a single way are prepared by the same
+         * thread in the order they appear in the way, but the way might be modified for the next segment before the
+         * edge is added. Therefore the result must contain everything that is needed to add the edge.
+         *
+         * @return the prepared edge, or null if no edge shall be added for this segment
+         */
+        T prepareEdge(int from, int to, PointList pointList, ReaderWay way, Map<String, Object> nodeTags);
+
+        void addEdge(T preparedEdge);
+
+        @Override
+        default void handleEdge(int from, int to, PointList pointList, ReaderWay way, Map<String, Object> nodeTags) {
+            T preparedEdge = prepareEdge(from, to, pointList, way, nodeTags);
+            if (preparedEdge != null)
+                addEdge(preparedEdge);
+        }
+    }
+
+    private static class PendingEdge {
+        final int from;
+        final int to;
+        final PointList pointList;
+        final ReaderWay way;
+        final Map<String, Object> nodeTags;
+        Object preparedEdge;
+
+        PendingEdge(int from, int to, PointList pointList, ReaderWay way, Map<String, Object> nodeTags) {
+            this.from = from;
+            this.to = to;
+            this.pointList = pointList;
+            this.way = way;
+            this.nodeTags = nodeTags;
+        }
+    }
+
     public interface RelationProcessor {
         void processRelation(ReaderRelation relation, LongToIntFunction getNodeIdForOSMNodeId);
     }
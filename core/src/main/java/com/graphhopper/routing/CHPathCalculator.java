@@ -34,6 +34,7 @@ public class CHPathCalculator implements PathCalculator {
     private final PMap algoOpts;
     private PMap debug = new PMap();
     private int visitedNodes;
+    private SearchStatePool searchStatePool;
 
     public CHPathCalculator(CHRoutingAlgorithmFactory algoFactory, PMap algoOpts) {
         this.algoFactory = algoFactory;
@@ -44,13 +45,35 @@ public class CHPathCalculator implements PathCalculator {
     public List<Path> calcPaths(int from, int to, EdgeRestrictions edgeRestrictions) {
         if (!edgeRestrictions.getUnfavoredEdges().isEmpty())
             throw new IllegalArgumentException("Using unfavored edges is currently not supported for CH");
-        BidirRoutingAlgorithm algo = createAlgo();
+        if (searchStatePool != null && algoFactory.canUseSearchStates(algoOpts)) {
+            SearchState fwdState = searchStatePool.lease();
+            SearchState bwdState = searchStatePool.lease();
+            try {
+                BidirRoutingAlgorithm algo = createAlgo(fwdState, bwdState);
+                return calcPaths(from, to, edgeRestrictions, algo);
+            } finally {
+                searchStatePool.release(fwdState);
+                searchStatePool.release(bwdState);
+            }
+        }
+        BidirRoutingAlgorithm algo = createAlgo(null, null);
         return calcPaths(from, to, edgeRestrictions, algo);
     }
 
-    private BidirRoutingAlgorithm createAlgo() {
+    /**
+     * Sets the pool the search states are leased from, see {@link DijkstraBidirectionCHPooled}. Default is null, i.e.
+     * every search allocates its own state.
+     */
+    public CHPathCalculator setSearchStatePool(SearchStatePool searchStatePool) {
+        this.searchStatePool = searchStatePool;
+        return this;
+    }
+
+    private BidirRoutingAlgorithm createAlgo(SearchState fwdState, SearchState bwdState) {
         StopWatch sw = new StopWatch().start();
-        BidirRoutingAlgorithm algo = algoFactory.createAlgo(algoOpts);
+        BidirRoutingAlgorithm algo = fwdState == null
+                ? algoFactory.createAlgo(algoOpts)
+                : algoFactory.createAlgo(algoOpts, fwdState, bwdState);
         debug.putObject("algoInit (μs)", sw.stop().getNanos() / 1000);
         return algo;
     }
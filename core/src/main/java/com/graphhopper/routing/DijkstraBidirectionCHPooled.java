@@ -0,0 +1,210 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.ch.NodeBasedCHBidirPathExtractor;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
+import com.graphhopper.storage.RoutingCHGraph;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+
+/**
+ * The same search as {@link DijkstraBidirectionCH} (node-based CH with stall-on-demand), but the shortest path trees
+ * are kept in two {@link SearchState}s instead of maps of {@link SPTEntry} objects and priority queues. The states
+ * are passed in from the outside, usually from a {@link SearchStatePool}, so that after a warm-up the search does not
+ * allocate anything. Only the entries of the final path are created as {@link SPTEntry}s to extract it.
+ * <p>
+ * The states must not be used by another search before the path was calculated.
+ */
+public class DijkstraBidirectionCHPooled implements BidirRoutingAlgorithm {
+    private final RoutingCHGraph graph;
+    private final RoutingCHEdgeExplorer inEdgeExplorer;
+    private final RoutingCHEdgeExplorer outEdgeExplorer;
+    private final int maxNodes;
+    private final SearchState fwdState;
+    private final SearchState bwdState;
+    private int maxVisitedNodes = Integer.MAX_VALUE;
+    private int visitedCountFrom;
+    private int visitedCountTo;
+    private int bestNode = -1;
+    private double bestWeight = Double.POSITIVE_INFINITY;
+    private boolean alreadyRun;
+
+    public DijkstraBidirectionCHPooled(RoutingCHGraph graph, SearchState fwdState, SearchState bwdState) {
+        if (graph.isEdgeBased())
+            throw new IllegalArgumentException("Edge-based CH graphs are not supported by " + getName());
+        if (fwdState == bwdState)
+            throw new IllegalArgumentException("The forward and backward search need different states");
+        this.graph = graph;
+        this.fwdState = fwdState;
+        this.bwdState = bwdState;
+        inEdgeExplorer = graph.createInEdgeExplorer();
+        outEdgeExplorer = graph.createOutEdgeExplorer();
+        maxNodes = graph.getBaseGraph().getBaseGraph().getNodes();
+    }
+
+    @Override
+    public List<Path> calcPaths(int from, int to) {
+        return Collections.singletonList(calcPath(from, to));
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        return calcPath(from, to, ANY_EDGE, ANY_EDGE);
+    }
+
+    @Override
+    public Path calcPath(int from, int to, int fromOutEdge, int toInEdge) {
+        if (fromOutEdge != ANY_EDGE || toInEdge != ANY_EDGE)
+            throw new IllegalArgumentException("Restricting the start/target edges is only possible for edge-based graph traversal");
+        if (alreadyRun)
+            throw new IllegalStateException("Create a new instance per call");
+        alreadyRun = true;
+
+        fwdState.reset(graph.getNodes());
+        bwdState.reset(graph.getNodes());
+        fwdState.start(from, 0);
+        bwdState.start(to, 0);
+        if (from == to) {
+            bestNode = from;
+            bestWeight = 0;
+        }
+        runAlgo();
+        return extractPath();
+    }
+
+    private void runAlgo() {
+        while (!isMaxVisitedNodesExceeded()) {
+            // for CH both searches need to continue until they cannot find a better path anymore
+            boolean finishedFrom = fwdState.peekWeight() >= bestWeight;
+            boolean finishedTo = bwdState.peekWeight() >= bestWeight;
+            if (finishedFrom && finishedTo)
+                break;
+            if (!finishedFrom) {
+                visitedCountFrom++;
+                fillEdges(fwdState, bwdState, outEdgeExplorer, inEdgeExplorer, false);
+            }
+            if (!finishedTo) {
+                visitedCountTo++;
+                fillEdges(bwdState, fwdState, inEdgeExplorer, outEdgeExplorer, true);
+            }
+        }
+    }
+
+    private void fillEdges(SearchState state, SearchState otherState, RoutingCHEdgeExplorer explorer,
+                           RoutingCHEdgeExplorer stallExplorer, boolean reverse) {
+        int node = state.poll();
+        double weight = state.getWeight(node);
+        int incEdge = state.getEdge(node);
+        if (isStallable(node, weight, incEdge, state, stallExplorer, reverse))
+            return;
+        RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next()) {
+            // we exclude u-turns for performance reasons just like the node-based CH algorithms
+            if (iter.getEdge() == incEdge || !accept(iter))
+                continue;
+            double adjWeight = weight + iter.getWeight(reverse);
+            if (Double.isInfinite(adjWeight))
+                continue;
+            int adjNode = iter.getAdjNode();
+            if (adjWeight >= state.getWeight(adjNode))
+                continue;
+            state.update(adjNode, adjWeight, node, iter.getEdge());
+            if (otherState.isVisited(adjNode)) {
+                double pathWeight = adjWeight + otherState.getWeight(adjNode);
+                if (pathWeight < bestWeight) {
+                    bestNode = adjNode;
+                    bestWeight = pathWeight;
+                }
+            }
+        }
+    }
+
+    /**
+     * @see DijkstraBidirectionCH
+     */
+    private boolean isStallable(int node, double weight, int incEdge, SearchState state, RoutingCHEdgeExplorer explorer, boolean reverse) {
+        RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next()) {
+            if (iter.getEdge() == incEdge)
+                continue;
+            int adjNode = iter.getAdjNode();
+            // we have to be careful because of rounded shortcut weights in combination with virtual via nodes, see #1574
+            if (state.isVisited(adjNode) && state.getWeight(adjNode) + iter.getWeight(!reverse) - weight < -0.001)
+                return true;
+        }
+        return false;
+    }
+
+    private boolean accept(RoutingCHEdgeIteratorState edgeState) {
+        int base = edgeState.getBaseNode();
+        int adj = edgeState.getAdjNode();
+        // always accept virtual edges, see #288
+        if (base >= maxNodes || adj >= maxNodes)
+            return true;
+        // shortcuts in wrong direction are disconnected, so no need to exclude them
+        if (edgeState.isShortcut())
+            return true;
+        return graph.getLevel(base) <= graph.getLevel(adj);
+    }
+
+    private Path extractPath() {
+        if (bestNode < 0)
+            return new Path(graph.getBaseGraph());
+        return new NodeBasedCHBidirPathExtractor(graph).extract(createEntry(fwdState, bestNode), createEntry(bwdState, bestNode), bestWeight);
+    }
+
+    private static SPTEntry createEntry(SearchState state, int node) {
+        SPTEntry entry = new SPTEntry(state.getEdge(node), node, state.getWeight(node));
+        SPTEntry curr = entry;
+        for (int parent = state.getParent(node); parent >= 0; parent = state.getParent(parent)) {
+            curr.parent = new SPTEntry(state.getEdge(parent), parent, state.getWeight(parent));
+            curr = curr.parent;
+        }
+        return entry;
+    }
+
+    private boolean isMaxVisitedNodesExceeded() {
+        return maxVisitedNodes < getVisitedNodes();
+    }
+
+    @Override
+    public void setMaxVisitedNodes(int numberOfNodes) {
+        this.maxVisitedNodes = numberOfNodes;
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedCountFrom + visitedCountTo;
+    }
+
+    @Override
+    public String getName() {
+        return "dijkstrabi|ch";
+    }
+
+    @Override
+    public String toString() {
+        return getName() + "|" + graph.getWeighting();
+    }
+}
@@ -26,6 +26,7 @@ public class OSMReaderConfig {
     private boolean smoothElevation = false;
     private double longEdgeSamplingDistance = Double.MAX_VALUE;
     private int workerThreads = 2;
+    private int wayThreads = 1;
     private String waysDumpPath = "";
 
     public String getPreferredLanguage() {
@@ -126,4 +127,20 @@ public class OSMReaderConfig {
         this.workerThreads = workerThreads;
         return this;
     }
+
+    public int getWayThreads() {
+        return wayThreads;
+    }
+
+    /**
+     * Sets the number of threads used to process the OSM ways, e.g. to parse their tags, during the second pass of the
+     * import. The edges are still added in the order of the OSM file, so the resulting graph does not depend on
+     * this setting.
+     */
+    public OSMReaderConfig setWayThreads(int wayThreads) {
+        if (wayThreads < 1)
+            throw new IllegalArgumentException("way threads must be positive, but was: " + wayThreads);
+        this.wayThreads = wayThreads;
+        return this;
+    }
 }
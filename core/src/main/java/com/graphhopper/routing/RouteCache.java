@@ -0,0 +1,219 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.JsonFeature;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+import com.graphhopper.util.shapes.GHPoint3D;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKBWriter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache for the results of (non-alternative, non-round-trip) route requests. The key consists of the profile,
+ * the snapped locations and all request parameters that can change the response, so repeated requests that snap to
+ * the same positions skip the path calculation entirely. The cache is bounded by the number of entries and by the
+ * total number of points of the cached paths and evicts the least recently used entries first. Optionally entries
+ * expire after a given time. Thread safe.
+ * <p>
+ * The cached ResponsePaths are shared between all responses created from the same entry and must not be modified.
+ * The RouterConfig is not part of the key, so {@link #clear()} must be called when it is changed.
+ */
+public class RouteCache {
+    private final int maxEntries;
+    private final long maxPoints;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+    private long points;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxEntries the maximum number of cached responses
+     * @param maxPoints  the maximum number of points of all cached responses
+     * @param ttlMillis  the time after which an entry expires, or 0 if entries should never expire
+     */
+    public RouteCache(int maxEntries, long maxPoints, long ttlMillis) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be positive, but was: " + maxEntries);
+        if (maxPoints <= 0)
+            throw new IllegalArgumentException("maxPoints must be positive, but was: " + maxPoints);
+        if (ttlMillis < 0)
+            throw new IllegalArgumentException("ttlMillis must not be negative, but was: " + ttlMillis);
+        this.maxEntries = maxEntries;
+        this.maxPoints = maxPoints;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Creates the cache key for the given request and its snaps. The snaps must belong to the points of the request.
+     */
+    public static String createKey(GHRequest request, List<Snap> snaps) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(request.getProfile()).append('|');
+        for (Snap snap : snaps) {
+            GHPoint3D p = snap.getSnappedPoint();
+            sb.append(snap.getClosestEdge().getEdgeKey()).append(',').append(snap.getWayIndex()).append(',').
+                    append(snap.getSnappedPosition()).append(',').append(p.lat).append(',').append(p.lon).append(';');
+        }
+        // the original query points are only used to determine the side of the road when curbsides are given
+        if (!request.getCurbsides().isEmpty()) {
+            sb.append('|');
+            for (GHPoint p : request.getPoints())
+                sb.append(p.lat).append(',').append(p.lon).append(';');
+        }
+        sb.append('|').append(request.getAlgorithm()).
+                append('|').append(request.getLocale()).
+                append('|').append(request.getHeadings()).
+                append('|').append(request.getCurbsides()).
+                append('|').append(request.getPathDetails()).
+                append('|').append(new TreeMap<>(request.getHints().toMap()));
+        if (request.getCustomModel() != null)
+            sb.append('|').append(createKey(request.getCustomModel()));
+        return sb.toString();
+    }
+
+    /**
+     * Creates a key for the full content of the given custom model. CustomModel.toString only contains the ids of the
+     * areas, so we add their geometries in the exact WKB encoding.
+     */
+    public static String createKey(CustomModel customModel) {
+        StringBuilder sb = new StringBuilder(customModel.toString());
+        WKBWriter wkbWriter = new WKBWriter();
+        for (Map.Entry<String, JsonFeature> area : new TreeMap<>(customModel.getAreas()).entrySet()) {
+            Geometry geometry = area.getValue().getGeometry();
+            sb.append('|').append(area.getKey()).append('=').
+                    append(geometry == null ? "null" : WKBWriter.toHex(wkbWriter.write(geometry)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return a new response for the cached result of the given key or null if there is no such result
+     */
+    public GHResponse get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = map.get(key);
+            if (entry != null && ttlMillis > 0 && System.currentTimeMillis() - entry.created > ttlMillis) {
+                remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        GHResponse rsp = new GHResponse();
+        rsp.add(entry.path);
+        rsp.getHints().putAll(entry.hints);
+        return rsp;
+    }
+
+    /**
+     * Caches the best path of the given response. Responses with errors or alternatives are not cached.
+     */
+    public void put(String key, GHResponse rsp) {
+        if (rsp.hasErrors() || rsp.getAll().size() != 1)
+            return;
+        ResponsePath path = rsp.getBest();
+        long weight = weight(path);
+        if (weight > maxPoints)
+            return;
+        Entry entry = new Entry(path, new PMap(rsp.getHints()), weight, System.currentTimeMillis());
+        synchronized (this) {
+            Entry old = map.put(key, entry);
+            if (old != null)
+                points -= old.weight;
+            points += weight;
+            Iterator<Map.Entry<String, Entry>> iter = map.entrySet().iterator();
+            while ((map.size() > maxEntries || points > maxPoints) && iter.hasNext()) {
+                Map.Entry<String, Entry> eldest = iter.next();
+                points -= eldest.getValue().weight;
+                iter.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = map.remove(key);
+        if (entry != null) {
+            points -= entry.weight;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static long weight(ResponsePath path) {
+        // the points dominate the memory usage of a path, the +1 avoids zero weights for calc_points=false
+        return path.getPoints().size() + 1;
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        points = 0;
+    }
+
+    public synchronized int getSize() {
+        return map.size();
+    }
+
+    public synchronized long getPoints() {
+        return points;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private static class Entry {
+        final ResponsePath path;
+        final PMap hints;
+        final long weight;
+        final long created;
+
+        Entry(ResponsePath path, PMap hints, long weight, long created) {
+            this.path = path;
+            this.hints = hints;
+            this.weight = weight;
+            this.created = created;
+        }
+    }
+}
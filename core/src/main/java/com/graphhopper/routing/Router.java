@@ -19,17 +19,24 @@
 package com.graphhopper.routing;
 
 import com.carrotsearch.hppc.cursors.IntCursor;
+import com.graphhopper.GHBatchRequest;
+import com.graphhopper.GHBatchResponse;
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.ch.CHRoutingAlgorithmFactory;
+import com.graphhopper.routing.ch.ManyToManyCH;
+import com.graphhopper.routing.ch.CustomizableCH;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.ev.Subnetwork;
 import com.graphhopper.routing.lm.LMRoutingAlgorithmFactory;
 import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.BlockAreaWeighting;
 import com.graphhopper.routing.weighting.Weighting;
@@ -42,6 +49,7 @@ import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
 import com.graphhopper.util.details.PathDetailsBuilderFactory;
+import com.graphhopper.util.exceptions.ConnectionNotFoundException;
 import com.graphhopper.util.exceptions.PointDistanceExceededException;
 import com.graphhopper.util.exceptions.PointNotFoundException;
 import com.graphhopper.util.exceptions.PointOutOfBoundsException;
@@ -49,6 +57,12 @@ import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.graphhopper.routing.weighting.Weighting.INFINITE_U_TURN_COSTS;
 import static com.graphhopper.util.DistanceCalcEarth.DIST_EARTH;
@@ -71,6 +85,10 @@ public class Router {
     private final Map<String, LandmarkStorage> landmarks;
     private final boolean chEnabled;
     private final boolean lmEnabled;
+    private RouteCache routeCache;
+    private CustomizableCH customizableCH;
+    private SearchStatePool searchStatePool;
+    private ExecutorService batchExecutorService;
 
     public Router(BaseGraph graph, EncodingManager encodingManager, LocationIndex locationIndex,
                   Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
@@ -97,6 +115,43 @@ public class Router {
         }
     }
 
+    /**
+     * Sets the cache used to skip the path calculation of repeated requests, see {@link RouteCache}. Default is null,
+     * i.e. no caching.
+     */
+    public Router setRouteCache(RouteCache routeCache) {
+        this.routeCache = routeCache;
+        return this;
+    }
+
+    /**
+     * Sets the executor which calculates the routes of batch requests, see {@link #routeBatch}. It should have
+     * {@link RouterConfig#getBatchThreads()} threads and is shared by all requests, so this class does not shut it down.
+     * Default is null, i.e. the routes are calculated in the calling thread.
+     */
+    public Router setBatchExecutorService(ExecutorService batchExecutorService) {
+        this.batchExecutorService = batchExecutorService;
+        return this;
+    }
+
+    /**
+     * Sets the customizable CH that is used for requests with a custom model and for profiles without a CH
+     * preparation. Default is null, i.e. such requests need to disable CH.
+     */
+    public Router setCustomizableCH(CustomizableCH customizableCH) {
+        this.customizableCH = customizableCH;
+        return this;
+    }
+
+    /**
+     * Sets the pool of search states that is used for node-based CH requests, see {@link SearchStatePool}. Default is
+     * null, i.e. every request allocates its own search state.
+     */
+    public Router setSearchStatePool(SearchStatePool searchStatePool) {
+        this.searchStatePool = searchStatePool;
+        return this;
+    }
+
     public GHResponse route(GHRequest request) {
         try {
             checkNoLegacyParameters(request);
@@ -133,6 +188,216 @@ public class Router {
         }
     }
 
+    /**
+     * Calculates the weights, times and distances between all from and to points of the given request using one
+     * {@link QueryGraph} for all points and a bucket-based many-to-many search, see {@link ManyToManyCH}. This
+     * currently requires a (node-based) CH preparation for the requested profile.
+     */
+    public GHMatrixResponse matrix(GHMatrixRequest request) {
+        List<GHPoint> points = new ArrayList<>(request.getFromPoints().size() + request.getToPoints().size());
+        points.addAll(request.getFromPoints());
+        points.addAll(request.getToPoints());
+        try {
+            checkMatrixPoints(request);
+            checkIfPointsAreInBounds(points);
+            if (!chEnabled)
+                throw new IllegalArgumentException("Matrix calculations require a CH preparation, but there are no CH profiles");
+            GHRequest ghRequest = new GHRequest(points).
+                    setProfile(request.getProfile()).
+                    setSnapPreventions(request.getSnapPreventions());
+            ghRequest.getHints().putAll(request.getHints());
+            checkNoLegacyParameters(ghRequest);
+            Solver solver = new CHSolver(ghRequest, profilesByName, routerConfig, encodingManager, chGraphs, searchStatePool);
+            solver.checkRequest();
+            solver.init();
+
+            StopWatch sw = new StopWatch().start();
+            List<Snap> snaps = ViaRouting.lookup(encodingManager, points, solver.createSnapFilter(), locationIndex,
+                    request.getSnapPreventions(), Collections.emptyList(), solver.createDirectedEdgeFilter(), Collections.emptyList());
+            double lookupTime = sw.stop().getSeconds();
+            QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+            // the CH graph exists, because the CHSolver already checked this when creating the weighting
+            ManyToManyCH manyToMany = new ManyToManyCH(new QueryRoutingCHGraph(chGraphs.get(solver.profile.getName()), queryGraph));
+            int[] fromNodes = new int[request.getFromPoints().size()];
+            for (int i = 0; i < fromNodes.length; i++)
+                fromNodes[i] = snaps.get(i).getClosestNode();
+            int[] toNodes = new int[request.getToPoints().size()];
+            for (int i = 0; i < toNodes.length; i++)
+                toNodes[i] = snaps.get(fromNodes.length + i).getClosestNode();
+            sw = new StopWatch().start();
+            ManyToManyCH.Result result = manyToMany.calcMatrix(fromNodes, toNodes);
+            double calcTime = sw.stop().getSeconds();
+
+            GHMatrixResponse rsp = new GHMatrixResponse(result.getWeights(), result.getTimes(), result.getDistances());
+            if (request.getFailFast())
+                checkAllConnected(rsp);
+            rsp.getHints().putObject("visited_nodes.sum", manyToMany.getVisitedNodes());
+            rsp.getHints().putObject("idLookup time", lookupTime);
+            rsp.getHints().putObject("matrix time", calcTime);
+            return rsp;
+        } catch (MultiplePointsNotFoundException ex) {
+            GHMatrixResponse rsp = new GHMatrixResponse();
+            int fromCount = request.getFromPoints().size();
+            for (IntCursor p : ex.getPointsNotFound()) {
+                if (p.value < fromCount)
+                    rsp.addError(new PointNotFoundException("Cannot find from_points " + p.value + ": " + points.get(p.value), p.value));
+                else
+                    rsp.addError(new PointNotFoundException("Cannot find to_points " + (p.value - fromCount) + ": " + points.get(p.value), p.value - fromCount));
+            }
+            return rsp;
+        } catch (IllegalArgumentException ex) {
+            return new GHMatrixResponse().addError(ex);
+        }
+    }
+
+    private void checkMatrixPoints(GHMatrixRequest request) {
+        if (request.getFromPoints().isEmpty())
+            throw new IllegalArgumentException("You have to pass at least one from point");
+        if (request.getToPoints().isEmpty())
+            throw new IllegalArgumentException("You have to pass at least one to point");
+    }
+
+    private void checkAllConnected(GHMatrixResponse rsp) {
+        for (int from = 0; from < rsp.getWeights().length; from++) {
+            for (int to = 0; to < rsp.getWeights()[from].length; to++) {
+                if (!rsp.isConnected(from, to)) {
+                    Map<String, Object> details = new HashMap<>(2);
+                    details.put("from", from);
+                    details.put("to", to);
+                    throw new ConnectionNotFoundException("Connection between locations not found: from_points " + from +
+                            " and to_points " + to + ". Use fail_fast=false to get the results for all connected pairs", details);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the routes of the given batch request. All points are snapped up front and a single {@link QueryGraph}
+     * is created for all of them, which is then shared by all route calculations. The routes are distributed on
+     * {@link RouterConfig#getBatchThreads()} threads of the executor given by {@link #setBatchExecutorService} and every
+     * thread uses the same {@link PathCalculator} for all of its routes. Alternative routes, round trips, headings and
+     * curbsides are not supported.
+     */
+    public GHBatchResponse routeBatch(GHBatchRequest request) {
+        try {
+            if (request.getRoutes().isEmpty())
+                throw new IllegalArgumentException("You have to pass at least one route");
+            List<GHPoint> allPoints = new ArrayList<>();
+            for (List<GHPoint> points : request.getRoutes())
+                allPoints.addAll(points);
+            GHRequest batchRequest = createBatchRouteRequest(request, allPoints);
+            checkNoLegacyParameters(batchRequest);
+            if (batchRequest.getHints().getBool(PASS_THROUGH, false))
+                throw new IllegalArgumentException("Batch requests do not support " + PASS_THROUGH);
+            Solver solver = createSolver(batchRequest);
+            solver.init();
+
+            StopWatch sw = new StopWatch().start();
+            EdgeFilter snapFilter = solver.createSnapFilter();
+            DirectedEdgeFilter directedEdgeFilter = solver.createDirectedEdgeFilter();
+            int routeCount = request.getRoutes().size();
+            List<GHRequest> routeRequests = new ArrayList<>(routeCount);
+            List<List<Snap>> routeSnaps = new ArrayList<>(routeCount);
+            List<GHResponse> responses = new ArrayList<>(routeCount);
+            List<Snap> allSnaps = new ArrayList<>(allPoints.size());
+            for (List<GHPoint> points : request.getRoutes()) {
+                GHRequest routeRequest = createBatchRouteRequest(request, points);
+                GHResponse rsp = new GHResponse();
+                List<Snap> snaps = null;
+                try {
+                    checkAtLeastOnePoint(routeRequest);
+                    checkIfPointsAreInBounds(points);
+                    // the solver is only used to check the points of this route, e.g. the maximum waypoint distance
+                    createSolver(routeRequest).checkRequest();
+                    snaps = ViaRouting.lookup(encodingManager, points, snapFilter, locationIndex, request.getSnapPreventions(),
+                            Collections.emptyList(), directedEdgeFilter, Collections.emptyList());
+                    allSnaps.addAll(snaps);
+                } catch (MultiplePointsNotFoundException ex) {
+                    for (IntCursor p : ex.getPointsNotFound())
+                        rsp.addError(new PointNotFoundException("Cannot find point " + p.value + ": " + points.get(p.value), p.value));
+                } catch (IllegalArgumentException ex) {
+                    rsp.addError(ex);
+                }
+                routeRequests.add(routeRequest);
+                routeSnaps.add(snaps);
+                responses.add(rsp);
+            }
+            double lookupTime = sw.stop().getSeconds();
+
+            sw = new StopWatch().start();
+            QueryGraph queryGraph = QueryGraph.create(graph, allSnaps);
+            int threads = Math.min(routerConfig.getBatchThreads(), routeCount);
+            AtomicInteger nextRoute = new AtomicInteger();
+            AtomicLong visitedNodes = new AtomicLong();
+            List<Callable<String>> callables = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                callables.add(() -> {
+                    PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
+                    for (int i = nextRoute.getAndIncrement(); i < routeCount; i = nextRoute.getAndIncrement()) {
+                        if (routeSnaps.get(i) == null)
+                            continue;
+                        try {
+                            ViaRouting.Result result = ViaRouting.calcPaths(routeRequests.get(i).getPoints(), queryGraph, routeSnaps.get(i),
+                                    directedEdgeFilter, pathCalculator, Collections.emptyList(), true, Collections.emptyList(), false);
+                            responses.get(i).add(concatenatePaths(routeRequests.get(i), solver.weighting, queryGraph, result.paths, getWaypoints(routeSnaps.get(i))));
+                            responses.get(i).getHints().putObject("visited_nodes.sum", result.visitedNodes);
+                            visitedNodes.addAndGet(result.visitedNodes);
+                        } catch (IllegalArgumentException ex) {
+                            responses.get(i).addError(ex);
+                        }
+                    }
+                    return "";
+                });
+            }
+            runBatchCallables(callables);
+
+            GHBatchResponse batchRsp = new GHBatchResponse(responses);
+            batchRsp.getHints().putObject("visited_nodes.sum", visitedNodes.get());
+            batchRsp.getHints().putObject("idLookup time", lookupTime);
+            batchRsp.getHints().putObject("routing time", sw.stop().getSeconds());
+            return batchRsp;
+        } catch (IllegalArgumentException ex) {
+            return new GHBatchResponse().addError(ex);
+        }
+    }
+
+    private void runBatchCallables(List<Callable<String>> callables) {
+        if (callables.size() == 1 || batchExecutorService == null) {
+            for (Callable<String> callable : callables) {
+                try {
+                    callable.call();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return;
+        }
+        // the callables take the routes from a shared counter, so callables which have to wait for a thread because of
+        // other batch requests just find no routes left
+        List<Future<String>> futures = new ArrayList<>(callables.size());
+        try {
+            for (Callable<String> callable : callables)
+                futures.add(batchExecutorService.submit(callable));
+            for (Future<String> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private GHRequest createBatchRouteRequest(GHBatchRequest request, List<GHPoint> points) {
+        GHRequest routeRequest = new GHRequest(points).
+                setProfile(request.getProfile()).
+                setSnapPreventions(request.getSnapPreventions());
+        routeRequest.getHints().putAll(request.getHints());
+        return routeRequest;
+    }
+
     private void checkNoLegacyParameters(GHRequest request) {
         if (request.getHints().has("vehicle"))
             throw new IllegalArgumentException("GHRequest may no longer contain a vehicle, use the profile parameter instead, see docs/core/profiles.md");
@@ -186,8 +451,10 @@ public class Router {
     protected Solver createSolver(GHRequest request) {
         final boolean disableCH = getDisableCH(request.getHints());
         final boolean disableLM = getDisableLM(request.getHints());
-        if (chEnabled && !disableCH) {
-            return new CHSolver(request, profilesByName, routerConfig, encodingManager, chGraphs);
+        if (!disableCH && useCustomizableCH(request)) {
+            return new CCHSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, customizableCH, searchStatePool);
+        } else if (chEnabled && !disableCH) {
+            return new CHSolver(request, profilesByName, routerConfig, encodingManager, chGraphs, searchStatePool);
         } else if (lmEnabled && !disableLM) {
             return new LMSolver(request, profilesByName, routerConfig, encodingManager, weightingFactory, graph, locationIndex, landmarks);
         } else {
@@ -195,6 +462,16 @@ public class Router {
         }
     }
 
+    private boolean useCustomizableCH(GHRequest request) {
+        if (customizableCH == null)
+            return false;
+        Profile profile = profilesByName.get(request.getProfile());
+        // customizable CH is only node-based so far
+        if (profile == null || profile.isTurnCosts())
+            return false;
+        return request.getCustomModel() != null || !chGraphs.containsKey(profile.getName());
+    }
+
     protected GHResponse routeRoundTrip(GHRequest request, FlexSolver solver) {
         GHResponse ghRsp = new GHResponse();
         StopWatch sw = new StopWatch().start();
@@ -256,6 +533,16 @@ public class Router {
         List<Snap> snaps = ViaRouting.lookup(encodingManager, request.getPoints(), solver.createSnapFilter(), locationIndex,
                 request.getSnapPreventions(), request.getPointHints(), directedEdgeFilter, request.getHeadings());
         ghRsp.addDebugInfo("idLookup time", sw.stop().getSeconds());
+        String cacheKey = null;
+        if (routeCache != null) {
+            cacheKey = RouteCache.createKey(request, snaps);
+            GHResponse cachedRsp = routeCache.get(cacheKey);
+            if (cachedRsp != null) {
+                cachedRsp.addDebugInfo("idLookup time", sw.getSeconds());
+                cachedRsp.addDebugInfo("route_cache", "hit");
+                return cachedRsp;
+            }
+        }
         // (base) query graph used to resolve headings, curbsides etc. this is not necessarily the same thing as
         // the (possibly implementation specific) query graph used by PathCalculator
         QueryGraph queryGraph = QueryGraph.create(graph, snaps);
@@ -274,6 +561,8 @@ public class Router {
         ghRsp.add(responsePath);
         ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
         ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
+        if (routeCache != null)
+            routeCache.put(cacheKey, ghRsp);
         return ghRsp;
     }
 
@@ -414,10 +703,13 @@ public class Router {
 
     private static class CHSolver extends Solver {
         private final Map<String, RoutingCHGraph> chGraphs;
+        private final SearchStatePool searchStatePool;
 
-        CHSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig, EncodedValueLookup lookup, Map<String, RoutingCHGraph> chGraphs) {
+        CHSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig, EncodedValueLookup lookup,
+                 Map<String, RoutingCHGraph> chGraphs, SearchStatePool searchStatePool) {
             super(request, profilesByName, routerConfig, lookup);
             this.chGraphs = chGraphs;
+            this.searchStatePool = searchStatePool;
         }
 
         @Override
@@ -455,7 +747,8 @@ public class Router {
             PMap opts = new PMap(request.getHints());
             opts.putObject(ALGORITHM, request.getAlgorithm());
             opts.putObject(MAX_VISITED_NODES, getMaxVisitedNodes(request.getHints()));
-            return new CHPathCalculator(new CHRoutingAlgorithmFactory(getRoutingCHGraph(profile.getName()), queryGraph), opts);
+            return new CHPathCalculator(new CHRoutingAlgorithmFactory(getRoutingCHGraph(profile.getName()), queryGraph), opts).
+                    setSearchStatePool(searchStatePool);
         }
 
         private RoutingCHGraph getRoutingCHGraph(String profileName) {
@@ -468,6 +761,54 @@ public class Router {
         }
     }
 
+    private static class CCHSolver extends Solver {
+        private final WeightingFactory weightingFactory;
+        private final CustomizableCH customizableCH;
+        private final SearchStatePool searchStatePool;
+
+        CCHSolver(GHRequest request, Map<String, Profile> profilesByName, RouterConfig routerConfig, EncodedValueLookup lookup,
+                  WeightingFactory weightingFactory, CustomizableCH customizableCH, SearchStatePool searchStatePool) {
+            super(request, profilesByName, routerConfig, lookup);
+            this.weightingFactory = weightingFactory;
+            this.customizableCH = customizableCH;
+            this.searchStatePool = searchStatePool;
+        }
+
+        @Override
+        protected void checkRequest() {
+            super.checkRequest();
+            if (!request.getHeadings().isEmpty())
+                throw new IllegalArgumentException("The 'heading' parameter is currently not supported for speed mode, you need to disable speed mode with `ch.disable=true`. See issue #483");
+
+            if (getPassThrough(request.getHints()))
+                throw new IllegalArgumentException("The '" + Parameters.Routing.PASS_THROUGH + "' parameter is currently not supported for speed mode, you need to disable speed mode with `ch.disable=true`. See issue #1765");
+
+            if (request.getHints().has(Parameters.Routing.BLOCK_AREA))
+                throw new IllegalArgumentException("The '" + Parameters.Routing.BLOCK_AREA + "' parameter is currently not supported for speed mode, you need to disable speed mode with `ch.disable=true`.");
+
+            if (ROUND_TRIP.equalsIgnoreCase(request.getAlgorithm()))
+                throw new IllegalArgumentException("algorithm=round_trip cannot be used with CH");
+        }
+
+        @Override
+        protected Weighting createWeighting() {
+            // just like for CH the other request hints are ignored, because they are not part of the cache key
+            PMap hints = new PMap().putObject(CustomModel.KEY, request.getCustomModel());
+            return weightingFactory.createWeighting(profile, hints, true);
+        }
+
+        @Override
+        protected PathCalculator createPathCalculator(QueryGraph queryGraph) {
+            PMap opts = new PMap(request.getHints());
+            opts.putObject(ALGORITHM, request.getAlgorithm());
+            opts.putObject(MAX_VISITED_NODES, getMaxVisitedNodes(request.getHints()));
+            String key = profile.getName() + "|" + (request.getCustomModel() == null ? "" : RouteCache.createKey(request.getCustomModel()));
+            RoutingCHGraph chGraph = customizableCH.getCustomization(key, weighting);
+            return new CHPathCalculator(new CHRoutingAlgorithmFactory(chGraph, queryGraph), opts).
+                    setSearchStatePool(searchStatePool);
+        }
+    }
+
     private static class FlexSolver extends Solver {
         protected final RouterConfig routerConfig;
         private final WeightingFactory weightingFactory;
@@ -30,6 +30,7 @@ public class RouterConfig {
     private boolean simplifyResponse = true;
     private double elevationWayPointMaxDistance = Double.MAX_VALUE;
     private int activeLandmarkCount = 8;
+    private int batchThreads = 1;
 
     public int getMaxVisitedNodes() {
         return maxVisitedNodes;
@@ -105,4 +106,17 @@ public class RouterConfig {
     public void setElevationWayPointMaxDistance(double elevationWayPointMaxDistance) {
         this.elevationWayPointMaxDistance = elevationWayPointMaxDistance;
     }
+
+    public int getBatchThreads() {
+        return batchThreads;
+    }
+
+    /**
+     * This method sets the number of threads that are used to calculate the routes of a single batch request.
+     */
+    public void setBatchThreads(int batchThreads) {
+        if (batchThreads < 1)
+            throw new IllegalArgumentException("batchThreads must be at least 1, but was: " + batchThreads);
+        this.batchThreads = batchThreads;
+    }
 }
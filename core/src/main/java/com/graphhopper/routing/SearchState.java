@@ -0,0 +1,222 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+
+/**
+ * The state of a node-based, one-directional Dijkstra search that is stored in node-indexed primitive arrays instead of
+ * a map of {@link SPTEntry} objects, together with a binary min heap that supports decreasing the weight of a node.
+ * The arrays are not cleared between two searches. Instead every node carries the version of the search it was last
+ * reached in, so {@link #reset} takes constant time and a single instance can be used for many searches without
+ * allocating anything, see {@link SearchStatePool}. The arrays grow when a search needs more nodes, e.g. because of the
+ * virtual nodes of a query graph.
+ * <p>
+ * Not thread safe, an instance must only be used by one search at a time.
+ */
+public class SearchState {
+    private static final int NOT_IN_HEAP = -1;
+    private int[] versions;
+    private double[] weights;
+    private int[] parents;
+    private int[] edges;
+    private int[] heapPositions;
+    // the heap uses an offset of one just like MinHeapWithUpdate, the 0th element is not used
+    private int[] heapNodes;
+    private double[] heapWeights;
+    private int heapSize;
+    private int version;
+    private int visitedNodes;
+
+    public SearchState(int nodes) {
+        versions = new int[nodes];
+        weights = new double[nodes];
+        parents = new int[nodes];
+        edges = new int[nodes];
+        heapPositions = new int[nodes];
+        heapNodes = new int[nodes + 1];
+        heapWeights = new double[nodes + 1];
+        heapWeights[0] = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Prepares this state for a new search on a graph with the given number of nodes. Afterwards no node is visited.
+     */
+    public void reset(int nodes) {
+        if (nodes > versions.length)
+            grow(nodes);
+        heapSize = 0;
+        visitedNodes = 0;
+        version++;
+        if (version == Integer.MAX_VALUE) {
+            // practically never happens, but when it does we need to make sure old stamps cannot match again
+            Arrays.fill(versions, 0);
+            version = 1;
+        }
+    }
+
+    private void grow(int nodes) {
+        int newSize = Math.max(nodes, versions.length + (versions.length >> 3));
+        // the new entries are zero and thus not visited, because version is always at least one after a reset
+        versions = Arrays.copyOf(versions, newSize);
+        weights = Arrays.copyOf(weights, newSize);
+        parents = Arrays.copyOf(parents, newSize);
+        edges = Arrays.copyOf(edges, newSize);
+        heapPositions = Arrays.copyOf(heapPositions, newSize);
+        heapNodes = Arrays.copyOf(heapNodes, newSize + 1);
+        heapWeights = Arrays.copyOf(heapWeights, newSize + 1);
+    }
+
+    /**
+     * @return the number of nodes this state can hold without growing
+     */
+    public int getCapacity() {
+        return versions.length;
+    }
+
+    /**
+     * @return true if the node was reached in the current search, i.e. it has a weight
+     */
+    public boolean isVisited(int node) {
+        return versions[node] == version;
+    }
+
+    /**
+     * @return the weight of the given node or infinity if it was not reached yet
+     */
+    public double getWeight(int node) {
+        return isVisited(node) ? weights[node] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return the node the given node was reached from or -1 if it is the start node of the search
+     */
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    /**
+     * @return the edge the given node was reached with or {@link EdgeIterator#NO_EDGE} if it is the start node
+     */
+    public int getEdge(int node) {
+        return edges[node];
+    }
+
+    /**
+     * Adds the start node of the search with the given weight.
+     */
+    public void start(int node, double weight) {
+        update(node, weight, -1, EdgeIterator.NO_EDGE);
+    }
+
+    /**
+     * Sets the weight, parent and edge of the given node and (re-)inserts it into the heap. The weight must be smaller
+     * than the current weight of the node.
+     */
+    public void update(int node, double weight, int parent, int edge) {
+        if (!isVisited(node)) {
+            versions[node] = version;
+            heapPositions[node] = NOT_IN_HEAP;
+            visitedNodes++;
+        }
+        weights[node] = weight;
+        parents[node] = parent;
+        edges[node] = edge;
+        int index = heapPositions[node];
+        if (index == NOT_IN_HEAP) {
+            heapSize++;
+            index = heapSize;
+            heapNodes[index] = node;
+        }
+        heapWeights[index] = weight;
+        percolateUp(index);
+    }
+
+    public boolean isHeapEmpty() {
+        return heapSize == 0;
+    }
+
+    /**
+     * @return the smallest weight of all nodes in the heap or infinity if the heap is empty
+     */
+    public double peekWeight() {
+        return heapSize == 0 ? Double.POSITIVE_INFINITY : heapWeights[1];
+    }
+
+    /**
+     * Removes the node with the smallest weight from the heap, i.e. settles it.
+     */
+    public int poll() {
+        if (heapSize == 0)
+            throw new IllegalStateException("Cannot poll from an empty heap");
+        int node = heapNodes[1];
+        heapPositions[node] = NOT_IN_HEAP;
+        heapNodes[1] = heapNodes[heapSize];
+        heapWeights[1] = heapWeights[heapSize];
+        heapSize--;
+        if (heapSize > 0) {
+            heapPositions[heapNodes[1]] = 1;
+            percolateDown(1);
+        }
+        return node;
+    }
+
+    /**
+     * @return the number of nodes that were reached in the current search
+     */
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    private void percolateUp(int index) {
+        final int node = heapNodes[index];
+        final double weight = heapWeights[index];
+        // the loop stops at index 1 at the latest, because heapWeights[0] is -inf
+        while (weight < heapWeights[index >> 1]) {
+            int parent = index >> 1;
+            heapNodes[index] = heapNodes[parent];
+            heapWeights[index] = heapWeights[parent];
+            heapPositions[heapNodes[index]] = index;
+            index = parent;
+        }
+        heapNodes[index] = node;
+        heapWeights[index] = weight;
+        heapPositions[node] = index;
+    }
+
+    private void percolateDown(int index) {
+        final int node = heapNodes[index];
+        final double weight = heapWeights[index];
+        while (index << 1 <= heapSize) {
+            int child = index << 1;
+            if (child != heapSize && heapWeights[child + 1] < heapWeights[child])
+                child++;
+            if (heapWeights[child] >= weight)
+                break;
+            heapNodes[index] = heapNodes[child];
+            heapWeights[index] = heapWeights[child];
+            heapPositions[heapNodes[index]] = index;
+            index = child;
+        }
+        heapNodes[index] = node;
+        heapWeights[index] = weight;
+        heapPositions[node] = index;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of {@link SearchState}s so that concurrent requests can reuse the (large) node-indexed arrays of earlier
+ * searches instead of allocating new ones. A thread leases a state for a single search and releases it afterwards.
+ * At most maxIdle states are kept when they are released, so the memory of the pool is bounded by the number of
+ * concurrent searches plus maxIdle. Thread safe.
+ */
+public class SearchStatePool {
+    private final int maxIdle;
+    private final ArrayDeque<SearchState> idle = new ArrayDeque<>();
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+
+    /**
+     * @param maxIdle the maximum number of released states that are kept for later searches
+     */
+    public SearchStatePool(int maxIdle) {
+        if (maxIdle <= 0)
+            throw new IllegalArgumentException("maxIdle must be positive, but was: " + maxIdle);
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * @return a state for a single search. It must be released via {@link #release} when the search is done and must
+     * not be used afterwards.
+     */
+    public SearchState lease() {
+        leases.incrementAndGet();
+        SearchState state;
+        synchronized (idle) {
+            state = idle.pollFirst();
+        }
+        if (state == null) {
+            created.incrementAndGet();
+            // the search resets the state and thereby allocates the arrays for the nodes of its graph
+            state = new SearchState(0);
+        }
+        return state;
+    }
+
+    public void release(SearchState state) {
+        synchronized (idle) {
+            // the most recently used states are leased first as their memory is more likely to be cached
+            if (idle.size() < maxIdle)
+                idle.addFirst(state);
+        }
+    }
+
+    public int getIdle() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * @return the number of leased states in total
+     */
+    public long getLeases() {
+        return leases.get();
+    }
+
+    /**
+     * @return the number of states that had to be created because no idle state was available
+     */
+    public long getCreated() {
+        return created.get();
+    }
+
+    /**
+     * @return the number of leases that reused an idle state
+     */
+    public long getReused() {
+        return getLeases() - getCreated();
+    }
+}
@@ -54,6 +54,29 @@ public class CHRoutingAlgorithmFactory {
         return algo;
     }
 
+    /**
+     * @return true if {@link #createAlgo(PMap)} creates a node-based bidirectional Dijkstra with stall-on-demand for
+     * the given options, i.e. if the algorithm can be replaced by {@link #createAlgo(PMap, SearchState, SearchState)}
+     */
+    public boolean canUseSearchStates(PMap opts) {
+        String algo = opts.getString(ALGORITHM, DIJKSTRA_BI);
+        return !routingCHGraph.isEdgeBased() && (Helper.isEmpty(algo) || DIJKSTRA_BI.equals(algo))
+                && opts.getBool("stall_on_demand", true);
+    }
+
+    /**
+     * Creates a {@link DijkstraBidirectionCHPooled} that uses the given states instead of allocating its own, see
+     * {@link #canUseSearchStates(PMap)}.
+     */
+    public BidirRoutingAlgorithm createAlgo(PMap opts, SearchState fwdState, SearchState bwdState) {
+        if (!canUseSearchStates(opts))
+            throw new IllegalArgumentException("Search states can only be used for node-based " + DIJKSTRA_BI + " with stall-on-demand");
+        BidirRoutingAlgorithm algo = new DijkstraBidirectionCHPooled(routingCHGraph, fwdState, bwdState);
+        if (opts.has(MAX_VISITED_NODES))
+            algo.setMaxVisitedNodes(opts.getInt(MAX_VISITED_NODES, Integer.MAX_VALUE));
+        return algo;
+    }
+
     private BidirRoutingAlgorithm createAlgoEdgeBased(RoutingCHGraph g, PMap opts) {
         String defaultAlgo = ASTAR_BI;
         String algo = opts.getString(ALGORITHM, defaultAlgo);
@@ -0,0 +1,450 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+
+/**
+ * Customizable Contraction Hierarchies (CCH) for node-based routing. Unlike {@link PrepareContractionHierarchies} the
+ * node ordering and the shortcut topology do not depend on the weighting: The nodes are ordered once using
+ * {@link NestedDissectionOrdering} and contracted without witness searches, i.e. every pair of higher ranked
+ * neighbors of a contracted node is connected by an (upward) arc. For a given weighting the arcs are then
+ * 'customized' bottom-up: The weight of an arc u-w is the minimum of the weight of the original edges between u and
+ * w and of all lower triangles u-v-w. The nodes of the same height in the elimination tree do not depend on each
+ * other, so the customization of each height runs in parallel.
+ * <p>
+ * A customization is stored in a {@link CHStorage} and can be used with all the usual node-based CH algorithms. The
+ * recently used customizations are cached, bounded by their total memory usage.
+ */
+public class CustomizableCH {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomizableCH.class);
+    private static final String RANKS_NAME = "cch_ranks";
+    private final BaseGraph graph;
+    private final int[] ranks;
+    private final int[] nodesByRank;
+    // the upward arcs of each node sorted by the rank of their target: firstArc[node] <= arc < firstArc[node + 1]
+    private final int[] firstArc;
+    private final int[] arcSources;
+    private final int[] arcTargets;
+    // the arcs pointing to each node from lower ranked nodes
+    private final int[] firstDownArc;
+    private final int[] downArcs;
+    // the nodes ordered by their height in the elimination tree: firstNodeOfHeight[h] <= i < firstNodeOfHeight[h + 1]
+    private final int[] firstNodeOfHeight;
+    private final int[] nodesByHeight;
+    private ExecutorService executorService;
+    private int threads = 1;
+    private long maxCacheBytes = 256L << 20;
+    private long cacheBytes;
+    private final LinkedHashMap<String, Customization> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Calculates a new node ordering for the given graph, which must be frozen.
+     */
+    public static CustomizableCH prepare(BaseGraph graph) {
+        if (!graph.isFrozen())
+            throw new IllegalStateException("graph must be frozen before we can create a customizable CH");
+        StopWatch sw = new StopWatch().start();
+        int[] ranks = NestedDissectionOrdering.calcRanks(graph);
+        LOGGER.info("calculated nested dissection ordering, took: " + sw.stop().getSeconds() + "s");
+        return new CustomizableCH(graph, ranks);
+    }
+
+    /**
+     * @return the customizable CH for the node ordering that was stored in the directory of the given graph, or null
+     * if there is no such ordering
+     */
+    public static CustomizableCH load(BaseGraph graph) {
+        Directory dir = graph.getDirectory();
+        DataAccess da = dir.create(RANKS_NAME, dir.getDefaultType(RANKS_NAME, true), graph.getSegmentSize());
+        if (!da.loadExisting()) {
+            // remove the (empty) DataAccess again, so it can be created by flush
+            dir.remove(RANKS_NAME);
+            return null;
+        }
+        try {
+            if (da.getHeader(0) != graph.getNodes())
+                throw new IllegalStateException("The stored CCH node ordering has " + da.getHeader(0) + " nodes, but the graph has " + graph.getNodes());
+            int[] ranks = new int[graph.getNodes()];
+            for (int node = 0; node < ranks.length; node++)
+                ranks[node] = da.getInt((long) node * 4);
+            return new CustomizableCH(graph, ranks);
+        } finally {
+            da.close();
+        }
+    }
+
+    public CustomizableCH(BaseGraph graph, int[] ranks) {
+        if (ranks.length != graph.getNodes())
+            throw new IllegalArgumentException("There must be a rank for every node, nodes: " + graph.getNodes() + ", ranks: " + ranks.length);
+        this.graph = graph;
+        this.ranks = ranks;
+        int nodes = ranks.length;
+        nodesByRank = new int[nodes];
+        Arrays.fill(nodesByRank, -1);
+        for (int node = 0; node < nodes; node++) {
+            if (ranks[node] < 0 || ranks[node] >= nodes || nodesByRank[ranks[node]] >= 0)
+                throw new IllegalArgumentException("The ranks must be a permutation of the nodes, invalid rank for node " + node + ": " + ranks[node]);
+            nodesByRank[ranks[node]] = node;
+        }
+
+        // contract the nodes in the given order, without witness searches the shortcuts of a node only need to be
+        // added to its lowest ranked upward neighbor (its parent in the elimination tree)
+        StopWatch sw = new StopWatch().start();
+        IntHashSet[] upward = new IntHashSet[nodes];
+        EdgeIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            int a = iter.getBaseNode(), b = iter.getAdjNode();
+            if (a == b)
+                continue;
+            int lower = ranks[a] < ranks[b] ? a : b;
+            if (upward[lower] == null)
+                upward[lower] = new IntHashSet(4);
+            upward[lower].add(lower == a ? b : a);
+        }
+        int[][] upwardRanks = new int[nodes][];
+        int arcs = 0;
+        for (int rank = 0; rank < nodes; rank++) {
+            IntHashSet neighbors = upward[nodesByRank[rank]];
+            upward[nodesByRank[rank]] = null;
+            if (neighbors == null) {
+                upwardRanks[rank] = new int[0];
+                continue;
+            }
+            int[] neighborRanks = neighbors.toArray();
+            for (int i = 0; i < neighborRanks.length; i++)
+                neighborRanks[i] = ranks[neighborRanks[i]];
+            Arrays.sort(neighborRanks);
+            upwardRanks[rank] = neighborRanks;
+            arcs += neighborRanks.length;
+            int parent = nodesByRank[neighborRanks[0]];
+            if (neighborRanks.length > 1 && upward[parent] == null)
+                upward[parent] = new IntHashSet(neighborRanks.length);
+            for (int i = 1; i < neighborRanks.length; i++)
+                upward[parent].add(nodesByRank[neighborRanks[i]]);
+        }
+
+        firstArc = new int[nodes + 1];
+        arcSources = new int[arcs];
+        arcTargets = new int[arcs];
+        int[] downCounts = new int[nodes + 1];
+        for (int node = 0, arc = 0; node < nodes; node++) {
+            firstArc[node] = arc;
+            for (int targetRank : upwardRanks[ranks[node]]) {
+                arcSources[arc] = node;
+                arcTargets[arc] = nodesByRank[targetRank];
+                downCounts[arcTargets[arc] + 1]++;
+                arc++;
+            }
+            firstArc[node + 1] = arc;
+        }
+        firstDownArc = new int[nodes + 1];
+        for (int node = 0; node < nodes; node++)
+            firstDownArc[node + 1] = firstDownArc[node] + downCounts[node + 1];
+        downArcs = new int[arcs];
+        int[] downPos = Arrays.copyOf(firstDownArc, nodes);
+        for (int arc = 0; arc < arcs; arc++)
+            downArcs[downPos[arcTargets[arc]]++] = arc;
+
+        // the children of a node in the elimination tree have a smaller height than the node itself
+        int[] heights = new int[nodes];
+        int maxHeight = 0;
+        for (int rank = 0; rank < nodes; rank++) {
+            int node = nodesByRank[rank];
+            maxHeight = Math.max(maxHeight, heights[node]);
+            if (firstArc[node] < firstArc[node + 1]) {
+                int parent = arcTargets[firstArc[node]];
+                heights[parent] = Math.max(heights[parent], heights[node] + 1);
+            }
+        }
+        firstNodeOfHeight = new int[maxHeight + 2];
+        for (int node = 0; node < nodes; node++)
+            firstNodeOfHeight[heights[node] + 1]++;
+        for (int h = 0; h <= maxHeight; h++)
+            firstNodeOfHeight[h + 1] += firstNodeOfHeight[h];
+        nodesByHeight = new int[nodes];
+        int[] heightPos = Arrays.copyOf(firstNodeOfHeight, maxHeight + 1);
+        for (int node = 0; node < nodes; node++)
+            nodesByHeight[heightPos[heights[node]]++] = node;
+        LOGGER.info("built CCH topology, nodes: " + nodes + ", arcs: " + arcs + ", elimination tree height: " + (maxHeight + 1)
+                + ", took: " + sw.stop().getSeconds() + "s");
+    }
+
+    /**
+     * Stores the node ordering in the directory of the graph, so it can be loaded using {@link #load(BaseGraph)}.
+     */
+    public void flush() {
+        Directory dir = graph.getDirectory();
+        DataAccess da = dir.create(RANKS_NAME, dir.getDefaultType(RANKS_NAME, true), graph.getSegmentSize());
+        da.create((long) ranks.length * 4);
+        for (int node = 0; node < ranks.length; node++)
+            da.setInt((long) node * 4, ranks[node]);
+        da.setHeader(0, ranks.length);
+        da.flush();
+        da.close();
+    }
+
+    /**
+     * Sets the executor service used to customize the arcs for a new weighting with the given number of threads. The
+     * executor service is shared by all customizations and is not shut down by this class.
+     *
+     * @param executorService can be null if threads is 1
+     */
+    public CustomizableCH setExecutorService(ExecutorService executorService, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive, but was: " + threads);
+        if (threads > 1 && executorService == null)
+            throw new IllegalArgumentException("An executor service is required for " + threads + " threads");
+        this.executorService = executorService;
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes of the cached customizations. The most recently used customization is always
+     * cached.
+     */
+    public CustomizableCH setMaxCacheBytes(long maxCacheBytes) {
+        if (maxCacheBytes < 0)
+            throw new IllegalArgumentException("maxCacheBytes must not be negative, but was: " + maxCacheBytes);
+        this.maxCacheBytes = maxCacheBytes;
+        return this;
+    }
+
+    public int getArcs() {
+        return arcTargets.length;
+    }
+
+    public int getRank(int node) {
+        return ranks[node];
+    }
+
+    /**
+     * Returns the cached customization for the given key or customizes the arcs for the given weighting. The key must
+     * identify the weighting, e.g. by the profile name and the custom model of a request. Thread safe.
+     */
+    public RoutingCHGraph getCustomization(String key, Weighting weighting) {
+        synchronized (cache) {
+            Customization customization = cache.get(key);
+            if (customization != null)
+                return customization.chGraph;
+        }
+        // customizing the same weighting concurrently is wasteful, but not harmful
+        RoutingCHGraph chGraph = customize(weighting);
+        synchronized (cache) {
+            Customization old = cache.put(key, new Customization(chGraph));
+            if (old != null)
+                cacheBytes -= old.bytes;
+            cacheBytes += cache.get(key).bytes;
+            Iterator<Customization> iter = cache.values().iterator();
+            while (cacheBytes > maxCacheBytes && cache.size() > 1) {
+                // we do not close the evicted storage, because it might still be used by another request
+                cacheBytes -= iter.next().bytes;
+                iter.remove();
+            }
+        }
+        return chGraph;
+    }
+
+    /**
+     * Customizes the arcs for the given weighting. The resulting graph is not cached.
+     */
+    public RoutingCHGraph customize(Weighting weighting) {
+        if (weighting.hasTurnCosts())
+            throw new IllegalArgumentException("Customizable CH does not support turn costs, weighting: " + weighting);
+        StopWatch sw = new StopWatch().start();
+        Metric metric = new Metric(getArcs());
+        EdgeExplorer[] explorers = new EdgeExplorer[threads];
+        for (int i = 0; i < threads; i++)
+            explorers[i] = graph.createEdgeExplorer();
+        for (int h = 0; h < firstNodeOfHeight.length - 1; h++) {
+            int offset = firstNodeOfHeight[h];
+            int size = firstNodeOfHeight[h + 1] - offset;
+            if (threads == 1)
+                for (int i = 0; i < size; i++)
+                    customizeNode(nodesByHeight[offset + i], weighting, explorers[0], metric);
+            else
+                PrepareContractionHierarchies.runInParallel(executorService, threads, size,
+                        (thread, i) -> customizeNode(nodesByHeight[offset + i], weighting, explorers[thread], metric));
+        }
+        RoutingCHGraph chGraph = new RoutingCHGraphImpl(graph, writeShortcuts(metric), weighting);
+        LOGGER.debug("customized CCH for " + weighting + ", shortcuts: " + chGraph.getShortcuts() + ", took: " + sw.stop().getMillis() + "ms");
+        return chGraph;
+    }
+
+    /**
+     * Calculates the weights of the upward arcs of the given node. The arcs of all lower ranked neighbors must be
+     * customized already. Only the arcs of the given node are modified.
+     */
+    private void customizeNode(int node, Weighting weighting, EdgeExplorer explorer, Metric metric) {
+        for (int arc = firstArc[node]; arc < firstArc[node + 1]; arc++) {
+            metric.fwdWeights[arc] = Double.POSITIVE_INFINITY;
+            metric.bwdWeights[arc] = Double.POSITIVE_INFINITY;
+            metric.fwdEdges[arc] = NO_EDGE;
+            metric.bwdEdges[arc] = NO_EDGE;
+            metric.fwdLowerArcs[arc] = -1;
+            metric.bwdLowerArcs[arc] = -1;
+        }
+        EdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next()) {
+            if (ranks[iter.getAdjNode()] <= ranks[node])
+                continue;
+            int arc = findArc(node, iter.getAdjNode());
+            double fwdWeight = weighting.calcEdgeWeightWithAccess(iter, false);
+            if (fwdWeight < metric.fwdWeights[arc]) {
+                metric.fwdWeights[arc] = fwdWeight;
+                metric.fwdEdges[arc] = iter.getEdge();
+            }
+            double bwdWeight = weighting.calcEdgeWeightWithAccess(iter, true);
+            if (bwdWeight < metric.bwdWeights[arc]) {
+                metric.bwdWeights[arc] = bwdWeight;
+                metric.bwdEdges[arc] = iter.getEdge();
+            }
+        }
+        // every lower triangle node-lower-upper yields a path from node to upper (and back) via lower
+        for (int i = firstDownArc[node]; i < firstDownArc[node + 1]; i++) {
+            int lowerArc = downArcs[i];
+            int lower = arcSources[lowerArc];
+            // the arcs of lower are sorted by rank, so all arcs after lowerArc point to higher ranked nodes than node
+            for (int upperArc = lowerArc + 1; upperArc < firstArc[lower + 1]; upperArc++) {
+                int arc = findArc(node, arcTargets[upperArc]);
+                double fwdWeight = metric.bwdWeights[lowerArc] + metric.fwdWeights[upperArc];
+                if (fwdWeight < metric.fwdWeights[arc]) {
+                    metric.fwdWeights[arc] = fwdWeight;
+                    metric.fwdLowerArcs[arc] = lowerArc;
+                    metric.fwdUpperArcs[arc] = upperArc;
+                }
+                double bwdWeight = metric.bwdWeights[upperArc] + metric.fwdWeights[lowerArc];
+                if (bwdWeight < metric.bwdWeights[arc]) {
+                    metric.bwdWeights[arc] = bwdWeight;
+                    metric.bwdLowerArcs[arc] = lowerArc;
+                    metric.bwdUpperArcs[arc] = upperArc;
+                }
+            }
+        }
+    }
+
+    private int findArc(int node, int target) {
+        int targetRank = ranks[target];
+        int lo = firstArc[node], hi = firstArc[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midRank = ranks[arcTargets[mid]];
+            if (midRank < targetRank)
+                lo = mid + 1;
+            else if (midRank > targetRank)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        throw new IllegalStateException("There is no arc " + node + "->" + target + ", the CCH topology is invalid");
+    }
+
+    /**
+     * Adds a shortcut for every arc direction that is shorter via a lower triangle than via the original edges. The
+     * shortcuts are added in the order of their lower ranked node, as required by {@link CHStorageBuilder}.
+     */
+    private CHStorage writeShortcuts(Metric metric) {
+        CHStorage store = new CHStorage(new RAMDirectory(), "cch", -1, false);
+        store.create();
+        store.init(graph.getNodes(), getArcs() / 4);
+        CHStorageBuilder builder = new CHStorageBuilder(store);
+        for (int node = 0; node < ranks.length; node++)
+            builder.setLevel(node, ranks[node]);
+        int baseEdges = graph.getEdges();
+        for (int node : nodesByRank) {
+            for (int arc = firstArc[node]; arc < firstArc[node + 1]; arc++) {
+                int fwdLower = metric.fwdLowerArcs[arc], bwdLower = metric.bwdLowerArcs[arc];
+                if (fwdLower < 0 && bwdLower < 0)
+                    continue;
+                int target = arcTargets[arc];
+                int fwdSkip1 = -1, fwdSkip2 = -1, bwdSkip1 = -1, bwdSkip2 = -1;
+                if (fwdLower >= 0) {
+                    fwdSkip1 = metric.bwdEdges[fwdLower];
+                    fwdSkip2 = metric.fwdEdges[metric.fwdUpperArcs[arc]];
+                }
+                if (bwdLower >= 0) {
+                    bwdSkip1 = metric.fwdEdges[bwdLower];
+                    bwdSkip2 = metric.bwdEdges[metric.bwdUpperArcs[arc]];
+                }
+                if (fwdLower >= 0 && fwdSkip1 == bwdSkip1 && fwdSkip2 == bwdSkip2 && metric.fwdWeights[arc] == metric.bwdWeights[arc]) {
+                    int shortcut = builder.addShortcutNodeBased(node, target, PrepareEncoder.getScDirMask(), metric.fwdWeights[arc], fwdSkip1, fwdSkip2);
+                    metric.fwdEdges[arc] = metric.bwdEdges[arc] = baseEdges + shortcut;
+                    continue;
+                }
+                if (fwdLower >= 0)
+                    metric.fwdEdges[arc] = baseEdges + builder.addShortcutNodeBased(node, target, PrepareEncoder.getScFwdDir(), metric.fwdWeights[arc], fwdSkip1, fwdSkip2);
+                if (bwdLower >= 0)
+                    metric.bwdEdges[arc] = baseEdges + builder.addShortcutNodeBased(node, target, PrepareEncoder.getScBwdDir(), metric.bwdWeights[arc], bwdSkip1, bwdSkip2);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * The weights of the arcs in both directions (from the lower to the higher ranked node and back) and either the
+     * original edge or the lower triangle (lower arc and upper arc) they come from.
+     */
+    private static class Metric {
+        final double[] fwdWeights;
+        final double[] bwdWeights;
+        final int[] fwdEdges;
+        final int[] bwdEdges;
+        final int[] fwdLowerArcs;
+        final int[] bwdLowerArcs;
+        final int[] fwdUpperArcs;
+        final int[] bwdUpperArcs;
+
+        Metric(int arcs) {
+            fwdWeights = new double[arcs];
+            bwdWeights = new double[arcs];
+            fwdEdges = new int[arcs];
+            bwdEdges = new int[arcs];
+            fwdLowerArcs = new int[arcs];
+            bwdLowerArcs = new int[arcs];
+            fwdUpperArcs = new int[arcs];
+            bwdUpperArcs = new int[arcs];
+        }
+    }
+
+    private static class Customization {
+        final RoutingCHGraph chGraph;
+        final long bytes;
+
+        Customization(RoutingCHGraph chGraph) {
+            this.chGraph = chGraph;
+            // the CHStorage is the only part that is specific to the customization
+            this.bytes = 8L * chGraph.getNodes() + 20L * chGraph.getShortcuts();
+        }
+    }
+}
@@ -28,6 +28,9 @@ import com.graphhopper.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Locale;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
@@ -55,7 +58,10 @@ class EdgeBasedNodeContractor implements NodeContractor {
     private PrepareGraphEdgeExplorer existingShortcutExplorer;
     private PrepareGraphOrigEdgeExplorer sourceNodeOrigInEdgeExplorer;
     private CHStorageBuilder chBuilder;
-    private final Params params = new Params();
+    private final Params params;
+    // only set for workers, see createWorker()
+    private final EdgeBasedNodeContractor parent;
+    private final BitSet ignoredNodes;
     private final StopWatch dijkstraSW = new StopWatch();
     // temporary data used during node contraction
     private final IntSet sourceNodes = new IntHashSet(10);
@@ -86,9 +92,19 @@ class EdgeBasedNodeContractor implements NodeContractor {
     public EdgeBasedNodeContractor(CHPreparationGraph prepareGraph, CHStorageBuilder chBuilder, PMap pMap) {
         this.prepareGraph = prepareGraph;
         this.chBuilder = chBuilder;
+        this.params = new Params();
+        this.parent = null;
+        this.ignoredNodes = null;
         extractParams(pMap);
     }
 
+    private EdgeBasedNodeContractor(EdgeBasedNodeContractor parent, BitSet ignoredNodes) {
+        this.prepareGraph = parent.prepareGraph;
+        this.params = parent.params;
+        this.parent = parent;
+        this.ignoredNodes = ignoredNodes;
+    }
+
     private void extractParams(PMap pMap) {
         params.edgeQuotientWeight = pMap.getFloat(EDGE_QUOTIENT_WEIGHT, params.edgeQuotientWeight);
         params.originalEdgeQuotientWeight = pMap.getFloat(ORIGINAL_EDGE_QUOTIENT_WEIGHT, params.originalEdgeQuotientWeight);
@@ -103,12 +119,25 @@ class EdgeBasedNodeContractor implements NodeContractor {
         outEdgeExplorer = prepareGraph.createOutEdgeExplorer();
         existingShortcutExplorer = prepareGraph.createOutEdgeExplorer();
         sourceNodeOrigInEdgeExplorer = prepareGraph.createInOrigEdgeExplorer();
-        hierarchyDepths = new int[prepareGraph.getNodes()];
+        // workers read the hierarchy depths that are updated when the nodes are actually contracted
+        hierarchyDepths = parent == null ? new int[prepareGraph.getNodes()] : parent.hierarchyDepths;
         witnessPathSearcher = new EdgeBasedWitnessPathSearcher(prepareGraph);
+        witnessPathSearcher.setIgnoredNodes(ignoredNodes);
         bridgePathFinder = new BridgePathFinder(prepareGraph);
         meanDegree = prepareGraph.getOriginalEdges() * 1.0 / prepareGraph.getNodes();
     }
 
+    @Override
+    public NodeContractor createWorker(BitSet ignoredNodes) {
+        EdgeBasedNodeContractor worker = new EdgeBasedNodeContractor(this, ignoredNodes);
+        worker.initFromGraph();
+        return worker;
+    }
+
+    private double getMeanDegree() {
+        return parent == null ? meanDegree : parent.meanDegree;
+    }
+
     @Override
     public float calculatePriority(int node) {
         activeStats = countingStats;
@@ -119,7 +148,7 @@ class EdgeBasedNodeContractor implements NodeContractor {
             // no shortcuts will be introduced
             return Float.NEGATIVE_INFINITY;
         stats().stopWatch.start();
-        findAndHandlePrepareShortcuts(node, this::countShortcuts, (int) (meanDegree * params.maxPollFactorHeuristic), wpsStatsHeur);
+        findAndHandlePrepareShortcuts(node, this::countShortcuts, (int) (getMeanDegree() * params.maxPollFactorHeuristic), wpsStatsHeur);
         stats().stopWatch.stop();
         // the higher the priority the later (!) this node will be contracted
         float edgeQuotient = numShortcuts / (float) (prepareGraph.getDegree(node));
@@ -152,6 +181,31 @@ class EdgeBasedNodeContractor implements NodeContractor {
         return neighbors;
     }
 
+    @Override
+    public PendingContraction findShortcuts(int node) {
+        activeStats = addingStats;
+        stats().stopWatch.start();
+        EdgeBasedPendingContraction pending = new EdgeBasedPendingContraction(node);
+        findAndHandlePrepareShortcuts(node, (edgeFrom, edgeTo, origEdgeCount) -> pending.shortcuts.add(new PendingShortcut(edgeFrom, edgeTo, origEdgeCount)),
+                (int) (getMeanDegree() * params.maxPollFactorContraction), wpsStatsContr);
+        stats().stopWatch.stop();
+        return pending;
+    }
+
+    @Override
+    public IntContainer contractNode(PendingContraction pendingContraction) {
+        if (parent != null)
+            throw new IllegalStateException("Workers cannot contract nodes");
+        EdgeBasedPendingContraction pending = (EdgeBasedPendingContraction) pendingContraction;
+        for (PendingShortcut sc : pending.shortcuts)
+            addShortcutsToPrepareGraph(sc.edgeFrom, sc.edgeTo, sc.origEdgeCount);
+        insertShortcuts(pending.node);
+        IntContainer neighbors = prepareGraph.disconnect(pending.node);
+        meanDegree = (meanDegree * 2 + neighbors.size()) / 3;
+        updateHierarchyDepthsOfNeighbors(pending.node, neighbors);
+        return neighbors;
+    }
+
     @Override
     public void finishContraction() {
         chBuilder.replaceSkippedEdges(prepareGraph::getShortcutForPrepareEdge);
@@ -428,6 +482,32 @@ class EdgeBasedNodeContractor implements NodeContractor {
         private double maxPollFactorContraction = 200;
     }
 
+    private static class EdgeBasedPendingContraction implements PendingContraction {
+        final int node;
+        final List<PendingShortcut> shortcuts = new ArrayList<>();
+
+        EdgeBasedPendingContraction(int node) {
+            this.node = node;
+        }
+
+        @Override
+        public int getNode() {
+            return node;
+        }
+    }
+
+    private static class PendingShortcut {
+        final PrepareCHEntry edgeFrom;
+        final PrepareCHEntry edgeTo;
+        final int origEdgeCount;
+
+        PendingShortcut(PrepareCHEntry edgeFrom, PrepareCHEntry edgeTo, int origEdgeCount) {
+            this.edgeFrom = edgeFrom;
+            this.edgeTo = edgeTo;
+            this.origEdgeCount = origEdgeCount;
+        }
+    }
+
     private static class Stats {
         int nodes;
         StopWatch stopWatch = new StopWatch();
@@ -22,6 +22,7 @@ import com.graphhopper.apache.commons.collections.IntFloatBinaryHeap;
 import com.graphhopper.util.GHUtility;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Locale;
 
 import static com.graphhopper.util.GHUtility.getEdgeFromEdgeKey;
@@ -60,6 +61,7 @@ public class EdgeBasedWitnessPathSearcher {
 
     private int sourceNode;
     private int centerNode;
+    private BitSet ignoredNodes;
 
     // various counters
     private int numPolls;
@@ -86,6 +88,14 @@ public class EdgeBasedWitnessPathSearcher {
         initCollections();
     }
 
+    /**
+     * Sets nodes (other than the center node) that shall not be visited by the witness searches. This is needed when
+     * multiple nodes are contracted at the same time, see {@link PrepareContractionHierarchies}.
+     */
+    public void setIgnoredNodes(BitSet ignoredNodes) {
+        this.ignoredNodes = ignoredNodes;
+    }
+
     /**
      * Deletes the shortest path tree that has been found so far and initializes a new witness path search for a given
      * node to be contracted and source edge key.
@@ -146,6 +156,8 @@ public class EdgeBasedWitnessPathSearcher {
                 // being recognized as witnesses when there are double zero weight loops at the source node
                 if (currNode == sourceNode && iter.getAdjNode() == sourceNode && iter.getWeight() < MAX_ZERO_WEIGHT_LOOP)
                     continue;
+                if (ignoredNodes != null && iter.getAdjNode() != centerNode && ignoredNodes.get(iter.getAdjNode()))
+                    continue;
                 final double weight = weights[currKey] + calcTurnWeight(getEdgeFromEdgeKey(currKey), currNode, getEdgeFromEdgeKey(iter.getOrigEdgeKeyFirst())) + iter.getWeight();
                 if (Double.isInfinite(weight))
                     continue;
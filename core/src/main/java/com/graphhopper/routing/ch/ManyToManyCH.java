@@ -0,0 +1,339 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongDoubleHashMap;
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.graphhopper.coll.MinHeapWithUpdate;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
+import com.graphhopper.storage.RoutingCHGraph;
+
+import java.util.Arrays;
+
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+
+/**
+ * Calculates the weights, times and distances between many source and many target nodes of a node-based
+ * {@link RoutingCHGraph}. Instead of running one bidirectional search per source/target pair we first run one
+ * backward upward search for every target and store the weights of all settled nodes in 'buckets' attached to these
+ * nodes. Afterwards we run one forward upward search for every source and scan the buckets of every settled node to find
+ * the best meeting node for each pair. This reduces the number of searches from |sources|*|targets| to
+ * |sources|+|targets|.
+ * <p>
+ * See 'Computing Many-to-Many Shortest Paths Using Highway Hierarchies' by Knopp, Sanders, Schultes, Schulz and Wagner.
+ * <p>
+ * The times and distances are calculated for the path with the minimum weight by unpacking the shortcuts. The unpacked
+ * values are cached per shortcut, so an instance of this class should be re-used for all searches of one matrix, but
+ * it is not thread-safe.
+ */
+public class ManyToManyCH {
+    private final RoutingCHGraph graph;
+    private final Weighting weighting;
+    private final RoutingCHEdgeExplorer inEdgeExplorer;
+    private final RoutingCHEdgeExplorer outEdgeExplorer;
+    private final ShortcutUnpacker shortcutUnpacker;
+    private final int maxBaseNodes;
+
+    // the state of the current search, indexed by node
+    private final double[] weights;
+    private final long[] times;
+    private final double[] distances;
+    private final int[] incEdges;
+    private final IntArrayList changedNodes;
+    private final IntArrayList settledNodes;
+    private final MinHeapWithUpdate heap;
+
+    // the times and distances of the (unpacked) shortcuts, see #cacheKey
+    private final LongLongHashMap shortcutTimes = new LongLongHashMap();
+    private final LongDoubleHashMap shortcutDistances = new LongDoubleHashMap();
+    private long unpackedTime;
+    private double unpackedDistance;
+
+    private int visitedNodes;
+
+    public ManyToManyCH(RoutingCHGraph graph) {
+        if (graph.isEdgeBased())
+            throw new IllegalArgumentException("Many-to-many calculations are currently only supported for node-based CH, " +
+                    "i.e. for profiles without turn costs");
+        this.graph = graph;
+        this.weighting = graph.getWeighting();
+        inEdgeExplorer = graph.createInEdgeExplorer();
+        outEdgeExplorer = graph.createOutEdgeExplorer();
+        maxBaseNodes = graph.getBaseGraph().getBaseGraph().getNodes();
+        shortcutUnpacker = new ShortcutUnpacker(graph, (edge, reverse, prevOrNextEdgeId) -> {
+            unpackedTime += weighting.calcEdgeMillis(edge, reverse);
+            unpackedDistance += edge.getDistance();
+        }, false);
+
+        int nodes = graph.getNodes();
+        weights = new double[nodes];
+        Arrays.fill(weights, Double.POSITIVE_INFINITY);
+        times = new long[nodes];
+        distances = new double[nodes];
+        incEdges = new int[nodes];
+        changedNodes = new IntArrayList();
+        settledNodes = new IntArrayList();
+        heap = new MinHeapWithUpdate(nodes);
+    }
+
+    /**
+     * @param sources the nodes the paths start at
+     * @param targets the nodes the paths end at
+     * @return the weights, times and distances for all source/target pairs. The weight is infinite for the pairs that
+     * are not connected
+     */
+    public Result calcMatrix(int[] sources, int[] targets) {
+        Buckets buckets = fillBuckets(targets);
+        Result result = new Result(sources.length, targets.length);
+        for (int s = 0; s < sources.length; s++) {
+            search(sources[s], outEdgeExplorer, false);
+            double[] weightRow = result.weights[s];
+            long[] timeRow = result.times[s];
+            double[] distanceRow = result.distances[s];
+            for (int i = 0; i < settledNodes.size(); i++) {
+                int node = settledNodes.get(i);
+                for (int b = buckets.offsets[node]; b < buckets.offsets[node + 1]; b++) {
+                    int t = buckets.targets[b];
+                    double weight = weights[node] + buckets.weights[b];
+                    if (weight < weightRow[t]) {
+                        weightRow[t] = weight;
+                        timeRow[t] = times[node] + buckets.times[b];
+                        distanceRow[t] = distances[node] + buckets.distances[b];
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs the backward searches for all the given targets and stores the results at the settled nodes
+     */
+    private Buckets fillBuckets(int[] targets) {
+        IntArrayList entryNodes = new IntArrayList();
+        IntArrayList entryTargets = new IntArrayList();
+        DoubleArrayList entryWeights = new DoubleArrayList();
+        LongArrayList entryTimes = new LongArrayList();
+        DoubleArrayList entryDistances = new DoubleArrayList();
+        for (int t = 0; t < targets.length; t++) {
+            search(targets[t], inEdgeExplorer, true);
+            for (int i = 0; i < settledNodes.size(); i++) {
+                int node = settledNodes.get(i);
+                entryNodes.add(node);
+                entryTargets.add(t);
+                entryWeights.add(weights[node]);
+                entryTimes.add(times[node]);
+                entryDistances.add(distances[node]);
+            }
+        }
+
+        // sort the entries by node, so we can access all entries of one node sequentially
+        int size = entryNodes.size();
+        Buckets buckets = new Buckets(graph.getNodes(), size);
+        for (int i = 0; i < size; i++)
+            buckets.offsets[entryNodes.get(i) + 1]++;
+        for (int n = 0; n < graph.getNodes(); n++)
+            buckets.offsets[n + 1] += buckets.offsets[n];
+        int[] positions = Arrays.copyOf(buckets.offsets, graph.getNodes());
+        for (int i = 0; i < size; i++) {
+            int pos = positions[entryNodes.get(i)]++;
+            buckets.targets[pos] = entryTargets.get(i);
+            buckets.weights[pos] = entryWeights.get(i);
+            buckets.times[pos] = entryTimes.get(i);
+            buckets.distances[pos] = entryDistances.get(i);
+        }
+        return buckets;
+    }
+
+    /**
+     * Runs a Dijkstra search that only goes 'upwards' in the hierarchy and explores the whole search space, i.e. there
+     * is no stopping criterion. The settled nodes are stored in {@link #settledNodes}.
+     */
+    private void search(int start, RoutingCHEdgeExplorer explorer, boolean reverse) {
+        reset();
+        weights[start] = 0;
+        times[start] = 0;
+        distances[start] = 0;
+        incEdges[start] = NO_EDGE;
+        changedNodes.add(start);
+        heap.push(start, 0);
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            settledNodes.add(node);
+            visitedNodes++;
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                // for node-based traversal we never need to go back the edge we came from
+                if (iter.getEdge() == incEdges[node] || !accept(iter))
+                    continue;
+                double weight = weights[node] + iter.getWeight(reverse);
+                if (Double.isInfinite(weight))
+                    continue;
+                int adjNode = iter.getAdjNode();
+                if (weight >= weights[adjNode])
+                    continue;
+                if (Double.isInfinite(weights[adjNode])) {
+                    changedNodes.add(adjNode);
+                    heap.push(adjNode, (float) weight);
+                } else if (heap.contains(adjNode)) {
+                    heap.update(adjNode, (float) weight);
+                } else {
+                    // the node was settled already, but we found a (slightly) better weight due to the limited
+                    // precision of the heap values. we do not expand it again.
+                    continue;
+                }
+                unpack(iter, reverse);
+                weights[adjNode] = weight;
+                times[adjNode] = times[node] + unpackedTime;
+                distances[adjNode] = distances[node] + unpackedDistance;
+                incEdges[adjNode] = iter.getEdge();
+            }
+        }
+    }
+
+    private boolean accept(RoutingCHEdgeIteratorState edgeState) {
+        int base = edgeState.getBaseNode();
+        int adj = edgeState.getAdjNode();
+        // always accept virtual edges, see #288
+        if (base >= maxBaseNodes || adj >= maxBaseNodes)
+            return true;
+        // shortcuts in wrong direction are disconnected, so no need to exclude them
+        if (edgeState.isShortcut())
+            return true;
+        return graph.getLevel(base) <= graph.getLevel(adj);
+    }
+
+    /**
+     * Calculates the time and distance of the given edge (or shortcut) and stores them in {@link #unpackedTime} and
+     * {@link #unpackedDistance}
+     */
+    private void unpack(RoutingCHEdgeIteratorState edgeState, boolean reverse) {
+        if (!edgeState.isShortcut()) {
+            doUnpack(edgeState, reverse);
+            return;
+        }
+        long key = cacheKey(edgeState.getEdge(), edgeState.getAdjNode(), reverse);
+        int index = shortcutTimes.indexOf(key);
+        if (shortcutTimes.indexExists(index)) {
+            unpackedTime = shortcutTimes.indexGet(index);
+            unpackedDistance = shortcutDistances.get(key);
+            return;
+        }
+        doUnpack(edgeState, reverse);
+        shortcutTimes.indexInsert(index, key, unpackedTime);
+        shortcutDistances.put(key, unpackedDistance);
+    }
+
+    private void doUnpack(RoutingCHEdgeIteratorState edgeState, boolean reverse) {
+        unpackedTime = 0;
+        unpackedDistance = 0;
+        if (reverse)
+            shortcutUnpacker.visitOriginalEdgesBwd(edgeState.getEdge(), edgeState.getAdjNode(), false, NO_EDGE);
+        else
+            shortcutUnpacker.visitOriginalEdgesFwd(edgeState.getEdge(), edgeState.getAdjNode(), false, NO_EDGE);
+    }
+
+    private static long cacheKey(int chEdge, int adjNode, boolean reverse) {
+        return ((long) chEdge << 32) | ((long) adjNode << 1) | (reverse ? 1 : 0);
+    }
+
+    private void reset() {
+        for (int i = 0; i < changedNodes.size(); i++)
+            weights[changedNodes.get(i)] = Double.POSITIVE_INFINITY;
+        changedNodes.elementsCount = 0;
+        settledNodes.elementsCount = 0;
+        heap.clear();
+    }
+
+    /**
+     * @return the number of nodes settled by all the searches run so far
+     */
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    private static class Buckets {
+        final int[] offsets;
+        final int[] targets;
+        final double[] weights;
+        final long[] times;
+        final double[] distances;
+
+        Buckets(int nodes, int entries) {
+            offsets = new int[nodes + 1];
+            targets = new int[entries];
+            weights = new double[entries];
+            times = new long[entries];
+            distances = new double[entries];
+        }
+    }
+
+    public static class Result {
+        private final double[][] weights;
+        private final long[][] times;
+        private final double[][] distances;
+
+        Result(int sources, int targets) {
+            weights = new double[sources][targets];
+            times = new long[sources][targets];
+            distances = new double[sources][targets];
+            for (double[] row : weights)
+                Arrays.fill(row, Double.POSITIVE_INFINITY);
+        }
+
+        public double getWeight(int source, int target) {
+            return weights[source][target];
+        }
+
+        /**
+         * @return the time in milliseconds
+         */
+        public long getTime(int source, int target) {
+            return times[source][target];
+        }
+
+        /**
+         * @return the distance in meters
+         */
+        public double getDistance(int source, int target) {
+            return distances[source][target];
+        }
+
+        public boolean isConnected(int source, int target) {
+            return Double.isFinite(weights[source][target]);
+        }
+
+        public double[][] getWeights() {
+            return weights;
+        }
+
+        public long[][] getTimes() {
+            return times;
+        }
+
+        public double[][] getDistances() {
+            return distances;
+        }
+    }
+}
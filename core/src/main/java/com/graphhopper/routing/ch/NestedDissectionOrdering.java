@@ -0,0 +1,220 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.shapes.BBox;
+
+/**
+ * Calculates a metric-independent node ordering for {@link CustomizableCH} using geometric nested dissection: The
+ * nodes are split into two halves along the direction (north-south, east-west or one of the diagonals) that yields
+ * the smallest vertex separator. The separator nodes get the highest ranks and both halves are dissected recursively.
+ * The ordering only depends on the graph topology and the node coordinates, but not on any edge weights.
+ */
+public class NestedDissectionOrdering {
+    // cells with at most this many nodes are not dissected any further
+    private static final int MAX_LEAF_SIZE = 8;
+    private static final int DIRECTIONS = 4;
+    private final int[] adjStart;
+    private final int[] adjNodes;
+    private final double[] lats;
+    private final double[] lons;
+    private final double[] keys;
+    private final int[] stamps;
+    private final boolean[] rightSide;
+    private final int[] ranks;
+    private int currentStamp;
+    private int nextRank;
+
+    /**
+     * @return the rank of every node, i.e. a permutation of 0..nodes-1, where higher ranks are contracted later
+     */
+    public static int[] calcRanks(BaseGraph graph) {
+        NestedDissectionOrdering ordering = new NestedDissectionOrdering(graph);
+        int[] cell = new int[graph.getNodes()];
+        for (int node = 0; node < cell.length; node++)
+            cell[node] = node;
+        ordering.dissect(cell);
+        return ordering.ranks;
+    }
+
+    private NestedDissectionOrdering(BaseGraph graph) {
+        int nodes = graph.getNodes();
+        adjStart = new int[nodes + 1];
+        EdgeIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (iter.getBaseNode() == iter.getAdjNode())
+                continue;
+            adjStart[iter.getBaseNode() + 1]++;
+            adjStart[iter.getAdjNode() + 1]++;
+        }
+        for (int node = 0; node < nodes; node++)
+            adjStart[node + 1] += adjStart[node];
+        adjNodes = new int[adjStart[nodes]];
+        int[] pos = new int[nodes];
+        iter = graph.getAllEdges();
+        while (iter.next()) {
+            int a = iter.getBaseNode(), b = iter.getAdjNode();
+            if (a == b)
+                continue;
+            adjNodes[adjStart[a] + pos[a]++] = b;
+            adjNodes[adjStart[b] + pos[b]++] = a;
+        }
+
+        // we scale the longitudes such that the diagonal directions are roughly at 45 degrees
+        BBox bounds = graph.getBounds();
+        double lonFactor = bounds.isValid() ? Math.cos(Math.toRadians((bounds.minLat + bounds.maxLat) / 2)) : 1;
+        NodeAccess na = graph.getNodeAccess();
+        lats = new double[nodes];
+        lons = new double[nodes];
+        for (int node = 0; node < nodes; node++) {
+            lats[node] = na.getLat(node);
+            lons[node] = na.getLon(node) * lonFactor;
+        }
+        keys = new double[nodes];
+        stamps = new int[nodes];
+        rightSide = new boolean[nodes];
+        ranks = new int[nodes];
+    }
+
+    private void dissect(int[] cell) {
+        if (cell.length <= MAX_LEAF_SIZE) {
+            for (int node : cell)
+                ranks[node] = nextRank++;
+            return;
+        }
+        int[] best = null;
+        boolean bestSepOnRight = false;
+        int bestSepSize = Integer.MAX_VALUE;
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            int[] split = split(cell, direction);
+            markSides(split);
+            int leftBoundary = countBoundary(split, 0, split.length / 2);
+            int rightBoundary = countBoundary(split, split.length / 2, split.length);
+            if (Math.min(leftBoundary, rightBoundary) < bestSepSize) {
+                bestSepSize = Math.min(leftBoundary, rightBoundary);
+                bestSepOnRight = rightBoundary < leftBoundary;
+                best = split;
+            }
+        }
+
+        markSides(best);
+        int half = best.length / 2;
+        int[] separator = new int[bestSepSize];
+        int[] left = new int[half - (bestSepOnRight ? 0 : bestSepSize)];
+        int[] right = new int[best.length - half - (bestSepOnRight ? bestSepSize : 0)];
+        int sepCount = 0, leftCount = 0, rightCount = 0;
+        for (int i = 0; i < best.length; i++) {
+            int node = best[i];
+            boolean isRight = i >= half;
+            if (isRight == bestSepOnRight && isBoundary(node))
+                separator[sepCount++] = node;
+            else if (isRight)
+                right[rightCount++] = node;
+            else
+                left[leftCount++] = node;
+        }
+        dissect(left);
+        dissect(right);
+        for (int node : separator)
+            ranks[node] = nextRank++;
+    }
+
+    /**
+     * @return a copy of the given cell where the first half of the nodes are (not strictly) below the median in the
+     * given direction and the second half above
+     */
+    private int[] split(int[] cell, int direction) {
+        int[] result = cell.clone();
+        for (int node : result)
+            keys[node] = key(node, direction);
+        select(result, result.length / 2);
+        return result;
+    }
+
+    private double key(int node, int direction) {
+        switch (direction) {
+            case 0:
+                return lats[node];
+            case 1:
+                return lons[node];
+            case 2:
+                return lats[node] + lons[node];
+            default:
+                return lats[node] - lons[node];
+        }
+    }
+
+    /**
+     * Partially sorts the nodes by their keys such that the node at index k is at its sorted position
+     */
+    private void select(int[] nodes, int k) {
+        int lo = 0, hi = nodes.length - 1;
+        while (hi > lo) {
+            double pivot = keys[nodes[(lo + hi) >>> 1]];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (keys[nodes[i]] < pivot) i++;
+                while (keys[nodes[j]] > pivot) j--;
+                if (i <= j) {
+                    int tmp = nodes[i];
+                    nodes[i] = nodes[j];
+                    nodes[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j)
+                hi = j;
+            else if (k >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+
+    private void markSides(int[] split) {
+        currentStamp++;
+        for (int i = 0; i < split.length; i++) {
+            stamps[split[i]] = currentStamp;
+            rightSide[split[i]] = i >= split.length / 2;
+        }
+    }
+
+    private int countBoundary(int[] split, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++)
+            if (isBoundary(split[i]))
+                count++;
+        return count;
+    }
+
+    /**
+     * @return true if the given node has a neighbor in the current cell, but on the other side
+     */
+    private boolean isBoundary(int node) {
+        for (int i = adjStart[node]; i < adjStart[node + 1]; i++) {
+            int adj = adjNodes[i];
+            if (stamps[adj] == currentStamp && rightSide[adj] != rightSide[node])
+                return true;
+        }
+        return false;
+    }
+}
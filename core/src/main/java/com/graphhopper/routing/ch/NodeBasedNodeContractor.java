@@ -23,6 +23,7 @@ import com.graphhopper.util.PMap;
 import com.graphhopper.util.StopWatch;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Locale;
 
@@ -31,7 +32,10 @@ import static com.graphhopper.util.Helper.nf;
 
 class NodeBasedNodeContractor implements NodeContractor {
     private final CHPreparationGraph prepareGraph;
-    private final Params params = new Params();
+    private final Params params;
+    // only set for workers, see createWorker()
+    private final NodeBasedNodeContractor parent;
+    private final BitSet ignoredNodes;
     // todo: maybe use a set to prevent duplicates instead?
     private List<Shortcut> shortcuts = new ArrayList<>();
     private CHStorageBuilder chBuilder;
@@ -51,8 +55,18 @@ class NodeBasedNodeContractor implements NodeContractor {
 
     NodeBasedNodeContractor(CHPreparationGraph prepareGraph, CHStorageBuilder chBuilder, PMap pMap) {
         this.prepareGraph = prepareGraph;
+        this.params = new Params();
         extractParams(pMap);
         this.chBuilder = chBuilder;
+        this.parent = null;
+        this.ignoredNodes = null;
+    }
+
+    private NodeBasedNodeContractor(NodeBasedNodeContractor parent, BitSet ignoredNodes) {
+        this.prepareGraph = parent.prepareGraph;
+        this.params = parent.params;
+        this.parent = parent;
+        this.ignoredNodes = ignoredNodes;
     }
 
     private void extractParams(PMap pMap) {
@@ -68,9 +82,22 @@ class NodeBasedNodeContractor implements NodeContractor {
         outEdgeExplorer = prepareGraph.createOutEdgeExplorer();
         existingShortcutExplorer = prepareGraph.createOutEdgeExplorer();
         witnessPathSearcher = new NodeBasedWitnessPathSearcher(prepareGraph);
+        witnessPathSearcher.setIgnoredNodes(ignoredNodes);
         meanDegree = prepareGraph.getOriginalEdges() * 1.0 / prepareGraph.getNodes();
     }
 
+    @Override
+    public NodeContractor createWorker(BitSet ignoredNodes) {
+        NodeBasedNodeContractor worker = new NodeBasedNodeContractor(this, ignoredNodes);
+        worker.initFromGraph();
+        return worker;
+    }
+
+    private double getMeanDegree() {
+        // workers use the mean degree of the contractor that actually contracts the nodes
+        return parent == null ? meanDegree : parent.meanDegree;
+    }
+
     @Override
     public void close() {
         prepareGraph.close();
@@ -97,7 +124,7 @@ class NodeBasedNodeContractor implements NodeContractor {
         // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
         shortcutsCount = 0;
         originalEdgesCount = 0;
-        findAndHandleShortcuts(node, this::countShortcuts, (int) (meanDegree * params.maxPollFactorHeuristic));
+        findAndHandleShortcuts(node, this::countShortcuts, (int) (getMeanDegree() * params.maxPollFactorHeuristic));
 
         // from shortcuts we can compute the edgeDifference
         // # low influence: with it the shortcut creation is slightly faster
@@ -123,6 +150,27 @@ class NodeBasedNodeContractor implements NodeContractor {
         return prepareGraph.disconnect(node);
     }
 
+    @Override
+    public PendingContraction findShortcuts(int node) {
+        NodeBasedPendingContraction pending = new NodeBasedPendingContraction(node);
+        pending.degree = findAndHandleShortcuts(node, (fromNode, toNode, weight, outgoingEdge, outOrigEdgeCount, incomingEdge, inOrigEdgeCount) ->
+                        pending.shortcuts.add(new PendingShortcut(fromNode, toNode, weight, outgoingEdge, outOrigEdgeCount, incomingEdge, inOrigEdgeCount)),
+                (int) (getMeanDegree() * params.maxPollFactorContraction));
+        return pending;
+    }
+
+    @Override
+    public IntContainer contractNode(PendingContraction pendingContraction) {
+        if (parent != null)
+            throw new IllegalStateException("Workers cannot contract nodes");
+        NodeBasedPendingContraction pending = (NodeBasedPendingContraction) pendingContraction;
+        for (PendingShortcut sc : pending.shortcuts)
+            addOrUpdateShortcut(sc.fromNode, sc.toNode, sc.weight, sc.outgoingEdge, sc.outOrigEdgeCount, sc.incomingEdge, sc.inOrigEdgeCount);
+        insertShortcuts(pending.node);
+        meanDegree = (meanDegree * 2 + pending.degree) / 3;
+        return prepareGraph.disconnect(pending.node);
+    }
+
     /**
      * Calls the shortcut handler for all edges and shortcuts adjacent to the given node. After this method is called
      * these edges and shortcuts will be removed from the prepare graph, so this method offers the last chance to deal
@@ -311,6 +359,41 @@ class NodeBasedNodeContractor implements NodeContractor {
         private double maxPollFactorContraction = 200;
     }
 
+    private static class NodeBasedPendingContraction implements PendingContraction {
+        final int node;
+        final List<PendingShortcut> shortcuts = new ArrayList<>();
+        long degree;
+
+        NodeBasedPendingContraction(int node) {
+            this.node = node;
+        }
+
+        @Override
+        public int getNode() {
+            return node;
+        }
+    }
+
+    private static class PendingShortcut {
+        final int fromNode;
+        final int toNode;
+        final double weight;
+        final int outgoingEdge;
+        final int outOrigEdgeCount;
+        final int incomingEdge;
+        final int inOrigEdgeCount;
+
+        PendingShortcut(int fromNode, int toNode, double weight, int outgoingEdge, int outOrigEdgeCount, int incomingEdge, int inOrigEdgeCount) {
+            this.fromNode = fromNode;
+            this.toNode = toNode;
+            this.weight = weight;
+            this.outgoingEdge = outgoingEdge;
+            this.outOrigEdgeCount = outOrigEdgeCount;
+            this.incomingEdge = incomingEdge;
+            this.inOrigEdgeCount = inOrigEdgeCount;
+        }
+    }
+
     private static class Shortcut {
         int prepareEdgeFwd;
         int prepareEdgeBwd;
@@ -20,6 +20,8 @@ package com.graphhopper.routing.ch;
 
 import com.carrotsearch.hppc.IntContainer;
 
+import java.util.BitSet;
+
 public interface NodeContractor {
     void initFromGraph();
 
@@ -37,6 +39,29 @@ public interface NodeContractor {
      */
     IntContainer contractNode(int node);
 
+    /**
+     * Creates a contractor that shares the prepare graph and the contraction state (like the mean degree) with this
+     * one, but uses its own explorers and witness path searchers. Workers can calculate priorities and find shortcuts
+     * concurrently as long as the graph is not modified at the same time. They must not be used to contract nodes.
+     *
+     * @param ignoredNodes the nodes that are ignored by all witness searches of the worker
+     */
+    NodeContractor createWorker(BitSet ignoredNodes);
+
+    /**
+     * Runs the witness searches for the given node and returns the shortcuts that are required to contract it, but does
+     * not change the graph.
+     */
+    PendingContraction findShortcuts(int node);
+
+    /**
+     * Adds the shortcuts found by {@link #findShortcuts(int)} (possibly called on a worker) and removes the node from
+     * the graph.
+     *
+     * @return the set of nodes adjacent to this node (before contraction)
+     */
+    IntContainer contractNode(PendingContraction pendingContraction);
+
     void finishContraction();
 
     long getAddedShortcutsCount();
@@ -45,4 +70,10 @@ public interface NodeContractor {
 
     float getDijkstraSeconds();
 
+    /**
+     * The result of {@link #findShortcuts(int)}
+     */
+    interface PendingContraction {
+        int getNode();
+    }
 }
@@ -17,8 +17,10 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntContainer;
 import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.sorting.IndirectSort;
 import com.graphhopper.coll.MinHeapWithUpdate;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.storage.*;
@@ -28,8 +30,13 @@ import com.graphhopper.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
 import static com.graphhopper.util.Helper.getMemInfo;
@@ -61,6 +68,7 @@ public class PrepareContractionHierarchies {
     private final StopWatch contractionSW = new StopWatch();
     private final Params params;
     private final BaseGraph graph;
+    private CHPreparationGraph prepareGraph;
     private NodeContractor nodeContractor;
     private final int nodes;
     private NodeOrderingProvider nodeOrderingProvider;
@@ -109,6 +117,7 @@ public class PrepareContractionHierarchies {
         params.setMaxNeighborUpdates(pMap.getInt(NEIGHBOR_UPDATES_MAX, params.getMaxNeighborUpdates()));
         params.setNodesContractedPercentage(pMap.getInt(CONTRACTED_NODES, params.getNodesContractedPercentage()));
         params.setLogMessagesPercentage(pMap.getInt(LOG_MESSAGES, params.getLogMessagesPercentage()));
+        params.setContractionThreads(pMap.getInt(CONTRACTION_THREADS, params.getContractionThreads()));
         return this;
     }
 
@@ -168,6 +177,8 @@ public class PrepareContractionHierarchies {
         setMaxLevelOnAllNodes();
         if (nodeOrderingProvider != null) {
             contractNodesUsingFixedNodeOrdering();
+        } else if (params.getContractionThreads() > 1) {
+            contractNodesInParallel();
         } else {
             contractNodesUsingHeuristicNodeOrdering();
         }
@@ -182,7 +193,6 @@ public class PrepareContractionHierarchies {
         // not simply prepare contraction hierarchies, but instead it also serves as some kind of 'container' to give
         // access to the preparations in the GraphHopper class. If this was not so we could make this a lot cleaner here,
         // declare variables final and would not need all these close() methods...
-        CHPreparationGraph prepareGraph;
         if (chConfig.getTraversalMode().isEdgeBased()) {
             TurnCostStorage turnCostStorage = graph.getTurnCostStorage();
             if (turnCostStorage == null) {
@@ -331,6 +341,196 @@ public class PrepareContractionHierarchies {
         _close();
     }
 
+    /**
+     * Contracts the nodes in rounds using multiple threads. In every round we select the nodes whose priority is
+     * smaller than the priorities of all other not yet contracted nodes within two hops. These nodes are independent in
+     * the sense that no two of them are adjacent or share a neighbor, so their contraction does not change the
+     * neighborhood of the others. The witness searches for these nodes run in parallel and ignore all nodes selected in
+     * the current round. Afterwards the shortcuts are inserted by a single thread in the order of the node priorities
+     * and finally the priorities of all neighbors of the contracted nodes are updated (again in parallel).
+     * <p>
+     * Every step only depends on the graph and the priorities from the previous round, not on the thread that does the
+     * work, so the result is deterministic and does not depend on the number of threads. The node ordering is not the
+     * same as in the sequential mode, but the resulting CH yields the same shortest paths. The lazy, periodic and
+     * (randomized) neighbor updates of the sequential mode are not used here.
+     */
+    private void contractNodesInParallel() {
+        final int threads = params.getContractionThreads();
+        StopWatch sw = new StopWatch().start();
+        logger.info("Building initial node priorities using {} threads: {} nodes, {}", threads, nodes, getMemInfo());
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            // the nodes that are contracted in the current round, all witness searches need to ignore them
+            BitSet ignoredNodes = new BitSet(nodes);
+            NodeContractor[] workers = new NodeContractor[threads];
+            PrepareGraphEdgeExplorer[][] explorers = new PrepareGraphEdgeExplorer[threads][];
+            for (int i = 0; i < threads; i++) {
+                workers[i] = nodeContractor.createWorker(ignoredNodes);
+                explorers[i] = new PrepareGraphEdgeExplorer[]{
+                        prepareGraph.createOutEdgeExplorer(), prepareGraph.createInEdgeExplorer(),
+                        prepareGraph.createOutEdgeExplorer(), prepareGraph.createInEdgeExplorer()};
+            }
+            float[] priorities = new float[nodes];
+            IntArrayList remainingNodes = new IntArrayList(nodes);
+            for (int node = 0; node < nodes; node++)
+                remainingNodes.add(node);
+            periodicUpdateSW.start();
+            runInParallel(executorService, threads, remainingNodes.size(), (w, i) -> {
+                int node = remainingNodes.get(i);
+                priorities[node] = workers[w].calculatePriority(node);
+            });
+            periodicUpdateSW.stop();
+            logger.info("Finished building node priorities, took: {}s, {}", sw.stop().getSeconds(), getMemInfo());
+
+            final int initSize = nodes;
+            final long logSize = params.getLogMessagesPercentage() == 0
+                    ? Long.MAX_VALUE
+                    : Math.round(Math.max(10, initSize * (params.getLogMessagesPercentage() / 100d)));
+            final long nodesToContract = initSize - Math.round(initSize * ((100 - params.getNodesContractedPercentage()) / 100d));
+            boolean[] independent = new boolean[nodes];
+            boolean[] needsUpdate = new boolean[nodes];
+            IntArrayList nodesToUpdate = new IntArrayList();
+            int level = 0;
+            int rounds = 0;
+            long nextLog = 0;
+            while (!remainingNodes.isEmpty() && level < nodesToContract) {
+                stopIfInterrupted();
+                if (level >= nextLog) {
+                    logParallelStats(remainingNodes.size(), rounds);
+                    nextLog += logSize;
+                }
+                rounds++;
+
+                // select the nodes we contract in this round and sort them by priority
+                runInParallel(executorService, threads, remainingNodes.size(), (w, i) -> {
+                    int node = remainingNodes.get(i);
+                    independent[node] = isIndependent(node, priorities, explorers[w]);
+                });
+                IntArrayList roundNodes = new IntArrayList();
+                for (IntCursor c : remainingNodes)
+                    if (independent[c.value])
+                        roundNodes.add(c.value);
+                int[] order = IndirectSort.mergesort(0, roundNodes.size(), (a, b) -> comparePriorities(roundNodes.get(a), roundNodes.get(b), priorities));
+                int roundSize = (int) Math.min(order.length, nodesToContract - level);
+                for (int i = 0; i < roundSize; i++)
+                    ignoredNodes.set(roundNodes.get(order[i]));
+
+                // run the witness searches in parallel, but insert the shortcuts sequentially and in a fixed order
+                contractionSW.start();
+                NodeContractor.PendingContraction[] pendingContractions = new NodeContractor.PendingContraction[roundSize];
+                runInParallel(executorService, threads, roundSize, (w, i) ->
+                        pendingContractions[i] = workers[w].findShortcuts(roundNodes.get(order[i])));
+                for (NodeContractor.PendingContraction pending : pendingContractions) {
+                    chBuilder.setLevel(pending.getNode(), level);
+                    level++;
+                    for (IntCursor neighbor : nodeContractor.contractNode(pending)) {
+                        if (!needsUpdate[neighbor.value]) {
+                            needsUpdate[neighbor.value] = true;
+                            nodesToUpdate.add(neighbor.value);
+                        }
+                    }
+                }
+                ignoredNodes.clear();
+                contractionSW.stop();
+
+                neighborUpdateSW.start();
+                runInParallel(executorService, threads, nodesToUpdate.size(), (w, i) -> {
+                    int node = nodesToUpdate.get(i);
+                    priorities[node] = workers[w].calculatePriority(node);
+                });
+                for (IntCursor c : nodesToUpdate)
+                    needsUpdate[c.value] = false;
+                nodesToUpdate.elementsCount = 0;
+                neighborUpdateSW.stop();
+
+                int remaining = 0;
+                for (IntCursor c : remainingNodes)
+                    if (!isContracted(c.value))
+                        remainingNodes.set(remaining++, c.value);
+                remainingNodes.elementsCount = remaining;
+            }
+            logParallelStats(remainingNodes.size(), rounds);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        nodeContractor.finishContraction();
+        logger.info("new shortcuts: " + nf(nodeContractor.getAddedShortcutsCount())
+                + ", initSize:" + nf(nodes)
+                + ", " + chConfig.getWeighting()
+                + ", threads:" + params.getContractionThreads()
+                + ", " + getTimesAsString()
+                + ", " + Helper.getMemInfo());
+        _close();
+    }
+
+    private boolean isIndependent(int node, float[] priorities, PrepareGraphEdgeExplorer[] explorers) {
+        for (int i = 0; i < 2; i++) {
+            PrepareGraphEdgeIterator iter = explorers[i].setBaseNode(node);
+            while (iter.next()) {
+                int neighbor = iter.getAdjNode();
+                if (neighbor == node)
+                    continue;
+                if (comparePriorities(neighbor, node, priorities) < 0)
+                    return false;
+                for (int j = 2; j < 4; j++) {
+                    PrepareGraphEdgeIterator neighborIter = explorers[j].setBaseNode(neighbor);
+                    while (neighborIter.next()) {
+                        int adjNode = neighborIter.getAdjNode();
+                        if (adjNode != node && comparePriorities(adjNode, node, priorities) < 0)
+                            return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares by priority and uses the node id to break ties, so there is always a unique order.
+     */
+    private static int comparePriorities(int nodeA, int nodeB, float[] priorities) {
+        int result = Float.compare(priorities[nodeA], priorities[nodeB]);
+        return result != 0 ? result : Integer.compare(nodeA, nodeB);
+    }
+
+    /**
+     * Runs the given task for all indices in [0, size) using the given number of threads. The task is called with the
+     * index of the thread, so it can use separate data structures for every thread. Small tasks are run in the
+     * current thread.
+     */
+    static void runInParallel(ExecutorService executorService, int threads, int size, ParallelTask task) {
+        if (size < 2 * threads) {
+            for (int i = 0; i < size; i++)
+                task.run(0, i);
+            return;
+        }
+        AtomicInteger nextIndex = new AtomicInteger();
+        List<Callable<Object>> callables = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            callables.add(() -> {
+                for (int i = nextIndex.getAndIncrement(); i < size; i = nextIndex.getAndIncrement())
+                    task.run(thread, i);
+                return null;
+            });
+        }
+        try {
+            for (Future<Object> future : executorService.invokeAll(callables))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @FunctionalInterface
+    interface ParallelTask {
+        void run(int thread, int index);
+    }
+
     private void contractNodesUsingFixedNodeOrdering() {
         final int nodesToContract = nodeOrderingProvider.getNumNodes();
         final int logSize = Math.max(10, (int) (params.getLogMessagesPercentage() / 100.0 * nodesToContract));
@@ -382,6 +582,18 @@ public class PrepareContractionHierarchies {
                 Helper.getMemInfo()));
     }
 
+    private void logParallelStats(int remainingNodes, int rounds) {
+        logger.info(String.format(Locale.ROOT,
+                "%s, nodes: %10s, shortcuts: %10s, rounds: %6d, %s, %s, %s",
+                (isEdgeBased() ? "edge" : "node"),
+                nf(remainingNodes),
+                nf(nodeContractor.getAddedShortcutsCount()),
+                rounds,
+                getTimesAsString(),
+                nodeContractor.getStatisticsString(),
+                Helper.getMemInfo()));
+    }
+
     private void logFixedNodeOrderingStats(int nodesContracted, int logSize, StopWatch stopWatch) {
         logger.info(String.format(Locale.ROOT,
                 "nodes: %10s / %10s (%6.2f%%), shortcuts: %10s, speed = %6.2f nodes/ms, %s, %s",
@@ -529,6 +741,12 @@ public class PrepareContractionHierarchies {
          * @see #periodicUpdatesPercentage
          */
         private int logMessagesPercentage;
+        /**
+         * Specifies the number of threads used to contract the nodes. With more than one thread the nodes are contracted
+         * in rounds of independent nodes, see {@link #contractNodesInParallel()}. This is not used for a fixed node
+         * ordering.
+         */
+        private int contractionThreads = 1;
 
         static Params forTraversalMode(TraversalMode traversalMode) {
             // Lower values for the neighbor update percentage (and/or max neighbor updates) yield a slower
@@ -603,6 +821,16 @@ public class PrepareContractionHierarchies {
             this.logMessagesPercentage = logMessagesPercentage;
         }
 
+        int getContractionThreads() {
+            return contractionThreads;
+        }
+
+        void setContractionThreads(int contractionThreads) {
+            if (contractionThreads < 1)
+                throw new IllegalArgumentException(CONTRACTION_THREADS + " has to be at least 1");
+            this.contractionThreads = contractionThreads;
+        }
+
         private void checkPercentage(String name, int value) {
             if (value < 0 || value > 100) {
                 throw new IllegalArgumentException(name + " has to be in [0, 100], to disable it use 0");
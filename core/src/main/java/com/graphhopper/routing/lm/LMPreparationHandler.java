@@ -39,6 +39,8 @@ import java.io.Reader;
 import java.net.URL;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import static com.graphhopper.util.Helper.*;
@@ -56,6 +58,7 @@ public class LMPreparationHandler {
     private int minNodes = -1;
     private final List<String> lmSuggestionsLocations = new ArrayList<>(5);
     private int preparationThreads;
+    private int landmarkThreads = 1;
     private boolean logDetails = false;
     private AreaIndex<SplitArea> areaIndex;
 
@@ -70,6 +73,7 @@ public class LMPreparationHandler {
         }
 
         setPreparationThreads(ghConfig.getInt(Parameters.Landmark.PREPARE + "threads", getPreparationThreads()));
+        setLandmarkThreads(ghConfig.getInt(Parameters.Landmark.PREPARE + "landmark_threads", getLandmarkThreads()));
         setLMProfiles(ghConfig.getLMProfiles());
 
         landmarkCount = ghConfig.getInt(Parameters.Landmark.COUNT, landmarkCount);
@@ -114,6 +118,20 @@ public class LMPreparationHandler {
         this.preparationThreads = preparationThreads;
     }
 
+    public int getLandmarkThreads() {
+        return landmarkThreads;
+    }
+
+    /**
+     * This method changes the number of threads used to calculate the landmark weights within a single LM profile.
+     * Default is 1. Every thread needs its own shortest path tree, so this also increases the memory usage.
+     */
+    public void setLandmarkThreads(int landmarkThreads) {
+        if (landmarkThreads < 1)
+            throw new IllegalArgumentException("landmark_threads must be positive, but was: " + landmarkThreads);
+        this.landmarkThreads = landmarkThreads;
+    }
+
     public LMPreparationHandler setLMProfiles(LMProfile... lmProfiles) {
         return setLMProfiles(Arrays.asList(lmProfiles));
     }
@@ -173,6 +191,12 @@ public class LMPreparationHandler {
      */
     public List<PrepareLandmarks> prepare(List<LMConfig> lmConfigs, GraphHopperStorage ghStorage, LocationIndex locationIndex, final boolean closeEarly) {
         List<PrepareLandmarks> preparations = createPreparations(lmConfigs, ghStorage.getBaseGraph(), locationIndex);
+        // one executor calculates the landmark weights of all subnetworks and profiles of this preparation run
+        ExecutorService landmarkExecutorService = landmarkThreads > 1 && !preparations.isEmpty()
+                ? Executors.newFixedThreadPool(landmarkThreads * Math.min(preparationThreads, preparations.size()))
+                : null;
+        for (PrepareLandmarks prepare : preparations)
+            prepare.setExecutorService(landmarkExecutorService);
         List<Callable<String>> prepareCallables = new ArrayList<>();
         for (int i = 0; i < preparations.size(); i++) {
             PrepareLandmarks prepare = preparations.get(i);
@@ -189,7 +213,12 @@ public class LMPreparationHandler {
                 return name;
             });
         }
-        GHUtility.runConcurrently(prepareCallables, preparationThreads);
+        try {
+            GHUtility.runConcurrently(prepareCallables, preparationThreads);
+        } finally {
+            if (landmarkExecutorService != null)
+                landmarkExecutorService.shutdown();
+        }
         LOGGER.info("Finished LM preparation, {}", getMemInfo());
         return preparations;
     }
@@ -221,7 +250,8 @@ public class LMPreparationHandler {
                     lmConfig, landmarkCount).
                     setLandmarkSuggestions(lmSuggestions).
                     setMaximumWeight(maximumWeight).
-                    setLogDetails(logDetails);
+                    setLogDetails(logDetails).
+                    setLandmarkThreads(landmarkThreads);
             if (minNodes > 1)
                 prepareLandmarks.setMinimumNodes(minNodes);
             // using the area index we separate certain areas from each other but we do not change the base graph for this
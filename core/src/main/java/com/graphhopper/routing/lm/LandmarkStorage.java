@@ -44,6 +44,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -90,6 +91,8 @@ public class LandmarkStorage {
     private List<LandmarkSuggestion> landmarkSuggestions = Collections.emptyList();
     private AreaIndex<SplitArea> areaIndex;
     private boolean logDetails = false;
+    private int landmarkThreads = 1;
+    private ExecutorService executorService;
     /**
      * 'to' and 'from' fit into 32 bit => 16 bit for each of them => 65536
      */
@@ -165,6 +168,26 @@ public class LandmarkStorage {
         this.logDetails = logDetails;
     }
 
+    /**
+     * Sets the number of threads used to calculate the weights of the landmarks of a subnetwork in parallel. The
+     * landmarks are still selected sequentially and the results are the same as for a single thread.
+     */
+    public LandmarkStorage setLandmarkThreads(int landmarkThreads) {
+        if (landmarkThreads < 1)
+            throw new IllegalArgumentException("landmarkThreads must be positive, but was: " + landmarkThreads);
+        this.landmarkThreads = landmarkThreads;
+        return this;
+    }
+
+    /**
+     * Sets the executor which calculates the landmark weights if landmarkThreads is bigger than 1, so that several
+     * preparations can share it. Without it an executor is created and shut down in {@link #createLandmarks()}.
+     */
+    public LandmarkStorage setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+
     /**
      * This method forces the landmark preparation to skip the landmark search and uses the specified landmark list instead.
      * Useful for manual tuning of larger areas to safe import time or improve quality.
@@ -289,31 +312,41 @@ public class LandmarkStorage {
             LOGGER.info("init landmarks for subnetworks with node count greater than " + minimumNodes + " with factor:" + factor + additionalInfo);
 
         int nodes = 0;
-        for (IntArrayList subnetworkIds : graphComponents.getComponents()) {
-            nodes += subnetworkIds.size();
-            if (subnetworkIds.size() < minimumNodes)
-                continue;
-            if (factor <= 0)
-                throw new IllegalStateException("factor wasn't initialized " + factor + ", subnetworks:"
-                        + graphComponents.getComponents().size() + ", minimumNodes:" + minimumNodes + ", current size:" + subnetworkIds.size());
+        // the same executor is used for all subnetworks
+        ExecutorService weightsExecutor = executorService;
+        boolean ownExecutor = weightsExecutor == null && landmarkThreads > 1 && landmarks > 2 && !landmarkWeightDA.getType().isInteg();
+        if (ownExecutor)
+            weightsExecutor = Executors.newFixedThreadPool(Math.min(landmarkThreads, landmarks - 1));
+        try {
+            for (IntArrayList subnetworkIds : graphComponents.getComponents()) {
+                nodes += subnetworkIds.size();
+                if (subnetworkIds.size() < minimumNodes)
+                    continue;
+                if (factor <= 0)
+                    throw new IllegalStateException("factor wasn't initialized " + factor + ", subnetworks:"
+                            + graphComponents.getComponents().size() + ", minimumNodes:" + minimumNodes + ", current size:" + subnetworkIds.size());
+
+                int index = subnetworkIds.size() - 1;
+                // ensure start node is reachable from both sides and no subnetwork is associated
+                for (; index >= 0; index--) {
+                    int nextStartNode = subnetworkIds.get(index);
+                    if (subnetworks[nextStartNode] == UNSET_SUBNETWORK) {
+                        if (logDetails) {
+                            GHPoint p = createPoint(graph, nextStartNode);
+                            LOGGER.info("start node: " + nextStartNode + " (" + p + ") subnetwork " + index + ", subnetwork size: " + subnetworkIds.size()
+                                    + ", " + Helper.getMemInfo() + ((areaIndex == null) ? "" : " area:" + areaIndex.query(p.lat, p.lon)));
+                        }
 
-            int index = subnetworkIds.size() - 1;
-            // ensure start node is reachable from both sides and no subnetwork is associated
-            for (; index >= 0; index--) {
-                int nextStartNode = subnetworkIds.get(index);
-                if (subnetworks[nextStartNode] == UNSET_SUBNETWORK) {
-                    if (logDetails) {
-                        GHPoint p = createPoint(graph, nextStartNode);
-                        LOGGER.info("start node: " + nextStartNode + " (" + p + ") subnetwork " + index + ", subnetwork size: " + subnetworkIds.size()
-                                + ", " + Helper.getMemInfo() + ((areaIndex == null) ? "" : " area:" + areaIndex.query(p.lat, p.lon)));
+                        if (createLandmarksForSubnetwork(nextStartNode, subnetworks, accessFilter, weightsExecutor))
+                            break;
                     }
-
-                    if (createLandmarksForSubnetwork(nextStartNode, subnetworks, accessFilter))
-                        break;
                 }
+                if (index < 0)
+                    LOGGER.warn("next start node not found in big enough network of size " + subnetworkIds.size() + ", first element is " + subnetworkIds.get(0) + ", " + createPoint(graph, subnetworkIds.get(0)));
             }
-            if (index < 0)
-                LOGGER.warn("next start node not found in big enough network of size " + subnetworkIds.size() + ", first element is " + subnetworkIds.get(0) + ", " + createPoint(graph, subnetworkIds.get(0)));
+        } finally {
+            if (ownExecutor)
+                weightsExecutor.shutdown();
         }
 
         int subnetworkCount = landmarkIDs.size();
@@ -399,10 +432,9 @@ public class LandmarkStorage {
      *
      * @return landmark mapping
      */
-    private boolean createLandmarksForSubnetwork(final int startNode, final byte[] subnetworks, EdgeFilter accessFilter) {
+    private boolean createLandmarksForSubnetwork(final int startNode, final byte[] subnetworks, EdgeFilter accessFilter, ExecutorService weightsExecutor) {
         final int subnetworkId = landmarkIDs.size();
         int[] tmpLandmarkNodeIds = new int[landmarks];
-        int logOffset = Math.max(1, landmarks / 2);
         boolean pickedPrecalculatedLandmarks = false;
 
         if (!landmarkSuggestions.isEmpty()) {
@@ -440,40 +472,71 @@ public class LandmarkStorage {
                 LOGGER.info("Finished searching landmarks for subnetwork " + subnetworkId + " of size " + explorer.getVisitedNodes());
         }
 
-        // 2) calculate weights for all landmarks -> 'from' and 'to' weight
-        for (int lmIdx = 0; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new RuntimeException("Thread was interrupted for landmark " + lmIdx);
-            }
-            int lmNodeId = tmpLandmarkNodeIds[lmIdx];
-            LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, false);
-            explorer.setStartNode(lmNodeId);
-            explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, FROM_OFFSET);
-
-            // set subnetwork id to all explored nodes, but do this only for the first landmark
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
+        // 2) calculate weights for all landmarks -> 'from' and 'to' weight. The explorations of the first landmark also
+        // determine the subnetwork and have to run first. Every other landmark only writes its own 'from' and 'to'
+        // columns, so they can run in parallel (but not for int-based DataAccess, where a short is written as int).
+        if (!calcLandmarkWeights(0, tmpLandmarkNodeIds[0], accessFilter, subnetworks, subnetworkId))
+            return false;
+        if (weightsExecutor != null && landmarkThreads > 1 && tmpLandmarkNodeIds.length > 2 && !landmarkWeightDA.getType().isInteg()) {
+            try {
+                List<Callable<Boolean>> callables = new ArrayList<>(tmpLandmarkNodeIds.length - 1);
+                for (int lmIdx = 1; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
+                    final int idx = lmIdx;
+                    callables.add(() -> calcLandmarkWeights(idx, tmpLandmarkNodeIds[idx], accessFilter, subnetworks, subnetworkId));
+                }
+                for (Future<Boolean> future : weightsExecutor.invokeAll(callables))
+                    future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Thread was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
             }
+        } else {
+            for (int lmIdx = 1; lmIdx < tmpLandmarkNodeIds.length; lmIdx++)
+                calcLandmarkWeights(lmIdx, tmpLandmarkNodeIds[lmIdx], accessFilter, subnetworks, subnetworkId);
+        }
 
-            explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, true);
-            explorer.setStartNode(lmNodeId);
-            explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, TO_OFFSET);
+        // TODO set weight to SHORT_MAX if entry has either no 'from' or no 'to' entry
+        landmarkIDs.add(tmpLandmarkNodeIds);
+        return true;
+    }
 
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
-            }
+    /**
+     * Explores the graph from and to the given landmark and stores the weights. Only the first landmark (lmIdx == 0)
+     * sets the subnetwork of the explored nodes.
+     *
+     * @return false if the first landmark reached a node of another subnetwork
+     */
+    private boolean calcLandmarkWeights(int lmIdx, int lmNodeId, EdgeFilter accessFilter, byte[] subnetworks, int subnetworkId) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new RuntimeException("Thread was interrupted for landmark " + lmIdx);
+        }
+        LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, false);
+        explorer.setStartNode(lmNodeId);
+        explorer.runAlgo();
+        explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, FROM_OFFSET);
 
-            if (logDetails && lmIdx % logOffset == 0)
-                LOGGER.info("Set landmarks weights [" + weighting + "]. "
-                        + "Progress " + (int) (100.0 * lmIdx / tmpLandmarkNodeIds.length) + "%");
+        // set subnetwork id to all explored nodes, but do this only for the first landmark
+        if (lmIdx == 0) {
+            if (explorer.setSubnetworks(subnetworks, subnetworkId))
+                return false;
         }
 
-        // TODO set weight to SHORT_MAX if entry has either no 'from' or no 'to' entry
-        landmarkIDs.add(tmpLandmarkNodeIds);
+        explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, true);
+        explorer.setStartNode(lmNodeId);
+        explorer.runAlgo();
+        explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, TO_OFFSET);
+
+        if (lmIdx == 0) {
+            if (explorer.setSubnetworks(subnetworks, subnetworkId))
+                return false;
+        }
+
+        int logOffset = Math.max(1, landmarks / 2);
+        if (logDetails && lmIdx % logOffset == 0)
+            LOGGER.info("Set landmarks weights [" + weighting + "]. "
+                    + "Progress " + (int) (100.0 * lmIdx / landmarks) + "%");
         return true;
     }
 
@@ -27,6 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * This class does the preprocessing for the ALT algorithm (A* , landmark, triangle inequality).
@@ -95,6 +96,22 @@ public class PrepareLandmarks {
         return this;
     }
 
+    /**
+     * Sets the number of threads used to calculate the landmark weights of this preparation.
+     */
+    public PrepareLandmarks setLandmarkThreads(int landmarkThreads) {
+        lms.setLandmarkThreads(landmarkThreads);
+        return this;
+    }
+
+    /**
+     * Sets the executor that calculates the landmark weights, see {@link LandmarkStorage#setExecutorService}
+     */
+    public PrepareLandmarks setExecutorService(ExecutorService executorService) {
+        lms.setExecutorService(executorService);
+        return this;
+    }
+
     public LandmarkStorage getLandmarkStorage() {
         return lms;
     }
@@ -0,0 +1,65 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.storage.EdgeWeightStorage;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Reads the weights and travel times of the edges of the base graph from an {@link EdgeWeightStorage} that was
+ * filled using the wrapped weighting, instead of calculating them for every edge again. The virtual edges of a query
+ * graph are still calculated by the wrapped weighting. The turn costs are also taken from the wrapped weighting.
+ */
+public class MaterializedWeighting extends AbstractAdjustedWeighting {
+    private final EdgeWeightStorage storage;
+    private final int edges;
+
+    public MaterializedWeighting(Weighting superWeighting, EdgeWeightStorage storage) {
+        super(superWeighting);
+        this.storage = storage;
+        this.edges = storage.getEdges();
+    }
+
+    @Override
+    public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
+        int edge = edgeState.getEdge();
+        if (edge >= edges)
+            return superWeighting.calcEdgeWeight(edgeState, reverse);
+        // the storage direction is from nodeA to nodeB
+        return storage.getWeight(edge, reverse != edgeState.get(EdgeIteratorState.REVERSE_STATE));
+    }
+
+    @Override
+    public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
+        int edge = edgeState.getEdge();
+        if (edge >= edges)
+            return superWeighting.calcEdgeMillis(edgeState, reverse);
+        int millis = storage.getMillis(edge, reverse != edgeState.get(EdgeIteratorState.REVERSE_STATE));
+        return millis == EdgeWeightStorage.NO_MILLIS ? superWeighting.calcEdgeMillis(edgeState, reverse) : millis;
+    }
+
+    @Override
+    public String getName() {
+        return superWeighting.getName();
+    }
+
+    @Override
+    public String toString() {
+        return "materialized|" + superWeighting.toString();
+    }
+}
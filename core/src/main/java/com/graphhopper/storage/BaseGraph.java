@@ -27,6 +27,7 @@ import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 
 import java.io.Closeable;
+import java.util.Arrays;
 import java.util.Collections;
 
 import static com.graphhopper.util.Helper.nf;
@@ -52,14 +53,28 @@ public class BaseGraph implements Graph, Closeable {
     final BitUtil bitUtil;
     // length | nodeA | nextNode | ... | nodeB
     // as we use integer index in 'edges' area => 'geometry' area is limited to 4GB (we use pos&neg values!)
+    // with compressed geometry: varint(length) | varint(bytes) | zig-zag varint deltas of the pillar nodes, the first
+    // lat/lon delta is relative to nodeA. the elevation of the first pillar node is stored as is
     private final DataAccess wayGeometry;
+    private boolean compressedGeometry;
     private final Directory dir;
     private final int segmentSize;
     private boolean initialized = false;
     private long maxGeoRef;
 
     public BaseGraph(Directory dir, int intsForFlags, boolean withElevation, boolean withTurnCosts, int segmentSize) {
+        this(dir, intsForFlags, withElevation, withTurnCosts, segmentSize, false);
+    }
+
+    /**
+     * @param compressedGeometry if true the pillar nodes are stored as variable length deltas, which usually needs
+     *                           about half the space. This is only used for new graphs, for existing graphs the stored
+     *                           format is used. The coordinates of the tower nodes must not be changed after adding
+     *                           the geometry of their edges.
+     */
+    public BaseGraph(Directory dir, int intsForFlags, boolean withElevation, boolean withTurnCosts, int segmentSize, boolean compressedGeometry) {
         this.dir = dir;
+        this.compressedGeometry = compressedGeometry;
         this.bitUtil = BitUtil.LITTLE;
         this.wayGeometry = dir.create("geometry", segmentSize);
         this.stringIndex = new StringIndex(dir, 1000, segmentSize);
@@ -106,12 +121,18 @@ public class BaseGraph implements Graph, Closeable {
                 wayGeometry.getHeader(4),
                 wayGeometry.getHeader(8)
         );
+        compressedGeometry = wayGeometry.getHeader(12) == 1;
     }
 
     private void setWayGeometryHeader() {
         wayGeometry.setHeader(0, Constants.VERSION_GEOMETRY);
         wayGeometry.setHeader(4, bitUtil.getIntLow(maxGeoRef));
         wayGeometry.setHeader(8, bitUtil.getIntHigh(maxGeoRef));
+        wayGeometry.setHeader(12, compressedGeometry ? 1 : 0);
+    }
+
+    public boolean isCompressedGeometry() {
+        return compressedGeometry;
     }
 
     private void setInitialized() {
@@ -145,6 +166,8 @@ public class BaseGraph implements Graph, Closeable {
     public synchronized void freeze() {
         if (isFrozen())
             throw new IllegalStateException("base graph already frozen");
+        if (supportsTurnCosts() && !turnCostStorage.isSorted())
+            turnCostStorage.sort();
         store.setFrozen(true);
     }
 
@@ -336,6 +359,10 @@ public class BaseGraph implements Graph, Closeable {
                         + "D for graph which is " + nodeAccess.getDimension() + "D");
 
             long existingGeoRef = Helper.toUnsignedLong(store.getGeoRef(edgePointer));
+            if (compressedGeometry) {
+                setCompressedWayGeometry(pillarNodes, edgePointer, reverse, existingGeoRef);
+                return;
+            }
 
             int len = pillarNodes.size();
             int dim = nodeAccess.getDimension();
@@ -391,6 +418,150 @@ public class BaseGraph implements Graph, Closeable {
         return bytes;
     }
 
+    private void setCompressedWayGeometry(PointList pillarNodes, long edgePointer, boolean reverse, long existingGeoRef) {
+        if (reverse)
+            pillarNodes.reverse();
+        byte[] bytes = createCompressedWayGeometryBytes(pillarNodes, store.getNodeA(edgePointer));
+        long geoRef = existingGeoRef;
+        if (geoRef == 0 || bytes.length > getCompressedWayGeometryLength(geoRef * 4L))
+            // the count is already included in the bytes
+            geoRef = nextGeoRef((bytes.length + 3) / 4 - 1);
+        long geoRefPosition = geoRef * 4;
+        ensureGeometry(geoRefPosition, bytes.length);
+        wayGeometry.setBytes(geoRefPosition, bytes, bytes.length);
+        store.setGeoRef(edgePointer, Helper.toSignedInt(geoRef));
+    }
+
+    private byte[] createCompressedWayGeometryBytes(PointList pillarNodes, int nodeA) {
+        int len = pillarNodes.size();
+        boolean is3D = nodeAccess.is3D();
+        // a varint of an int needs at most 5 bytes
+        byte[] data = new byte[len * nodeAccess.getDimension() * 5];
+        int dataLength = 0;
+        int prevLat = Helper.degreeToInt(nodeAccess.getLat(nodeA));
+        int prevLon = Helper.degreeToInt(nodeAccess.getLon(nodeA));
+        int prevEle = 0;
+        for (int i = 0; i < len; i++) {
+            int lat = Helper.degreeToInt(pillarNodes.getLat(i));
+            int lon = Helper.degreeToInt(pillarNodes.getLon(i));
+            dataLength = writeVarInt(data, dataLength, zigZag(lat - prevLat));
+            dataLength = writeVarInt(data, dataLength, zigZag(lon - prevLon));
+            prevLat = lat;
+            prevLon = lon;
+            if (is3D) {
+                int ele = Helper.eleToInt(pillarNodes.getEle(i));
+                dataLength = writeVarInt(data, dataLength, zigZag(ele - prevEle));
+                prevEle = ele;
+            }
+        }
+        byte[] bytes = new byte[10 + dataLength];
+        int offset = writeVarInt(bytes, 0, len);
+        offset = writeVarInt(bytes, offset, dataLength);
+        System.arraycopy(data, 0, bytes, offset, dataLength);
+        return Arrays.copyOf(bytes, offset + dataLength);
+    }
+
+    /**
+     * @return the number of bytes used by the compressed geometry at the given position, including its header
+     */
+    private int getCompressedWayGeometryLength(long geoRefPosition) {
+        long count = readVarInt(geoRefPosition);
+        long dataLength = readVarInt(geoRefPosition + (count >>> 32));
+        return (int) ((count >>> 32) + (dataLength >>> 32) + (int) dataLength);
+    }
+
+    private PointList fetchCompressedWayGeometry(long geoRefPosition, boolean reverse, FetchMode mode, int nodeA, int baseNode, int adjNode) {
+        long tmp = readVarInt(geoRefPosition);
+        int count = (int) tmp;
+        long pointer = geoRefPosition + (tmp >>> 32);
+        tmp = readVarInt(pointer);
+        int dataLength = (int) tmp;
+        pointer += tmp >>> 32;
+        byte[] data = new byte[dataLength];
+        wayGeometry.getBytes(pointer, data, dataLength);
+
+        boolean is3D = nodeAccess.is3D();
+        PointList pillarNodes = new PointList(getPointListLength(count, mode), is3D);
+        if (reverse) {
+            if (mode == FetchMode.ALL || mode == FetchMode.PILLAR_AND_ADJ)
+                pillarNodes.add(nodeAccess, adjNode);
+        } else if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
+            pillarNodes.add(nodeAccess, baseNode);
+
+        int lat = Helper.degreeToInt(nodeAccess.getLat(nodeA));
+        int lon = Helper.degreeToInt(nodeAccess.getLon(nodeA));
+        int ele = 0;
+        int index = 0;
+        for (int i = 0; i < count; i++) {
+            tmp = readVarInt(data, index);
+            lat += unZigZag((int) tmp);
+            tmp = readVarInt(data, (int) (tmp >>> 32));
+            lon += unZigZag((int) tmp);
+            index = (int) (tmp >>> 32);
+            if (is3D) {
+                tmp = readVarInt(data, index);
+                ele += unZigZag((int) tmp);
+                index = (int) (tmp >>> 32);
+                pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon), Helper.intToEle(ele));
+            } else {
+                pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon));
+            }
+        }
+
+        if (reverse) {
+            if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
+                pillarNodes.add(nodeAccess, baseNode);
+
+            pillarNodes.reverse();
+        } else if (mode == FetchMode.ALL || mode == FetchMode.PILLAR_AND_ADJ)
+            pillarNodes.add(nodeAccess, adjNode);
+
+        return pillarNodes;
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return the value in the lower 32 bits and the offset after the value in the upper 32 bits
+     */
+    private static long readVarInt(byte[] bytes, int offset) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[offset++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return (value & 0xFFFF_FFFFL) | ((long) offset << 32);
+        }
+    }
+
+    /**
+     * @return the value in the lower 32 bits and the number of bytes it occupies in the upper 32 bits
+     */
+    private long readVarInt(long pointer) {
+        int value = 0;
+        for (int i = 0; ; i++) {
+            byte b = wayGeometry.getByte(pointer + i);
+            value |= (b & 0x7F) << (7 * i);
+            if (b >= 0)
+                return (value & 0xFFFF_FFFFL) | ((long) (i + 1) << 32);
+        }
+    }
+
+    private static int writeVarInt(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
     private PointList fetchWayGeometry_(long edgePointer, boolean reverse, FetchMode mode, int baseNode, int adjNode) {
         if (mode == FetchMode.TOWER_ONLY) {
             // no reverse handling required as adjNode and baseNode is already properly switched
@@ -400,6 +571,8 @@ public class BaseGraph implements Graph, Closeable {
             return pillarNodes;
         }
         long geoRef = Helper.toUnsignedLong(store.getGeoRef(edgePointer));
+        if (compressedGeometry && geoRef > 0)
+            return fetchCompressedWayGeometry(geoRef * 4L, reverse, mode, store.getNodeA(edgePointer), baseNode, adjNode);
         int count = 0;
         byte[] bytes = null;
         if (geoRef > 0) {
@@ -498,6 +671,7 @@ public class BaseGraph implements Graph, Closeable {
         private boolean withTurnCosts = false;
         private long bytes = 100;
         private int segmentSize = -1;
+        private boolean compressedGeometry = false;
 
         /**
          * @deprecated Used for GraphHopperStorage -> BaseGraph migration, but will be removed
@@ -535,13 +709,18 @@ public class BaseGraph implements Graph, Closeable {
             return this;
         }
 
+        public Builder setCompressedGeometry(boolean compressedGeometry) {
+            this.compressedGeometry = compressedGeometry;
+            return this;
+        }
+
         public Builder setBytes(long bytes) {
             this.bytes = bytes;
             return this;
         }
 
         public BaseGraph build() {
-            return new BaseGraph(directory, intsForFlags, withElevation, withTurnCosts, segmentSize);
+            return new BaseGraph(directory, intsForFlags, withElevation, withTurnCosts, segmentSize, compressedGeometry);
         }
 
         public BaseGraph create() {
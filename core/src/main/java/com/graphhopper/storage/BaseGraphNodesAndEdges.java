@@ -18,6 +18,8 @@
 
 package com.graphhopper.storage;
 
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.util.Constants;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GHUtility;
@@ -370,6 +372,72 @@ class BaseGraphNodesAndEdges {
         return nodes.getInt(nodePointer + N_TC);
     }
 
+    /**
+     * Changes the ids of all nodes and edges. The references between nodes and edges are updated and the entries are
+     * moved to their new positions in place, one cycle of the permutation at a time. So apart from the given arrays
+     * this only needs memory for a bitset per node and edge.
+     */
+    public void relabel(int[] oldToNewNodes, int[] oldToNewEdges) {
+        if (frozen)
+            throw new IllegalStateException("Cannot relabel nodes and edges of a frozen graph");
+        if (oldToNewNodes.length != nodeCount || oldToNewEdges.length != edgeCount)
+            throw new IllegalArgumentException("Invalid mapping sizes: " + oldToNewNodes.length + " nodes and " + oldToNewEdges.length
+                    + " edges, but graph has " + nodeCount + " nodes and " + edgeCount + " edges");
+        for (int edge = 0; edge < edgeCount; edge++) {
+            long edgePointer = toEdgePointer(edge);
+            setNodeA(edgePointer, oldToNewNodes[getNodeA(edgePointer)]);
+            setNodeB(edgePointer, oldToNewNodes[getNodeB(edgePointer)]);
+            int linkA = getLinkA(edgePointer);
+            setLinkA(edgePointer, EdgeIterator.Edge.isValid(linkA) ? oldToNewEdges[linkA] : NO_EDGE);
+            int linkB = getLinkB(edgePointer);
+            setLinkB(edgePointer, EdgeIterator.Edge.isValid(linkB) ? oldToNewEdges[linkB] : NO_EDGE);
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            long nodePointer = toNodePointer(node);
+            int edgeRef = getEdgeRef(nodePointer);
+            setEdgeRef(nodePointer, EdgeIterator.Edge.isValid(edgeRef) ? oldToNewEdges[edgeRef] : NO_EDGE);
+        }
+        permute(nodes, nodeEntryBytes, oldToNewNodes);
+        permute(edges, edgeEntryBytes, oldToNewEdges);
+    }
+
+    private static void permute(DataAccess da, int entryBytes, int[] oldToNew) {
+        int[] entry = new int[entryBytes / 4];
+        int[] tmp = new int[entryBytes / 4];
+        GHBitSet moved = new GHBitSetImpl(oldToNew.length);
+        for (int start = 0; start < oldToNew.length; start++) {
+            if (moved.contains(start))
+                continue;
+            // entry always holds the original entry at pos, which we move to its new position
+            readEntry(da, (long) start * entryBytes, entry);
+            int pos = start;
+            while (true) {
+                moved.add(pos);
+                int target = oldToNew[pos];
+                if (target == start) {
+                    writeEntry(da, (long) target * entryBytes, entry);
+                    break;
+                }
+                readEntry(da, (long) target * entryBytes, tmp);
+                writeEntry(da, (long) target * entryBytes, entry);
+                int[] swap = entry;
+                entry = tmp;
+                tmp = swap;
+                pos = target;
+            }
+        }
+    }
+
+    private static void readEntry(DataAccess da, long pointer, int[] entry) {
+        for (int i = 0; i < entry.length; i++)
+            entry[i] = da.getInt(pointer + 4L * i);
+    }
+
+    private static void writeEntry(DataAccess da, long pointer, int[] entry) {
+        for (int i = 0; i < entry.length; i++)
+            da.setInt(pointer + 4L * i, entry[i]);
+    }
+
     public void setFrozen(boolean frozen) {
         this.frozen = frozen;
     }
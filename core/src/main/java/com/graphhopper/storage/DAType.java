@@ -53,6 +53,17 @@ public class DAType {
      * embedded data stores.
      */
     public static final DAType MMAP_RO = new DAType(MemRef.MMAP, true, false, false);
+    /**
+     * The DA object is hold entirely in memory but outside of the JVM heap, i.e. it does not put pressure on the
+     * garbage collector. The size is limited by -XX:MaxDirectMemorySize instead, which defaults to -Xmx. The memory is
+     * released in close(). Loading and flushing is a no-op. See OffHeapDataAccess.
+     */
+    public static final DAType OFFHEAP = new DAType(MemRef.OFF_HEAP, false, false, true);
+    /**
+     * Like OFFHEAP but the data is read from and written to disc if the equivalent methods are called. The file
+     * format is the same as for RAM_STORE.
+     */
+    public static final DAType OFFHEAP_STORE = new DAType(MemRef.OFF_HEAP, true, false, true);
     private final MemRef memRef;
     private final boolean storing;
     private final boolean integ;
@@ -80,6 +91,10 @@ public class DAType {
             type = DAType.MMAP;
         else if (dataAccess.contains("UNSAFE"))
             throw new IllegalArgumentException("UNSAFE option is no longer supported, see #1620");
+        else if (dataAccess.contains("OFFHEAP_STORE"))
+            type = DAType.OFFHEAP_STORE;
+        else if (dataAccess.contains("OFFHEAP"))
+            type = DAType.OFFHEAP;
         else if (dataAccess.contains("RAM_STORE"))
             type = DAType.RAM_STORE;
         else
@@ -109,6 +124,13 @@ public class DAType {
         return memRef == MemRef.MMAP;
     }
 
+    /**
+     * @return true if data resides in memory but outside of the JVM heap.
+     */
+    public boolean isOffHeap() {
+        return memRef == MemRef.OFF_HEAP;
+    }
+
     /**
      * Temporary data or store (with loading and storing)? default is false
      */
@@ -128,6 +150,8 @@ public class DAType {
         String str;
         if (getMemRef() == MemRef.MMAP)
             str = "MMAP";
+        else if (getMemRef() == MemRef.OFF_HEAP)
+            str = "OFFHEAP";
         else
             str = "RAM";
 
@@ -164,6 +188,6 @@ public class DAType {
     }
 
     public enum MemRef {
-        HEAP, MMAP
+        HEAP, MMAP, OFF_HEAP
     }
 }
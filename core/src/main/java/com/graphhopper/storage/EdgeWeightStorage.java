@@ -0,0 +1,119 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * DataAccess-based storage of the precalculated weights and travel times of all edges of a base graph for one
+ * weighting, see {@link com.graphhopper.routing.weighting.MaterializedWeighting}. The weights of both directions of
+ * an edge are stored next to each other as floats, so looking up a weight is a single memory access. The directions
+ * refer to the storage direction of the edges, i.e. forward means from nodeA to nodeB.
+ */
+public class EdgeWeightStorage {
+    // |fwd_weight|bwd_weight|fwd_millis|bwd_millis|
+    private static final int E_FWD_WEIGHT = 0;
+    private static final int E_BWD_WEIGHT = 4;
+    private static final int E_FWD_MILLIS = 8;
+    private static final int E_BWD_MILLIS = 12;
+    private static final int BYTES_PER_EDGE = 16;
+    // used for travel times that cannot be stored, e.g. for inaccessible edges
+    public static final int NO_MILLIS = -1;
+
+    private final DataAccess edgeWeights;
+    private int edges;
+
+    public EdgeWeightStorage(Directory dir, String name, int segmentSize) {
+        String daName = "edge_weights_" + name;
+        this.edgeWeights = dir.create(daName, dir.getDefaultType(daName, true), segmentSize);
+    }
+
+    /**
+     * Creates the storage and fills it with the weights and travel times of all edges of the given graph.
+     */
+    public EdgeWeightStorage prepare(BaseGraph graph, Weighting weighting) {
+        edges = graph.getEdges();
+        edgeWeights.create((long) edges * BYTES_PER_EDGE);
+        edgeWeights.ensureCapacity((long) edges * BYTES_PER_EDGE);
+        for (int edge = 0; edge < edges; edge++) {
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            long pointer = (long) edge * BYTES_PER_EDGE;
+            double fwdWeight = weighting.calcEdgeWeight(edgeState, false);
+            double bwdWeight = weighting.calcEdgeWeight(edgeState, true);
+            edgeWeights.setInt(pointer + E_FWD_WEIGHT, Float.floatToRawIntBits((float) fwdWeight));
+            edgeWeights.setInt(pointer + E_BWD_WEIGHT, Float.floatToRawIntBits((float) bwdWeight));
+            edgeWeights.setInt(pointer + E_FWD_MILLIS, Double.isInfinite(fwdWeight) ? NO_MILLIS : toMillis(weighting.calcEdgeMillis(edgeState, false)));
+            edgeWeights.setInt(pointer + E_BWD_MILLIS, Double.isInfinite(bwdWeight) ? NO_MILLIS : toMillis(weighting.calcEdgeMillis(edgeState, true)));
+        }
+        return this;
+    }
+
+    private static int toMillis(long millis) {
+        return millis < 0 || millis > Integer.MAX_VALUE ? NO_MILLIS : (int) millis;
+    }
+
+    public boolean loadExisting() {
+        if (!edgeWeights.loadExisting())
+            return false;
+        if (edgeWeights.getHeader(0) != BYTES_PER_EDGE)
+            throw new IllegalStateException("Number of bytes per edge weight entry does not match the current configuration: " + edgeWeights.getHeader(0) + " vs. " + BYTES_PER_EDGE);
+        edges = edgeWeights.getHeader(4);
+        return true;
+    }
+
+    public void flush() {
+        edgeWeights.setHeader(0, BYTES_PER_EDGE);
+        edgeWeights.setHeader(4, edges);
+        edgeWeights.flush();
+    }
+
+    public void close() {
+        edgeWeights.close();
+    }
+
+    public boolean isClosed() {
+        return edgeWeights.isClosed();
+    }
+
+    public long getCapacity() {
+        return edgeWeights.getCapacity();
+    }
+
+    /**
+     * @return the number of edges this storage contains weights for
+     */
+    public int getEdges() {
+        return edges;
+    }
+
+    /**
+     * @param reverse true if the edge is traversed from nodeB to nodeA
+     */
+    public double getWeight(int edge, boolean reverse) {
+        return Float.intBitsToFloat(edgeWeights.getInt((long) edge * BYTES_PER_EDGE + (reverse ? E_BWD_WEIGHT : E_FWD_WEIGHT)));
+    }
+
+    /**
+     * @param reverse true if the edge is traversed from nodeB to nodeA
+     * @return the travel time in milliseconds or {@link #NO_MILLIS}
+     */
+    public int getMillis(int edge, boolean reverse) {
+        return edgeWeights.getInt((long) edge * BYTES_PER_EDGE + (reverse ? E_BWD_MILLIS : E_FWD_MILLIS));
+    }
+}
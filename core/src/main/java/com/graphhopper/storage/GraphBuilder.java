@@ -32,6 +32,7 @@ public class GraphBuilder {
     private boolean turnCosts;
     private long bytes = 100;
     private int segmentSize = -1;
+    private boolean compressedGeometry;
 
     public static GraphBuilder start(TagParserManager tagParserManager) {
         return new GraphBuilder(tagParserManager);
@@ -78,13 +79,21 @@ public class GraphBuilder {
         return this;
     }
 
+    /**
+     * Stores the pillar nodes as variable length deltas, see {@link BaseGraph#BaseGraph(Directory, int, boolean, boolean, int, boolean)}
+     */
+    public GraphBuilder setCompressedGeometry(boolean compressedGeometry) {
+        this.compressedGeometry = compressedGeometry;
+        return this;
+    }
+
     /**
      * Default graph is a {@link GraphHopperStorage} with an in memory directory and disabled storing on flush.
      * Afterwards you'll need to call {@link GraphHopperStorage#create} to have a usable object. Better use
      * {@link #create} directly.
      */
     public GraphHopperStorage build() {
-        return new GraphHopperStorage(dir, tagParserManager, elevation, turnCosts, segmentSize);
+        return new GraphHopperStorage(dir, tagParserManager, elevation, turnCosts, segmentSize, compressedGeometry);
     }
 
     /**
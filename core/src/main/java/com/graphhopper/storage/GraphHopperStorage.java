@@ -48,13 +48,20 @@ public final class GraphHopperStorage implements Graph, Closeable {
      * Use {@link GraphBuilder} to create a graph
      */
     public GraphHopperStorage(Directory dir, TagParserManager tagParserManager, boolean withElevation, boolean withTurnCosts, int segmentSize) {
+        this(dir, tagParserManager, withElevation, withTurnCosts, segmentSize, false);
+    }
+
+    /**
+     * Use {@link GraphBuilder} to create a graph
+     */
+    public GraphHopperStorage(Directory dir, TagParserManager tagParserManager, boolean withElevation, boolean withTurnCosts, int segmentSize, boolean compressedGeometry) {
         if (tagParserManager == null)
             throw new IllegalArgumentException("EncodingManager needs to be non-null since 0.7. Create one using EncodingManager.create or EncodingManager.create(flagEncoderFactory, ghLocation)");
 
         this.tagParserManager = tagParserManager;
         this.dir = dir;
         this.properties = new StorableProperties(dir);
-        baseGraph = new BaseGraph(dir, tagParserManager.getIntsForFlags(), withElevation, withTurnCosts, segmentSize);
+        baseGraph = new BaseGraph(dir, tagParserManager.getIntsForFlags(), withElevation, withTurnCosts, segmentSize, compressedGeometry);
     }
 
     /**
@@ -0,0 +1,113 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.shapes.BBox;
+
+import java.util.Arrays;
+
+/**
+ * Sorts the nodes of a {@link BaseGraph} along a Hilbert curve and the edges by their (new) smaller node id. Nodes that
+ * are close to each other then usually have close ids and their entries as well as the entries of their edges end up
+ * in the same memory pages, which reduces cache misses and page faults when the graph is memory-mapped.
+ * <p>
+ * This must be done before the graph is frozen and before any data that refers to node or edge ids (location index,
+ * CH, landmarks) is created. Geometry and names are referenced from the edges and do not need to be moved. Turn cost
+ * entries are updated to the new edge ids.
+ */
+public class HilbertGraphSorter {
+    // the Hilbert curve fills a 2^16 x 2^16 grid
+    private static final int ORDER = 16;
+
+    public static void sort(BaseGraph graph) {
+        int[] oldToNewNodes = sortNodes(graph);
+        int[] oldToNewEdges = sortEdges(graph, oldToNewNodes);
+        relabel(graph, oldToNewNodes, oldToNewEdges);
+    }
+
+    static int[] sortNodes(BaseGraph graph) {
+        int nodes = graph.getNodes();
+        BBox bounds = graph.getBounds();
+        NodeAccess na = graph.getNodeAccess();
+        // upper bits: hilbert index (< 2^32), lower 31 bits: node
+        long[] keys = new long[nodes];
+        for (int node = 0; node < nodes; node++)
+            keys[node] = (hilbertIndex(na.getLat(node), na.getLon(node), bounds) << 31) | node;
+        Arrays.sort(keys);
+        int[] oldToNewNodes = new int[nodes];
+        for (int i = 0; i < nodes; i++)
+            oldToNewNodes[(int) (keys[i] & Integer.MAX_VALUE)] = i;
+        return oldToNewNodes;
+    }
+
+    static int[] sortEdges(BaseGraph graph, int[] oldToNewNodes) {
+        int edges = graph.getEdges();
+        long[] keys = new long[edges];
+        for (int edge = 0; edge < edges; edge++) {
+            long edgePointer = graph.store.toEdgePointer(edge);
+            int minNode = Math.min(oldToNewNodes[graph.store.getNodeA(edgePointer)], oldToNewNodes[graph.store.getNodeB(edgePointer)]);
+            keys[edge] = ((long) minNode << 31) | edge;
+        }
+        Arrays.sort(keys);
+        int[] oldToNewEdges = new int[edges];
+        for (int i = 0; i < edges; i++)
+            oldToNewEdges[(int) (keys[i] & Integer.MAX_VALUE)] = i;
+        return oldToNewEdges;
+    }
+
+    static void relabel(BaseGraph graph, int[] oldToNewNodes, int[] oldToNewEdges) {
+        graph.store.relabel(oldToNewNodes, oldToNewEdges);
+        if (graph.turnCostStorage != null)
+            graph.turnCostStorage.relabelEdges(oldToNewEdges);
+    }
+
+    static long hilbertIndex(double lat, double lon, BBox bounds) {
+        int n = 1 << ORDER;
+        return hilbertIndex(toGrid(lon, bounds.minLon, bounds.maxLon, n), toGrid(lat, bounds.minLat, bounds.maxLat, n), n);
+    }
+
+    private static int toGrid(double value, double min, double max, int n) {
+        if (!(max > min))
+            return 0;
+        int cell = (int) ((value - min) / (max - min) * n);
+        return Math.max(0, Math.min(n - 1, cell));
+    }
+
+    /**
+     * @return the position of the cell (x, y) on the Hilbert curve that fills the n x n grid, n must be a power of two
+     */
+    static long hilbertIndex(int x, int y, int n) {
+        long d = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant so that the curve is continuous
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
+        }
+        return d;
+    }
+}
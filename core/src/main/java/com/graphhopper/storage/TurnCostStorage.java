@@ -17,6 +17,10 @@
  */
 package com.graphhopper.storage;
 
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.sorting.IndirectSort;
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.ev.TurnCost;
 import com.graphhopper.util.EdgeIterator;
@@ -30,6 +34,12 @@ import com.graphhopper.util.EdgeIterator;
  * <p>
  * In practice, the IntRefs are used to store generalized travel costs per turn relation per vehicle type.
  * In practice, we only store 0 or infinity. (Can turn, or cannot turn.)
+ * <p>
+ * The entries of each via node form a linked list. After {@link #sort()} (or a bulk load, see
+ * {@link #startBulkLoad()}) the entries of each node are stored contiguously and ordered by from and to edge, which
+ * makes the lookup a short sequential scan, and a bit set answers the lookup for nodes without any entries without
+ * touching the node or turn cost storage. The layout stays a valid linked list, so entries can still be added
+ * afterwards, but this switches back to the plain list traversal until the next call of {@link #sort()}.
  *
  * @author Karl Hübner
  * @author Peter Karich
@@ -44,10 +54,20 @@ public class TurnCostStorage {
     private static final int TC_FLAGS = 8;
     private static final int TC_NEXT = 12;
     private static final int BYTES_PER_ENTRY = 16;
+    // the fields of the entries that are buffered during a bulk load
+    private static final int BULK_VIA = 0;
+    private static final int BULK_FROM = 1;
+    private static final int BULK_TO = 2;
+    private static final int BULK_FLAGS = 3;
+    private static final int BULK_INTS_PER_ENTRY = 4;
 
     private BaseGraph baseGraph;
     private DataAccess turnCosts;
     private int turnCostsCount;
+    private boolean sorted;
+    // contains the nodes that have at least one entry, only available while the entries are sorted
+    private GHBitSet nodesWithTurnCosts;
+    private IntArrayList bulkEntries;
 
     public TurnCostStorage(BaseGraph baseGraph, DataAccess turnCosts) {
         this.baseGraph = baseGraph;
@@ -62,6 +82,7 @@ public class TurnCostStorage {
     public void flush() {
         turnCosts.setHeader(0, BYTES_PER_ENTRY);
         turnCosts.setHeader(1 * 4, turnCostsCount);
+        turnCosts.setHeader(2 * 4, sorted ? 1 : 0);
         turnCosts.flush();
     }
 
@@ -81,9 +102,133 @@ public class TurnCostStorage {
             throw new IllegalStateException("Number of bytes per turn cost entry does not match the current configuration: " + turnCosts.getHeader(0) + " vs. " + BYTES_PER_ENTRY);
         }
         turnCostsCount = turnCosts.getHeader(4);
+        sorted = turnCosts.getHeader(2 * 4) == 1;
+        if (sorted)
+            nodesWithTurnCosts = findNodesWithTurnCosts();
         return true;
     }
 
+    private GHBitSet findNodesWithTurnCosts() {
+        NodeAccess nodeAccess = baseGraph.getNodeAccess();
+        GHBitSet result = new GHBitSetImpl(baseGraph.getNodes());
+        for (int node = 0; node < baseGraph.getNodes(); node++)
+            if (nodeAccess.getTurnCostIndex(node) != NO_TURN_ENTRY)
+                result.add(node);
+        return result;
+    }
+
+    /**
+     * @return true if the entries are stored in the read-optimized layout, see {@link #sort()}
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Rewrites all entries such that the entries of each via node are stored contiguously and ordered by from and to
+     * edge. Calling this once all entries were added speeds up the lookups.
+     */
+    public void sort() {
+        if (bulkEntries != null)
+            throw new IllegalStateException("Cannot sort turn cost storage during a bulk load");
+        rebuild(new IntArrayList());
+    }
+
+    /**
+     * Starts a bulk load: the entries added by {@link #set} are only buffered until {@link #finishBulkLoad()} is
+     * called, which is much faster than adding them one by one when there are many of them, e.g. when reading the
+     * turn restrictions of an OSM file. The buffered entries cannot be read before the bulk load is finished.
+     */
+    public void startBulkLoad() {
+        if (bulkEntries != null)
+            throw new IllegalStateException("Bulk load of turn cost storage was already started");
+        bulkEntries = new IntArrayList();
+    }
+
+    /**
+     * Adds all entries buffered since {@link #startBulkLoad()} and sorts the storage, see {@link #sort()}.
+     */
+    public void finishBulkLoad() {
+        if (bulkEntries == null)
+            throw new IllegalStateException("Bulk load of turn cost storage was not started");
+        IntArrayList entries = bulkEntries;
+        bulkEntries = null;
+        rebuild(entries);
+    }
+
+    /**
+     * Rewrites the existing and the given new entries in the sorted layout. Entries for the same turn relation are
+     * merged by ORing their flags, like {@link #merge} does.
+     */
+    private void rebuild(IntArrayList entries) {
+        NodeAccess nodeAccess = baseGraph.getNodeAccess();
+        for (int node = 0; node < baseGraph.getNodes(); node++) {
+            int i = 0;
+            for (int index = nodeAccess.getTurnCostIndex(node); index != NO_TURN_ENTRY; index = turnCosts.getInt((long) index * BYTES_PER_ENTRY + TC_NEXT)) {
+                long pointer = (long) index * BYTES_PER_ENTRY;
+                entries.add(node, turnCosts.getInt(pointer + TC_FROM));
+                entries.add(turnCosts.getInt(pointer + TC_TO), turnCosts.getInt(pointer + TC_FLAGS));
+                if (i++ > 1000)
+                    throw new IllegalStateException("something went wrong: there seems to be no end of the turn cost-list!?");
+            }
+        }
+
+        final int[] buffer = entries.buffer;
+        int[] order = IndirectSort.mergesort(0, entries.size() / BULK_INTS_PER_ENTRY, (a, b) -> {
+            int pa = a * BULK_INTS_PER_ENTRY, pb = b * BULK_INTS_PER_ENTRY;
+            int result = Integer.compare(buffer[pa + BULK_VIA], buffer[pb + BULK_VIA]);
+            if (result == 0)
+                result = Integer.compare(buffer[pa + BULK_FROM], buffer[pb + BULK_FROM]);
+            return result == 0 ? Integer.compare(buffer[pa + BULK_TO], buffer[pb + BULK_TO]) : result;
+        });
+
+        nodesWithTurnCosts = new GHBitSetImpl(baseGraph.getNodes());
+        turnCostsCount = 0;
+        long previousPointer = -1;
+        int previousVia = -1, previousFrom = -1, previousTo = -1;
+        for (int i : order) {
+            int p = i * BULK_INTS_PER_ENTRY;
+            int via = buffer[p + BULK_VIA], from = buffer[p + BULK_FROM], to = buffer[p + BULK_TO];
+            if (via == previousVia && from == previousFrom && to == previousTo) {
+                turnCosts.setInt(previousPointer + TC_FLAGS, turnCosts.getInt(previousPointer + TC_FLAGS) | buffer[p + BULK_FLAGS]);
+                continue;
+            }
+            ensureTurnCostIndex(turnCostsCount);
+            long pointer = (long) turnCostsCount * BYTES_PER_ENTRY;
+            if (via == previousVia) {
+                turnCosts.setInt(previousPointer + TC_NEXT, turnCostsCount);
+            } else {
+                nodeAccess.setTurnCostIndex(via, turnCostsCount);
+                nodesWithTurnCosts.add(via);
+            }
+            turnCosts.setInt(pointer + TC_FROM, from);
+            turnCosts.setInt(pointer + TC_TO, to);
+            turnCosts.setInt(pointer + TC_FLAGS, buffer[p + BULK_FLAGS]);
+            turnCosts.setInt(pointer + TC_NEXT, NO_TURN_ENTRY);
+            turnCostsCount++;
+            previousPointer = pointer;
+            previousVia = via;
+            previousFrom = from;
+            previousTo = to;
+        }
+        sorted = true;
+    }
+
+    /**
+     * Changes the edge ids of all turn cost entries, see {@link BaseGraphNodesAndEdges#relabel}. The entries of a node
+     * are referenced from the node, so they do not depend on the node ids.
+     */
+    void relabelEdges(int[] oldToNewEdges) {
+        for (int i = 0; i < turnCostsCount; i++) {
+            long pointer = (long) i * BYTES_PER_ENTRY;
+            turnCosts.setInt(pointer + TC_FROM, oldToNewEdges[turnCosts.getInt(pointer + TC_FROM)]);
+            turnCosts.setInt(pointer + TC_TO, oldToNewEdges[turnCosts.getInt(pointer + TC_TO)]);
+        }
+        // the order of the entries and the nodes with entries have changed
+        if (sorted)
+            sort();
+    }
+
     /**
      * Sets the turn cost at the viaNode when going from "fromEdge" to "toEdge"
      * WARNING: It is tacitly assumed that for every encoder, this method is only called once per turn relation.
@@ -93,6 +238,13 @@ public class TurnCostStorage {
     public void set(DecimalEncodedValue turnCostEnc, int fromEdge, int viaNode, int toEdge, double cost) {
         IntsRef tcFlags = TurnCost.createFlags();
         turnCostEnc.setDecimal(false, tcFlags, cost);
+        if (bulkEntries != null) {
+            bulkEntries.add(viaNode, fromEdge);
+            bulkEntries.add(toEdge, tcFlags.ints[0]);
+            return;
+        }
+        sorted = false;
+        nodesWithTurnCosts = null;
         merge(tcFlags, fromEdge, viaNode, toEdge);
     }
 
@@ -174,6 +326,10 @@ public class TurnCostStorage {
     }
 
     private void readFlags(IntsRef tcFlags, int fromEdge, int viaNode, int toEdge) {
+        if (sorted) {
+            tcFlags.ints[0] = readSortedFlags(fromEdge, viaNode, toEdge);
+            return;
+        }
         int turnCostIndex = baseGraph.getNodeAccess().getTurnCostIndex(viaNode);
         int i = 0;
         for (; i < 1000; i++) {
@@ -199,6 +355,29 @@ public class TurnCostStorage {
         tcFlags.ints[0] = EMPTY_FLAGS;
     }
 
+    private int readSortedFlags(int fromEdge, int viaNode, int toEdge) {
+        // most nodes have no entries at all
+        if (!nodesWithTurnCosts.contains(viaNode))
+            return EMPTY_FLAGS;
+        // the entries of a node are stored one after the other and ordered by from and to edge
+        int turnCostIndex = baseGraph.getNodeAccess().getTurnCostIndex(viaNode);
+        while (turnCostIndex != NO_TURN_ENTRY) {
+            long turnCostPtr = (long) turnCostIndex * BYTES_PER_ENTRY;
+            int from = turnCosts.getInt(turnCostPtr + TC_FROM);
+            if (from > fromEdge)
+                break;
+            if (from == fromEdge) {
+                int to = turnCosts.getInt(turnCostPtr + TC_TO);
+                if (to == toEdge)
+                    return turnCosts.getInt(turnCostPtr + TC_FLAGS);
+                if (to > toEdge)
+                    break;
+            }
+            turnCostIndex = turnCosts.getInt(turnCostPtr + TC_NEXT);
+        }
+        return EMPTY_FLAGS;
+    }
+
     private void ensureTurnCostIndex(int nodeIndex) {
         turnCosts.ensureCapacity(((long) nodeIndex + 4) * BYTES_PER_ENTRY);
     }
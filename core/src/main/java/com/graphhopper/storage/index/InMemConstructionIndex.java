@@ -101,6 +101,42 @@ public class InMemConstructionIndex {
         }
     }
 
+    int getRootCells() {
+        return root.subEntries.length;
+    }
+
+    /**
+     * Appends the values of the given index to the values of this index for all tiles within the given root cell.
+     * Both indices must have the same structure and other must not be used afterwards, because its entries are
+     * reused. Different root cells can be merged concurrently.
+     */
+    void merge(InMemConstructionIndex other, int rootCell) {
+        root.setSubEntry(rootCell, merge(root.getSubEntry(rootCell), other.root.getSubEntry(rootCell)));
+    }
+
+    private InMemEntry merge(InMemEntry entry, InMemEntry otherEntry) {
+        if (entry == null)
+            return otherEntry;
+        if (otherEntry == null)
+            return entry;
+        if (entry.isLeaf()) {
+            InMemLeafEntry leafEntry = (InMemLeafEntry) entry;
+            IntArrayList otherValues = ((InMemLeafEntry) otherEntry).getResults();
+            for (int i = 0; i < otherValues.size(); i++) {
+                int value = otherValues.get(i);
+                // same as in put, this keeps the values identical to those of a single index
+                if (leafEntry.isEmpty() || leafEntry.get(leafEntry.size() - 1) != value)
+                    leafEntry.add(value);
+            }
+        } else {
+            InMemTreeEntry treeEntry = (InMemTreeEntry) entry;
+            InMemTreeEntry otherTreeEntry = (InMemTreeEntry) otherEntry;
+            for (int i = 0; i < treeEntry.subEntries.length; i++)
+                treeEntry.setSubEntry(i, merge(treeEntry.getSubEntry(i), otherTreeEntry.getSubEntry(i)));
+        }
+        return entry;
+    }
+
     void put(long key, int value) {
         put(key << (64 - keyAlgo.getBits()), root, 0, value);
     }
@@ -17,7 +17,10 @@
  */
 package com.graphhopper.storage.index;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.carrotsearch.hppc.sorting.IndirectSort;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.storage.Directory;
@@ -25,10 +28,14 @@ import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
 
 import static com.graphhopper.util.DistancePlaneProjection.DIST_PLANE;
 
@@ -58,6 +65,7 @@ public class LocationIndexTree implements LocationIndex {
     private final NodeAccess nodeAccess;
     private int maxRegionSearch = 4;
     private int minResolutionInMeter = 300;
+    private int threads = 1;
     private boolean initialized = false;
 
     LineIntIndex lineIntIndex;
@@ -119,6 +127,19 @@ public class LocationIndexTree implements LocationIndex {
     }
 
 
+    /**
+     * Sets the number of threads used to create the index in {@link #prepareIndex}. Every thread adds the edges of a
+     * consecutive range of edge ids to its own in-memory index, and afterwards these indices are merged for every root
+     * cell in parallel. The resulting index is the same as the one created with a single thread. When using more than
+     * one thread the edge filter passed to prepareIndex must be thread safe.
+     */
+    public LocationIndexTree setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1 but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
     public LocationIndex setResolution(int minResolutionInMeter) {
         if (minResolutionInMeter <= 0)
             throw new IllegalStateException("Negative precision is not allowed!");
@@ -170,8 +191,8 @@ public class LocationIndexTree implements LocationIndex {
         lineIntIndex.store(inMemConstructionIndex);
         lineIntIndex.setChecksum(checksum());
         flush();
-        logger.info("location index created in " + sw.stop().getSeconds()
-                + "s, size:" + Helper.nf(lineIntIndex.getSize())
+        logger.info("location index created in " + sw.stop().getSeconds() + "s with " + threads + " thread(s)"
+                + ", size:" + Helper.nf(lineIntIndex.getSize())
                 + ", leafs:" + Helper.nf(lineIntIndex.getLeafs())
                 + ", precision:" + minResolutionInMeter
                 + ", depth:" + indexStructureInfo.getEntries().length
@@ -184,13 +205,68 @@ public class LocationIndexTree implements LocationIndex {
 
     InMemConstructionIndex prepareInMemConstructionIndex(BBox bounds, EdgeFilter edgeFilter) {
         indexStructureInfo = IndexStructureInfo.create(bounds, minResolutionInMeter);
-        InMemConstructionIndex inMem = new InMemConstructionIndex(indexStructureInfo);
+        int edges = graph.getEdges();
+        if (threads == 1 || edges < threads) {
+            InMemConstructionIndex inMem = new InMemConstructionIndex(indexStructureInfo);
+            addEdges(inMem, edgeFilter, 0, edges);
+            return inMem;
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            // the leafs of every partial index contain ascending edge ids, so we can simply append them in order
+            int edgesPerThread = (edges + threads - 1) / threads;
+            List<Callable<InMemConstructionIndex>> callables = new ArrayList<>(threads);
+            for (int thread = 0; thread < threads; thread++) {
+                final int fromEdge = thread * edgesPerThread;
+                final int toEdge = Math.min(edges, fromEdge + edgesPerThread);
+                callables.add(() -> {
+                    InMemConstructionIndex part = new InMemConstructionIndex(indexStructureInfo);
+                    addEdges(part, edgeFilter, fromEdge, toEdge);
+                    return part;
+                });
+            }
+            List<InMemConstructionIndex> parts = new ArrayList<>(threads);
+            for (Future<InMemConstructionIndex> future : executorService.invokeAll(callables))
+                parts.add(future.get());
+
+            InMemConstructionIndex inMem = parts.get(0);
+            List<Callable<Object>> mergeCallables = new ArrayList<>(inMem.getRootCells());
+            for (int rootCell = 0; rootCell < inMem.getRootCells(); rootCell++) {
+                final int cell = rootCell;
+                mergeCallables.add(() -> {
+                    for (int i = 1; i < parts.size(); i++)
+                        inMem.merge(parts.get(i), cell);
+                    return null;
+                });
+            }
+            for (Future<Object> future : executorService.invokeAll(mergeCallables))
+                future.get();
+            return inMem;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Adds all accepted edges with fromEdge <= id < toEdge to the given index
+     */
+    private void addEdges(InMemConstructionIndex inMem, EdgeFilter edgeFilter, int fromEdge, int toEdge) {
         AllEdgesIterator allIter = graph.getAllEdges();
         try {
             while (allIter.next()) {
+                int edge = allIter.getEdge();
+                if (edge < fromEdge)
+                    continue;
+                if (edge >= toEdge)
+                    break;
                 if (!edgeFilter.accept(allIter))
                     continue;
-                int edge = allIter.getEdge();
                 int nodeA = allIter.getBaseNode();
                 int nodeB = allIter.getAdjNode();
                 double lat1 = nodeAccess.getLat(nodeA);
@@ -214,7 +290,6 @@ public class LocationIndexTree implements LocationIndex {
             logger.error("Problem! base:" + allIter.getBaseNode() + ", adj:" + allIter.getAdjNode()
                     + ", edge:" + allIter.getEdge(), ex1);
         }
-        return inMem;
     }
 
     int checksum() {
@@ -308,6 +383,74 @@ public class LocationIndexTree implements LocationIndex {
         return closestMatch;
     }
 
+    /**
+     * Snaps all the given points like {@link #findClosest(double, double, EdgeFilter)} does, but sorts them by the
+     * tile of the index they are in first. Consecutive queries in the same tile then share the edge ids of the
+     * neighborhood and all queries share the geometry of the edges that were already inspected.
+     *
+     * @return the snaps in the order of the given points
+     */
+    @Override
+    public List<Snap> findClosest(List<GHPoint> points, EdgeFilter edgeFilter) {
+        return findClosest(points, edgeFilter, 1);
+    }
+
+    /**
+     * Like {@link #findClosest(List, EdgeFilter)}, but the sorted points are split into consecutive parts that are
+     * snapped in parallel. The edge filter must be thread safe when using more than one thread.
+     */
+    public List<Snap> findClosest(List<GHPoint> points, EdgeFilter edgeFilter, int threads) {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1 but was " + threads);
+        int[] order = sortByTile(points);
+        Snap[] snaps = new Snap[points.size()];
+        // it does not pay off to use another thread for just a few points
+        threads = Math.max(1, Math.min(threads, points.size() / 100));
+        if (threads == 1) {
+            new BatchSnapper(edgeFilter).snap(points, order, 0, order.length, snaps);
+            return new ArrayList<>(Arrays.asList(snaps));
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            int pointsPerThread = (order.length + threads - 1) / threads;
+            List<Callable<Object>> callables = new ArrayList<>(threads);
+            for (int thread = 0; thread < threads; thread++) {
+                final int from = thread * pointsPerThread;
+                final int to = Math.min(order.length, from + pointsPerThread);
+                callables.add(() -> {
+                    new BatchSnapper(edgeFilter).snap(points, order, from, to, snaps);
+                    return null;
+                });
+            }
+            for (Future<Object> future : executorService.invokeAll(callables))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executorService.shutdown();
+        }
+        return new ArrayList<>(Arrays.asList(snaps));
+    }
+
+    /**
+     * @return the indices of the given points sorted by the spatial key of their tile, which is the order of the
+     * tiles in the index (a Z-order curve)
+     */
+    private int[] sortByTile(List<GHPoint> points) {
+        long[] keys = new long[points.size()];
+        for (int i = 0; i < keys.length; i++) {
+            GHPoint point = points.get(i);
+            keys[i] = indexStructureInfo.getKeyAlgo().encodeLatLon(point.lat, point.lon);
+        }
+        // a stable sort, so points in the same tile are snapped in their original order
+        return IndirectSort.mergesort(0, keys.length, (a, b) -> Long.compare(keys[a], keys[b]));
+    }
+
     @Override
     public void query(BBox queryBBox, Visitor function) {
         lineIntIndex.query(queryBBox, function);
@@ -318,6 +461,13 @@ public class LocationIndexTree implements LocationIndex {
     }
 
     public void traverseEdge(double queryLat, double queryLon, EdgeIteratorState currEdge, EdgeCheck edgeCheck) {
+        traverseEdge(queryLat, queryLon, currEdge, currEdge.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ), edgeCheck);
+    }
+
+    /**
+     * @param pointList the geometry of currEdge including the pillar nodes and the adjacent node
+     */
+    private void traverseEdge(double queryLat, double queryLon, EdgeIteratorState currEdge, PointList pointList, EdgeCheck edgeCheck) {
         int baseNode = currEdge.getBaseNode();
         double baseLat = nodeAccess.getLat(baseNode);
         double baseLon = nodeAccess.getLon(baseNode);
@@ -328,7 +478,6 @@ public class LocationIndexTree implements LocationIndex {
         double adjLon = nodeAccess.getLon(adjNode);
         double adjDist = DIST_PLANE.calcNormalizedDist(queryLat, queryLon, adjLat, adjLon);
 
-        PointList pointList = currEdge.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ);
         final int len = pointList.size();
 
         int closestTowerNode;
@@ -375,4 +524,99 @@ public class LocationIndexTree implements LocationIndex {
         }
     }
 
+    /**
+     * Snaps a part of the points of a batch. It keeps the edge ids of the neighborhood of the last tile and the
+     * geometry of the last inspected edges. Not thread safe.
+     */
+    private class BatchSnapper {
+        // the geometry is cached for at most this number of edges, afterwards the cache is cleared
+        private static final int MAX_CACHED_EDGES = 10_000;
+        private final EdgeFilter edgeFilter;
+        private final IntArrayList[] neighborhoods = new IntArrayList[maxRegionSearch];
+        private final IntObjectHashMap<CachedEdge> edges = new IntObjectHashMap<>();
+        private final IntHashSet seenEdges = new IntHashSet();
+        private long tileKey = -1;
+
+        BatchSnapper(EdgeFilter edgeFilter) {
+            this.edgeFilter = edgeFilter;
+        }
+
+        void snap(List<GHPoint> points, int[] order, int from, int to, Snap[] snaps) {
+            for (int i = from; i < to; i++) {
+                GHPoint point = points.get(order[i]);
+                snaps[order[i]] = findClosest(point.lat, point.lon);
+            }
+        }
+
+        private Snap findClosest(final double queryLat, final double queryLon) {
+            long key = indexStructureInfo.getKeyAlgo().encodeLatLon(queryLat, queryLon);
+            if (key != tileKey) {
+                tileKey = key;
+                Arrays.fill(neighborhoods, null);
+            }
+            final Snap closestMatch = new Snap(queryLat, queryLon);
+            seenEdges.clear();
+            for (int iteration = 0; iteration < maxRegionSearch; iteration++) {
+                IntArrayList edgeIds = neighborhoods[iteration];
+                if (edgeIds == null) {
+                    IntArrayList tmp = edgeIds = neighborhoods[iteration] = new IntArrayList();
+                    lineIntIndex.findEdgeIdsInNeighborhood(queryLat, queryLon, iteration, tmp::add);
+                }
+                for (int i = 0; i < edgeIds.size(); i++) {
+                    int edgeId = edgeIds.get(i);
+                    if (!seenEdges.add(edgeId))
+                        continue;
+                    CachedEdge edge = getEdge(edgeId);
+                    if (!edge.accepted)
+                        continue;
+                    traverseEdge(queryLat, queryLon, edge.state, edge.pointList, (node, normedDist, wayIndex, pos) -> {
+                        if (normedDist < closestMatch.getQueryDistance()) {
+                            closestMatch.setQueryDistance(normedDist);
+                            closestMatch.setClosestNode(node);
+                            closestMatch.setClosestEdge(edge.state.detach(false));
+                            closestMatch.setWayIndex(wayIndex);
+                            closestMatch.setSnappedPosition(pos);
+                        }
+                    });
+                }
+                if (closestMatch.isValid()) {
+                    double rMin = calculateRMin(queryLat, queryLon, iteration);
+                    double minDistance = DIST_PLANE.calcDenormalizedDist(closestMatch.getQueryDistance());
+                    if (minDistance < rMin)
+                        break;
+                }
+            }
+
+            if (closestMatch.isValid()) {
+                closestMatch.setQueryDistance(DIST_PLANE.calcDenormalizedDist(closestMatch.getQueryDistance()));
+                closestMatch.calcSnappedPoint(DIST_PLANE);
+            }
+            return closestMatch;
+        }
+
+        private CachedEdge getEdge(int edgeId) {
+            CachedEdge edge = edges.get(edgeId);
+            if (edge == null) {
+                if (edges.size() >= MAX_CACHED_EDGES)
+                    edges.clear();
+                EdgeIteratorState state = graph.getEdgeIteratorStateForKey(edgeId * 2);
+                boolean accepted = edgeFilter.accept(state);
+                edge = new CachedEdge(state, accepted ? state.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ) : null, accepted);
+                edges.put(edgeId, edge);
+            }
+            return edge;
+        }
+    }
+
+    private static class CachedEdge {
+        final EdgeIteratorState state;
+        final PointList pointList;
+        final boolean accepted;
+
+        CachedEdge(EdgeIteratorState state, PointList pointList, boolean accepted) {
+            this.state = state;
+            this.pointList = pointList;
+            this.accepted = accepted;
+        }
+    }
 }
@@ -70,7 +70,7 @@ public class Constants {
     public static final int VERSION_EDGE = 21;
     public static final int VERSION_SHORTCUT = 8;
     public static final int VERSION_NODE_CH = 0;
-    public static final int VERSION_GEOMETRY = 6;
+    public static final int VERSION_GEOMETRY = 7;
     public static final int VERSION_LOCATION_IDX = 5;
     public static final int VERSION_STRING_IDX = 6;
     /**
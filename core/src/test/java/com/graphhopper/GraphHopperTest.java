@@ -24,6 +24,7 @@ import com.graphhopper.json.Statement;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.reader.dem.SRTMProvider;
 import com.graphhopper.reader.dem.SkadiProvider;
+import com.graphhopper.routing.RouteCache;
 import com.graphhopper.routing.ev.Subnetwork;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
@@ -215,6 +216,94 @@ public class GraphHopperTest {
         assertEquals(41, routeRsp.getBest().getPoints().size());
     }
 
+    @Test
+    public void testRouteCache() {
+        final String profile = "profile";
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setProfiles(new Profile(profile).setVehicle("foot").setWeighting("shortest")).
+                setStoreOnFlush(true).
+                setRouteCache(new RouteCache(10, 1_000_000, 0));
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile(profile));
+        hopper.importOrLoad();
+        RouteCache cache = hopper.getRouteCache();
+
+        GHResponse rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile(profile));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getSize());
+
+        // repeated requests are served from the cache
+        GHResponse cachedRsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile(profile));
+        assertEquals(1, cache.getHits());
+        assertEquals("hit", cachedRsp.getDebugInfo().getString("route_cache", ""));
+        assertEquals(rsp.getBest().getDistance(), cachedRsp.getBest().getDistance(), 1e-6);
+        assertEquals(rsp.getBest().getPoints().size(), cachedRsp.getBest().getPoints().size());
+        assertEquals(rsp.getHints().getLong("visited_nodes.sum", 0), cachedRsp.getHints().getLong("visited_nodes.sum", -1));
+
+        // other request parameters result in a different key
+        GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile(profile);
+        req.getHints().putObject("instructions", false);
+        GHResponse noInstructionsRsp = hopper.route(req);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getSize());
+        assertThrows(IllegalArgumentException.class, () -> noInstructionsRsp.getBest().getInstructions());
+        assertEquals(rsp.getBest().getDistance(), noInstructionsRsp.getBest().getDistance(), 1e-6);
+
+        // the least recently used entries are evicted when the size limit is reached
+        RouteCache smallCache = new RouteCache(10, rsp.getBest().getPoints().size() + 1, 0);
+        hopper.setRouteCache(smallCache);
+        hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile(profile));
+        hopper.route(new GHRequest(43.730729, 7.42135, 43.727697, 7.419199).setProfile(profile));
+        assertEquals(1, smallCache.getSize());
+        assertEquals(1, smallCache.getEvictions());
+    }
+
+    @Test
+    public void testRouteBatch() {
+        final String profile = "profile";
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setProfiles(new Profile(profile).setVehicle("car").setWeighting("fastest")).
+                setStoreOnFlush(true);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile(profile));
+        hopper.getRouterConfig().setBatchThreads(2);
+        hopper.importOrLoad();
+
+        List<List<GHPoint>> routes = Arrays.asList(
+                Arrays.asList(new GHPoint(43.727687, 7.418737), new GHPoint(43.74958, 7.436566)),
+                Arrays.asList(new GHPoint(43.730729, 7.42135), new GHPoint(43.727697, 7.419199)),
+                Arrays.asList(new GHPoint(43.73093, 7.41735), new GHPoint(43.7403, 7.4302), new GHPoint(43.7301, 7.4215)),
+                Collections.singletonList(new GHPoint(43.730729, 7.42135)),
+                Arrays.asList(new GHPoint(43.74958, 7.436566), new GHPoint(43.727687, 7.418737)));
+        GHBatchRequest batchRequest = new GHBatchRequest().setProfile(profile).setRoutes(routes);
+        GHBatchResponse batchResponse = hopper.routeBatch(batchRequest);
+        assertFalse(batchResponse.hasErrors(), batchResponse.getErrors().toString());
+        assertEquals(routes.size(), batchResponse.getResponses().size());
+        for (int i = 0; i < routes.size(); i++) {
+            GHResponse batchRsp = batchResponse.getResponses().get(i);
+            GHResponse rsp = hopper.route(new GHRequest(routes.get(i)).setProfile(profile));
+            assertEquals(rsp.hasErrors(), batchRsp.hasErrors(), "route " + i + ": " + batchRsp.getErrors());
+            if (rsp.hasErrors())
+                continue;
+            // the snaps of the other routes can split the edges of a route into more virtual edges, so there can be
+            // small rounding differences and additional points
+            assertEquals(rsp.getBest().getDistance(), batchRsp.getBest().getDistance(), 0.1, "route " + i);
+            assertEquals(rsp.getBest().getTime(), batchRsp.getBest().getTime(), 10, "route " + i);
+            assertEquals(rsp.getBest().getWaypoints().toString(), batchRsp.getBest().getWaypoints().toString(), "route " + i);
+        }
+        assertTrue(batchResponse.getResponses().get(3).hasErrors());
+
+        // errors that concern the whole batch
+        batchResponse = hopper.routeBatch(new GHBatchRequest().setProfile("unknown").setRoutes(routes));
+        assertTrue(batchResponse.hasErrors());
+        assertTrue(batchResponse.getErrors().get(0).getMessage().contains("does not exist"), batchResponse.getErrors().toString());
+    }
+
     @Test
     public void testUTurn() {
         final String profile = "profile";
@@ -1360,6 +1449,161 @@ public class GraphHopperTest {
         executeCHFootRoute(false);
     }
 
+    @Test
+    public void testHilbertSortGraph() {
+        // sorting the graph must not change the routes, also with turn costs
+        ResponsePath unsorted = routeMoscowWithTurnCosts(false, false);
+        Helper.removeDir(new File(GH_LOCATION));
+        ResponsePath sorted = routeMoscowWithTurnCosts(true, false);
+        assertEquals(unsorted.getDistance(), sorted.getDistance(), 1.e-3);
+        assertEquals(unsorted.getTime(), sorted.getTime());
+        assertEquals(unsorted.getPoints().toString(), sorted.getPoints().toString());
+    }
+
+    @Test
+    public void testCompressGeometry() {
+        ResponsePath uncompressed = routeMoscowWithTurnCosts(false, false);
+        Helper.removeDir(new File(GH_LOCATION));
+        ResponsePath compressed = routeMoscowWithTurnCosts(false, true);
+        assertEquals(uncompressed.getDistance(), compressed.getDistance(), 1.e-3);
+        assertEquals(uncompressed.getPoints().toString(), compressed.getPoints().toString());
+
+        // the format is stored with the graph and the geometry also survives the relabeling of the nodes
+        Helper.removeDir(new File(GH_LOCATION));
+        routeMoscowWithTurnCosts(true, true);
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setProfiles(new Profile("car").setVehicle("car").setWeighting("fastest").setTurnCosts(true));
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"));
+        assertTrue(hopper.load());
+        assertTrue(hopper.getGraphHopperStorage().getBaseGraph().isCompressedGeometry());
+        GHResponse rsp = hopper.route(new GHRequest(55.815670, 37.604613, 55.806151, 37.617823).setProfile("car"));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(uncompressed.getPoints().toString(), rsp.getBest().getPoints().toString());
+        hopper.close();
+    }
+
+    @Test
+    public void testMaterializeWeights() {
+        ResponsePath dynamic = routeMonacoWithCustomProfile(false);
+        Helper.removeDir(new File(GH_LOCATION));
+        ResponsePath materialized = routeMonacoWithCustomProfile(true);
+        assertEquals(dynamic.getDistance(), materialized.getDistance(), 1.e-3);
+        assertEquals(dynamic.getTime(), materialized.getTime());
+        assertEquals(dynamic.getPoints().toString(), materialized.getPoints().toString());
+
+        // the weights are loaded with the graph
+        ResponsePath loaded = routeMonacoWithCustomProfile(true);
+        assertEquals(dynamic.getPoints().toString(), loaded.getPoints().toString());
+        assertTrue(new File(GH_LOCATION, "edge_weights_car").exists());
+    }
+
+    @Test
+    public void testCustomizableCH() {
+        CustomModel customModel = new CustomModel();
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setProfiles(
+                        new CustomProfile("car").setCustomModel(customModel).setVehicle("car"),
+                        new CustomProfile("car_cch").setCustomModel(customModel).setVehicle("car")).
+                setStoreOnFlush(true).
+                setCustomizableCHEnabled(true);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"));
+        hopper.importOrLoad();
+        assertNotNull(hopper.getCustomizableCH());
+
+        // without a custom model the customizable CH yields the same route as the regular CH
+        GHRequest req = new GHRequest(43.730729, 7.42135, 43.727697, 7.419199).setProfile("car");
+        GHResponse chRsp = hopper.route(req);
+        assertFalse(chRsp.hasErrors(), chRsp.getErrors().toString());
+        GHResponse cchRsp = hopper.route(req.setProfile("car_cch"));
+        assertFalse(cchRsp.hasErrors(), cchRsp.getErrors().toString());
+        assertEquals(chRsp.getBest().getDistance(), cchRsp.getBest().getDistance(), 1.e-3);
+        assertEquals(chRsp.getBest().getTime(), cchRsp.getBest().getTime());
+
+        // a custom model no longer requires disabling CH
+        CustomModel slower = new CustomModel();
+        slower.addToSpeed(Statement.If("true", Statement.Op.MULTIPLY, 0.5));
+        req.setProfile("car").setCustomModel(slower);
+        GHResponse customRsp = hopper.route(req);
+        assertFalse(customRsp.hasErrors(), customRsp.getErrors().toString());
+        assertEquals(2 * chRsp.getBest().getTime(), customRsp.getBest().getTime(), 100);
+        GHResponse cachedRsp = hopper.route(req);
+        assertEquals(customRsp.getBest().getPoints().toString(), cachedRsp.getBest().getPoints().toString());
+
+        // custom models whose areas only differ in their geometry must not share a customization
+        GHResponse areaRsp = hopper.route(req.setCustomModel(slowerInArea(7.41, 43.72, 7.43, 43.74)));
+        assertFalse(areaRsp.hasErrors(), areaRsp.getErrors().toString());
+        assertEquals(2 * chRsp.getBest().getTime(), areaRsp.getBest().getTime(), 100);
+        GHResponse otherAreaRsp = hopper.route(req.setCustomModel(slowerInArea(7.43, 43.74, 7.44, 43.75)));
+        assertFalse(otherAreaRsp.hasErrors(), otherAreaRsp.getErrors().toString());
+        assertEquals(chRsp.getBest().getTime(), otherAreaRsp.getBest().getTime(), 100);
+        req.setCustomModel(slower);
+        hopper.close();
+
+        // the node ordering is loaded with the graph
+        hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setProfiles(
+                        new CustomProfile("car").setCustomModel(customModel).setVehicle("car"),
+                        new CustomProfile("car_cch").setCustomModel(customModel).setVehicle("car")).
+                setCustomizableCHEnabled(true);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"));
+        assertTrue(hopper.load());
+        GHResponse loadedRsp = hopper.route(req);
+        assertFalse(loadedRsp.hasErrors(), loadedRsp.getErrors().toString());
+        assertEquals(customRsp.getBest().getPoints().toString(), loadedRsp.getBest().getPoints().toString());
+        hopper.close();
+    }
+
+    private static CustomModel slowerInArea(double minLon, double minLat, double maxLon, double maxLat) {
+        JsonFeature area = new JsonFeature();
+        area.setGeometry(new GeometryFactory().createPolygon(new Coordinate[]{
+                new Coordinate(minLon, minLat),
+                new Coordinate(maxLon, minLat),
+                new Coordinate(maxLon, maxLat),
+                new Coordinate(minLon, maxLat),
+                new Coordinate(minLon, minLat)}));
+        CustomModel customModel = new CustomModel();
+        customModel.addToSpeed(Statement.If("in_area", Statement.Op.MULTIPLY, 0.5));
+        customModel.getAreas().put("area", area);
+        return customModel;
+    }
+
+    private ResponsePath routeMonacoWithCustomProfile(boolean materializeWeights) {
+        CustomModel customModel = new CustomModel();
+        customModel.addToPriority(Statement.If("road_class == PRIMARY", Statement.Op.MULTIPLY, 0.5));
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setProfiles(new CustomProfile("car").setCustomModel(customModel).setVehicle("car")).
+                setStoreOnFlush(true).
+                setMaterializeWeights(materializeWeights);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"));
+        hopper.importOrLoad();
+        GHResponse rsp = hopper.route(new GHRequest(43.730729, 7.42135, 43.727697, 7.419199).setProfile("car"));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        hopper.close();
+        return rsp.getBest();
+    }
+
+    private ResponsePath routeMoscowWithTurnCosts(boolean hilbertSort, boolean compressGeometry) {
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MOSCOW).
+                setProfiles(new Profile("car").setVehicle("car").setWeighting("fastest").setTurnCosts(true)).
+                setStoreOnFlush(true).
+                setHilbertSortGraph(hilbertSort).
+                setCompressGeometry(compressGeometry);
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("car"));
+        hopper.importOrLoad();
+        GHResponse rsp = hopper.route(new GHRequest(55.815670, 37.604613, 55.806151, 37.617823).setProfile("car"));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        hopper.close();
+        return rsp.getBest();
+    }
+
     private void executeCHFootRoute(boolean sort) {
         final String profile = "profile";
         final String vehicle = "foot";
@@ -0,0 +1,183 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.RoutingCHGraphImpl;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhastShortestPathTreeTest {
+    private CarFlagEncoder encoder;
+    private BaseGraph graph;
+    private CHConfig chConfig;
+
+    @BeforeEach
+    public void setUp() {
+        encoder = new CarFlagEncoder();
+        EncodingManager encodingManager = EncodingManager.create(encoder);
+        graph = new BaseGraph.Builder(encodingManager).create();
+        chConfig = CHConfig.nodeBased("car", new FastestWeighting(encoder));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void compareWithShortestPathTree(boolean reverseFlow) {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 200, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.8, 0);
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, new RAMDirectory());
+        locationIndex.prepareIndex();
+        graph.freeze();
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+
+        List<Snap> snaps = GHUtility.createRandomSnaps(graph.getBounds(), locationIndex, rnd, 20, true, EdgeFilter.ALL_EDGES);
+        // the trees of all snaps share the sweep order and the per-node arrays
+        PhastPreparation preparation = new PhastPreparation(chGraph, 1);
+        int violations = 0, comparisons = 0;
+        for (Snap snap : snaps) {
+            QueryGraph queryGraph = QueryGraph.create(graph, snap);
+            ShortestPathTree reference = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(chConfig.getWeighting()), reverseFlow, TraversalMode.NODE_BASED);
+            reference.setTimeLimit(Double.MAX_VALUE);
+            IntObjectHashMap<ShortestPathTree.IsoLabel> expected = new IntObjectHashMap<>();
+            reference.search(snap.getClosestNode(), l -> expected.put(l.node, l));
+
+            PhastShortestPathTree tree = new PhastShortestPathTree(new QueryRoutingCHGraph(chGraph, queryGraph), preparation, reverseFlow);
+            tree.setTimeLimit(Double.MAX_VALUE);
+            IntArrayList nodes = new IntArrayList();
+            tree.search(snap.getClosestNode(), nodes::add);
+
+            assertEquals(expected.size(), nodes.size(), "seed: " + seed);
+            assertEquals(snap.getClosestNode(), nodes.get(0));
+            assertEquals(EdgeIterator.NO_EDGE, tree.getEdge(snap.getClosestNode()));
+            for (int i = 0; i < nodes.size(); i++) {
+                int node = nodes.get(i);
+                ShortestPathTree.IsoLabel label = expected.get(node);
+                assertNotNull(label, "unexpected node " + node + ", seed: " + seed);
+                assertEquals(label.weight, tree.getWeight(node), 1.e-1, "seed: " + seed);
+                comparisons++;
+                if (Math.abs(label.time - tree.getTime(node)) > 50 || Math.abs(label.distance - tree.getDistance(node)) > 1.e-1)
+                    violations++;
+                if (i > 0) {
+                    int parent = tree.getParentNode(node);
+                    assertTrue(expected.containsKey(parent), "seed: " + seed);
+                    assertTrue(tree.getParentTime(node) <= tree.getTime(node), "seed: " + seed);
+                    assertTrue(tree.getParentDistance(node) <= tree.getDistance(node) + 1.e-6, "seed: " + seed);
+                    assertNotEquals(EdgeIterator.NO_EDGE, tree.getEdge(node));
+                }
+            }
+            tree.release();
+        }
+        assertTrue(preparation.getReused() > 0, "seed: " + seed);
+        // paths with (almost) the same weight can have different times and distances
+        assertTrue(violations <= 0.05 * comparisons, "too many differences: " + violations + "/" + comparisons + ", seed: " + seed);
+    }
+
+    @Test
+    public void reuseArrays() {
+        GHUtility.buildRandomGraph(graph, new Random(123), 50, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.8, 0);
+        graph.freeze();
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+        PhastPreparation preparation = new PhastPreparation(chGraph, 1);
+
+        PhastShortestPathTree first = new PhastShortestPathTree(chGraph, preparation, false);
+        first.setWeightLimit(Double.MAX_VALUE);
+        IntArrayList firstNodes = new IntArrayList();
+        first.search(0, firstNodes::add);
+        double[] firstWeights = new double[graph.getNodes()];
+        for (int node = 0; node < graph.getNodes(); node++)
+            firstWeights[node] = first.getWeight(node);
+        // a second tree while the first one is still in use gets its own arrays
+        PhastShortestPathTree second = new PhastShortestPathTree(chGraph, preparation, false);
+        assertEquals(2, preparation.getCreated());
+        first.release();
+        second.release();
+        // only one of them is kept
+        assertEquals(1, preparation.getIdle());
+
+        PhastShortestPathTree third = new PhastShortestPathTree(chGraph, preparation, false);
+        assertEquals(1, preparation.getReused());
+        assertEquals(0, preparation.getIdle());
+        third.setWeightLimit(Double.MAX_VALUE);
+        IntArrayList thirdNodes = new IntArrayList();
+        third.search(0, thirdNodes::add);
+        assertEquals(firstNodes, thirdNodes);
+        for (int node = 0; node < graph.getNodes(); node++)
+            assertEquals(firstWeights[node], third.getWeight(node));
+        third.release();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void timeLimit(boolean reverseFlow) {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 200, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.8, 0);
+        graph.freeze();
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+
+        int start = rnd.nextInt(graph.getNodes());
+        ShortestPathTree reference = new ShortestPathTree(graph, chConfig.getWeighting(), reverseFlow, TraversalMode.NODE_BASED);
+        reference.setTimeLimit(Double.MAX_VALUE);
+        List<ShortestPathTree.IsoLabel> labels = new ArrayList<>();
+        reference.search(start, labels::add);
+        double limit = labels.get(labels.size() / 2).time;
+
+        PhastShortestPathTree tree = new PhastShortestPathTree(chGraph, chGraph.getNodes(), reverseFlow);
+        tree.setTimeLimit(limit);
+        IntArrayList nodes = new IntArrayList();
+        tree.search(start, nodes::add);
+        for (int i = 0; i < nodes.size(); i++)
+            assertTrue(tree.getTime(nodes.get(i)) <= limit, "seed: " + seed);
+        for (ShortestPathTree.IsoLabel label : labels) {
+            if (label.time < 0.9 * limit)
+                assertTrue(nodes.contains(label.node), "node " + label.node + " is missing, seed: " + seed);
+        }
+    }
+}
@@ -962,6 +962,48 @@ public class OSMReaderTest {
         return new AreaIndex<>(readCountries());
     }
 
+    @Test
+    public void testParallelWayProcessing() {
+        GraphHopperStorage sequential = importAndorra(1);
+        GraphHopperStorage parallel = importAndorra(4);
+        assertEquals(sequential.getNodes(), parallel.getNodes());
+        assertEquals(sequential.getEdges(), parallel.getEdges());
+        for (int node = 0; node < sequential.getNodes(); node++) {
+            assertEquals(sequential.getNodeAccess().getLat(node), parallel.getNodeAccess().getLat(node));
+            assertEquals(sequential.getNodeAccess().getLon(node), parallel.getNodeAccess().getLon(node));
+        }
+        AllEdgesIterator seqIter = sequential.getAllEdges();
+        AllEdgesIterator parIter = parallel.getAllEdges();
+        while (seqIter.next()) {
+            assertTrue(parIter.next());
+            String msg = "edge: " + seqIter.getEdge();
+            assertEquals(seqIter.getBaseNode(), parIter.getBaseNode(), msg);
+            assertEquals(seqIter.getAdjNode(), parIter.getAdjNode(), msg);
+            assertEquals(seqIter.getDistance(), parIter.getDistance(), msg);
+            assertEquals(seqIter.getName(), parIter.getName(), msg);
+            assertEquals(seqIter.getFlags(), parIter.getFlags(), msg);
+            assertEquals(seqIter.fetchWayGeometry(FetchMode.ALL), parIter.fetchWayGeometry(FetchMode.ALL), msg);
+        }
+        assertFalse(parIter.next());
+    }
+
+    private GraphHopperStorage importAndorra(int wayThreads) {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setStoreOnFlush(false);
+        hopper.setOSMFile("../core/files/andorra.osm.pbf");
+        hopper.setGraphHopperLocation(dir + "/way-threads-" + wayThreads);
+        // motorcycle uses the artificial point_list tag which is set for every edge, so this makes sure every edge
+        // uses the right tags
+        hopper.setProfiles(
+                new Profile("car").setVehicle("car").setWeighting("fastest").setTurnCosts(true),
+                new Profile("motorcycle").setVehicle("motorcycle").setWeighting("fastest"),
+                new Profile("foot").setVehicle("foot").setWeighting("fastest")
+        );
+        hopper.getReaderConfig().setWayThreads(wayThreads);
+        hopper.importOrLoad();
+        return hopper.getGraphHopperStorage();
+    }
+
     class GraphHopperFacade extends GraphHopper {
         public GraphHopperFacade(String osmFile) {
             this(osmFile, false, "");
@@ -0,0 +1,119 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.ch.CHRoutingAlgorithmFactory;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.util.GHUtility.createRandomSnaps;
+import static com.graphhopper.util.Parameters.Routing.MAX_VISITED_NODES;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares {@link DijkstraBidirectionCHPooled} with {@link DijkstraBidirectionCH}
+ */
+public class DijkstraBidirectionCHPooledTest {
+
+    @RepeatedTest(5)
+    public void random() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        CarFlagEncoder encoder = new CarFlagEncoder(5, 5, 0);
+        EncodingManager em = EncodingManager.create(encoder);
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        GHUtility.buildRandomGraph(graph, rnd, 100, 2.5, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.9, 0);
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, new RAMDirectory());
+        locationIndex.prepareIndex();
+        graph.freeze();
+        CHConfig chConfig = CHConfig.nodeBased("car", new FastestWeighting(encoder));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+
+        // all queries share the same states, so we also check that the states are reset correctly, even when the
+        // query graphs have different numbers of nodes
+        SearchStatePool pool = new SearchStatePool(2);
+        for (int i = 0; i < 10; i++) {
+            List<Snap> snaps = createRandomSnaps(graph.getBounds(), locationIndex, rnd, 1 + rnd.nextInt(20), false, EdgeFilter.ALL_EDGES);
+            QueryRoutingCHGraph queryCHGraph = new QueryRoutingCHGraph(chGraph, QueryGraph.create(graph, snaps));
+            for (int j = 0; j < 50; j++) {
+                int from = rnd.nextInt(queryCHGraph.getNodes());
+                int to = rnd.nextInt(queryCHGraph.getNodes());
+                Path refPath = new DijkstraBidirectionCH(queryCHGraph).calcPath(from, to);
+                SearchState fwdState = pool.lease();
+                SearchState bwdState = pool.lease();
+                Path path = new DijkstraBidirectionCHPooled(queryCHGraph, fwdState, bwdState).calcPath(from, to);
+                pool.release(fwdState);
+                pool.release(bwdState);
+                String msg = "seed: " + seed + ", " + from + "->" + to;
+                assertEquals(refPath.isFound(), path.isFound(), msg);
+                if (!path.isFound())
+                    continue;
+                assertEquals(refPath.getWeight(), path.getWeight(), 1.e-3, msg);
+                assertEquals(from, path.calcNodes().get(0), msg);
+                assertEquals(to, path.calcNodes().get(path.calcNodes().size() - 1), msg);
+            }
+        }
+        // after the first query only the two states of the first query are used
+        assertEquals(2, pool.getCreated());
+        assertEquals(998, pool.getReused());
+    }
+
+    @Test
+    public void factory() {
+        CarFlagEncoder encoder = new CarFlagEncoder();
+        EncodingManager em = EncodingManager.create(encoder);
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(0, 1).setDistance(100));
+        GHUtility.setSpeed(60, true, false, encoder, graph.edge(1, 2).setDistance(100));
+        graph.freeze();
+        CHConfig chConfig = CHConfig.nodeBased("car", new FastestWeighting(encoder));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        CHRoutingAlgorithmFactory factory = new CHRoutingAlgorithmFactory(RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig()));
+
+        assertTrue(factory.canUseSearchStates(new PMap()));
+        assertFalse(factory.canUseSearchStates(new PMap().putObject("stall_on_demand", false)));
+        assertFalse(factory.canUseSearchStates(new PMap().putObject("algorithm", "astarbi")));
+        assertThrows(IllegalArgumentException.class, () -> factory.createAlgo(new PMap().putObject("algorithm", "astarbi"), new SearchState(3), new SearchState(3)));
+
+        BidirRoutingAlgorithm algo = factory.createAlgo(new PMap(), new SearchState(3), new SearchState(3));
+        Path path = algo.calcPath(0, 2);
+        assertTrue(path.isFound());
+        assertEquals(200, path.getDistance(), 1.e-6);
+        assertFalse(factory.createAlgo(new PMap(), new SearchState(3), new SearchState(3)).calcPath(2, 0).isFound());
+
+        algo = factory.createAlgo(new PMap().putObject(MAX_VISITED_NODES, 1), new SearchState(3), new SearchState(3));
+        assertFalse(algo.calcPath(0, 2).isFound());
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.json.Statement;
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.JsonFeature;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class RouteCacheTest {
+
+    @Test
+    public void testKeyContainsAreaGeometry() {
+        GHRequest request1 = new GHRequest(43.73, 7.42, 43.74, 7.43).setProfile("car").
+                setCustomModel(customModelWithArea(7.4174, 43.7345));
+        GHRequest request2 = new GHRequest(43.73, 7.42, 43.74, 7.43).setProfile("car").
+                setCustomModel(customModelWithArea(7.4174, 43.7346));
+        // the areas have the same id, so the custom models have the same string representation
+        assertEquals(request1.getCustomModel().toString(), request2.getCustomModel().toString());
+        assertNotEquals(RouteCache.createKey(request1, Collections.emptyList()), RouteCache.createKey(request2, Collections.emptyList()));
+
+        GHRequest request3 = new GHRequest(43.73, 7.42, 43.74, 7.43).setProfile("car").
+                setCustomModel(customModelWithArea(7.4174, 43.7345));
+        assertEquals(RouteCache.createKey(request1, Collections.emptyList()), RouteCache.createKey(request3, Collections.emptyList()));
+    }
+
+    private static CustomModel customModelWithArea(double lon, double lat) {
+        JsonFeature area = new JsonFeature("area51", "Feature", null, new GeometryFactory().createPolygon(new Coordinate[]{
+                new Coordinate(lon, lat),
+                new Coordinate(7.4198, 43.7355),
+                new Coordinate(7.4207, 43.7344),
+                new Coordinate(lon, lat)}), new HashMap<>());
+        CustomModel customModel = new CustomModel();
+        customModel.getPriority().add(Statement.If("in_area51", Statement.Op.MULTIPLY, 0.1));
+        customModel.getAreas().put("area51", area);
+        return customModel;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchStateTest {
+
+    @Test
+    void resetForgetsPreviousSearch() {
+        SearchState state = new SearchState(0);
+        state.reset(5);
+        assertEquals(5, state.getCapacity());
+        state.start(2, 0);
+        state.update(3, 1.5, 2, 7);
+        assertTrue(state.isVisited(3));
+        assertEquals(1.5, state.getWeight(3));
+        assertEquals(2, state.getParent(3));
+        assertEquals(7, state.getEdge(3));
+        assertEquals(2, state.getVisitedNodes());
+
+        // the query graph of the next search has more nodes
+        state.reset(8);
+        assertEquals(8, state.getCapacity());
+        for (int node = 0; node < 8; node++) {
+            assertFalse(state.isVisited(node));
+            assertEquals(Double.POSITIVE_INFINITY, state.getWeight(node));
+        }
+        assertTrue(state.isHeapEmpty());
+        assertEquals(0, state.getVisitedNodes());
+        state.start(7, 0);
+        assertEquals(7, state.poll());
+    }
+
+    @RepeatedTest(10)
+    void heapOrder() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        int nodes = 100;
+        SearchState state = new SearchState(nodes);
+        for (int run = 0; run < 3; run++) {
+            state.reset(nodes);
+            PriorityQueue<Double> ref = new PriorityQueue<>();
+            double[] weights = new double[nodes];
+            for (int i = 0; i < 300; i++) {
+                int node = rnd.nextInt(nodes);
+                double weight = rnd.nextDouble() * 100;
+                if (state.isVisited(node)) {
+                    if (weight >= weights[node])
+                        continue;
+                    ref.remove(weights[node]);
+                }
+                state.update(node, weight, -1, -1);
+                weights[node] = weight;
+                ref.add(weight);
+            }
+            while (!ref.isEmpty()) {
+                assertEquals(ref.peek(), state.peekWeight(), "seed: " + seed);
+                int node = state.poll();
+                assertEquals(ref.poll(), weights[node], "seed: " + seed);
+            }
+            assertTrue(state.isHeapEmpty());
+        }
+    }
+
+    @Test
+    void pool() {
+        SearchStatePool pool = new SearchStatePool(1);
+        SearchState a = pool.lease();
+        SearchState b = pool.lease();
+        assertNotSame(a, b);
+        pool.release(a);
+        pool.release(b);
+        // only one idle state is kept
+        assertEquals(1, pool.getIdle());
+        assertSame(a, pool.lease());
+        assertEquals(3, pool.getLeases());
+        assertEquals(2, pool.getCreated());
+        assertEquals(1, pool.getReused());
+        assertThrows(IllegalArgumentException.class, () -> new SearchStatePool(0));
+    }
+}
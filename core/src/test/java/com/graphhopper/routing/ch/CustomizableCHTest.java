@@ -0,0 +1,142 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.ShortestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.graphhopper.routing.weighting.TurnCostProvider.NO_TURN_COST_PROVIDER;
+import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
+import static com.graphhopper.util.Parameters.Routing.ALGORITHM;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomizableCHTest {
+    private final CarFlagEncoder encoder = new CarFlagEncoder(new PMap().putObject("speed_two_directions", true));
+    private final EncodingManager encodingManager = EncodingManager.create(encoder);
+    private final BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+
+    @Test
+    void nestedDissectionOrderingIsPermutation() {
+        GHUtility.buildRandomGraph(graph, new Random(123), 500, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.8, 0.8);
+        int[] ranks = NestedDissectionOrdering.calcRanks(graph);
+        boolean[] seen = new boolean[graph.getNodes()];
+        for (int rank : ranks) {
+            assertFalse(seen[rank]);
+            seen[rank] = true;
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3})
+    void randomGraph(int threads) {
+        long seed = 42;
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 300, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.8, 0.8);
+        // the random graph only sets the forward speed, so we also set a different backward speed on some edges
+        for (int edge = 0; edge < graph.getEdges(); edge++)
+            if (rnd.nextBoolean())
+                graph.getEdgeIteratorState(edge, Integer.MIN_VALUE).setReverse(encoder.getAverageSpeedEnc(), 10 + rnd.nextInt(100));
+        graph.freeze();
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            CustomizableCH cch = CustomizableCH.prepare(graph).setExecutorService(executorService, threads);
+            // the same topology can be used for different weightings
+            checkQueries(cch, new FastestWeighting(encoder, NO_TURN_COST_PROVIDER), rnd, seed);
+            checkQueries(cch, new ShortestWeighting(encoder, NO_TURN_COST_PROVIDER), rnd, seed);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private void checkQueries(CustomizableCH cch, Weighting weighting, Random rnd, long seed) {
+        RoutingCHGraph chGraph = cch.customize(weighting);
+        for (int i = 0; i < 100; i++) {
+            int source = rnd.nextInt(graph.getNodes());
+            int target = rnd.nextInt(graph.getNodes());
+            Path refPath = new DijkstraBidirectionRef(graph, weighting, TraversalMode.NODE_BASED).calcPath(source, target);
+            Path path = new CHRoutingAlgorithmFactory(chGraph).createAlgo(new PMap().putObject(ALGORITHM, DIJKSTRA_BI)).calcPath(source, target);
+            String msg = "seed: " + seed + ", source: " + source + ", target: " + target + ", " + weighting;
+            assertEquals(refPath.isFound(), path.isFound(), msg);
+            assertEquals(refPath.getWeight(), path.getWeight(), 1.e-2, msg);
+        }
+    }
+
+    @Test
+    void cache() {
+        GHUtility.buildRandomGraph(graph, new Random(7), 50, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.8, 0.8);
+        graph.freeze();
+        CustomizableCH cch = CustomizableCH.prepare(graph);
+        Weighting fastest = new FastestWeighting(encoder, NO_TURN_COST_PROVIDER);
+        Weighting shortest = new ShortestWeighting(encoder, NO_TURN_COST_PROVIDER);
+        RoutingCHGraph chGraph = cch.getCustomization("fastest", fastest);
+        assertSame(chGraph, cch.getCustomization("fastest", fastest));
+        assertNotSame(chGraph, cch.getCustomization("shortest", shortest));
+        assertSame(chGraph, cch.getCustomization("fastest", fastest));
+
+        // with a too small cache only the last customization is kept
+        cch = CustomizableCH.prepare(graph).setMaxCacheBytes(0);
+        chGraph = cch.getCustomization("fastest", fastest);
+        cch.getCustomization("shortest", shortest);
+        assertNotSame(chGraph, cch.getCustomization("fastest", fastest));
+    }
+
+    @Test
+    void storeAndLoad(@TempDir File dir) {
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).setDir(new GHDirectory(dir.getAbsolutePath(), DAType.RAM_STORE)).create();
+        GHUtility.buildRandomGraph(graph, new Random(3), 50, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.8, 0.8);
+        graph.freeze();
+        assertNull(CustomizableCH.load(graph));
+        CustomizableCH cch = CustomizableCH.prepare(graph);
+        cch.flush();
+        graph.flush();
+        graph.close();
+
+        BaseGraph loadedGraph = new BaseGraph.Builder(encodingManager).setDir(new GHDirectory(dir.getAbsolutePath(), DAType.RAM_STORE)).build();
+        loadedGraph.loadExisting();
+        CustomizableCH loaded = CustomizableCH.load(loadedGraph);
+        assertNotNull(loaded);
+        assertEquals(cch.getArcs(), loaded.getArcs());
+        for (int node = 0; node < loadedGraph.getNodes(); node++)
+            assertEquals(cch.getRank(node), loaded.getRank(node));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.util.GHUtility.createRandomSnaps;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManyToManyCHTest {
+    private final CarFlagEncoder encoder = new CarFlagEncoder(5, 5, 0);
+    private final EncodingManager encodingManager = EncodingManager.create(encoder);
+    private final BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+
+    @Test
+    void simpleGraph() {
+        // 0-1-2-3
+        //   |
+        //   4   5
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(0, 1).setDistance(100));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(1, 2).setDistance(200));
+        GHUtility.setSpeed(60, true, false, encoder, graph.edge(2, 3).setDistance(300));
+        GHUtility.setSpeed(30, true, true, encoder, graph.edge(1, 4).setDistance(400));
+        graph.getNodeAccess().setNode(5, 0, 0);
+        graph.freeze();
+        RoutingCHGraph chGraph = prepareCH();
+
+        ManyToManyCH.Result result = new ManyToManyCH(chGraph).calcMatrix(new int[]{0, 3, 4}, new int[]{3, 4, 5, 0});
+        assertEquals(600, result.getDistance(0, 0), 1.e-6);
+        assertEquals(36_000, result.getTime(0, 0));
+        assertEquals(500, result.getDistance(0, 1), 1.e-6);
+        assertEquals(54_000, result.getTime(0, 1));
+        assertEquals(0, result.getDistance(0, 3), 1.e-6);
+        assertEquals(0, result.getTime(0, 3));
+        assertFalse(result.isConnected(0, 2));
+        // 2-3 is a one-way
+        assertFalse(result.isConnected(1, 1));
+        assertFalse(result.isConnected(1, 3));
+        assertEquals(0, result.getDistance(1, 0), 1.e-6);
+        assertEquals(500, result.getDistance(2, 3), 1.e-6);
+        assertEquals(54_000, result.getTime(2, 3));
+    }
+
+    @Test
+    void compareWithBidirectionalCH() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 100, 2.5, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.9, 0);
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, new RAMDirectory());
+        locationIndex.prepareIndex();
+        graph.freeze();
+        RoutingCHGraph chGraph = prepareCH();
+
+        for (int i = 0; i < 10; i++) {
+            List<Snap> snaps = createRandomSnaps(graph.getBounds(), locationIndex, rnd, 20, false, EdgeFilter.ALL_EDGES);
+            QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+            QueryRoutingCHGraph queryCHGraph = new QueryRoutingCHGraph(chGraph, queryGraph);
+            int[] sources = new int[15];
+            for (int s = 0; s < sources.length; s++)
+                sources[s] = rnd.nextInt(queryGraph.getNodes());
+            int[] targets = new int[10];
+            for (int t = 0; t < targets.length; t++)
+                targets[t] = rnd.nextInt(queryGraph.getNodes());
+
+            ManyToManyCH.Result result = new ManyToManyCH(queryCHGraph).calcMatrix(sources, targets);
+            for (int s = 0; s < sources.length; s++) {
+                for (int t = 0; t < targets.length; t++) {
+                    RoutingAlgorithm algo = new CHRoutingAlgorithmFactory(queryCHGraph).createAlgo(new PMap());
+                    Path path = algo.calcPath(sources[s], targets[t]);
+                    String msg = "seed: " + seed + ", " + sources[s] + "->" + targets[t];
+                    assertEquals(path.isFound(), result.isConnected(s, t), msg);
+                    if (!path.isFound())
+                        continue;
+                    assertEquals(path.getWeight(), result.getWeight(s, t), 1.e-2, msg);
+                    // in case there are multiple shortest paths the time and distance can be different
+                    if (Math.abs(path.getWeight() - result.getWeight(s, t)) < 1.e-6) {
+                        assertEquals(path.getDistance(), result.getDistance(s, t), 1.e-1, msg);
+                        assertEquals(path.getTime(), result.getTime(s, t), 10, msg);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void edgeBasedNotSupported() {
+        graph.freeze();
+        CHConfig chConfig = CHConfig.edgeBased("p", new FastestWeighting(encoder));
+        CHStorage chStorage = CHStorage.fromGraph(graph, chConfig);
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, chStorage, chConfig);
+        assertThrows(IllegalArgumentException.class, () -> new ManyToManyCH(chGraph));
+    }
+
+    private RoutingCHGraph prepareCH() {
+        CHConfig chConfig = CHConfig.nodeBased("p", new FastestWeighting(encoder));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        return RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+    }
+}
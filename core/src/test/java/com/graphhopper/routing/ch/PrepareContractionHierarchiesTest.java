@@ -24,14 +24,18 @@ import com.graphhopper.routing.Path;
 import com.graphhopper.routing.RoutingAlgorithm;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.util.*;
+import com.graphhopper.routing.weighting.DefaultTurnCostProvider;
 import com.graphhopper.routing.weighting.FastestWeighting;
 import com.graphhopper.routing.weighting.ShortestWeighting;
+import com.graphhopper.routing.weighting.TurnCostProvider;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.util.Random;
 
@@ -559,6 +563,65 @@ public class PrepareContractionHierarchiesTest {
         assertTrue(timeMotorCycle < 0.5 * timeCar, "reusing node ordering should speed up ch contraction");
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testParallelContraction(boolean edgeBased) {
+        CarFlagEncoder encoder = new CarFlagEncoder(5, 5, 10);
+        EncodingManager em = EncodingManager.create(encoder);
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 500, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.9, 0.8);
+        if (edgeBased)
+            GHUtility.addRandomTurnCosts(graph, seed, em, encoder, 10, graph.getTurnCostStorage());
+        graph.freeze();
+        TurnCostProvider turnCostProvider = edgeBased ? new DefaultTurnCostProvider(encoder, graph.getTurnCostStorage(), 40) : TurnCostProvider.NO_TURN_COST_PROVIDER;
+        Weighting weighting = new FastestWeighting(encoder, turnCostProvider);
+
+        RoutingCHGraph sequentialCH = prepareWithThreads(graph, weighting, edgeBased, "sequential", 1);
+        RoutingCHGraph parallelCH = prepareWithThreads(graph, weighting, edgeBased, "parallel", 3);
+        // the result must not depend on the number of threads
+        RoutingCHGraph parallelCH2 = prepareWithThreads(graph, weighting, edgeBased, "parallel2", 5);
+        assertEquals(toShortcutString(parallelCH), toShortcutString(parallelCH2), "seed: " + seed);
+
+        for (int i = 0; i < 100; i++) {
+            int from = rnd.nextInt(graph.getNodes());
+            int to = rnd.nextInt(graph.getNodes());
+            double dijkstraWeight = new Dijkstra(graph, graph.wrapWeighting(weighting), edgeBased ? TraversalMode.EDGE_BASED : TraversalMode.NODE_BASED)
+                    .calcPath(from, to).getWeight();
+            double sequentialWeight = new CHRoutingAlgorithmFactory(sequentialCH).createAlgo(new PMap()).calcPath(from, to).getWeight();
+            double parallelWeight = new CHRoutingAlgorithmFactory(parallelCH).createAlgo(new PMap()).calcPath(from, to).getWeight();
+            String msg = "seed: " + seed + ", " + from + "->" + to;
+            assertEquals(dijkstraWeight, sequentialWeight, 1.e-2, msg);
+            assertEquals(dijkstraWeight, parallelWeight, 1.e-2, msg);
+        }
+    }
+
+    private RoutingCHGraph prepareWithThreads(BaseGraph graph, Weighting weighting, boolean edgeBased, String name, int threads) {
+        CHConfig config = edgeBased ? CHConfig.edgeBased(name, weighting) : CHConfig.nodeBased(name, weighting);
+        PrepareContractionHierarchies pch = PrepareContractionHierarchies.fromGraph(graph, config)
+                .setParams(new PMap().putObject(CHParameters.CONTRACTION_THREADS, threads));
+        PrepareContractionHierarchies.Result res = pch.doWork();
+        return RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+    }
+
+    private static String toShortcutString(RoutingCHGraph chGraph) {
+        StringBuilder sb = new StringBuilder();
+        for (int node = 0; node < chGraph.getNodes(); node++)
+            sb.append(chGraph.getLevel(node)).append(",");
+        sb.append("\n");
+        for (int edge = chGraph.getBaseGraph().getEdges(); edge < chGraph.getEdges(); edge++) {
+            RoutingCHEdgeIteratorState sc = chGraph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            sb.append(sc.getBaseNode()).append("-").append(sc.getAdjNode())
+                    .append(", weight: ").append(sc.getWeight(false)).append("/").append(sc.getWeight(true))
+                    .append(", skipped: ").append(sc.getSkippedEdge1()).append("/").append(sc.getSkippedEdge2())
+                    .append(", orig: ").append(sc.getOrigEdgeFirst()).append("/").append(sc.getOrigEdgeLast())
+                    .append("\n");
+        }
+        return sb.toString();
+    }
+
     private void checkPath(BaseGraph g, CHConfig c, int expShortcuts, double expDistance, IntIndexedContainer expNodes, int[] nodeOrdering) {
         PrepareContractionHierarchies prepare = createPrepareContractionHierarchies(g, c);
         useNodeOrdering(prepare, nodeOrdering);
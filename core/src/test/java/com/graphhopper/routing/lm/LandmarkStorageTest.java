@@ -38,6 +38,9 @@ import org.junit.jupiter.api.Test;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static java.util.Collections.emptyList;
 import static org.junit.jupiter.api.Assertions.*;
@@ -239,4 +242,50 @@ public class LandmarkStorageTest {
         storage.createLandmarks();
         assertEquals(3, storage.getSubnetworksWithLandmarks());
     }
+
+    @Test
+    public void testParallelLandmarkWeights() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 500, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.8, 0.8);
+        Weighting weighting = new FastestWeighting(encoder);
+        subnetworkRemoval(weighting, 10);
+
+        LandmarkStorage sequential = new LandmarkStorage(graph, new RAMDirectory(), new LMConfig("car", weighting), 8);
+        sequential.setMinimumNodes(2);
+        sequential.createLandmarks();
+        LandmarkStorage parallel = new LandmarkStorage(graph, new RAMDirectory(), new LMConfig("car", weighting), 8);
+        parallel.setMinimumNodes(2);
+        parallel.setLandmarkThreads(4);
+        parallel.createLandmarks();
+        assertSameLandmarks(sequential, parallel, seed);
+
+        // an executor which is set from outside is reused and not shut down
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 2; i++) {
+                LandmarkStorage shared = new LandmarkStorage(graph, new RAMDirectory(), new LMConfig("car", weighting), 8);
+                shared.setMinimumNodes(2);
+                shared.setLandmarkThreads(4).setExecutorService(executorService);
+                shared.createLandmarks();
+                assertFalse(executorService.isShutdown());
+                assertSameLandmarks(sequential, shared, seed);
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private void assertSameLandmarks(LandmarkStorage expected, LandmarkStorage actual, long seed) {
+        assertEquals(expected.getSubnetworksWithLandmarks(), actual.getSubnetworksWithLandmarks(), "seed: " + seed);
+        for (int subnetwork = 1; subnetwork < expected.getSubnetworksWithLandmarks(); subnetwork++)
+            assertArrayEquals(expected.getLandmarks(subnetwork), actual.getLandmarks(subnetwork), "seed: " + seed);
+        for (int node = 0; node < graph.getNodes(); node++) {
+            for (int lmIdx = 0; lmIdx < 8; lmIdx++) {
+                assertEquals(expected.getFromWeight(lmIdx, node), actual.getFromWeight(lmIdx, node), "seed: " + seed);
+                assertEquals(expected.getToWeight(lmIdx, node), actual.getToWeight(lmIdx, node), "seed: " + seed);
+            }
+        }
+    }
 }
@@ -0,0 +1,77 @@
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static com.graphhopper.routing.weighting.TurnCostProvider.NO_TURN_COST_PROVIDER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MaterializedWeightingTest {
+    private CarFlagEncoder encoder;
+    private BaseGraph graph;
+    private Weighting weighting;
+
+    @BeforeEach
+    public void setUp() {
+        encoder = new CarFlagEncoder(new PMap().putObject("speed_two_directions", true));
+        graph = new BaseGraph.Builder(EncodingManager.create(encoder)).create();
+        GHUtility.setSpeed(60, 30, encoder, graph.edge(0, 1).setDistance(1000));
+        GHUtility.setSpeed(90, true, false, encoder, graph.edge(1, 2).setDistance(500));
+        GHUtility.setSpeed(20, true, true, encoder, graph.edge(3, 2).setDistance(123.4));
+        weighting = new FastestWeighting(encoder, NO_TURN_COST_PROVIDER);
+    }
+
+    @Test
+    public void sameAsWrappedWeighting() {
+        EdgeWeightStorage storage = new EdgeWeightStorage(new RAMDirectory(), "car", -1).prepare(graph, weighting);
+        assertEquals(3, storage.getEdges());
+        assertSameWeights(new MaterializedWeighting(weighting, storage));
+    }
+
+    @Test
+    public void virtualEdgesUseWrappedWeighting() {
+        EdgeWeightStorage storage = new EdgeWeightStorage(new RAMDirectory(), "car", -1).prepare(graph, weighting);
+        EdgeIteratorState edge = GHUtility.setSpeed(50, true, true, encoder, graph.edge(3, 4).setDistance(100));
+        MaterializedWeighting materialized = new MaterializedWeighting(weighting, storage);
+        assertEquals(weighting.calcEdgeWeight(edge, false), materialized.calcEdgeWeight(edge, false));
+        assertEquals(weighting.calcEdgeMillis(edge, true), materialized.calcEdgeMillis(edge, true));
+    }
+
+    @Test
+    public void loadExisting(@TempDir File dir) {
+        Directory directory = new GHDirectory(dir.getAbsolutePath(), DAType.RAM_STORE);
+        EdgeWeightStorage storage = new EdgeWeightStorage(directory, "car", -1).prepare(graph, weighting);
+        storage.flush();
+        storage.close();
+
+        storage = new EdgeWeightStorage(new GHDirectory(dir.getAbsolutePath(), DAType.RAM_STORE), "car", -1);
+        assertEquals(true, storage.loadExisting());
+        assertEquals(3, storage.getEdges());
+        assertSameWeights(new MaterializedWeighting(weighting, storage));
+    }
+
+    private void assertSameWeights(Weighting materialized) {
+        for (int edge = 0; edge < graph.getEdges(); edge++) {
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            // check both the storage direction and the reverse direction of the edge states
+            for (EdgeIteratorState state : new EdgeIteratorState[]{edgeState, edgeState.detach(true)}) {
+                for (boolean reverse : new boolean[]{false, true}) {
+                    double weight = weighting.calcEdgeWeight(state, reverse);
+                    assertEquals(weight, materialized.calcEdgeWeight(state, reverse), 1.e-4);
+                    // the travel time is only defined for accessible edges
+                    if (Double.isFinite(weight))
+                        assertEquals(weighting.calcEdgeMillis(state, reverse), materialized.calcEdgeMillis(state, reverse));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GraphHopperStorageWithCompressedGeometryTest extends GraphHopperStorageTest {
+    @Override
+    protected GraphHopperStorage newGHStorage(Directory dir, boolean enabled3D, int segmentSize) {
+        return GraphBuilder.start(tagParserManager).setDir(dir).set3D(enabled3D).setSegmentSize(segmentSize).setCompressedGeometry(true).build();
+    }
+
+    @Override
+    @Test
+    public void testDontGrowOnUpdate() {
+        // the sizes differ from the uncompressed geometry, but smaller geometries are still stored in place
+        graph = createGHStorage(defaultGraphLoc, true);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10, 0);
+        na.setNode(1, 11, 20, 1);
+        EdgeIteratorState edge = graph.edge(0, 1).setDistance(100);
+        BaseGraph baseGraph = graph.getBaseGraph();
+        assertEquals(4, baseGraph.getMaxGeoRef());
+        edge.setWayGeometry(Helper.createPointList3D(1, 2, 3, 3, 4, 5, 5, 6, 7, 7, 8, 9));
+        long maxGeoRef = baseGraph.getMaxGeoRef();
+        edge.setWayGeometry(Helper.createPointList3D(1, 2, 3, 3, 4, 5, 5, 6, 7));
+        assertEquals(maxGeoRef, baseGraph.getMaxGeoRef());
+        edge.setWayGeometry(Helper.createPointList3D(1, 2, 3));
+        assertEquals(maxGeoRef, baseGraph.getMaxGeoRef());
+        assertEquals(Helper.createPointList3D(1, 2, 3), edge.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+    }
+
+    @Test
+    public void testCompressedGeometryIsSmaller() {
+        Random rnd = new Random(42);
+        BaseGraph compressed = new BaseGraph.Builder(1).set3D(true).setCompressedGeometry(true).create();
+        BaseGraph plain = new BaseGraph.Builder(1).set3D(true).create();
+        assertTrue(compressed.isCompressedGeometry());
+        assertFalse(plain.isCompressedGeometry());
+        for (int node = 0; node < 100; node++) {
+            double lat = 50 + rnd.nextDouble(), lon = 10 + rnd.nextDouble(), ele = rnd.nextInt(1000);
+            compressed.getNodeAccess().setNode(node, lat, lon, ele);
+            plain.getNodeAccess().setNode(node, lat, lon, ele);
+        }
+        for (int i = 0; i < 300; i++) {
+            int a = rnd.nextInt(100), b = rnd.nextInt(100);
+            PointList pillars = new PointList(10, true);
+            double lat = compressed.getNodeAccess().getLat(a), lon = compressed.getNodeAccess().getLon(a), ele = compressed.getNodeAccess().getEle(a);
+            for (int j = rnd.nextInt(10); j >= 0; j--) {
+                lat += (rnd.nextDouble() - 0.5) * 0.002;
+                lon += (rnd.nextDouble() - 0.5) * 0.002;
+                ele += rnd.nextInt(5) - 2;
+                pillars.add(lat, lon, ele);
+            }
+            // the edge is created in the reverse direction for every second edge
+            boolean reverse = i % 2 == 0;
+            EdgeIteratorState compressedEdge = reverse ? compressed.edge(b, a).setDistance(1) : compressed.edge(a, b).setDistance(1);
+            EdgeIteratorState plainEdge = reverse ? plain.edge(b, a).setDistance(1) : plain.edge(a, b).setDistance(1);
+            compressedEdge.setWayGeometry(pillars.clone(false));
+            plainEdge.setWayGeometry(pillars.clone(false));
+        }
+        for (int edge = 0; edge < compressed.getEdges(); edge++) {
+            for (FetchMode mode : FetchMode.values()) {
+                assertEquals(plain.getEdgeIteratorState(edge, Integer.MIN_VALUE).fetchWayGeometry(mode).toString(),
+                        compressed.getEdgeIteratorState(edge, Integer.MIN_VALUE).fetchWayGeometry(mode).toString());
+                int adj = plain.getEdgeIteratorState(edge, Integer.MIN_VALUE).getBaseNode();
+                assertEquals(plain.getEdgeIteratorState(edge, adj).fetchWayGeometry(mode).toString(),
+                        compressed.getEdgeIteratorState(edge, adj).fetchWayGeometry(mode).toString());
+            }
+        }
+        assertTrue(compressed.getMaxGeoRef() < plain.getMaxGeoRef() * 0.6, compressed.getMaxGeoRef() + " vs. " + plain.getMaxGeoRef());
+    }
+
+    @Test
+    public void testOverwriteCompressedGeometry() {
+        BaseGraph graph = new BaseGraph.Builder(1).setCompressedGeometry(true).create();
+        graph.getNodeAccess().setNode(0, 50, 10);
+        graph.getNodeAccess().setNode(1, 51, 11);
+        EdgeIteratorState edge = graph.edge(0, 1).setDistance(1);
+        edge.setWayGeometry(Helper.createPointList(50.1, 10.1, 50.2, 10.2));
+        long maxGeoRef = graph.getMaxGeoRef();
+        // a geometry that fits into the existing space is stored at the same place
+        edge.setWayGeometry(Helper.createPointList(50.3, 10.3));
+        assertEquals(maxGeoRef, graph.getMaxGeoRef());
+        assertEquals(Helper.createPointList(50.3, 10.3), edge.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+        // a larger one needs new space
+        edge.setWayGeometry(Helper.createPointList(10, 170, 50.2, 10.2, 50.5, 10.5));
+        assertTrue(graph.getMaxGeoRef() > maxGeoRef);
+        assertEquals(Helper.createPointList(10, 170, 50.2, 10.2, 50.5, 10.5), edge.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+        assertEquals(Helper.createPointList(50.5, 10.5, 50.2, 10.2, 10, 170), graph.getEdgeIteratorState(edge.getEdge(), 0).fetchWayGeometry(FetchMode.PILLAR_ONLY));
+    }
+}
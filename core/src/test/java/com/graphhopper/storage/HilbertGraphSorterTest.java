@@ -0,0 +1,123 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.TurnCost;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.util.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HilbertGraphSorterTest {
+
+    @Test
+    public void testHilbertIndex() {
+        assertEquals(0, HilbertGraphSorter.hilbertIndex(0, 0, 2));
+        assertEquals(1, HilbertGraphSorter.hilbertIndex(0, 1, 2));
+        assertEquals(2, HilbertGraphSorter.hilbertIndex(1, 1, 2));
+        assertEquals(3, HilbertGraphSorter.hilbertIndex(1, 0, 2));
+        // neighbouring positions on the curve are neighbouring cells
+        for (int d = 0; d < 255; d++) {
+            int[] a = cellAt(d, 16), b = cellAt(d + 1, 16);
+            assertEquals(1, Math.abs(a[0] - b[0]) + Math.abs(a[1] - b[1]));
+        }
+    }
+
+    private static int[] cellAt(int d, int n) {
+        for (int x = 0; x < n; x++)
+            for (int y = 0; y < n; y++)
+                if (HilbertGraphSorter.hilbertIndex(x, y, n) == d)
+                    return new int[]{x, y};
+        throw new IllegalStateException();
+    }
+
+    @Test
+    public void testSortKeepsGraph() {
+        CarFlagEncoder encoder = new CarFlagEncoder(5, 5, 10);
+        EncodingManager em = EncodingManager.create(encoder);
+        BaseGraph graph = createGraph(em, encoder);
+        BaseGraph sorted = createGraph(em, encoder);
+        int[] oldToNewNodes = HilbertGraphSorter.sortNodes(sorted);
+        int[] oldToNewEdges = HilbertGraphSorter.sortEdges(sorted, oldToNewNodes);
+        HilbertGraphSorter.relabel(sorted, oldToNewNodes, oldToNewEdges);
+
+        NodeAccess na = graph.getNodeAccess(), sortedNa = sorted.getNodeAccess();
+        long prevIndex = -1;
+        for (int node = 0; node < graph.getNodes(); node++) {
+            int newNode = oldToNewNodes[node];
+            assertEquals(na.getLat(node), sortedNa.getLat(newNode));
+            assertEquals(na.getLon(node), sortedNa.getLon(newNode));
+            long index = HilbertGraphSorter.hilbertIndex(sortedNa.getLat(node), sortedNa.getLon(node), sorted.getBounds());
+            assertTrue(index >= prevIndex);
+            prevIndex = index;
+        }
+        for (int edge = 0; edge < graph.getEdges(); edge++) {
+            EdgeIteratorState e = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            EdgeIteratorState s = sorted.getEdgeIteratorState(oldToNewEdges[edge], Integer.MIN_VALUE);
+            assertEquals(oldToNewNodes[e.getBaseNode()], s.getBaseNode());
+            assertEquals(oldToNewNodes[e.getAdjNode()], s.getAdjNode());
+            assertEquals(e.getDistance(), s.getDistance());
+            assertEquals(e.getFlags(), s.getFlags());
+            assertEquals(e.getName(), s.getName());
+            assertEquals(e.fetchWayGeometry(FetchMode.ALL).toString(), s.fetchWayGeometry(FetchMode.ALL).toString());
+        }
+        EdgeExplorer explorer = graph.createEdgeExplorer(), sortedExplorer = sorted.createEdgeExplorer();
+        for (int node = 0; node < graph.getNodes(); node++) {
+            Set<String> expected = new HashSet<>();
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+                expected.add(oldToNewEdges[iter.getEdge()] + "-" + oldToNewNodes[iter.getAdjNode()]);
+            Set<String> actual = new HashSet<>();
+            iter = sortedExplorer.setBaseNode(oldToNewNodes[node]);
+            while (iter.next())
+                actual.add(iter.getEdge() + "-" + iter.getAdjNode());
+            assertEquals(expected, actual);
+        }
+        DecimalEncodedValue turnCostEnc = em.getDecimalEncodedValue(TurnCost.key(encoder.toString()));
+        TurnCostStorage.TurnRelationIterator iter = graph.getTurnCostStorage().getAllTurnRelations();
+        int relations = 0;
+        while (iter.next()) {
+            assertEquals(iter.getCost(turnCostEnc), sorted.getTurnCostStorage().get(turnCostEnc,
+                    oldToNewEdges[iter.getFromEdge()], oldToNewNodes[iter.getViaNode()], oldToNewEdges[iter.getToEdge()]));
+            relations++;
+        }
+        assertTrue(relations > 0);
+    }
+
+    private static BaseGraph createGraph(EncodingManager em, CarFlagEncoder encoder) {
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        Random random = new Random(123);
+        GHUtility.buildRandomGraph(graph, random, 200, 2.5, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.8, 0.8);
+        for (int edge = 0; edge < graph.getEdges(); edge += 3) {
+            EdgeIteratorState e = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            NodeAccess na = graph.getNodeAccess();
+            e.setWayGeometry(Helper.createPointList(na.getLat(e.getBaseNode()) + 0.001, na.getLon(e.getBaseNode()), na.getLat(e.getAdjNode()), na.getLon(e.getAdjNode()) + 0.001));
+            e.setName("street " + edge);
+        }
+        GHUtility.addRandomTurnCosts(graph, 42, em, encoder, 3, graph.getTurnCostStorage());
+        return graph;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapDataAccessTest extends DataAccessTest {
+    @Override
+    public DataAccess createDataAccess(String name, int segmentSize) {
+        return new OffHeapDataAccess(name, directory, true, segmentSize);
+    }
+
+    @Test
+    public void testMixRAM2OffHeap() {
+        DataAccess da = new RAMDataAccess(name, directory, true, 128);
+        assertFalse(da.loadExisting());
+        da.create(300);
+        da.setInt(7 * 4, 123);
+        da.setShort(255, (short) 12345);
+        da.setHeader(4, 42);
+        da.flush();
+        da.close();
+        da = createDataAccess(name);
+        assertTrue(da.loadExisting());
+        assertEquals(384, da.getCapacity());
+        assertEquals(123, da.getInt(7 * 4));
+        assertEquals(12345, da.getShort(255));
+        assertEquals(42, da.getHeader(4));
+        da.close();
+    }
+
+    @Test
+    public void testMixOffHeap2RAM() {
+        DataAccess da = createDataAccess(name);
+        assertFalse(da.loadExisting());
+        da.create(300);
+        da.setInt(7 * 4, 123);
+        da.setBytes(250, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, 10);
+        da.flush();
+        da.close();
+        da = new RAMDataAccess(name, directory, true, -1);
+        assertTrue(da.loadExisting());
+        assertEquals(123, da.getInt(7 * 4));
+        byte[] bytes = new byte[10];
+        da.getBytes(250, bytes, 10);
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, bytes);
+        da.close();
+    }
+
+    @Test
+    public void testCloseReleasesMemory() {
+        int segmentSize = 1 << 20;
+        long before = getDirectMemoryUsed();
+        for (int i = 0; i < 20; i++) {
+            DataAccess da = new OffHeapDataAccess(name, directory, false, segmentSize);
+            da.create(8L * segmentSize);
+            da.setInt(7L * segmentSize, i);
+            assertEquals(8L * segmentSize, getDirectMemoryUsed() - before);
+            da.close();
+            assertEquals(before, getDirectMemoryUsed(), "direct memory is still reserved after close in cycle " + i);
+        }
+    }
+
+    private static long getDirectMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct"))
+                return pool.getMemoryUsed();
+        }
+        throw new IllegalStateException("no direct buffer pool found");
+    }
+
+    @Test
+    public void testDirectory() {
+        GHDirectory dir = new GHDirectory(directory, DAType.OFFHEAP_STORE);
+        DataAccess da = dir.create("test");
+        assertTrue(da instanceof OffHeapDataAccess);
+        assertEquals(DAType.OFFHEAP_STORE, da.getType());
+        // off-heap memory is not converted into the int optimized heap variant
+        assertEquals(DAType.OFFHEAP_STORE, dir.getDefaultType("test2", true));
+        assertEquals(DAType.OFFHEAP, DAType.fromString("offheap"));
+        assertEquals(DAType.OFFHEAP_STORE, DAType.fromString(DAType.OFFHEAP_STORE.toString()));
+        dir.close();
+        assertTrue(da.isClosed());
+    }
+}
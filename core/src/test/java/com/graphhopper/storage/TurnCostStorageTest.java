@@ -27,15 +27,19 @@ import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.util.GHUtility;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import static com.graphhopper.util.GHUtility.getEdge;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TurnCostStorageTest {
 
@@ -161,4 +165,80 @@ public class TurnCostStorageTest {
         assertFalse(iterator.next());
     }
 
+    @Test
+    public void testBulkLoadAndSort() {
+        DecimalEncodedValue carEnc = manager.getDecimalEncodedValue(TurnCost.key("car"));
+        DecimalEncodedValue bikeEnc = manager.getDecimalEncodedValue(TurnCost.key("bike"));
+        BaseGraph listGraph = new BaseGraph.Builder(manager).create();
+        BaseGraph bulkGraph = new BaseGraph.Builder(manager).create();
+        int nodes = 20, edges = 40;
+        Random rnd = new Random(123);
+        for (int i = 0; i < edges; i++) {
+            int a = rnd.nextInt(nodes), b = rnd.nextInt(nodes);
+            listGraph.edge(a, b).setDistance(1);
+            bulkGraph.edge(a, b).setDistance(1);
+        }
+        TurnCostStorage listStorage = listGraph.getTurnCostStorage();
+        TurnCostStorage bulkStorage = bulkGraph.getTurnCostStorage();
+        // some entries exist before the bulk load, some are set for both encoders and need to be merged
+        bulkStorage.set(carEnc, 3, 5, 4, 2);
+        listStorage.set(carEnc, 3, 5, 4, 2);
+        bulkStorage.startBulkLoad();
+        for (int i = 0; i < 200; i++) {
+            int from = rnd.nextInt(edges), via = rnd.nextInt(nodes / 2), to = rnd.nextInt(edges);
+            DecimalEncodedValue enc = rnd.nextBoolean() ? carEnc : bikeEnc;
+            double cost = rnd.nextBoolean() ? Double.POSITIVE_INFINITY : rnd.nextInt(3);
+            if (listStorage.get(enc, from, via, to) != 0)
+                continue;
+            listStorage.set(enc, from, via, to, cost);
+            bulkStorage.set(enc, from, via, to, cost);
+        }
+        bulkStorage.set(bikeEnc, 3, 5, 4, 1);
+        listStorage.set(bikeEnc, 3, 5, 4, 1);
+        assertFalse(bulkStorage.isSorted());
+        bulkStorage.finishBulkLoad();
+        assertTrue(bulkStorage.isSorted());
+        assertEquals(2, bulkStorage.get(carEnc, 3, 5, 4));
+        assertEquals(1, bulkStorage.get(bikeEnc, 3, 5, 4));
+        assertSameTurnCosts(listStorage, bulkStorage, nodes, edges, carEnc, bikeEnc);
+
+        // adding entries after sorting still works, and sorting again restores the sorted layout
+        bulkStorage.set(carEnc, 7, nodes - 1, 8, 2);
+        listStorage.set(carEnc, 7, nodes - 1, 8, 2);
+        assertFalse(bulkStorage.isSorted());
+        assertSameTurnCosts(listStorage, bulkStorage, nodes, edges, carEnc, bikeEnc);
+        bulkGraph.freeze();
+        assertTrue(bulkStorage.isSorted());
+        assertSameTurnCosts(listStorage, bulkStorage, nodes, edges, carEnc, bikeEnc);
+    }
+
+    private static void assertSameTurnCosts(TurnCostStorage expected, TurnCostStorage given, int nodes, int edges, DecimalEncodedValue... encs) {
+        for (DecimalEncodedValue enc : encs)
+            for (int via = 0; via < nodes; via++)
+                for (int from = 0; from < edges; from++)
+                    for (int to = 0; to < edges; to++)
+                        assertEquals(expected.get(enc, from, via, to), given.get(enc, from, via, to), from + "-" + via + "-" + to);
+    }
+
+    @Test
+    public void testLoadSorted(@TempDir Path path) {
+        DecimalEncodedValue carEnc = manager.getDecimalEncodedValue(TurnCost.key("car"));
+        BaseGraph g = new BaseGraph.Builder(manager).setDir(new GHDirectory(path.toString(), DAType.RAM_STORE)).create();
+        initGraph(g, manager.getEncoder("car"));
+        g.getTurnCostStorage().set(carEnc, 4, 2, 1, Double.POSITIVE_INFINITY);
+        g.getTurnCostStorage().set(carEnc, 1, 2, 4, 2);
+        g.freeze();
+        g.flush();
+        g.close();
+
+        BaseGraph loaded = new BaseGraph.Builder(manager).setDir(new GHDirectory(path.toString(), DAType.RAM_STORE)).build();
+        loaded.loadExisting();
+        TurnCostStorage turnCostStorage = loaded.getTurnCostStorage();
+        assertTrue(turnCostStorage.isSorted());
+        assertEquals(Double.POSITIVE_INFINITY, turnCostStorage.get(carEnc, 4, 2, 1));
+        assertEquals(2, turnCostStorage.get(carEnc, 1, 2, 4));
+        assertEquals(0, turnCostStorage.get(carEnc, 1, 2, 1));
+        assertEquals(0, turnCostStorage.get(carEnc, 1, 3, 4));
+    }
+
 }
@@ -591,6 +591,70 @@ public class LocationIndexTreeTest {
         return graph;
     }
 
+    @Test
+    public void testParallelPrepareIndex() {
+        BaseGraph g = new BaseGraph.Builder(encodingManager).create();
+        FlagEncoder encoder = encodingManager.getEncoder("car");
+        Random rnd = new Random(123);
+        GHUtility.buildRandomGraph(g, rnd, 500, 2.5, false, true, encoder.getAccessEnc(), encoder.getAverageSpeedEnc(),
+                60.0, 0.0, 0.8, 0.0);
+        // some edges with pillar nodes
+        for (int i = 0; i < 100; i++) {
+            PointList pillars = new PointList();
+            for (int j = 0; j < 3; j++)
+                pillars.add(49.4 + rnd.nextDouble() * 0.01, 9.7 + rnd.nextDouble() * 0.01);
+            g.getEdgeIteratorState(rnd.nextInt(g.getEdges()), Integer.MIN_VALUE).setWayGeometry(pillars);
+        }
+        LocationIndexTree index = createIndexNoPrepare(g, 50);
+        index.prepareIndex();
+        for (int threads : new int[]{2, 3, 8}) {
+            LocationIndexTree parallelIndex = createIndexNoPrepare(g, 50).setThreads(threads);
+            parallelIndex.prepareIndex();
+            assertEquals(index.lineIntIndex.getSize(), parallelIndex.lineIntIndex.getSize());
+            assertEquals(index.lineIntIndex.getLeafs(), parallelIndex.lineIntIndex.getLeafs());
+            assertEquals(index.getCapacity(), parallelIndex.getCapacity());
+            for (long pointer = 0; pointer < index.getCapacity(); pointer += 4)
+                assertEquals(index.lineIntIndex.dataAccess.getInt(pointer), parallelIndex.lineIntIndex.dataAccess.getInt(pointer), "threads: " + threads);
+        }
+    }
+
+    @Test
+    public void testBatchFindClosest() {
+        BaseGraph g = new BaseGraph.Builder(encodingManager).create();
+        FlagEncoder encoder = encodingManager.getEncoder("car");
+        Random rnd = new Random(42);
+        GHUtility.buildRandomGraph(g, rnd, 300, 2.5, false, true, encoder.getAccessEnc(), encoder.getAverageSpeedEnc(),
+                60.0, 0.0, 0.8, 0.0);
+        for (int i = 0; i < 50; i++) {
+            PointList pillars = new PointList();
+            pillars.add(49.4 + rnd.nextDouble() * 0.01, 9.7 + rnd.nextDouble() * 0.01);
+            g.getEdgeIteratorState(rnd.nextInt(g.getEdges()), Integer.MIN_VALUE).setWayGeometry(pillars);
+        }
+        LocationIndexTree index = createIndexNoPrepare(g, 100);
+        index.prepareIndex();
+        List<GHPoint> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            points.add(new GHPoint(49.399 + rnd.nextDouble() * 0.012, 9.699 + rnd.nextDouble() * 0.012));
+        EdgeFilter evenEdges = edge -> edge.getEdge() % 2 == 0;
+        for (EdgeFilter filter : Arrays.asList(EdgeFilter.ALL_EDGES, evenEdges)) {
+            for (int threads : new int[]{1, 4}) {
+                List<Snap> snaps = index.findClosest(points, filter, threads);
+                assertEquals(points.size(), snaps.size());
+                for (int i = 0; i < points.size(); i++) {
+                    Snap expected = index.findClosest(points.get(i).lat, points.get(i).lon, filter);
+                    Snap snap = snaps.get(i);
+                    assertEquals(expected.isValid(), snap.isValid());
+                    assertEquals(expected.getClosestNode(), snap.getClosestNode());
+                    assertEquals(expected.getClosestEdge().getEdgeKey(), snap.getClosestEdge().getEdgeKey());
+                    assertEquals(expected.getWayIndex(), snap.getWayIndex());
+                    assertEquals(expected.getSnappedPosition(), snap.getSnappedPosition());
+                    assertEquals(expected.getQueryDistance(), snap.getQueryDistance(), 1.e-9);
+                    assertEquals(expected.getSnappedPoint(), snap.getSnappedPoint());
+                }
+            }
+        }
+    }
+
     @Test
     public void testDifferentVehicles() {
         final EncodingManager encodingManager = EncodingManager.create("car,foot");
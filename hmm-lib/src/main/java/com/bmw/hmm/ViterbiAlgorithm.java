@@ -20,6 +20,8 @@ package com.bmw.hmm;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -49,7 +51,8 @@ import java.util.Map;
  * This implementation exploits this fact by letting the Java garbage collector
  * take care of unreachable back pointers. If back pointers converge to a single path after a
  * constant number of time steps, only O(t) back pointers and transition descriptors need to be
- * stored in memory.
+ * stored in memory. {@link #pollConvergedSequence()} returns the converged part of the sequence
+ * while observations are still added, after which it does not need to be stored at all.
  *
  * @param <S> the state type
  * @param <O> the observation type
@@ -107,6 +110,12 @@ public class ViterbiAlgorithm<S, O, D> {
 
     private Collection<S> prevCandidates;
 
+    /**
+     * The last state returned by {@link #pollConvergedSequence()}. The back pointers end at this
+     * state, it is not part of the sequences returned afterwards.
+     */
+    private ExtendedState<S, O, D> lastPolledState;
+
     /**
      * For each state s_t of the current time step t, message.get(s_t) contains the log
      * probability of the most likely sequence ending in state s_t with given observations
@@ -255,6 +264,112 @@ public class ViterbiAlgorithm<S, O, D> {
         }
     }
 
+    /**
+     * Returns the beginning of the most likely sequence which cannot change anymore, because the
+     * most likely sequences of all state candidates of the current time step start with it.
+     * The returned states are not returned again by this method or by
+     * {@link #computeMostLikelySequence()}, and they are not kept in memory anymore. This allows
+     * to process long or endless observation sequences step by step with bounded memory.
+     *
+     * <p>Returns an empty list if the back pointers have not converged since the last call.
+     */
+    public List<SequenceState<S, O, D>> pollConvergedSequence() {
+        final List<SequenceState<S, O, D>> result = new ArrayList<>();
+        if (message == null) {
+            return result;
+        }
+        final ExtendedState<S, O, D> convergedState = convergedState();
+        if (convergedState == null) {
+            return result;
+        }
+        ExtendedState<S, O, D> es = convergedState;
+        while (es != null && es != lastPolledState) {
+            result.add(new SequenceState<>(es.state, es.observation, es.transitionDescriptor));
+            es = es.backPointer;
+        }
+        Collections.reverse(result);
+        convergedState.backPointer = null;
+        lastPolledState = convergedState;
+        return result;
+    }
+
+    /**
+     * Like {@link #pollConvergedSequence()}, but if the most likely sequence has more than the
+     * given number of time steps after the converged part, the state of the most likely sequence
+     * before these time steps is taken as converged. The state candidates of the current time step
+     * whose sequences do not contain this state are discarded. This bounds the latency and the
+     * memory also if the back pointers do not converge, e.g. for parallel roads, at the price
+     * of a possibly suboptimal sequence.
+     *
+     * @throws IllegalArgumentException if maxPendingTimeSteps is negative
+     */
+    public List<SequenceState<S, O, D>> pollConvergedSequence(int maxPendingTimeSteps) {
+        if (maxPendingTimeSteps < 0) {
+            throw new IllegalArgumentException("maxPendingTimeSteps must not be negative: "
+                    + maxPendingTimeSteps);
+        }
+        if (message != null) {
+            forceConvergence(maxPendingTimeSteps);
+        }
+        return pollConvergedSequence();
+    }
+
+    private void forceConvergence(int maxPendingTimeSteps) {
+        ExtendedState<S, O, D> forcedState = lastExtendedStates.get(mostLikelyState());
+        for (int i = 0; i < maxPendingTimeSteps && forcedState != null; i++) {
+            forcedState = forcedState.backPointer;
+        }
+        if (forcedState == null || forcedState == lastPolledState) {
+            return;
+        }
+        // All back pointer chains have the same length, so the states of the same time step are
+        // at the same depth.
+        final Map<S, Double> prunedMessage = new LinkedHashMap<>(message);
+        final Iterator<Map.Entry<S, ExtendedState<S, O, D>>> iter =
+                lastExtendedStates.entrySet().iterator();
+        while (iter.hasNext()) {
+            final Map.Entry<S, ExtendedState<S, O, D>> entry = iter.next();
+            ExtendedState<S, O, D> es = entry.getValue();
+            for (int i = 0; i < maxPendingTimeSteps && es != null; i++) {
+                es = es.backPointer;
+            }
+            if (es != forcedState) {
+                iter.remove();
+                prunedMessage.put(entry.getKey(), Double.NEGATIVE_INFINITY);
+            }
+        }
+        message = prunedMessage;
+    }
+
+    /**
+     * Returns the most recent extended state which is on the back pointer chains of all state
+     * candidates of the current time step, or null if there is no such state.
+     */
+    private ExtendedState<S, O, D> convergedState() {
+        // index 0 is the most recent state
+        final Map<ExtendedState<S, O, D>, Integer> chainIndex = new IdentityHashMap<>();
+        final List<ExtendedState<S, O, D>> chain = new ArrayList<>();
+        int convergedIndex = 0;
+        for (ExtendedState<S, O, D> lastState : lastExtendedStates.values()) {
+            if (chain.isEmpty()) {
+                for (ExtendedState<S, O, D> es = lastState; es != null; es = es.backPointer) {
+                    chainIndex.put(es, chain.size());
+                    chain.add(es);
+                }
+                continue;
+            }
+            ExtendedState<S, O, D> es = lastState;
+            while (es != null && !chainIndex.containsKey(es)) {
+                es = es.backPointer;
+            }
+            if (es == null) {
+                return null;
+            }
+            convergedIndex = Math.max(convergedIndex, chainIndex.get(es));
+        }
+        return chain.isEmpty() ? null : chain.get(convergedIndex);
+    }
+
     /**
      * Returns whether an HMM occurred in the last time step.
      *
@@ -427,7 +542,7 @@ public class ViterbiAlgorithm<S, O, D> {
         // Retrieve most likely state sequence in reverse order
         final List<SequenceState<S, O, D>> result = new ArrayList<>();
         ExtendedState<S, O, D> es = lastExtendedStates.get(lastState);
-        while(es != null) {
+        while(es != null && es != lastPolledState) {
             final SequenceState<S, O, D> ss = new SequenceState<>(es.state, es.observation,
                     es.transitionDescriptor);
             result.add(ss);
@@ -352,4 +352,87 @@ public class ViterbiAlgorithmTest {
         assertEquals(Rain.T, result.get(3).state);
     }
 
-}
\ No newline at end of file
+    /**
+     * Checks that the converged parts of the most likely sequence together with the rest of the
+     * sequence are the same as the most likely sequence computed at the end.
+     */
+    @Test
+    public void testPollConvergedSequence() {
+        final List<Rain> candidates = Arrays.asList(Rain.T, Rain.F);
+
+        final Map<Rain, Double> emissionLogProbabilitiesForUmbrella = new LinkedHashMap<>();
+        emissionLogProbabilitiesForUmbrella.put(Rain.T, log(0.9));
+        emissionLogProbabilitiesForUmbrella.put(Rain.F, log(0.2));
+
+        final Map<Rain, Double> emissionLogProbabilitiesForNoUmbrella = new LinkedHashMap<>();
+        emissionLogProbabilitiesForNoUmbrella.put(Rain.T, log(0.1));
+        emissionLogProbabilitiesForNoUmbrella.put(Rain.F, log(0.8));
+
+        final Map<Transition<Rain>, Double> transitionLogProbabilities = new LinkedHashMap<>();
+        transitionLogProbabilities.put(new Transition<Rain>(Rain.T, Rain.T), log(0.7));
+        transitionLogProbabilities.put(new Transition<Rain>(Rain.T, Rain.F), log(0.3));
+        transitionLogProbabilities.put(new Transition<Rain>(Rain.F, Rain.T), log(0.3));
+        transitionLogProbabilities.put(new Transition<Rain>(Rain.F, Rain.F), log(0.7));
+
+        final ViterbiAlgorithm<Rain, Umbrella, Descriptor> viterbi = new ViterbiAlgorithm<>();
+        final ViterbiAlgorithm<Rain, Umbrella, Descriptor> pollingViterbi = new ViterbiAlgorithm<>();
+        assertTrue(pollingViterbi.pollConvergedSequence().isEmpty());
+        viterbi.startWithInitialObservation(Umbrella.T, candidates, emissionLogProbabilitiesForUmbrella);
+        pollingViterbi.startWithInitialObservation(Umbrella.T, candidates, emissionLogProbabilitiesForUmbrella);
+        final List<Rain> polledStates = new ArrayList<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            final boolean umbrella = random.nextBoolean();
+            final Map<Rain, Double> emissionLogProbabilities = umbrella ?
+                    emissionLogProbabilitiesForUmbrella : emissionLogProbabilitiesForNoUmbrella;
+            viterbi.nextStep(umbrella ? Umbrella.T : Umbrella.F, candidates, emissionLogProbabilities,
+                    transitionLogProbabilities);
+            pollingViterbi.nextStep(umbrella ? Umbrella.T : Umbrella.F, candidates, emissionLogProbabilities,
+                    transitionLogProbabilities);
+            polledStates.addAll(states(pollingViterbi.pollConvergedSequence()));
+        }
+        // the back pointers converged at some time steps, but not at the last one
+        assertTrue(polledStates.size() > 50);
+        final List<Rain> remainingStates = states(pollingViterbi.computeMostLikelySequence());
+        assertFalse(remainingStates.isEmpty());
+
+        polledStates.addAll(remainingStates);
+        assertEquals(states(viterbi.computeMostLikelySequence()), polledStates);
+    }
+
+    /**
+     * Checks that the most likely sequence is cut after the given number of pending time steps
+     * if the back pointers of two parallel sequences never converge.
+     */
+    @Test
+    public void testPollConvergedSequenceWithMaxPendingTimeSteps() {
+        final List<Rain> candidates = Arrays.asList(Rain.T, Rain.F);
+        final Map<Rain, Double> emissionLogProbabilities = new LinkedHashMap<>();
+        emissionLogProbabilities.put(Rain.T, log(0.5));
+        emissionLogProbabilities.put(Rain.F, log(0.5));
+        final Map<Transition<Rain>, Double> transitionLogProbabilities = new LinkedHashMap<>();
+        transitionLogProbabilities.put(new Transition<Rain>(Rain.T, Rain.T), log(0.9));
+        transitionLogProbabilities.put(new Transition<Rain>(Rain.T, Rain.F), log(0.1));
+        transitionLogProbabilities.put(new Transition<Rain>(Rain.F, Rain.T), log(0.1));
+        transitionLogProbabilities.put(new Transition<Rain>(Rain.F, Rain.F), log(0.9));
+
+        final ViterbiAlgorithm<Rain, Umbrella, Descriptor> viterbi = new ViterbiAlgorithm<>();
+        viterbi.startWithInitialObservation(Umbrella.T, candidates, emissionLogProbabilities);
+        final List<Rain> polledStates = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            viterbi.nextStep(Umbrella.T, candidates, emissionLogProbabilities,
+                    transitionLogProbabilities);
+            if (i < 3) {
+                // the sequences starting with T and F do not converge
+                assertTrue(viterbi.pollConvergedSequence().isEmpty());
+            }
+            polledStates.addAll(states(viterbi.pollConvergedSequence(3)));
+            assertTrue(viterbi.computeMostLikelySequence().size() <= 3);
+        }
+        assertFalse(polledStates.isEmpty());
+        polledStates.addAll(states(viterbi.computeMostLikelySequence()));
+        assertEquals(Collections.nCopies(11, Rain.T), polledStates);
+        assertThrows(IllegalArgumentException.class, () -> viterbi.pollConvergedSequence(-1));
+    }
+
+}
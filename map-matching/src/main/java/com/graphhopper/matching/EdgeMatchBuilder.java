@@ -0,0 +1,122 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.bmw.hmm.SequenceState;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the list of directed edges (EdgeIteratorState instances turned the right way) of the most likely sequence,
+ * each associated with 0 or more of the observations, see {@link EdgeMatch}. The sequence can be added in parts: an
+ * edge match is finished as soon as the next edge of the sequence is known.
+ */
+class EdgeMatchBuilder {
+    private final Graph graph;
+    private List<EdgeMatch> edgeMatches = new ArrayList<>();
+    private List<State> states = new ArrayList<>();
+    private EdgeIteratorState currentDirectedRealEdge;
+
+    /**
+     * @param graph the graph without the virtual nodes and edges of the candidates
+     */
+    EdgeMatchBuilder(Graph graph) {
+        this.graph = graph;
+    }
+
+    // These directed edges are edges of the real street graph, where nodes are intersections.
+    // So in _this_ representation, the path that you get when you just look at the edges goes from
+    // an intersection to an intersection.
+
+    // Implementation note: We have to look at both states _and_ transitions, since we can have e.g. just one state,
+    // or two states with a transition that is an empty path (observations snapped to the same node in the query graph),
+    // but these states still happen on an edge, and for this representation, we want to have that edge.
+    // (Whereas in the ResponsePath representation, we would just see an empty path.)
+
+    // Note that the result can be empty, even when the input is not. Observations can be on nodes as well as on
+    // edges, and when all observations are on the same node, we get no edge at all.
+    // But apart from that corner case, all observations that go in here are also in the result.
+
+    // (Consider totally forbidding candidate states to be snapped to a point, and make them all be on directed
+    // edges, then that corner case goes away.)
+    void add(SequenceState<State, Observation, Path> transitionAndState) {
+        // transition (except before the first state)
+        if (transitionAndState.transitionDescriptor != null) {
+            for (EdgeIteratorState edge : transitionAndState.transitionDescriptor.calcEdges()) {
+                addDirectedRealEdge(resolveToRealEdge(edge));
+            }
+        }
+        // state
+        if (transitionAndState.state.isOnDirectedEdge()) { // as opposed to on a node
+            addDirectedRealEdge(resolveToRealEdge(transitionAndState.state.getOutgoingVirtualEdge()));
+        }
+        states.add(transitionAndState.state);
+    }
+
+    private void addDirectedRealEdge(EdgeIteratorState newDirectedRealEdge) {
+        if (currentDirectedRealEdge != null) {
+            if (!equalEdges(currentDirectedRealEdge, newDirectedRealEdge)) {
+                EdgeMatch edgeMatch = new EdgeMatch(currentDirectedRealEdge, states);
+                edgeMatches.add(edgeMatch);
+                states = new ArrayList<>();
+            }
+        }
+        currentDirectedRealEdge = newDirectedRealEdge;
+    }
+
+    /**
+     * @return the edge matches which were finished since the last call, their states cannot change anymore
+     */
+    List<EdgeMatch> poll() {
+        List<EdgeMatch> result = edgeMatches;
+        edgeMatches = new ArrayList<>();
+        return result;
+    }
+
+    /**
+     * Finishes the last edge match, the next state starts a new sequence.
+     */
+    void finish() {
+        if (currentDirectedRealEdge != null) {
+            EdgeMatch edgeMatch = new EdgeMatch(currentDirectedRealEdge, states);
+            edgeMatches.add(edgeMatch);
+        }
+        currentDirectedRealEdge = null;
+        states = new ArrayList<>();
+    }
+
+    private boolean equalEdges(EdgeIteratorState edge1, EdgeIteratorState edge2) {
+        return edge1.getEdge() == edge2.getEdge()
+                && edge1.getBaseNode() == edge2.getBaseNode()
+                && edge1.getAdjNode() == edge2.getAdjNode();
+    }
+
+    private EdgeIteratorState resolveToRealEdge(EdgeIteratorState edgeIteratorState) {
+        // the edges of the virtual nodes can belong to different query graphs, see OnlineMapMatching
+        if (edgeIteratorState instanceof VirtualEdgeIteratorState) {
+            return graph.getEdgeIteratorStateForKey(((VirtualEdgeIteratorState) edgeIteratorState).getOriginalEdgeKey());
+        } else {
+            return edgeIteratorState;
+        }
+    }
+}
@@ -23,19 +23,13 @@ import com.bmw.hmm.ViterbiAlgorithm;
 import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
-import com.graphhopper.routing.AStarBidirection;
-import com.graphhopper.routing.BidirRoutingAlgorithm;
-import com.graphhopper.routing.DijkstraBidirectionRef;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.Subnetwork;
-import com.graphhopper.routing.lm.LMApproximator;
-import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EdgeFilter;
-import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.Graph;
@@ -75,7 +69,6 @@ public class MapMatching {
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final BaseGraph graph;
-    private final LandmarkStorage landmarks;
     private final LocationIndexTree locationIndex;
     private double measurementErrorSigma = 50.0;
     private double transitionProbabilityBeta = 2.0;
@@ -111,24 +104,9 @@ public class MapMatching {
             throw new IllegalArgumentException("Could not find profile '" + profileStr + "', choose one of: " + profileNames);
         }
 
-        boolean disableLM = hints.getBool(Parameters.Landmark.DISABLE, false);
-        boolean disableCH = hints.getBool(Parameters.CH.DISABLE, false);
-
-        // see map-matching/#177: both ch.disable and lm.disable can be used to force Dijkstra which is the better
-        // (=faster) choice when the observations are close to each other
-        boolean useDijkstra = disableLM || disableCH;
-
-        if (graphHopper.getLMPreparationHandler().isEnabled() && !useDijkstra) {
-            // using LM because u-turn prevention does not work properly with (node-based) CH
-            landmarks = graphHopper.getLandmarks().get(profile.getName());
-            if (landmarks == null) {
-                throw new IllegalArgumentException("Cannot find LM preparation for the requested profile: '" + profile.getName() + "'" +
-                        "\nYou can try disabling LM using " + Parameters.Landmark.DISABLE + "=true" +
-                        "\navailable LM profiles: " + graphHopper.getLandmarks().keySet());
-            }
-        } else {
-            landmarks = null;
-        }
+        // The transitions are calculated with one Dijkstra per candidate to all candidates of the next observation, see
+        // TransitionSearch. This is faster than LM or CH because the observations are close to each other (see
+        // map-matching/#177), and u-turn prevention does not work properly with (node-based) CH.
         graph = graphHopper.getGraphHopperStorage().getBaseGraph();
         unwrappedWeighting = graphHopper.createWeighting(profile, hints);
         inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileStr));
@@ -151,6 +129,30 @@ public class MapMatching {
         this.measurementErrorSigma = measurementErrorSigma;
     }
 
+    double getMeasurementErrorSigma() {
+        return measurementErrorSigma;
+    }
+
+    double getTransitionProbabilityBeta() {
+        return transitionProbabilityBeta;
+    }
+
+    BaseGraph getGraph() {
+        return graph;
+    }
+
+    Weighting getUnwrappedWeighting() {
+        return unwrappedWeighting;
+    }
+
+    int getMaxVisitedNodes() {
+        return maxVisitedNodes;
+    }
+
+    DistanceCalc getDistanceCalc() {
+        return distanceCalc;
+    }
+
     public MatchResult match(List<Observation> observations) {
         List<Observation> filteredObservations = filterObservations(observations);
 
@@ -265,39 +267,47 @@ public class MapMatching {
         for (int i = 0; i < filteredObservations.size(); i++) {
             Observation observation = filteredObservations.get(i);
             Collection<Snap> splits = splitsPerObservation.get(i);
-            List<State> candidates = new ArrayList<>();
-            for (Snap split : splits) {
-                if (queryGraph.isVirtualNode(split.getClosestNode())) {
-                    List<VirtualEdgeIteratorState> virtualEdges = new ArrayList<>();
-                    EdgeIterator iter = queryGraph.createEdgeExplorer().setBaseNode(split.getClosestNode());
-                    while (iter.next()) {
-                        if (!queryGraph.isVirtualEdge(iter.getEdge())) {
-                            throw new RuntimeException("Virtual nodes must only have virtual edges "
-                                    + "to adjacent nodes.");
-                        }
-                        virtualEdges.add((VirtualEdgeIteratorState) queryGraph.getEdgeIteratorState(iter.getEdge(), iter.getAdjNode()));
-                    }
-                    if (virtualEdges.size() != 2) {
-                        throw new RuntimeException("Each virtual node must have exactly 2 "
-                                + "virtual edges (reverse virtual edges are not returned by the "
-                                + "EdgeIterator");
-                    }
+            List<State> candidates = createCandidateStates(queryGraph, observation, splits);
+            timeSteps.add(new ObservationWithCandidateStates(observation, candidates));
+        }
+        return timeSteps;
+    }
 
-                    // Create a directed candidate for each of the two possible directions through
-                    // the virtual node. We need to add candidates for both directions because
-                    // we don't know yet which is the correct one. This will be figured
-                    // out by the Viterbi algorithm.
-                    candidates.add(new State(observation, split, virtualEdges.get(0), virtualEdges.get(1)));
-                    candidates.add(new State(observation, split, virtualEdges.get(1), virtualEdges.get(0)));
-                } else {
-                    // Create an undirected candidate for the real node.
-                    candidates.add(new State(observation, split));
+    /**
+     * Creates the candidates for the given snaps of an observation, which must have been added to the given query
+     * graph. Creates directed candidates for virtual nodes and undirected candidates for real nodes.
+     */
+    static List<State> createCandidateStates(QueryGraph queryGraph, Observation observation, Collection<Snap> splits) {
+        List<State> candidates = new ArrayList<>();
+        for (Snap split : splits) {
+            if (queryGraph.isVirtualNode(split.getClosestNode())) {
+                List<VirtualEdgeIteratorState> virtualEdges = new ArrayList<>();
+                EdgeIterator iter = queryGraph.createEdgeExplorer().setBaseNode(split.getClosestNode());
+                while (iter.next()) {
+                    if (!queryGraph.isVirtualEdge(iter.getEdge())) {
+                        throw new RuntimeException("Virtual nodes must only have virtual edges "
+                                + "to adjacent nodes.");
+                    }
+                    virtualEdges.add((VirtualEdgeIteratorState) queryGraph.getEdgeIteratorState(iter.getEdge(), iter.getAdjNode()));
+                }
+                if (virtualEdges.size() != 2) {
+                    throw new RuntimeException("Each virtual node must have exactly 2 "
+                            + "virtual edges (reverse virtual edges are not returned by the "
+                            + "EdgeIterator");
                 }
-            }
 
-            timeSteps.add(new ObservationWithCandidateStates(observation, candidates));
+                // Create a directed candidate for each of the two possible directions through
+                // the virtual node. We need to add candidates for both directions because
+                // we don't know yet which is the correct one. This will be figured
+                // out by the Viterbi algorithm.
+                candidates.add(new State(observation, split, virtualEdges.get(0), virtualEdges.get(1)));
+                candidates.add(new State(observation, split, virtualEdges.get(1), virtualEdges.get(0)));
+            } else {
+                // Create an undirected candidate for the real node.
+                candidates.add(new State(observation, split));
+            }
         }
-        return timeSteps;
+        return candidates;
     }
 
     /**
@@ -309,6 +319,9 @@ public class MapMatching {
 
         int timeStepCounter = 0;
         ObservationWithCandidateStates prevTimeStep = null;
+        // the candidates of the previous time step which can be reached with a non-zero probability, transitions from
+        // the other candidates do not change the result
+        Collection<State> reachableCandidates = Collections.emptyList();
         for (ObservationWithCandidateStates timeStep : timeSteps) {
             final Map<State, Double> emissionLogProbabilities = new HashMap<>();
             Map<Transition<State>, Double> transitionLogProbabilities = new HashMap<>();
@@ -321,21 +334,16 @@ public class MapMatching {
 
             if (prevTimeStep == null) {
                 viterbi.startWithInitialObservation(timeStep.observation, timeStep.candidates, emissionLogProbabilities);
+                reachableCandidates = timeStep.candidates;
             } else {
                 final double linearDistance = distanceCalc.calcDist(prevTimeStep.observation.getPoint().lat,
                         prevTimeStep.observation.getPoint().lon, timeStep.observation.getPoint().lat, timeStep.observation.getPoint().lon);
 
-                for (State from : prevTimeStep.candidates) {
-                    for (State to : timeStep.candidates) {
-                        final Path path = createRouter().calcPath(from.getSnap().getClosestNode(), to.getSnap().getClosestNode(), from.isOnDirectedEdge() ? from.getOutgoingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE, to.isOnDirectedEdge() ? to.getIncomingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE);
-                        if (path.isFound()) {
-                            double transitionLogProbability = probabilities.transitionLogProbability(path.getDistance(), linearDistance);
-                            Transition<State> transition = new Transition<>(from, to);
-                            roadPaths.put(transition, path);
-                            transitionLogProbabilities.put(transition, transitionLogProbability);
-                        }
-                    }
-                }
+                double maxDistance = maxTransitionDistance(linearDistance);
+                addTransitions(reachableCandidates, timeStep, probabilities, linearDistance, maxDistance, transitionLogProbabilities, roadPaths);
+                if (roadPaths.isEmpty())
+                    addTransitions(reachableCandidates, timeStep, probabilities, linearDistance, Double.POSITIVE_INFINITY, transitionLogProbabilities, roadPaths);
+                reachableCandidates = roadPaths.keySet().stream().map(t -> t.toCandidate).collect(Collectors.toSet());
                 viterbi.nextStep(timeStep.observation, timeStep.candidates,
                         emissionLogProbabilities, transitionLogProbabilities,
                         roadPaths);
@@ -351,6 +359,38 @@ public class MapMatching {
         return viterbi.computeMostLikelySequence();
     }
 
+    /**
+     * Routes which are much longer than the linear distance have a negligible transition probability, so we only search
+     * for them if there is no other transition. The limit still allows for hairpin turns and for the distances of the
+     * candidates to their observations.
+     */
+    static double maxTransitionDistance(double linearDistance) {
+        return 2 * linearDistance + 500;
+    }
+
+    /**
+     * Calculates the paths from the given candidates of the previous time step to all candidates of the given time
+     * step, and their transition probabilities.
+     */
+    private void addTransitions(Collection<State> prevCandidates, ObservationWithCandidateStates timeStep,
+                                HmmProbabilities probabilities, double linearDistance, double maxDistance,
+                                Map<Transition<State>, Double> transitionLogProbabilities, Map<Transition<State>, Path> roadPaths) {
+        TransitionSearch search = new TransitionSearch(queryGraph, weighting, maxVisitedNodes);
+        List<State> candidates = new ArrayList<>(timeStep.candidates);
+        for (State from : prevCandidates) {
+            List<Path> paths = search.calcPaths(from, candidates, maxDistance);
+            for (int i = 0; i < paths.size(); i++) {
+                Path path = paths.get(i);
+                if (path.isFound()) {
+                    double transitionLogProbability = probabilities.transitionLogProbability(path.getDistance(), linearDistance);
+                    Transition<State> transition = new Transition<>(from, candidates.get(i));
+                    roadPaths.put(transition, path);
+                    transitionLogProbabilities.put(transition, transitionLogProbability);
+                }
+            }
+        }
+    }
+
     private void fail(int timeStepCounter, ObservationWithCandidateStates prevTimeStep, ObservationWithCandidateStates timeStep) {
         String likelyReasonStr = "";
         if (prevTimeStep != null) {
@@ -369,86 +409,13 @@ public class MapMatching {
                 + ". If a match is expected consider increasing max_visited_nodes.");
     }
 
-    private BidirRoutingAlgorithm createRouter() {
-        BidirRoutingAlgorithm router;
-        if (landmarks != null) {
-            AStarBidirection algo = new AStarBidirection(queryGraph, weighting, TraversalMode.EDGE_BASED) {
-                @Override
-                protected void initCollections(int size) {
-                    super.initCollections(50);
-                }
-            };
-            int activeLM = Math.min(8, landmarks.getLandmarkCount());
-            algo.setApproximation(LMApproximator.forLandmarks(queryGraph, landmarks, activeLM));
-            algo.setMaxVisitedNodes(maxVisitedNodes);
-            router = algo;
-        } else {
-            router = new DijkstraBidirectionRef(queryGraph, weighting, TraversalMode.EDGE_BASED) {
-                @Override
-                protected void initCollections(int size) {
-                    super.initCollections(50);
-                }
-            };
-            router.setMaxVisitedNodes(maxVisitedNodes);
-        }
-        return router;
-    }
-
     private List<EdgeMatch> prepareEdgeMatches(List<SequenceState<State, Observation, Path>> seq) {
-        // This creates a list of directed edges (EdgeIteratorState instances turned the right way),
-        // each associated with 0 or more of the observations.
-        // These directed edges are edges of the real street graph, where nodes are intersections.
-        // So in _this_ representation, the path that you get when you just look at the edges goes from
-        // an intersection to an intersection.
-
-        // Implementation note: We have to look at both states _and_ transitions, since we can have e.g. just one state,
-        // or two states with a transition that is an empty path (observations snapped to the same node in the query graph),
-        // but these states still happen on an edge, and for this representation, we want to have that edge.
-        // (Whereas in the ResponsePath representation, we would just see an empty path.)
-
-        // Note that the result can be empty, even when the input is not. Observations can be on nodes as well as on
-        // edges, and when all observations are on the same node, we get no edge at all.
-        // But apart from that corner case, all observations that go in here are also in the result.
-
-        // (Consider totally forbidding candidate states to be snapped to a point, and make them all be on directed
-        // edges, then that corner case goes away.)
-        List<EdgeMatch> edgeMatches = new ArrayList<>();
-        List<State> states = new ArrayList<>();
-        EdgeIteratorState currentDirectedRealEdge = null;
+        EdgeMatchBuilder edgeMatchBuilder = new EdgeMatchBuilder(graph);
         for (SequenceState<State, Observation, Path> transitionAndState : seq) {
-            // transition (except before the first state)
-            if (transitionAndState.transitionDescriptor != null) {
-                for (EdgeIteratorState edge : transitionAndState.transitionDescriptor.calcEdges()) {
-                    EdgeIteratorState newDirectedRealEdge = resolveToRealEdge(edge);
-                    if (currentDirectedRealEdge != null) {
-                        if (!equalEdges(currentDirectedRealEdge, newDirectedRealEdge)) {
-                            EdgeMatch edgeMatch = new EdgeMatch(currentDirectedRealEdge, states);
-                            edgeMatches.add(edgeMatch);
-                            states = new ArrayList<>();
-                        }
-                    }
-                    currentDirectedRealEdge = newDirectedRealEdge;
-                }
-            }
-            // state
-            if (transitionAndState.state.isOnDirectedEdge()) { // as opposed to on a node
-                EdgeIteratorState newDirectedRealEdge = resolveToRealEdge(transitionAndState.state.getOutgoingVirtualEdge());
-                if (currentDirectedRealEdge != null) {
-                    if (!equalEdges(currentDirectedRealEdge, newDirectedRealEdge)) {
-                        EdgeMatch edgeMatch = new EdgeMatch(currentDirectedRealEdge, states);
-                        edgeMatches.add(edgeMatch);
-                        states = new ArrayList<>();
-                    }
-                }
-                currentDirectedRealEdge = newDirectedRealEdge;
-            }
-            states.add(transitionAndState.state);
-        }
-        if (currentDirectedRealEdge != null) {
-            EdgeMatch edgeMatch = new EdgeMatch(currentDirectedRealEdge, states);
-            edgeMatches.add(edgeMatch);
+            edgeMatchBuilder.add(transitionAndState);
         }
-        return edgeMatches;
+        edgeMatchBuilder.finish();
+        return edgeMatchBuilder.poll();
     }
 
     private double gpxLength(List<Observation> gpxList) {
@@ -466,20 +433,6 @@ public class MapMatching {
         }
     }
 
-    private boolean equalEdges(EdgeIteratorState edge1, EdgeIteratorState edge2) {
-        return edge1.getEdge() == edge2.getEdge()
-                && edge1.getBaseNode() == edge2.getBaseNode()
-                && edge1.getAdjNode() == edge2.getAdjNode();
-    }
-
-    private EdgeIteratorState resolveToRealEdge(EdgeIteratorState edgeIteratorState) {
-        if (queryGraph.isVirtualNode(edgeIteratorState.getBaseNode()) || queryGraph.isVirtualNode(edgeIteratorState.getAdjNode())) {
-            return graph.getEdgeIteratorStateForKey(((VirtualEdgeIteratorState) edgeIteratorState).getOriginalEdgeKey());
-        } else {
-            return edgeIteratorState;
-        }
-    }
-
     private String getSnappedCandidates(Collection<State> candidates) {
         String str = "";
         for (State gpxe : candidates) {
@@ -0,0 +1,287 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.bmw.hmm.SequenceState;
+import com.bmw.hmm.Transition;
+import com.bmw.hmm.ViterbiAlgorithm;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Matches a stream of observations, e.g. the positions of a vehicle while it is driving, with the same hidden Markov
+ * model as {@link MapMatching}. The edge matches are returned as soon as the most likely sequence cannot change anymore
+ * for them, or when the most likely sequence has more than {@link #setMaxPendingTimeSteps(int)} undecided time steps.
+ * <p>
+ * Unlike {@link MapMatching}, which creates one query graph for the whole track, every time step gets its own small
+ * query graph with the candidates of the previous and the current observation, so the memory does not grow with the
+ * length of the track. If the sequence breaks, e.g. because of a gap in the observations, the matched edges are
+ * returned and a new sequence is started.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class OnlineMapMatching {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final MapMatching mapMatching;
+    private final EdgeMatchBuilder edgeMatchBuilder;
+    private int maxPendingTimeSteps = 50;
+
+    private ViterbiAlgorithm<State, Observation, Path> viterbi;
+    private HmmProbabilities probabilities;
+    // the last observation added to the Viterbi algorithm, with its snaps before they were added to a query graph and
+    // its candidates for each snap
+    private Observation prevObservation;
+    private List<Snap> prevSnaps;
+    private List<List<State>> prevCandidates;
+    // the candidates of the previous observation which can be reached with a non-zero probability
+    private Collection<State> reachableCandidates;
+    // the last observation which is too close to the previous observation, it is only used if it is the last one
+    private Observation pendingObservation;
+
+    public OnlineMapMatching(GraphHopper graphHopper, PMap hints) {
+        this.mapMatching = new MapMatching(graphHopper, hints);
+        this.edgeMatchBuilder = new EdgeMatchBuilder(mapMatching.getGraph());
+    }
+
+    /**
+     * See {@link MapMatching#setTransitionProbabilityBeta(double)}, applies to the next sequence.
+     */
+    public void setTransitionProbabilityBeta(double transitionProbabilityBeta) {
+        mapMatching.setTransitionProbabilityBeta(transitionProbabilityBeta);
+    }
+
+    /**
+     * See {@link MapMatching#setMeasurementErrorSigma(double)}, applies to the next sequence.
+     */
+    public void setMeasurementErrorSigma(double measurementErrorSigma) {
+        mapMatching.setMeasurementErrorSigma(measurementErrorSigma);
+    }
+
+    /**
+     * The maximum number of observations for which the match is not returned yet. If the candidates of more
+     * observations are still undecided, the currently most likely candidate of the oldest one is taken.
+     */
+    public void setMaxPendingTimeSteps(int maxPendingTimeSteps) {
+        if (maxPendingTimeSteps < 0)
+            throw new IllegalArgumentException("maxPendingTimeSteps must not be negative: " + maxPendingTimeSteps);
+        this.maxPendingTimeSteps = maxPendingTimeSteps;
+    }
+
+    /**
+     * Adds the next observation.
+     *
+     * @return the edge matches which are finished because of this observation, the continuation of the edge matches
+     * returned before
+     */
+    public List<EdgeMatch> add(Observation observation) {
+        if (prevObservation != null && distance(prevObservation, observation) <= 2 * mapMatching.getMeasurementErrorSigma()) {
+            pendingObservation = observation;
+            return Collections.emptyList();
+        }
+        pendingObservation = null;
+        addTimeStep(observation);
+        return edgeMatchBuilder.poll();
+    }
+
+    /**
+     * Finishes the current sequence. Observations added afterwards start a new sequence.
+     *
+     * @return the remaining edge matches
+     */
+    public List<EdgeMatch> finish() {
+        if (pendingObservation != null) {
+            addTimeStep(pendingObservation);
+            pendingObservation = null;
+        }
+        finishSequence();
+        return edgeMatchBuilder.poll();
+    }
+
+    private void addTimeStep(Observation observation) {
+        List<Snap> snaps = mapMatching.findCandidateSnaps(observation.getPoint().lat, observation.getPoint().lon);
+        if (snaps.isEmpty()) {
+            logger.debug("No candidates for observation {}, skipping it", observation);
+            return;
+        }
+        if (viterbi == null) {
+            startSequence(observation, snaps);
+            return;
+        }
+
+        // The query graph only contains the candidates of the previous and the current observation. The candidates of
+        // the previous observation are created again for it, we map them to the ones already known to the Viterbi
+        // algorithm.
+        List<Snap> prevSnapCopies = copySnaps(prevSnaps);
+        List<Snap> snapCopies = copySnaps(snaps);
+        List<Snap> allSnaps = new ArrayList<>(prevSnapCopies);
+        allSnaps.addAll(snapCopies);
+        QueryGraph queryGraph = QueryGraph.create(mapMatching.getGraph(), allSnaps);
+        Map<State, State> fromCandidates = new LinkedHashMap<>();
+        for (int i = 0; i < prevSnapCopies.size(); i++) {
+            List<State> copies = MapMatching.createCandidateStates(queryGraph, prevObservation, Collections.singletonList(prevSnapCopies.get(i)));
+            for (State candidate : prevCandidates.get(i)) {
+                if (!reachableCandidates.contains(candidate))
+                    continue;
+                for (State copy : copies) {
+                    if (directionKey(copy) == directionKey(candidate))
+                        fromCandidates.put(candidate, copy);
+                }
+            }
+        }
+        List<List<State>> candidatesPerSnap = new ArrayList<>(snapCopies.size());
+        List<State> candidates = new ArrayList<>();
+        for (Snap snap : snapCopies) {
+            List<State> snapCandidates = MapMatching.createCandidateStates(queryGraph, observation, Collections.singletonList(snap));
+            candidatesPerSnap.add(snapCandidates);
+            candidates.addAll(snapCandidates);
+        }
+
+        Map<State, Double> emissionLogProbabilities = emissionLogProbabilities(candidates);
+        Map<Transition<State>, Double> transitionLogProbabilities = new HashMap<>();
+        Map<Transition<State>, Path> roadPaths = new HashMap<>();
+        TransitionSearch search = new TransitionSearch(queryGraph, queryGraph.wrapWeighting(mapMatching.getUnwrappedWeighting()), mapMatching.getMaxVisitedNodes());
+        double linearDistance = distance(prevObservation, observation);
+        addTransitions(search, fromCandidates, candidates, linearDistance, MapMatching.maxTransitionDistance(linearDistance), transitionLogProbabilities, roadPaths);
+        if (roadPaths.isEmpty())
+            addTransitions(search, fromCandidates, candidates, linearDistance, Double.POSITIVE_INFINITY, transitionLogProbabilities, roadPaths);
+
+        viterbi.nextStep(observation, candidates, emissionLogProbabilities, transitionLogProbabilities, roadPaths);
+        if (viterbi.isBroken()) {
+            logger.debug("Sequence is broken at observation {}, starting a new one", observation);
+            finishSequence();
+            startSequence(observation, snaps);
+            return;
+        }
+        prevObservation = observation;
+        prevSnaps = snaps;
+        prevCandidates = candidatesPerSnap;
+        reachableCandidates = new HashSet<>();
+        for (Transition<State> transition : roadPaths.keySet())
+            reachableCandidates.add(transition.toCandidate);
+        for (SequenceState<State, Observation, Path> transitionAndState : viterbi.pollConvergedSequence(maxPendingTimeSteps))
+            edgeMatchBuilder.add(transitionAndState);
+    }
+
+    private void startSequence(Observation observation, List<Snap> snaps) {
+        viterbi = new ViterbiAlgorithm<>();
+        probabilities = new HmmProbabilities(mapMatching.getMeasurementErrorSigma(), mapMatching.getTransitionProbabilityBeta());
+        List<Snap> snapCopies = copySnaps(snaps);
+        QueryGraph queryGraph = QueryGraph.create(mapMatching.getGraph(), snapCopies);
+        List<List<State>> candidatesPerSnap = new ArrayList<>(snapCopies.size());
+        List<State> candidates = new ArrayList<>();
+        for (Snap snap : snapCopies) {
+            List<State> snapCandidates = MapMatching.createCandidateStates(queryGraph, observation, Collections.singletonList(snap));
+            candidatesPerSnap.add(snapCandidates);
+            candidates.addAll(snapCandidates);
+        }
+        viterbi.startWithInitialObservation(observation, candidates, emissionLogProbabilities(candidates));
+        prevObservation = observation;
+        prevSnaps = snaps;
+        prevCandidates = candidatesPerSnap;
+        reachableCandidates = new HashSet<>(candidates);
+    }
+
+    private void finishSequence() {
+        if (viterbi != null) {
+            for (SequenceState<State, Observation, Path> transitionAndState : viterbi.computeMostLikelySequence())
+                edgeMatchBuilder.add(transitionAndState);
+        }
+        edgeMatchBuilder.finish();
+        viterbi = null;
+        probabilities = null;
+        prevObservation = null;
+        prevSnaps = null;
+        prevCandidates = null;
+        reachableCandidates = null;
+    }
+
+    private Map<State, Double> emissionLogProbabilities(List<State> candidates) {
+        Map<State, Double> emissionLogProbabilities = new HashMap<>();
+        for (State candidate : candidates) {
+            // distance from observation to road in meters
+            emissionLogProbabilities.put(candidate, probabilities.emissionLogProbability(candidate.getSnap().getQueryDistance()));
+        }
+        return emissionLogProbabilities;
+    }
+
+    /**
+     * Calculates the paths from the copies of the candidates of the previous observation to all candidates of the
+     * current observation, the transitions start at the candidates known to the Viterbi algorithm.
+     */
+    private void addTransitions(TransitionSearch search, Map<State, State> fromCandidates, List<State> candidates,
+                                double linearDistance, double maxDistance,
+                                Map<Transition<State>, Double> transitionLogProbabilities, Map<Transition<State>, Path> roadPaths) {
+        for (Map.Entry<State, State> from : fromCandidates.entrySet()) {
+            List<Path> paths = search.calcPaths(from.getValue(), candidates, maxDistance);
+            for (int i = 0; i < paths.size(); i++) {
+                Path path = paths.get(i);
+                if (path.isFound()) {
+                    Transition<State> transition = new Transition<>(from.getKey(), candidates.get(i));
+                    roadPaths.put(transition, path);
+                    transitionLogProbabilities.put(transition, probabilities.transitionLogProbability(path.getDistance(), linearDistance));
+                }
+            }
+        }
+    }
+
+    private double distance(Observation from, Observation to) {
+        GHPoint fromPoint = from.getPoint();
+        GHPoint toPoint = to.getPoint();
+        return mapMatching.getDistanceCalc().calcDist(fromPoint.lat, fromPoint.lon, toPoint.lat, toPoint.lon);
+    }
+
+    /**
+     * Identifies a candidate among the candidates of the same snap, independent of the query graph: the direction of
+     * the original edge for candidates on an edge, or -1 for candidates on a node.
+     */
+    private static int directionKey(State candidate) {
+        if (!candidate.isOnDirectedEdge())
+            return -1;
+        return ((VirtualEdgeIteratorState) candidate.getOutgoingVirtualEdge()).getOriginalEdgeKey();
+    }
+
+    /**
+     * Creating a query graph modifies the snaps, so we keep the original snaps and add copies to each query graph.
+     */
+    private static List<Snap> copySnaps(List<Snap> snaps) {
+        List<Snap> copies = new ArrayList<>(snaps.size());
+        for (Snap snap : snaps) {
+            Snap copy = new Snap(snap.getQueryPoint().lat, snap.getQueryPoint().lon);
+            copy.setClosestEdge(snap.getClosestEdge());
+            copy.setClosestNode(snap.getClosestNode());
+            copy.setWayIndex(snap.getWayIndex());
+            copy.setSnappedPosition(snap.getSnappedPosition());
+            copy.setQueryDistance(snap.getQueryDistance());
+            copy.calcSnappedPoint(DistanceCalcEarth.DIST_EARTH);
+            copies.add(copy);
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.carrotsearch.hppc.IntObjectMap;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.PathExtractor;
+import com.graphhopper.routing.SPTEntry;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Calculates the paths from one map matching candidate to all candidates of the next observation with a single
+ * edge-based Dijkstra, instead of one bidirectional search per pair of candidates. Paths leave a directed candidate
+ * through its outgoing virtual edge and arrive at a directed candidate through its incoming virtual edge, like the paths
+ * of {@link com.graphhopper.routing.BidirRoutingAlgorithm#calcPath(int, int, int, int)}.
+ * <p>
+ * The search stops when all candidates are reached. Entries whose distance from the start exceeds a given limit are not
+ * expanded, because such detours have a negligible transition probability anyway.
+ */
+class TransitionSearch {
+    private final Graph graph;
+    private final Weighting weighting;
+    private final EdgeExplorer edgeExplorer;
+    private final int maxVisitedNodes;
+
+    TransitionSearch(Graph graph, Weighting weighting, int maxVisitedNodes) {
+        this.graph = graph;
+        this.weighting = weighting;
+        this.edgeExplorer = graph.createEdgeExplorer();
+        this.maxVisitedNodes = maxVisitedNodes;
+    }
+
+    /**
+     * @param maxDistance entries further away from the start than this are not expanded, can be infinite
+     * @return the paths from the given candidate to the candidates in the given list, in the same order. A path is not
+     * found if the candidate cannot be reached within the limits.
+     */
+    List<Path> calcPaths(State from, List<State> to, double maxDistance) {
+        IntObjectMap<List<Integer>> targetsByNode = new GHIntObjectHashMap<>(to.size());
+        for (int i = 0; i < to.size(); i++) {
+            int node = to.get(i).getSnap().getClosestNode();
+            List<Integer> targets = targetsByNode.get(node);
+            if (targets == null) {
+                targets = new ArrayList<>(2);
+                targetsByNode.put(node, targets);
+            }
+            targets.add(i);
+        }
+        SPTEntry[] found = new SPTEntry[to.size()];
+        int foundCount = 0;
+
+        int fromOutEdge = from.isOnDirectedEdge() ? from.getOutgoingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE;
+        IntObjectMap<DistanceEntry> bestEntries = new GHIntObjectHashMap<>(100);
+        PriorityQueue<DistanceEntry> heap = new PriorityQueue<>(100);
+        DistanceEntry currEntry = new DistanceEntry(EdgeIterator.NO_EDGE, from.getSnap().getClosestNode(), 0, 0);
+        int visitedNodes = 0;
+        while (true) {
+            visitedNodes++;
+            List<Integer> targets = targetsByNode.get(currEntry.adjNode);
+            if (targets != null) {
+                for (int i : targets) {
+                    if (found[i] == null && reaches(currEntry, fromOutEdge, to.get(i))) {
+                        found[i] = currEntry;
+                        foundCount++;
+                    }
+                }
+            }
+            if (foundCount == found.length || visitedNodes > maxVisitedNodes)
+                break;
+
+            if (currEntry.distance <= maxDistance) {
+                EdgeIterator iter = edgeExplorer.setBaseNode(currEntry.adjNode);
+                while (iter.next()) {
+                    if (currEntry.edge == EdgeIterator.NO_EDGE && fromOutEdge != EdgeIterator.ANY_EDGE && iter.getEdge() != fromOutEdge)
+                        continue;
+                    double weight = GHUtility.calcWeightWithTurnWeightWithAccess(weighting, iter, false, currEntry.edge) + currEntry.weight;
+                    if (Double.isInfinite(weight))
+                        continue;
+                    int traversalId = TraversalMode.EDGE_BASED.createTraversalId(iter, false);
+                    DistanceEntry entry = bestEntries.get(traversalId);
+                    if (entry == null) {
+                        entry = new DistanceEntry(iter.getEdge(), iter.getAdjNode(), weight, currEntry.distance + iter.getDistance());
+                        entry.parent = currEntry;
+                        bestEntries.put(traversalId, entry);
+                        heap.add(entry);
+                    } else if (entry.weight > weight) {
+                        heap.remove(entry);
+                        entry.weight = weight;
+                        entry.distance = currEntry.distance + iter.getDistance();
+                        entry.parent = currEntry;
+                        heap.add(entry);
+                    }
+                }
+            }
+            if (heap.isEmpty())
+                break;
+            currEntry = heap.poll();
+        }
+
+        List<Path> paths = new ArrayList<>(found.length);
+        for (SPTEntry entry : found)
+            paths.add(PathExtractor.extractPath(graph, weighting, entry));
+        return paths;
+    }
+
+    private static boolean reaches(SPTEntry entry, int fromOutEdge, State to) {
+        if (to.isOnDirectedEdge())
+            return entry.edge == to.getIncomingVirtualEdge().getEdge();
+        // like the bidirectional search we only return an empty path if neither direction is restricted
+        return entry.edge != EdgeIterator.NO_EDGE || fromOutEdge == EdgeIterator.ANY_EDGE;
+    }
+
+    private static class DistanceEntry extends SPTEntry {
+        double distance;
+
+        DistanceEntry(int edge, int adjNode, double weight, double distance) {
+            super(edge, adjNode, weight);
+            this.distance = distance;
+        }
+    }
+}
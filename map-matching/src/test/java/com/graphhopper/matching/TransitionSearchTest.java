@@ -0,0 +1,257 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransitionSearchTest {
+    private static final String GH_LOCATION = "target/transitionsearchtest-gh";
+    private static GraphHopper hopper;
+    private static DefaultSnapFilter snapFilter;
+
+    @BeforeAll
+    public static void setup() {
+        Helper.removeDir(new File(GH_LOCATION));
+        hopper = new GraphHopper();
+        hopper.setOSMFile("files/map-issue13.osm.gz");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setProfiles(new Profile("my_profile").setVehicle("car").setWeighting("fastest"));
+        hopper.importOrLoad();
+        snapFilter = new DefaultSnapFilter(createWeighting(), hopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key("my_profile")));
+    }
+
+    @AfterAll
+    public static void clean() {
+        hopper.close();
+        Helper.removeDir(new File(GH_LOCATION));
+    }
+
+    private static Weighting createWeighting() {
+        return hopper.createWeighting(hopper.getProfile("my_profile"), new PMap());
+    }
+
+    @Test
+    public void testSameAsBidirectionalDijkstra() {
+        Random rnd = new Random(42);
+        BBox bounds = hopper.getGraphHopperStorage().getBounds();
+        int found = 0, directed = 0, undirected = 0;
+        for (int run = 0; run < 30; run++) {
+            List<Snap> fromSnaps = Collections.singletonList(snap(randomPoint(rnd, bounds)));
+            List<Snap> toSnaps = new ArrayList<>();
+            for (int i = 0; i < 3; i++)
+                toSnaps.add(snap(randomPoint(rnd, bounds)));
+            // also route to the snap of the start itself
+            toSnaps.add(fromSnaps.get(0));
+            Candidates candidates = new Candidates(fromSnaps, toSnaps);
+
+            TransitionSearch search = new TransitionSearch(candidates.queryGraph, candidates.weighting, Integer.MAX_VALUE);
+            for (State from : candidates.from) {
+                List<Path> paths = search.calcPaths(from, candidates.to, Double.POSITIVE_INFINITY);
+                assertEquals(candidates.to.size(), paths.size());
+                for (int i = 0; i < paths.size(); i++) {
+                    State to = candidates.to.get(i);
+                    Path expected = calcBidirectionalPath(candidates, from, to);
+                    Path actual = paths.get(i);
+                    assertEquals(expected.isFound(), actual.isFound(), "run " + run + ", " + from + " -> " + to);
+                    if (!expected.isFound())
+                        continue;
+                    found++;
+                    if (to.isOnDirectedEdge())
+                        directed++;
+                    else
+                        undirected++;
+                    assertEquals(expected.getWeight(), actual.getWeight(), 1.e-6, "run " + run + ", " + from + " -> " + to);
+                    assertEquals(from.getSnap().getClosestNode(), actual.calcNodes().get(0));
+                    assertEquals(to.getSnap().getClosestNode(), actual.getEndNode());
+                    if (from.isOnDirectedEdge() && !actual.getEdges().isEmpty())
+                        assertEquals(from.getOutgoingVirtualEdge().getEdge(), actual.getEdges().get(0));
+                    if (to.isOnDirectedEdge())
+                        assertEquals(to.getIncomingVirtualEdge().getEdge(), actual.getEdges().get(actual.getEdges().size() - 1));
+                }
+            }
+        }
+        // make sure we compared enough paths of both kinds of candidates
+        assertTrue(found > 100, "found: " + found);
+        assertTrue(directed > 0 && undirected > 0, "directed: " + directed + ", undirected: " + undirected);
+    }
+
+    @Test
+    public void testDirectedCandidates() {
+        Snap snap = snap(new GHPoint(41.0106, 29.0890));
+        Snap otherSnap = snap(new GHPoint(41.0119, 29.0924));
+        assertTrue(snap.isValid() && otherSnap.isValid());
+        Candidates candidates = new Candidates(Collections.singletonList(snap), Collections.singletonList(otherSnap));
+        // both snaps are on an edge, so there is a candidate for each direction
+        assertEquals(2, candidates.from.size());
+        assertEquals(2, candidates.to.size());
+        TransitionSearch search = new TransitionSearch(candidates.queryGraph, candidates.weighting, Integer.MAX_VALUE);
+        for (State from : candidates.from) {
+            assertTrue(from.isOnDirectedEdge());
+            List<Path> paths = search.calcPaths(from, candidates.to, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < paths.size(); i++) {
+                Path path = paths.get(i);
+                State to = candidates.to.get(i);
+                assertTrue(path.isFound());
+                // the path leaves through the outgoing virtual edge of the start and arrives through the incoming one of
+                // the target
+                assertEquals(from.getOutgoingVirtualEdge().getEdge(), path.getEdges().get(0));
+                assertEquals(to.getIncomingVirtualEdge().getEdge(), path.getEdges().get(path.getEdges().size() - 1));
+                assertEquals(calcBidirectionalPath(candidates, from, to).getWeight(), path.getWeight(), 1.e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testCandidatesAtTheSameNode() {
+        // snap to a junction, so all candidates are undirected and at the same node
+        NodeAccess nodeAccess = hopper.getGraphHopperStorage().getNodeAccess();
+        int junction = findJunction();
+        Snap snap1 = snap(new GHPoint(nodeAccess.getLat(junction), nodeAccess.getLon(junction)));
+        Snap snap2 = snap(new GHPoint(nodeAccess.getLat(junction), nodeAccess.getLon(junction)));
+        assertEquals(junction, snap1.getClosestNode());
+        assertEquals(junction, snap2.getClosestNode());
+        Snap fromSnap = snap(new GHPoint(41.0106, 29.0890));
+        Candidates candidates = new Candidates(Collections.singletonList(fromSnap), Arrays.asList(snap1, snap2));
+        assertEquals(2, candidates.to.size());
+        TransitionSearch search = new TransitionSearch(candidates.queryGraph, candidates.weighting, Integer.MAX_VALUE);
+        for (State from : candidates.from) {
+            List<Path> paths = search.calcPaths(from, candidates.to, Double.POSITIVE_INFINITY);
+            assertTrue(paths.get(0).isFound());
+            assertTrue(paths.get(1).isFound());
+            assertEquals(paths.get(0).getWeight(), paths.get(1).getWeight(), 1.e-6);
+            assertEquals(calcBidirectionalPath(candidates, from, candidates.to.get(0)).getWeight(), paths.get(0).getWeight(), 1.e-6);
+        }
+
+        // the two directed candidates of a virtual node are at the same node, too
+        Candidates directed = new Candidates(Collections.singletonList(fromSnap), Collections.singletonList(snap(new GHPoint(41.0119, 29.0924))));
+        search = new TransitionSearch(directed.queryGraph, directed.weighting, Integer.MAX_VALUE);
+        State from = directed.from.get(0);
+        List<Path> paths = search.calcPaths(from, directed.to, Double.POSITIVE_INFINITY);
+        assertEquals(directed.to.get(0).getSnap().getClosestNode(), directed.to.get(1).getSnap().getClosestNode());
+        for (int i = 0; i < paths.size(); i++) {
+            assertTrue(paths.get(i).isFound());
+            assertEquals(calcBidirectionalPath(directed, from, directed.to.get(i)).getWeight(), paths.get(i).getWeight(), 1.e-6);
+        }
+        assertNotEquals(paths.get(0).getWeight(), paths.get(1).getWeight());
+    }
+
+    @Test
+    public void testMaxDistance() {
+        Candidates candidates = new Candidates(Collections.singletonList(snap(new GHPoint(41.0106, 29.0890))),
+                Collections.singletonList(snap(new GHPoint(41.0119, 29.0924))));
+        TransitionSearch search = new TransitionSearch(candidates.queryGraph, candidates.weighting, Integer.MAX_VALUE);
+        State from = candidates.from.get(0);
+        Path unlimited = search.calcPaths(from, candidates.to, Double.POSITIVE_INFINITY).get(0);
+        assertTrue(unlimited.isFound());
+        assertTrue(unlimited.getDistance() > 100, "distance: " + unlimited.getDistance());
+
+        // the target is not reached if the search stops expanding before
+        assertFalse(search.calcPaths(from, candidates.to, 50).get(0).isFound());
+        // entries up to the limit are still expanded, so a limit slightly below the distance is enough
+        Path limited = search.calcPaths(from, candidates.to, unlimited.getDistance() - 1).get(0);
+        assertTrue(limited.isFound());
+        assertEquals(unlimited.getWeight(), limited.getWeight(), 1.e-6);
+    }
+
+    private static GHPoint randomPoint(Random rnd, BBox bounds) {
+        return new GHPoint(bounds.minLat + rnd.nextDouble() * (bounds.maxLat - bounds.minLat),
+                bounds.minLon + rnd.nextDouble() * (bounds.maxLon - bounds.minLon));
+    }
+
+    private static Snap snap(GHPoint point) {
+        return hopper.getLocationIndex().findClosest(point.lat, point.lon, snapFilter);
+    }
+
+    private static int findJunction() {
+        EdgeExplorer explorer = hopper.getGraphHopperStorage().createEdgeExplorer();
+        for (int node = 0; node < hopper.getGraphHopperStorage().getNodes(); node++) {
+            if (GHUtility.count(explorer.setBaseNode(node)) >= 3 && snap(new GHPoint(hopper.getGraphHopperStorage().getNodeAccess().getLat(node),
+                    hopper.getGraphHopperStorage().getNodeAccess().getLon(node))).getClosestNode() == node)
+                return node;
+        }
+        throw new IllegalStateException("No junction found");
+    }
+
+    private static Path calcBidirectionalPath(Candidates candidates, State from, State to) {
+        DijkstraBidirectionRef algo = new DijkstraBidirectionRef(candidates.queryGraph, candidates.weighting, TraversalMode.EDGE_BASED);
+        return algo.calcPath(from.getSnap().getClosestNode(), to.getSnap().getClosestNode(),
+                from.isOnDirectedEdge() ? from.getOutgoingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE,
+                to.isOnDirectedEdge() ? to.getIncomingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE);
+    }
+
+    /**
+     * The candidates for two observations, created like in {@link MapMatching}
+     */
+    private static class Candidates {
+        final QueryGraph queryGraph;
+        final Weighting weighting;
+        final List<State> from;
+        final List<State> to;
+
+        Candidates(List<Snap> fromSnaps, List<Snap> toSnaps) {
+            List<Snap> snaps = new ArrayList<>();
+            for (Snap snap : fromSnaps)
+                if (snap.isValid())
+                    snaps.add(snap);
+            for (Snap snap : toSnaps)
+                if (snap.isValid() && !snaps.contains(snap))
+                    snaps.add(snap);
+            queryGraph = QueryGraph.create(hopper.getGraphHopperStorage().getBaseGraph(), snaps);
+            weighting = queryGraph.wrapWeighting(createWeighting());
+            from = MapMatching.createCandidateStates(queryGraph, new Observation(new GHPoint(0, 0)), valid(fromSnaps));
+            to = MapMatching.createCandidateStates(queryGraph, new Observation(new GHPoint(0, 0)), valid(toSnaps));
+        }
+
+        private static List<Snap> valid(List<Snap> snaps) {
+            List<Snap> result = new ArrayList<>();
+            for (Snap snap : snaps)
+                if (snap.isValid())
+                    result.add(snap);
+            return result;
+        }
+    }
+}
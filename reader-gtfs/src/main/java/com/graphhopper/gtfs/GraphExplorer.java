@@ -34,6 +34,7 @@ import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 public final class GraphExplorer {
 
@@ -51,6 +52,8 @@ public final class GraphExplorer {
     private final int blockedRouteTypes;
     private final PtGraph ptGraph;
     private final Graph graph;
+    private StopTransferTable transferTable;
+    private IntPredicate streetNodesAfterTransit = node -> true;
 
     public GraphExplorer(Graph graph, PtGraph ptGraph, Weighting connectingWeighting, GtfsStorage gtfsStorage, RealtimeFeed realtimeFeed, boolean reverse, boolean connectOnly, boolean ptOnly, boolean isBike, boolean ignoreValidities, int blockedRouteTypes) {
         this.graph = graph;
@@ -71,10 +74,30 @@ public final class GraphExplorer {
         this.isBike = isBike;
     }
 
+    /**
+     * Takes the transfers between stations from the given table instead of exploring the street network. Once a label
+     * has been on a trip, its street edges are only explored towards the nodes accepted by the given predicate, which
+     * should be the nodes from which the destination can be reached. Paths found with this explorer have to be passed
+     * through {@link #expandTransfers}.
+     */
+    void setTransferTable(StopTransferTable transferTable, IntPredicate streetNodesAfterTransit) {
+        this.transferTable = transferTable;
+        this.streetNodesAfterTransit = streetNodesAfterTransit;
+    }
+
     Iterable<MultiModalEdge> exploreEdgesAround(Label label) {
         return () -> {
             Iterator<MultiModalEdge> ptEdges = label.node.ptNode != -1 ? ptEdgeStream(label.node.ptNode, label.currentTime).iterator() : Collections.emptyIterator();
-            Iterator<MultiModalEdge> streetEdges = label.node.streetNode != -1 ? streetEdgeStream(label.node.streetNode).iterator() : Collections.emptyIterator();
+            Iterator<MultiModalEdge> streetEdges;
+            if (label.node.streetNode == -1) {
+                streetEdges = Collections.emptyIterator();
+            } else if (transferTable != null && label.hasDepartureTime()) {
+                boolean leftTrip = label.edge != null && label.edge.getType() == (reverse ? GtfsStorage.EdgeType.ENTER_PT : GtfsStorage.EdgeType.EXIT_PT);
+                Iterator<MultiModalEdge> transfers = leftTrip ? transferEdgeStream(label.node.ptNode, label.node.streetNode).iterator() : Collections.emptyIterator();
+                streetEdges = Iterators.concat(transfers, streetEdgeStream(label.node.streetNode, streetNodesAfterTransit).iterator());
+            } else {
+                streetEdges = streetEdgeStream(label.node.streetNode, node -> true).iterator();
+            }
             return Iterators.concat(ptEdges, streetEdges);
         };
     }
@@ -164,7 +187,7 @@ public final class GraphExplorer {
         });
     }
 
-    private Iterable<MultiModalEdge> streetEdgeStream(int streetNode) {
+    private Iterable<MultiModalEdge> streetEdgeStream(int streetNode, IntPredicate adjNodeFilter) {
         return () -> Spliterators.iterator(new Spliterators.AbstractSpliterator<MultiModalEdge>(0, 0) {
             final EdgeIterator edgeIterator = edgeExplorer.setBaseNode(streetNode);
 
@@ -174,6 +197,9 @@ public final class GraphExplorer {
                     if (edgeIterator.isFerry()) {
                         continue;
                     }
+                    if (!adjNodeFilter.test(edgeIterator.getAdjNode())) {
+                        continue;
+                    }
                     if (reverse ? edgeIterator.getReverse(accessEnc) : edgeIterator.get(accessEnc)) {
                         action.accept(new MultiModalEdge(edgeIterator.getEdge(), edgeIterator.getBaseNode(), edgeIterator.getAdjNode(), (long) (connectingWeighting.calcEdgeMillis(edgeIterator.detach(false), reverse)), connectingWeighting.calcEdgeWeight(edgeIterator.detach(false), reverse), edgeIterator.getDistance(), edgeIterator.getGrade()));
                         return true;
@@ -184,6 +210,62 @@ public final class GraphExplorer {
         });
     }
 
+    private Iterable<MultiModalEdge> transferEdgeStream(int ptNode, int streetNode) {
+        int first = transferTable.getFirstTransfer(ptNode, reverse);
+        int end = transferTable.getEndTransfer(ptNode, reverse);
+        return () -> new Iterator<MultiModalEdge>() {
+            int transfer = first;
+
+            @Override
+            public boolean hasNext() {
+                return transfer < end;
+            }
+
+            @Override
+            public MultiModalEdge next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                MultiModalEdge edge = new MultiModalEdge(EdgeIterator.NO_EDGE, streetNode, transferTable.getAdjStreetNode(transfer), transferTable.getMillis(transfer), transferTable.getWeight(transfer), 0, 0);
+                edge.transfer = transfer++;
+                return edge;
+            }
+        };
+    }
+
+    /**
+     * Replaces the transfers from the transfer table in the given path by the street edges they stand for, so the path
+     * can be turned into legs like any other.
+     */
+    List<Label.Transition> expandTransfers(List<Label.Transition> path) {
+        if (transferTable == null)
+            return path;
+        List<Label.Transition> result = new ArrayList<>(path.size());
+        for (int i = 0; i < path.size(); i++) {
+            Label.Transition transition = path.get(i);
+            if (transition.edge == null || transition.edge.transfer < 0) {
+                result.add(transition);
+                continue;
+            }
+            // the transitions are in the order of travel in both directions, the transfer ends at the label
+            Label after = transition.label;
+            long time = path.get(i - 1).label.currentTime;
+            int[] edgeKeys = transferTable.getEdgeKeys(transition.edge.transfer);
+            for (int j = 0; j < edgeKeys.length; j++) {
+                EdgeIteratorState e = graph.getEdgeIteratorStateForKey(edgeKeys[j]);
+                long millis = (long) connectingWeighting.calcEdgeMillis(e, false);
+                MultiModalEdge edge = new MultiModalEdge(e.getEdge(), e.getBaseNode(), e.getAdjNode(), millis, connectingWeighting.calcEdgeWeight(e, false), e.getDistance(), e.getGrade());
+                if (j == edgeKeys.length - 1) {
+                    result.add(new Label.Transition(after, edge));
+                } else {
+                    time = Math.min(time + millis, after.currentTime);
+                    Label label = new Label(after.edgeWeight, time, edge, new Label.NodeId(e.getAdjNode(), -1), after.nTransfers, after.departureTime, after.streetTime, after.extraWeight, 0, after.impossible, null);
+                    result.add(new Label.Transition(label, edge));
+                }
+            }
+        }
+        return result;
+    }
+
     long calcTravelTimeMillis(MultiModalEdge edge, long earliestStartTime) {
         switch (edge.getType()) {
             case ENTER_TIME_EXPANDED_NETWORK:
@@ -261,11 +343,11 @@ public final class GraphExplorer {
 
     public List<Label.Transition> walkPath(int[] skippedEdgesForTransfer, long currentTime) {
         EdgeIteratorState firstEdge = graph.getEdgeIteratorStateForKey(skippedEdgesForTransfer[0]);
-        Label label = new Label(0, currentTime, null, new Label.NodeId(firstEdge.getBaseNode(), -1), 0, null, 0, 0, 0, false, null);
+        Label label = new Label(0, currentTime, null, new Label.NodeId(firstEdge.getBaseNode(), -1), 0, Label.NO_DEPARTURE_TIME, 0, 0, 0, false, null);
         for (int i : skippedEdgesForTransfer) {
             EdgeIteratorState e = graph.getEdgeIteratorStateForKey(i);
             MultiModalEdge multiModalEdge = new MultiModalEdge(e.getEdge(), e.getBaseNode(), e.getAdjNode(), (long) (connectingWeighting.calcEdgeMillis(e, reverse)), connectingWeighting.calcEdgeWeight(e.detach(false), reverse), e.getDistance(), e.getGrade());
-            label = new Label(label.edgeWeight + multiModalEdge.weight, label.currentTime + multiModalEdge.time, multiModalEdge, new Label.NodeId(e.getAdjNode(), -1), 0, null, 0, 0, 0, false, label);
+            label = new Label(label.edgeWeight + multiModalEdge.weight, label.currentTime + multiModalEdge.time, multiModalEdge, new Label.NodeId(e.getAdjNode(), -1), 0, Label.NO_DEPARTURE_TIME, 0, 0, 0, false, label);
         }
         return Label.getTransitions(label, false);
     }
@@ -279,6 +361,8 @@ public final class GraphExplorer {
         private int grade;
         private int edge;
         private PtGraph.PtEdge ptEdge;
+        // the transfer in the transfer table this edge stands for, or -1
+        private int transfer = -1;
 
         public MultiModalEdge(PtGraph.PtEdge ptEdge, double weight) {
             this.ptEdge = ptEdge;
@@ -21,6 +21,7 @@ package com.graphhopper.gtfs;
 import com.conveyal.gtfs.model.Transfer;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.config.Profile;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.GraphHopperStorage;
@@ -68,6 +69,12 @@ public class GraphHopperGtfs extends GraphHopper {
         if (getGtfsStorage().loadExisting()) {
             ptGraph.loadExisting();
             stopIndex.loadExisting();
+            for (String profileName : getTransferProfiles()) {
+                StopTransferTable transferTable = new StopTransferTable(getGraphHopperStorage().getDirectory(), profileName);
+                if (!transferTable.loadExisting())
+                    throw new RuntimeException(String.format("The transfer table of the profile %s is missing in %s. Please re-import.", profileName, getGraphHopperStorage().getDirectory().getLocation()));
+                gtfsStorage.setTransferTable(profileName, transferTable);
+            }
         } else {
             ensureWriteAccess();
             getGtfsStorage().create();
@@ -84,7 +91,7 @@ public class GraphHopperGtfs extends GraphHopper {
                 Map<String, Transfers> allTransfers = new HashMap<>();
                 HashMap<String, GtfsReader> allReaders = new HashMap<>();
                 getGtfsStorage().getGtfsFeeds().forEach((id, gtfsFeed) -> {
-                    Transfers transfers = new Transfers(gtfsFeed);
+                    Transfers transfers = new Transfers(gtfsFeed, getGtfsStorage().getStopTimeTables().get(id));
                     allTransfers.put(id, transfers);
                     String connectingProfileName = ghConfig.getString("pt.connecting_profile", "foot");
                     String connectingVehicle = ghConfig.getProfileByName(connectingProfileName).get().getVehicle();
@@ -101,9 +108,18 @@ public class GraphHopperGtfs extends GraphHopper {
             ptGraph.flush();
             stopIndex.store(indexBuilder);
             stopIndex.flush();
+            for (String profileName : getTransferProfiles()) {
+                StopTransferTable transferTable = createTransferTable(profileName);
+                transferTable.flush();
+                gtfsStorage.setTransferTable(profileName, transferTable);
+            }
         }
         gtfsStorage.setStopIndex(stopIndex);
         gtfsStorage.setPtGraph(ptGraph);
+        if (ghConfig.getBool("gtfs.raptor", false)) {
+            LOGGER.info("Creating timetable for RAPTOR");
+            gtfsStorage.setRaptorTimetable(RaptorTimetable.create(gtfsStorage, findWalksBetweenStops()));
+        }
     }
 
     private void interpolateTransfers(HashMap<String, GtfsReader> readers, Map<String, Transfers> allTransfers) {
@@ -147,15 +163,106 @@ public class GraphHopperGtfs extends GraphHopper {
         });
     }
 
-    private void insertInterpolatedTransfer(Label label, GtfsStorage.PlatformDescriptor toPlatformDescriptor, HashMap<String, GtfsReader> readers) {
-        GtfsReader toFeedReader = readers.get(toPlatformDescriptor.feed_id);
-        List<Integer> transferEdgeIds = toFeedReader.insertTransferEdges(label.node.ptNode, (int) (label.streetTime / 1000L), toPlatformDescriptor);
-        List<Label.Transition> transitions = Label.getTransitions(label.parent, true);
-        int[] skippedEdgesForTransfer = transitions.stream().filter(t -> t.edge != null).mapToInt(t -> {
+    /**
+     * Finds the walks between the stops through the street network for the RAPTOR timetable, with the same search
+     * as {@link #interpolateTransfers}.
+     */
+    private List<RaptorTimetable.Walk> findWalksBetweenStops() {
+        final int maxTransferWalkTimeSeconds = ghConfig.getInt("gtfs.max_transfer_interpolation_walk_time_seconds", 120);
+        QueryGraph queryGraph = QueryGraph.create(getGraphHopperStorage().getBaseGraph(), Collections.emptyList());
+        String connectingProfileName = ghConfig.getString("pt.connecting_profile", "foot");
+        Weighting transferWeighting = createWeighting(getProfile(connectingProfileName), new PMap());
+        final GraphExplorer graphExplorer = new GraphExplorer(queryGraph, ptGraph, transferWeighting, getGtfsStorage(), RealtimeFeed.empty(), true, true, false, true, false, 0);
+        Map<Integer, List<GtfsStorage.FeedIdWithStopId>> stopsByStationNode = new HashMap<>();
+        getGtfsStorage().getStationNodes().forEach((stop, node) -> stopsByStationNode.computeIfAbsent(node, n -> new ArrayList<>()).add(stop));
+        Map<List<GtfsStorage.FeedIdWithStopId>, RaptorTimetable.Walk> walks = new LinkedHashMap<>();
+        stopsByStationNode.forEach((node, toStops) -> {
+            int streetNode = Optional.ofNullable(gtfsStorage.getPtToStreet().get(node)).orElse(-1);
+            MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(graphExplorer, true, false, false, 0, new ArrayList<>());
+            router.setLimitStreetTime(Duration.ofSeconds(maxTransferWalkTimeSeconds).toMillis());
+            for (Label label : router.calcLabels(new Label.NodeId(streetNode, node), Instant.ofEpochMilli(0))) {
+                if (label.parent != null && label.edge.getType() == GtfsStorage.EdgeType.EXIT_PT) {
+                    GtfsStorage.PlatformDescriptor fromPlatformDescriptor = label.edge.getPlatformDescriptor();
+                    GtfsStorage.FeedIdWithStopId fromStop = new GtfsStorage.FeedIdWithStopId(fromPlatformDescriptor.feed_id, fromPlatformDescriptor.stop_id);
+                    int seconds = (int) (label.streetTime / 1000L);
+                    int[] edgeKeys = transferEdgeKeys(label);
+                    for (GtfsStorage.FeedIdWithStopId toStop : toStops) {
+                        walks.merge(Arrays.asList(fromStop, toStop), new RaptorTimetable.Walk(fromStop, toStop, seconds, edgeKeys.length > 0 ? edgeKeys : null),
+                                (a, b) -> a.seconds <= b.seconds ? a : b);
+                    }
+                }
+            }
+        });
+        return new ArrayList<>(walks.values());
+    }
+
+    private List<String> getTransferProfiles() {
+        List<String> result = new ArrayList<>();
+        for (String profileName : ghConfig.getString("gtfs.transfer_profiles", "").split(",")) {
+            if (profileName.trim().isEmpty())
+                continue;
+            if (getProfile(profileName.trim()) == null)
+                throw new IllegalArgumentException("Unknown profile in gtfs.transfer_profiles: " + profileName.trim());
+            result.add(profileName.trim());
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the transfers through the street network between all stations which are at most
+     * gtfs.max_transfer_table_time_seconds apart with the given profile, with a backward search from every station.
+     * This limit is independent of gtfs.max_transfer_interpolation_walk_time_seconds, because the free walk router
+     * cannot walk longer transfers when it uses the table.
+     */
+    private StopTransferTable createTransferTable(String profileName) {
+        LOGGER.info("Calculating transfers between stations for profile {}", profileName);
+        final int maxTransferTimeSeconds = ghConfig.getInt("gtfs.max_transfer_table_time_seconds", 900);
+        Profile profile = getProfile(profileName);
+        QueryGraph queryGraph = QueryGraph.create(getGraphHopperStorage().getBaseGraph(), Collections.emptyList());
+        Weighting transferWeighting = createWeighting(profile, new PMap());
+        final GraphExplorer graphExplorer = new GraphExplorer(queryGraph, ptGraph, transferWeighting, getGtfsStorage(), RealtimeFeed.empty(), true, true, false, profile.isBike(), false, 0);
+        Set<Integer> stationNodes = new TreeSet<>(getGtfsStorage().getStationNodes().values());
+        List<StopTransferTable.StreetTransfer> transfers = new ArrayList<>();
+        for (int stationNode : stationNodes) {
+            Integer streetNode = gtfsStorage.getPtToStreet().get(stationNode);
+            if (streetNode == null)
+                continue;
+            MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(graphExplorer, true, false, false, 0, new ArrayList<>());
+            router.setLimitStreetTime(Duration.ofSeconds(maxTransferTimeSeconds).toMillis());
+            for (Label label : router.calcLabels(new Label.NodeId(streetNode, stationNode), Instant.ofEpochMilli(0))) {
+                // the search is backwards, so these are the transfers from the other stations to this one
+                if (label.parent != null && label.edge.getType() == GtfsStorage.EdgeType.HIGHWAY && label.node.ptNode != stationNode && stationNodes.contains(label.node.ptNode)) {
+                    transfers.add(new StopTransferTable.StreetTransfer(label.node.ptNode, label.node.streetNode, stationNode, streetNode,
+                            label.streetTime, label.edgeWeight, streetEdgeKeys(label)));
+                }
+            }
+        }
+        LOGGER.info("Found {} transfers between {} stations", transfers.size(), stationNodes.size());
+        StopTransferTable transferTable = new StopTransferTable(getGraphHopperStorage().getDirectory(), profileName);
+        transferTable.create(ptGraph.getNodeCount(), Duration.ofSeconds(maxTransferTimeSeconds).toMillis(), transfers);
+        return transferTable;
+    }
+
+    private int[] transferEdgeKeys(Label label) {
+        return streetEdgeKeys(label.parent);
+    }
+
+    /**
+     * @return the keys of the street edges from the given label to the start of a backward search
+     */
+    private int[] streetEdgeKeys(Label label) {
+        List<Label.Transition> transitions = Label.getTransitions(label, true);
+        return transitions.stream().filter(t -> t.edge != null).mapToInt(t -> {
             Label.NodeId adjNode = t.label.node;
             EdgeIteratorState edgeIteratorState = getGraphHopperStorage().getEdgeIteratorState(t.edge.getId(), adjNode.streetNode);
             return edgeIteratorState.getEdgeKey();
         }).toArray();
+    }
+
+    private void insertInterpolatedTransfer(Label label, GtfsStorage.PlatformDescriptor toPlatformDescriptor, HashMap<String, GtfsReader> readers) {
+        GtfsReader toFeedReader = readers.get(toPlatformDescriptor.feed_id);
+        List<Integer> transferEdgeIds = toFeedReader.insertTransferEdges(label.node.ptNode, (int) (label.streetTime / 1000L), toPlatformDescriptor);
+        int[] skippedEdgesForTransfer = transferEdgeKeys(label);
         if (skippedEdgesForTransfer.length > 0) { // TODO: Elsewhere, we distinguish empty path ("at" a node) from no path
             assert isValidPath(skippedEdgesForTransfer);
             for (Integer transferEdgeId : transferEdgeIds) {
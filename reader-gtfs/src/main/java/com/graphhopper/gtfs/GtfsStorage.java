@@ -40,6 +40,8 @@ public class GtfsStorage {
 	private static final Logger LOGGER = LoggerFactory.getLogger(GtfsStorage.class);
 	private LineIntIndex stopIndex;
 	private PtGraph ptGraph;
+	private RaptorTimetable raptorTimetable;
+	private final Map<String, StopTransferTable> transferTables = new HashMap<>();
 
 	public void setStopIndex(LineIntIndex stopIndex) {
 		this.stopIndex = stopIndex;
@@ -57,6 +59,29 @@ public class GtfsStorage {
         this.ptGraph = ptGraph;
     }
 
+    /**
+     * @return the timetable for the RAPTOR router, or null if it has not been created (gtfs.raptor)
+     */
+    public RaptorTimetable getRaptorTimetable() {
+        return raptorTimetable;
+    }
+
+    public void setRaptorTimetable(RaptorTimetable raptorTimetable) {
+        this.raptorTimetable = raptorTimetable;
+    }
+
+    /**
+     * @return the transfers between the stations through the street network for the given profile, or null if they
+     * were not calculated for it, see gtfs.transfer_profiles
+     */
+    public StopTransferTable getTransferTable(String profile) {
+        return transferTables.get(profile);
+    }
+
+    void setTransferTable(String profile, StopTransferTable transferTable) {
+        transferTables.put(profile, transferTable);
+    }
+
 	public Map<Integer, int[]> getSkippedEdgesForTransfer() {
 		return skippedEdgesForTransfer;
 	}
@@ -138,6 +163,7 @@ public class GtfsStorage {
 	private Directory dir;
 	private Set<String> gtfsFeedIds;
 	private Map<String, GTFSFeed> gtfsFeeds = new HashMap<>();
+	private Map<String, StopTimeTable> stopTimeTables = new HashMap<>();
 	private Map<String, Map<String, Fare>> faresByFeed;
 	private Map<FeedIdWithStopId, Integer> stationNodes;
 	private Map<Integer, int[]> skippedEdgesForTransfer;
@@ -173,6 +199,11 @@ public class GtfsStorage {
 
 			GTFSFeed feed = new GTFSFeed(dbFile);
 			this.gtfsFeeds.put(gtfsFeedId, feed);
+			StopTimeTable stopTimeTable = new StopTimeTable(dir, gtfsFeedId);
+			if (!stopTimeTable.loadExisting()) {
+				throw new RuntimeException(String.format("The stop time table of the gtfsFeed %s is missing in %s. Please re-import.", gtfsFeedId, dir.getLocation()));
+			}
+			this.stopTimeTables.put(gtfsFeedId, stopTimeTable);
 		}
 		postInit();
 		return true;
@@ -205,6 +236,10 @@ public class GtfsStorage {
 			GTFSFeed feed = new GTFSFeed(dbFile);
 			feed.loadFromFileAndLogErrors(zipFileOrDirectory);
 			this.gtfsFeeds.put(id, feed);
+			StopTimeTable stopTimeTable = new StopTimeTable(dir, id);
+			stopTimeTable.create(feed);
+			stopTimeTable.flush();
+			this.stopTimeTables.put(id, stopTimeTable);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -227,6 +262,12 @@ public class GtfsStorage {
 			for (GTFSFeed feed : gtfsFeeds.values()) {
 				feed.close();
 			}
+			for (StopTimeTable stopTimeTable : stopTimeTables.values()) {
+				stopTimeTable.close();
+			}
+			for (StopTransferTable transferTable : transferTables.values()) {
+				transferTable.close();
+			}
 		}
 	}
 
@@ -246,6 +287,14 @@ public class GtfsStorage {
 		return Collections.unmodifiableMap(gtfsFeeds);
 	}
 
+	/**
+	 * @return the stop times of each feed in a columnar layout, which is cheaper to query than the stop times of the
+	 * feed itself
+	 */
+	public Map<String, StopTimeTable> getStopTimeTables() {
+		return Collections.unmodifiableMap(stopTimeTables);
+	}
+
 	public Map<FeedIdWithStopId, Integer> getStationNodes() {
 		return stationNodes;
 	}
@@ -0,0 +1,94 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import com.google.transit.realtime.GtfsRealtime;
+import com.graphhopper.storage.GraphHopperStorage;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates a new {@link RealtimeFeed} for each new set of feed messages, but only processes the scheduled trip updates
+ * whose trip descriptor or stop time updates changed since the previous update. The changes of unchanged trip updates (blocked edges, delays and delayed
+ * departures) are taken from the previous update, which avoids the expensive search for the edges of the trip in the
+ * timetable graph. Every update returns a new RealtimeFeed, so routing requests can keep using the RealtimeFeed they
+ * started with while the next one is created.
+ */
+public class IncrementalRealtimeFeed {
+    private final GraphHopperStorage graphHopperStorage;
+    private final GtfsStorage gtfsStorage;
+    private final Map<String, Transfers> transfers;
+    private Map<String, Map<GtfsRealtime.TripUpdate, RealtimeFeed.ScheduledTripUpdate>> tripUpdates = Collections.emptyMap();
+    private volatile RealtimeFeed realtimeFeed = RealtimeFeed.empty();
+    private int reusedTripUpdates;
+    private int createdTripUpdates;
+
+    public IncrementalRealtimeFeed(GraphHopperStorage graphHopperStorage, GtfsStorage gtfsStorage, Map<String, Transfers> transfers) {
+        this.graphHopperStorage = graphHopperStorage;
+        this.gtfsStorage = gtfsStorage;
+        this.transfers = transfers;
+    }
+
+    /**
+     * Applies the given feed messages, which replace the previous ones.
+     *
+     * @return the new RealtimeFeed, which is also returned by {@link #get()} from now on
+     */
+    public synchronized RealtimeFeed update(Map<String, GtfsRealtime.FeedMessage> feedMessages) {
+        Map<String, Map<GtfsRealtime.TripUpdate, RealtimeFeed.ScheduledTripUpdate>> newTripUpdates = new HashMap<>();
+        RealtimeFeed result = RealtimeFeed.fromProtobuf(graphHopperStorage, gtfsStorage, transfers, feedMessages, tripUpdates, newTripUpdates);
+        int reused = 0, created = 0;
+        for (Map.Entry<String, Map<GtfsRealtime.TripUpdate, RealtimeFeed.ScheduledTripUpdate>> feedEntry : newTripUpdates.entrySet()) {
+            Map<GtfsRealtime.TripUpdate, RealtimeFeed.ScheduledTripUpdate> previous = tripUpdates.getOrDefault(feedEntry.getKey(), Collections.emptyMap());
+            for (Map.Entry<GtfsRealtime.TripUpdate, RealtimeFeed.ScheduledTripUpdate> entry : feedEntry.getValue().entrySet()) {
+                if (previous.get(entry.getKey()) == entry.getValue())
+                    reused++;
+                else
+                    created++;
+            }
+        }
+        reusedTripUpdates = reused;
+        createdTripUpdates = created;
+        tripUpdates = newTripUpdates;
+        realtimeFeed = result;
+        return result;
+    }
+
+    /**
+     * @return the RealtimeFeed of the last update or an empty one if there was no update yet
+     */
+    public RealtimeFeed get() {
+        return realtimeFeed;
+    }
+
+    /**
+     * @return the number of scheduled trip updates of the last update that were taken from the previous update
+     */
+    public synchronized int getReusedTripUpdates() {
+        return reusedTripUpdates;
+    }
+
+    /**
+     * @return the number of scheduled trip updates of the last update that were new or changed
+     */
+    public synchronized int getCreatedTripUpdates() {
+        return createdTripUpdates;
+    }
+}
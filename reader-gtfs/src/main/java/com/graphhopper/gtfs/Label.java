@@ -38,7 +38,7 @@ public class Label {
 
     }
 
-    public boolean deleted = false;
+    public static final long NO_DEPARTURE_TIME = Long.MIN_VALUE;
 
     public final double edgeWeight;
     public final long currentTime;
@@ -48,7 +48,8 @@ public class Label {
 
     public final int nTransfers;
 
-    public final Long departureTime;
+    // departure time of the first pt leg, or NO_DEPARTURE_TIME as long as the label has not boarded yet
+    public final long departureTime;
     public final long streetTime;
     public final long extraWeight;
 
@@ -57,7 +58,7 @@ public class Label {
 
     public final Label parent;
 
-    Label(double edgeWeight, long currentTime, GraphExplorer.MultiModalEdge edge, NodeId node, int nTransfers, Long departureTime, long streetTime, long extraWeight, long residualDelay, boolean impossible, Label parent) {
+    Label(double edgeWeight, long currentTime, GraphExplorer.MultiModalEdge edge, NodeId node, int nTransfers, long departureTime, long streetTime, long extraWeight, long residualDelay, boolean impossible, Label parent) {
         this.edgeWeight = edgeWeight;
         this.currentTime = currentTime;
         this.edge = edge;
@@ -71,9 +72,13 @@ public class Label {
         this.parent = parent;
     }
 
+    public boolean hasDepartureTime() {
+        return departureTime != NO_DEPARTURE_TIME;
+    }
+
     @Override
     public String toString() {
-        return node + " " + (departureTime != null ? Instant.ofEpochMilli(departureTime) : "---") + "\t" + nTransfers + "\t" + Instant.ofEpochMilli(currentTime);
+        return node + " " + (hasDepartureTime() ? Instant.ofEpochMilli(departureTime) : "---") + "\t" + nTransfers + "\t" + Instant.ofEpochMilli(currentTime);
     }
 
     static List<Label.Transition> getTransitions(Label _label, boolean arriveBy) {
@@ -0,0 +1,142 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.sorting.IndirectComparator;
+
+import java.util.Arrays;
+
+/**
+ * A binary min heap of label handles (see {@link LabelStore}) which keeps track of the position of each handle in the
+ * tree, so a label can be removed as soon as it is dominated, instead of staying in the queue until it is polled and
+ * skipped.
+ */
+final class LabelHeap {
+    private static final int NOT_PRESENT = -1;
+    private final IndirectComparator comparator;
+    // 0-based, the children of i are 2i+1 and 2i+2
+    private int[] tree = new int[16];
+    // the position of each handle in the tree, or NOT_PRESENT
+    private int[] positions = new int[16];
+    private int size;
+
+    LabelHeap(IndirectComparator comparator) {
+        this.comparator = comparator;
+        Arrays.fill(positions, NOT_PRESENT);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int label) {
+        return label < positions.length && positions[label] != NOT_PRESENT;
+    }
+
+    void add(int label) {
+        if (label < 0)
+            throw new IllegalArgumentException("Invalid label: " + label);
+        if (contains(label))
+            throw new IllegalStateException("Label was added already: " + label);
+        if (label >= positions.length) {
+            int oldLength = positions.length;
+            positions = Arrays.copyOf(positions, Math.max(label + 1, oldLength * 2));
+            Arrays.fill(positions, oldLength, positions.length, NOT_PRESENT);
+        }
+        if (size == tree.length)
+            tree = Arrays.copyOf(tree, tree.length * 2);
+        tree[size] = label;
+        positions[label] = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    int peek() {
+        if (size == 0)
+            throw new IllegalStateException("Heap is empty");
+        return tree[0];
+    }
+
+    int poll() {
+        int result = peek();
+        removeAt(0);
+        return result;
+    }
+
+    /**
+     * @return true if the label was contained in this heap
+     */
+    boolean remove(int label) {
+        if (!contains(label))
+            return false;
+        removeAt(positions[label]);
+        return true;
+    }
+
+    private void removeAt(int index) {
+        positions[tree[index]] = NOT_PRESENT;
+        size--;
+        if (index == size)
+            return;
+        int last = tree[size];
+        tree[index] = last;
+        positions[last] = index;
+        siftDown(index);
+        if (tree[index] == last)
+            siftUp(index);
+    }
+
+    private void siftUp(int index) {
+        int label = tree[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (comparator.compare(tree[parent], label) <= 0)
+                break;
+            move(parent, index);
+            index = parent;
+        }
+        tree[index] = label;
+        positions[label] = index;
+    }
+
+    private void siftDown(int index) {
+        int label = tree[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && comparator.compare(tree[right], tree[child]) < 0)
+                child = right;
+            if (comparator.compare(label, tree[child]) <= 0)
+                break;
+            move(child, index);
+            index = child;
+        }
+        tree[index] = label;
+        positions[label] = index;
+    }
+
+    private void move(int from, int to) {
+        tree[to] = tree[from];
+        positions[tree[to]] = to;
+    }
+}
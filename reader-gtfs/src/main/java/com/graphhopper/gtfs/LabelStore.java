@@ -0,0 +1,160 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntStack;
+
+import java.util.Arrays;
+
+/**
+ * The labels of a {@link MultiCriteriaLabelSetting} search, stored in parallel arrays and addressed by an int handle.
+ * A {@link Label} object is only created when a label is settled, so the candidates which are dominated right away and
+ * the labels which are dominated while they wait in the queue do not allocate anything. The handles of released labels
+ * are reused.
+ */
+final class LabelStore {
+    private double[] edgeWeights;
+    private long[] currentTimes;
+    private int[] nTransfers;
+    private long[] departureTimes;
+    private long[] streetTimes;
+    private long[] extraWeights;
+    private long[] residualDelays;
+    private boolean[] impossible;
+    private GraphExplorer.MultiModalEdge[] edges;
+    private Label.NodeId[] nodes;
+    // the settled label from which a label was reached, the parent chain of a settled label consists of objects
+    private Label[] parents;
+    private int size;
+    private final IntStack free = new IntStack();
+
+    LabelStore() {
+        this(64);
+    }
+
+    LabelStore(int capacity) {
+        edgeWeights = new double[capacity];
+        currentTimes = new long[capacity];
+        nTransfers = new int[capacity];
+        departureTimes = new long[capacity];
+        streetTimes = new long[capacity];
+        extraWeights = new long[capacity];
+        residualDelays = new long[capacity];
+        impossible = new boolean[capacity];
+        edges = new GraphExplorer.MultiModalEdge[capacity];
+        nodes = new Label.NodeId[capacity];
+        parents = new Label[capacity];
+    }
+
+    /**
+     * @return the handle of the new label
+     */
+    int create(double edgeWeight, long currentTime, GraphExplorer.MultiModalEdge edge, Label.NodeId node, int nTransfers, long departureTime, long streetTime, long extraWeight, long residualDelay, boolean impossible, Label parent) {
+        int label;
+        if (free.isEmpty()) {
+            if (size == edgeWeights.length)
+                grow(Math.max(16, size * 2));
+            label = size++;
+        } else {
+            label = free.pop();
+        }
+        this.edgeWeights[label] = edgeWeight;
+        this.currentTimes[label] = currentTime;
+        this.edges[label] = edge;
+        this.nodes[label] = node;
+        this.nTransfers[label] = nTransfers;
+        this.departureTimes[label] = departureTime;
+        this.streetTimes[label] = streetTime;
+        this.extraWeights[label] = extraWeight;
+        this.residualDelays[label] = residualDelay;
+        this.impossible[label] = impossible;
+        this.parents[label] = parent;
+        return label;
+    }
+
+    /**
+     * Makes the handle available for a new label. Label objects which were created from it are not affected.
+     */
+    void release(int label) {
+        edges[label] = null;
+        nodes[label] = null;
+        parents[label] = null;
+        free.push(label);
+    }
+
+    Label toLabel(int label) {
+        return new Label(edgeWeights[label], currentTimes[label], edges[label], nodes[label], nTransfers[label], departureTimes[label],
+                streetTimes[label], extraWeights[label], residualDelays[label], impossible[label], parents[label]);
+    }
+
+    double getEdgeWeight(int label) {
+        return edgeWeights[label];
+    }
+
+    long getCurrentTime(int label) {
+        return currentTimes[label];
+    }
+
+    int getNTransfers(int label) {
+        return nTransfers[label];
+    }
+
+    long getDepartureTime(int label) {
+        return departureTimes[label];
+    }
+
+    long getStreetTime(int label) {
+        return streetTimes[label];
+    }
+
+    boolean isImpossible(int label) {
+        return impossible[label];
+    }
+
+    Label.NodeId getNode(int label) {
+        return nodes[label];
+    }
+
+    /**
+     * @return the number of handles which were ever used, i.e. the maximum number of labels stored at the same time
+     */
+    int getCapacityUsed() {
+        return size;
+    }
+
+    /**
+     * @return the number of labels which are stored at the moment
+     */
+    int getLabels() {
+        return size - free.size();
+    }
+
+    private void grow(int capacity) {
+        edgeWeights = Arrays.copyOf(edgeWeights, capacity);
+        currentTimes = Arrays.copyOf(currentTimes, capacity);
+        nTransfers = Arrays.copyOf(nTransfers, capacity);
+        departureTimes = Arrays.copyOf(departureTimes, capacity);
+        streetTimes = Arrays.copyOf(streetTimes, capacity);
+        extraWeights = Arrays.copyOf(extraWeights, capacity);
+        residualDelays = Arrays.copyOf(residualDelays, capacity);
+        impossible = Arrays.copyOf(impossible, capacity);
+        edges = Arrays.copyOf(edges, capacity);
+        nodes = Arrays.copyOf(nodes, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+    }
+}
@@ -17,6 +17,8 @@
  */
 package com.graphhopper.gtfs;
 
+import com.carrotsearch.hppc.sorting.IndirectComparator;
+
 import java.time.Instant;
 import java.util.*;
 import java.util.function.Consumer;
@@ -27,6 +29,11 @@ import java.util.function.Predicate;
  * Implements a Multi-Criteria Label Setting (MLS) path finding algorithm
  * with the criteria earliest arrival time and number of transfers.
  * <p>
+ * The labels are kept in a {@link LabelStore} and addressed by int handles until they are settled, only then a
+ * {@link Label} object is created. The labels of each node are kept in buckets by number of transfers, and each bucket
+ * is sorted by weight, so the dominance checks only look at the labels which can dominate (or be dominated by) a new
+ * label. Dominated labels are removed from the queue right away and their handles are reused.
+ * <p>
  *
  * @author Michael Zilske
  * @author Peter Karich
@@ -34,11 +41,11 @@ import java.util.function.Predicate;
  */
 public class MultiCriteriaLabelSetting {
 
-    private final Comparator<Label> queueComparator;
     private final List<Label> targetLabels;
     private long startTime;
-    private final Map<Label.NodeId, List<Label>> fromMap;
-    private final PriorityQueue<Label> fromHeap;
+    private final Map<Label.NodeId, NodeLabels> fromMap;
+    private final LabelStore store;
+    private final LabelHeap fromHeap;
     private final long maxProfileDuration;
     private final boolean reverse;
     private final boolean mindTransfers;
@@ -58,8 +65,8 @@ public class MultiCriteriaLabelSetting {
         this.maxProfileDuration = maxProfileDuration;
         this.targetLabels = solutions;
 
-        queueComparator = new LabelComparator();
-        fromHeap = new PriorityQueue<>(queueComparator);
+        store = new LabelStore();
+        fromHeap = new LabelHeap(new LabelComparator());
         fromMap = new HashMap<>();
     }
 
@@ -84,21 +91,19 @@ public class MultiCriteriaLabelSetting {
 
         MultiCriteriaLabelSettingSpliterator(Label.NodeId from) {
             super(0, 0);
-            Label label = new Label(0, startTime, null, from, 0, null, 0, 0L, 0, false, null);
-            ArrayList<Label> labels = new ArrayList<>(1);
-            labels.add(label);
+            int label = store.create(0, startTime, null, from, 0, Label.NO_DEPARTURE_TIME, 0, 0L, 0, false, null);
+            NodeLabels labels = new NodeLabels();
+            labels.add(label, weight(label));
             fromMap.put(from, labels);
             fromHeap.add(label);
         }
 
         @Override
         public boolean tryAdvance(Consumer<? super Label> action) {
-            while (!fromHeap.isEmpty() && fromHeap.peek().deleted)
-                fromHeap.poll();
             if (fromHeap.isEmpty()) {
                 return false;
             } else {
-                Label label = fromHeap.poll();
+                Label label = store.toLabel(fromHeap.poll());
                 action.accept(label);
                 for (GraphExplorer.MultiModalEdge edge : explorer.exploreEdgesAround(label)) {
                     long nextTime;
@@ -110,7 +115,7 @@ public class MultiCriteriaLabelSetting {
                     }
                     int nTransfers = label.nTransfers + edge.getTransfers();
                     long extraWeight = label.extraWeight;
-                    Long firstPtDepartureTime = label.departureTime;
+                    long firstPtDepartureTime = label.departureTime;
                     GtfsStorage.EdgeType edgeType = edge.getType();
                     if (!reverse && (edgeType == GtfsStorage.EdgeType.ENTER_PT) || reverse && (edgeType == GtfsStorage.EdgeType.EXIT_PT)) {
                         extraWeight += transferPenaltiesByRouteType.applyAsLong(edge.getRouteType());
@@ -162,15 +167,13 @@ public class MultiCriteriaLabelSetting {
                         }
                     }
                     if (!reverse && edgeType == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK && residualDelay > 0) {
-                        Label newImpossibleLabelForDelayedTrip = new Label(nextEdgeWeight, nextTime, edge, edge.getAdjNode(), nTransfers, firstPtDepartureTime, walkTime, extraWeight, residualDelay, true, label);
-                        insertIfNotDominated(newImpossibleLabelForDelayedTrip);
+                        // the impossible label for the delayed trip
+                        insertIfNotDominated(store.create(nextEdgeWeight, nextTime, edge, edge.getAdjNode(), nTransfers, firstPtDepartureTime, walkTime, extraWeight, residualDelay, true, label));
                         nextTime += residualDelay;
                         residualDelay = 0;
-                        Label newLabel = new Label(nextEdgeWeight, nextTime, edge, edge.getAdjNode(), nTransfers, firstPtDepartureTime, walkTime, extraWeight, residualDelay, impossible, label);
-                        insertIfNotDominated(newLabel);
+                        insertIfNotDominated(store.create(nextEdgeWeight, nextTime, edge, edge.getAdjNode(), nTransfers, firstPtDepartureTime, walkTime, extraWeight, residualDelay, impossible, label));
                     } else {
-                        Label newLabel = new Label(nextEdgeWeight, nextTime, edge, edge.getAdjNode(), nTransfers, firstPtDepartureTime, walkTime, extraWeight, residualDelay, impossible, label);
-                        insertIfNotDominated(newLabel);
+                        insertIfNotDominated(store.create(nextEdgeWeight, nextTime, edge, edge.getAdjNode(), nTransfers, firstPtDepartureTime, walkTime, extraWeight, residualDelay, impossible, label));
                     }
                 }
                 return true;
@@ -179,29 +182,54 @@ public class MultiCriteriaLabelSetting {
     }
 
 
-    void insertIfNotDominated(Label me) {
-        Predicate<Label> filter;
-        if (profileQuery && me.departureTime != null) {
-            filter = (targetLabel) -> (!reverse ? prc(me, targetLabel) : rprc(me, targetLabel));
-        } else {
-            filter = label -> true;
-        }
-        if (isNotDominatedByAnyOf(me, targetLabels, filter)) {
-            List<Label> sptEntries = fromMap.computeIfAbsent(me.node, k -> new ArrayList<>(1));
-            if (isNotDominatedByAnyOf(me, sptEntries, filter)) {
-                removeDominated(me, sptEntries, filter);
-                sptEntries.add(me);
+    private void insertIfNotDominated(int me) {
+        double weight = weight(me);
+        if (isNotDominatedByTargetLabels(me, weight)) {
+            NodeLabels sptEntries = fromMap.computeIfAbsent(store.getNode(me), k -> new NodeLabels());
+            if (sptEntries.isNotDominated(me, weight)) {
+                sptEntries.removeDominated(me, weight);
+                sptEntries.add(me, weight);
                 fromHeap.add(me);
+                return;
             }
         }
+        store.release(me);
+    }
+
+    private boolean isNotDominatedByTargetLabels(int me, double weight) {
+        long departureTime = store.getDepartureTime(me);
+        for (Label they : targetLabels) {
+            if (canDominate(departureTime, they.departureTime) && dominates(weight(they), they.nTransfers, they.streetTime, they.departureTime, they.impossible,
+                    weight, store.getNTransfers(me), store.getStreetTime(me), departureTime, store.isImpossible(me)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * In a profile query, a label which is on its way can only be dominated by (or dominate) labels which depart later
+     * (earlier if reverse) or after the end of the profile.
+     */
+    private boolean canDominate(long meDepartureTime, long theyDepartureTime) {
+        if (!profileQuery || meDepartureTime == Label.NO_DEPARTURE_TIME)
+            return true;
+        return !reverse ? prc(meDepartureTime, theyDepartureTime) : rprc(meDepartureTime, theyDepartureTime);
     }
 
     boolean rprc(Label me, Label they) {
-        return they.departureTime != null && (they.departureTime <= me.departureTime || they.departureTime <= startTime - maxProfileDuration);
+        return rprc(me.departureTime, they.departureTime);
     }
 
     boolean prc(Label me, Label they) {
-        return they.departureTime != null && (they.departureTime >= me.departureTime || they.departureTime >= startTime + maxProfileDuration);
+        return prc(me.departureTime, they.departureTime);
+    }
+
+    private boolean rprc(long meDepartureTime, long theyDepartureTime) {
+        return theyDepartureTime != Label.NO_DEPARTURE_TIME && (theyDepartureTime <= meDepartureTime || theyDepartureTime <= startTime - maxProfileDuration);
+    }
+
+    private boolean prc(long meDepartureTime, long theyDepartureTime) {
+        return theyDepartureTime != Label.NO_DEPARTURE_TIME && (theyDepartureTime >= meDepartureTime || theyDepartureTime >= startTime + maxProfileDuration);
     }
 
     boolean isNotDominatedByAnyOf(Label me, Collection<Label> sptEntries, Predicate<Label> filter) {
@@ -217,27 +245,42 @@ public class MultiCriteriaLabelSetting {
         for (Iterator<Label> iterator = sptEntries.iterator(); iterator.hasNext(); ) {
             Label sptEntry = iterator.next();
             if (filter.test(sptEntry) && dominates(me, sptEntry)) {
-                sptEntry.deleted = true;
                 iterator.remove();
             }
         }
     }
 
     private boolean dominates(Label me, Label they) {
-        if (weight(me) > weight(they))
+        return dominates(weight(me), me.nTransfers, me.streetTime, me.departureTime, me.impossible,
+                weight(they), they.nTransfers, they.streetTime, they.departureTime, they.impossible);
+    }
+
+    private boolean dominates(int me, double meWeight, int they, double theyWeight) {
+        return dominates(meWeight, store.getNTransfers(me), store.getStreetTime(me), store.getDepartureTime(me), store.isImpossible(me),
+                theyWeight, store.getNTransfers(they), store.getStreetTime(they), store.getDepartureTime(they), store.isImpossible(they));
+    }
+
+    private boolean dominates(double meWeight, int meTransfers, long meStreetTime, long meDepartureTime, boolean meImpossible,
+                              double theyWeight, int theyTransfers, long theyStreetTime, long theyDepartureTime, boolean theyImpossible) {
+        if (meWeight > theyWeight)
             return false;
 
-        if (mindTransfers && me.nTransfers > they.nTransfers)
+        if (mindTransfers && meTransfers > theyTransfers)
             return false;
-        if (me.impossible && !they.impossible)
+        if (meImpossible && !theyImpossible)
             return false;
 
-        if (weight(me) < weight(they))
+        if (meWeight < theyWeight)
             return true;
-        if (mindTransfers && me.nTransfers < they.nTransfers)
+        if (mindTransfers && meTransfers < theyTransfers)
             return true;
 
-        return queueComparator.compare(me, they) <= 0;
+        return compare(meWeight, meTransfers, meStreetTime, meDepartureTime, meImpossible,
+                theyWeight, theyTransfers, theyStreetTime, theyDepartureTime, theyImpossible) <= 0;
+    }
+
+    private double weight(int label) {
+        return store.getEdgeWeight(label) + store.getNTransfers(label) * betaTransfers * 60 * 1000;
     }
 
     double weight(Label label) {
@@ -248,8 +291,8 @@ public class MultiCriteriaLabelSetting {
         return (reverse ? -1 : 1) * (label.currentTime - startTime);
     }
 
-    Long departureTimeSinceStartTime(Label label) {
-        return label.departureTime != null ? (reverse ? -1 : 1) * (label.departureTime - startTime) : null;
+    long departureTimeSinceStartTime(Label label) {
+        return (reverse ? -1 : 1) * (label.departureTime - startTime);
     }
 
     public void setLimitTripTime(long limitTripTime) {
@@ -260,27 +303,143 @@ public class MultiCriteriaLabelSetting {
         this.limitStreetTime = limitStreetTime;
     }
 
-    private class LabelComparator implements Comparator<Label> {
+    /**
+     * The handles of the labels of one node, in buckets by number of transfers. Each bucket is sorted by weight, with
+     * the weights in a separate array, so a scan can stop at the first label which is too heavy (or start at the first
+     * one which is heavy enough).
+     */
+    private class NodeLabels {
+        private int[][] labels = new int[1][];
+        private double[][] weights = new double[1][];
+        private int[] sizes = new int[1];
+
+        boolean isNotDominated(int me, double weight) {
+            long departureTime = store.getDepartureTime(me);
+            // with transfers as a criterion, labels with more transfers cannot dominate me
+            int maxTransfers = mindTransfers ? Math.min(store.getNTransfers(me), sizes.length - 1) : sizes.length - 1;
+            for (int t = 0; t <= maxTransfers; t++) {
+                int[] bucket = labels[t];
+                double[] bucketWeights = weights[t];
+                for (int i = 0; i < sizes[t] && bucketWeights[i] <= weight; i++) {
+                    if (canDominate(departureTime, store.getDepartureTime(bucket[i])) && dominates(bucket[i], bucketWeights[i], me, weight))
+                        return false;
+                }
+            }
+            return true;
+        }
 
-        @Override
-        public int compare(Label o1, Label o2) {
-            int c = Double.compare(weight(o1), weight(o2));
-            if (c != 0)
-                return c;
-            c = Integer.compare(o1.nTransfers, o2.nTransfers);
-            if (c != 0)
-                return c;
-
-            c = Long.compare(o1.streetTime, o2.streetTime);
-            if (c != 0)
-                return c;
-
-            c = Long.compare(o1.departureTime != null ? reverse ? o1.departureTime : -o1.departureTime : 0, o2.departureTime != null ? reverse ? o2.departureTime : -o2.departureTime : 0);
-            if (c != 0)
-                return c;
-
-            c = Integer.compare(o1.impossible ? 1 : 0, o2.impossible ? 1 : 0);
+        /**
+         * Removes the labels dominated by the given one from this node and from the queue, and releases their handles.
+         */
+        void removeDominated(int me, double weight) {
+            long departureTime = store.getDepartureTime(me);
+            for (int t = mindTransfers ? store.getNTransfers(me) : 0; t < sizes.length; t++) {
+                int size = sizes[t];
+                if (size == 0)
+                    continue;
+                int[] bucket = labels[t];
+                double[] bucketWeights = weights[t];
+                int from = firstIndexNotLighterThan(bucketWeights, size, weight);
+                int to = from;
+                for (int i = from; i < size; i++) {
+                    int sptEntry = bucket[i];
+                    if (canDominate(departureTime, store.getDepartureTime(sptEntry)) && dominates(me, weight, sptEntry, bucketWeights[i])) {
+                        // settled labels are not in the queue anymore
+                        fromHeap.remove(sptEntry);
+                        store.release(sptEntry);
+                    } else {
+                        bucket[to] = sptEntry;
+                        bucketWeights[to] = bucketWeights[i];
+                        to++;
+                    }
+                }
+                sizes[t] = to;
+            }
+        }
+
+        void add(int me, double weight) {
+            int t = store.getNTransfers(me);
+            if (t >= sizes.length) {
+                labels = Arrays.copyOf(labels, t + 1);
+                weights = Arrays.copyOf(weights, t + 1);
+                sizes = Arrays.copyOf(sizes, t + 1);
+            }
+            if (labels[t] == null) {
+                labels[t] = new int[1];
+                weights[t] = new double[1];
+            } else if (sizes[t] == labels[t].length) {
+                labels[t] = Arrays.copyOf(labels[t], sizes[t] * 2);
+                weights[t] = Arrays.copyOf(weights[t], sizes[t] * 2);
+            }
+            // insert after the labels with the same weight
+            int index = firstIndexHeavierThan(weights[t], sizes[t], weight);
+            System.arraycopy(labels[t], index, labels[t], index + 1, sizes[t] - index);
+            System.arraycopy(weights[t], index, weights[t], index + 1, sizes[t] - index);
+            labels[t][index] = me;
+            weights[t][index] = weight;
+            sizes[t]++;
+        }
+
+        private int firstIndexNotLighterThan(double[] bucketWeights, int size, double weight) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (bucketWeights[mid] < weight)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            return low;
+        }
+
+        private int firstIndexHeavierThan(double[] bucketWeights, int size, double weight) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (bucketWeights[mid] <= weight)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            return low;
+        }
+    }
+
+    /**
+     * The order of the queue: by weight, then by number of transfers, street time, departure time (later first) and
+     * possibility.
+     */
+    private int compare(double weight1, int nTransfers1, long streetTime1, long departureTime1, boolean impossible1,
+                        double weight2, int nTransfers2, long streetTime2, long departureTime2, boolean impossible2) {
+        int c = Double.compare(weight1, weight2);
+        if (c != 0)
+            return c;
+        c = Integer.compare(nTransfers1, nTransfers2);
+        if (c != 0)
+            return c;
+
+        c = Long.compare(streetTime1, streetTime2);
+        if (c != 0)
             return c;
+
+        c = Long.compare(departureTimeKey(departureTime1), departureTimeKey(departureTime2));
+        if (c != 0)
+            return c;
+
+        c = Integer.compare(impossible1 ? 1 : 0, impossible2 ? 1 : 0);
+        return c;
+    }
+
+    private long departureTimeKey(long departureTime) {
+        return departureTime == Label.NO_DEPARTURE_TIME ? 0 : reverse ? departureTime : -departureTime;
+    }
+
+    private class LabelComparator implements IndirectComparator {
+
+        @Override
+        public int compare(int label1, int label2) {
+            return MultiCriteriaLabelSetting.this.compare(weight(label1), store.getNTransfers(label1), store.getStreetTime(label1), store.getDepartureTime(label1), store.isImpossible(label1),
+                    weight(label2), store.getNTransfers(label2), store.getStreetTime(label2), store.getDepartureTime(label2), store.isImpossible(label2));
         }
     }
 }
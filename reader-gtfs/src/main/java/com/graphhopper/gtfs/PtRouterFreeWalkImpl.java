@@ -23,6 +23,7 @@ import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.ResponsePath;
+import com.graphhopper.coll.GHIntHashSet;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.DefaultWeightingFactory;
 import com.graphhopper.routing.WeightingFactory;
@@ -93,7 +94,7 @@ public final class PtRouterFreeWalkImpl implements PtRouter {
             this.gtfsStorage = gtfsStorage;
             this.transfers = new HashMap<>();
             for (Map.Entry<String, GTFSFeed> entry : this.gtfsStorage.getGtfsFeeds().entrySet()) {
-                this.transfers.put(entry.getKey(), new Transfers(entry.getValue()));
+                this.transfers.put(entry.getKey(), new Transfers(entry.getValue(), this.gtfsStorage.getStopTimeTables().get(entry.getKey())));
             }
         }
 
@@ -204,6 +205,10 @@ public final class PtRouterFreeWalkImpl implements PtRouter {
             StopWatch stopWatch = new StopWatch().start();
 
             GraphExplorer graphExplorer = new GraphExplorer(queryGraph, ptGraph, accessEgressWeighting, gtfsStorage, realtimeFeed, arriveBy, false, false, connectingProfile.isBike(), false, blockedRouteTypes);
+            StopTransferTable transferTable = gtfsStorage.getTransferTable(connectingProfile.getName());
+            if (transferTable != null) {
+                graphExplorer.setTransferTable(transferTable, findStreetNodesNearDestination(destNode)::contains);
+            }
             List<Label> discoveredSolutions = new ArrayList<>();
             router = new MultiCriteriaLabelSetting(graphExplorer, arriveBy, !ignoreTransfers, profileQuery, maxProfileDuration, discoveredSolutions);
             router.setBetaTransfers(betaTransfers);
@@ -222,11 +227,11 @@ public final class PtRouterFreeWalkImpl implements PtRouter {
                     }
                 }
             }
-            discoveredSolutions.sort(comparingLong(s -> Optional.ofNullable(s.departureTime).orElse(0L)));
+            discoveredSolutions.sort(comparingLong(s -> s.hasDepartureTime() ? s.departureTime : 0L));
 
             List<List<Label.Transition>> paths = new ArrayList<>();
             for (Label discoveredSolution : discoveredSolutions) {
-                List<Label.Transition> path = Label.getTransitions(discoveredSolution, arriveBy);
+                List<Label.Transition> path = graphExplorer.expandTransfers(Label.getTransitions(discoveredSolution, arriveBy));
                 paths.add(path);
             }
 
@@ -242,6 +247,26 @@ public final class PtRouterFreeWalkImpl implements PtRouter {
             return paths;
         }
 
+        /**
+         * With a transfer table, the street network is only needed for the way to the destination once a trip has been
+         * taken, so we find the street nodes from which the destination can be reached in advance. Unlike the transfers,
+         * the walk to the destination is not limited by the table, but only by limitStreetTime like without the table.
+         * So without that limit this search explores the whole street network.
+         */
+        private GHIntHashSet findStreetNodesNearDestination(Label.NodeId destNode) {
+            StopWatch stopWatch = new StopWatch().start();
+            GraphExplorer destinationExplorer = new GraphExplorer(queryGraph, ptGraph, accessEgressWeighting, gtfsStorage, realtimeFeed, !arriveBy, true, false, connectingProfile.isBike(), false, blockedRouteTypes);
+            MultiCriteriaLabelSetting destinationRouter = new MultiCriteriaLabelSetting(destinationExplorer, !arriveBy, false, false, 0, new ArrayList<>());
+            destinationRouter.setLimitStreetTime(limitStreetTime);
+            GHIntHashSet result = new GHIntHashSet();
+            for (Label label : destinationRouter.calcLabels(destNode, initialTime)) {
+                if (label.node.streetNode != -1)
+                    result.add(label.node.streetNode);
+            }
+            response.addDebugInfo("destination search time", stopWatch.stop().getSeconds());
+            return result;
+        }
+
     }
 
 }
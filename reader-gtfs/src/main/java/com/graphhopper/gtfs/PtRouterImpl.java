@@ -108,7 +108,7 @@ public final class PtRouterImpl implements PtRouter {
             this.gtfsStorage = gtfsStorage;
             this.transfers = new HashMap<>();
             for (Map.Entry<String, GTFSFeed> entry : this.gtfsStorage.getGtfsFeeds().entrySet()) {
-                this.transfers.put(entry.getKey(), new Transfers(entry.getValue()));
+                this.transfers.put(entry.getKey(), new Transfers(entry.getValue(), this.gtfsStorage.getStopTimeTables().get(entry.getKey())));
             }
         }
 
@@ -287,7 +287,7 @@ public final class PtRouterImpl implements PtRouter {
                 if (reverseLabel != null) {
                     Label combinedSolution = new Label(label.edgeWeight + reverseLabel.edgeWeight, label.currentTime - reverseLabel.currentTime + initialTime.toEpochMilli(), null, label.node, label.nTransfers + reverseLabel.nTransfers, label.departureTime, label.streetTime + reverseLabel.streetTime, label.extraWeight + reverseLabel.extraWeight, 0, label.impossible, null);
                     Predicate<Label> filter;
-                    if (profileQuery && combinedSolution.departureTime != null)
+                    if (profileQuery && combinedSolution.hasDepartureTime())
                         filter = targetLabel -> (!arriveBy ? router.prc(combinedSolution, targetLabel) : router.rprc(combinedSolution, targetLabel));
                     else
                         filter = tagetLabel -> true;
@@ -295,11 +295,11 @@ public final class PtRouterImpl implements PtRouter {
                         router.removeDominated(combinedSolution, discoveredSolutions, filter);
                         List<Label> closedSolutions = discoveredSolutions.stream().filter(s -> router.weight(s) < router.weight(label) + smallestStationLabelWeight).collect(Collectors.toList());
                         if (closedSolutions.size() >= limitSolutions) continue;
-                        if (profileQuery && combinedSolution.departureTime != null && (combinedSolution.departureTime - initialTime.toEpochMilli()) * (arriveBy ? -1L : 1L) > maxProfileDuration && closedSolutions.size() > 0 && closedSolutions.get(closedSolutions.size() - 1).departureTime != null && (closedSolutions.get(closedSolutions.size() - 1).departureTime - initialTime.toEpochMilli()) * (arriveBy ? -1L : 1L) > maxProfileDuration) {
+                        if (profileQuery && combinedSolution.hasDepartureTime() && (combinedSolution.departureTime - initialTime.toEpochMilli()) * (arriveBy ? -1L : 1L) > maxProfileDuration && closedSolutions.size() > 0 && closedSolutions.get(closedSolutions.size() - 1).hasDepartureTime() && (closedSolutions.get(closedSolutions.size() - 1).departureTime - initialTime.toEpochMilli()) * (arriveBy ? -1L : 1L) > maxProfileDuration) {
                             continue;
                         }
                         discoveredSolutions.add(combinedSolution);
-                        discoveredSolutions.sort(comparingLong(s -> Optional.ofNullable(s.departureTime).orElse(0L)));
+                        discoveredSolutions.sort(comparingLong(s -> s.hasDepartureTime() ? s.departureTime : 0L));
                         forwardSolutions.put(combinedSolution, label);
                         backwardSolutions.put(combinedSolution, reverseLabel);
                         if (label.nTransfers == 0 && reverseLabel.nTransfers == 0) {
@@ -360,7 +360,7 @@ public final class PtRouterImpl implements PtRouter {
 
         private boolean profileFinished(MultiCriteriaLabelSetting router, List<Label> discoveredSolutions, Label walkSolution) {
             return discoveredSolutions.size() >= limitSolutions ||
-                    (!discoveredSolutions.isEmpty() && router.departureTimeSinceStartTime(discoveredSolutions.get(discoveredSolutions.size() - 1)) != null && router.departureTimeSinceStartTime(discoveredSolutions.get(discoveredSolutions.size() - 1)) > maxProfileDuration) ||
+                    (!discoveredSolutions.isEmpty() && discoveredSolutions.get(discoveredSolutions.size() - 1).hasDepartureTime() && router.departureTimeSinceStartTime(discoveredSolutions.get(discoveredSolutions.size() - 1)) > maxProfileDuration) ||
                     walkSolution != null;
             // Imagine we can always add the walk solution again to the end of the list (it can start any time).
             // In turn, we must also think of this virtual walk solution in the other test (where we check if all labels are closed).
@@ -0,0 +1,382 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.Agency;
+import com.conveyal.gtfs.model.Route;
+import com.conveyal.gtfs.model.Stop;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.Trip;
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.DefaultWeightingFactory;
+import com.graphhopper.routing.WeightingFactory;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.EdgeList;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.Translation;
+import com.graphhopper.util.TranslationMap;
+import com.graphhopper.util.details.PathDetailsBuilderFactory;
+import com.graphhopper.util.exceptions.ConnectionNotFoundException;
+import com.graphhopper.util.exceptions.MaximumNodesExceededException;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import javax.inject.Inject;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * A {@link PtRouter} that finds the transit part of a journey with {@link Raptor} instead of the
+ * {@link MultiCriteriaLabelSetting} on the time expanded graph. The walks to and from the stations are still calculated
+ * on the street network. It needs the timetable that is created with gtfs.raptor: true and only uses the static
+ * schedule, so realtime updates are ignored. Departure time queries only, arrive_by is not supported.
+ */
+public final class PtRouterRaptorImpl implements PtRouter {
+
+    private final GraphHopperConfig config;
+    private final TranslationMap translationMap;
+    private final GraphHopperStorage graphHopperStorage;
+    private final LocationIndex locationIndex;
+    private final GtfsStorage gtfsStorage;
+    private final PtGraph ptGraph;
+    private final RealtimeFeed realtimeFeed;
+    private final PathDetailsBuilderFactory pathDetailsBuilderFactory;
+    private final WeightingFactory weightingFactory;
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    @Inject
+    public PtRouterRaptorImpl(GraphHopperConfig config, TranslationMap translationMap, GraphHopperStorage graphHopperStorage, LocationIndex locationIndex, GtfsStorage gtfsStorage, RealtimeFeed realtimeFeed, PathDetailsBuilderFactory pathDetailsBuilderFactory) {
+        this.config = config;
+        this.weightingFactory = new DefaultWeightingFactory(graphHopperStorage.getBaseGraph(), graphHopperStorage.getEncodingManager());
+        this.translationMap = translationMap;
+        this.graphHopperStorage = graphHopperStorage;
+        this.locationIndex = locationIndex;
+        this.gtfsStorage = gtfsStorage;
+        this.ptGraph = gtfsStorage.getPtGraph();
+        this.realtimeFeed = realtimeFeed;
+        this.pathDetailsBuilderFactory = pathDetailsBuilderFactory;
+    }
+
+    @Override
+    public GHResponse route(Request request) {
+        return new RequestHandler(request).route();
+    }
+
+    private class RequestHandler {
+        private final int maxVisitedNodesForRequest;
+        private final int limitSolutions;
+        private final long maxProfileDuration;
+        private final Instant initialTime;
+        private final boolean profileQuery;
+        private final boolean arriveBy;
+        private final boolean ignoreTransfers;
+        private final double betaTransfers;
+        private final double betaStreetTime;
+        private final double walkSpeedKmH;
+        private final int blockedRouteTypes;
+        private final Map<Integer, Long> transferPenaltiesByRouteType;
+        private final GHLocation enter;
+        private final GHLocation exit;
+        private final Translation translation;
+        private final List<String> requestedPathDetails;
+        private final boolean includeElevation;
+        private final boolean includeEdges;
+
+        private final GHResponse response = new GHResponse();
+        private final long limitTripTime;
+        private final long limitStreetTime;
+        private QueryGraph queryGraph;
+        private int visitedNodes;
+        private MultiCriteriaLabelSetting accessRouter;
+        private MultiCriteriaLabelSetting egressRouter;
+
+        private final Profile connectingProfile;
+        private final EdgeFilter connectingSnapFilter;
+        private final Weighting connectingWeighting;
+
+        RequestHandler(Request request) {
+            maxVisitedNodesForRequest = request.getMaxVisitedNodes();
+            profileQuery = request.isProfileQuery();
+            ignoreTransfers = Optional.ofNullable(request.getIgnoreTransfers()).orElse(request.isProfileQuery());
+            betaTransfers = request.getBetaTransfers();
+            betaStreetTime = request.getBetaStreetTime();
+            limitSolutions = Optional.ofNullable(request.getLimitSolutions()).orElse(profileQuery ? 50 : ignoreTransfers ? 1 : Integer.MAX_VALUE);
+            initialTime = request.getEarliestDepartureTime();
+            maxProfileDuration = request.getMaxProfileDuration().toMillis();
+            arriveBy = request.isArriveBy();
+            walkSpeedKmH = request.getWalkSpeedKmH();
+            blockedRouteTypes = request.getBlockedRouteTypes();
+            transferPenaltiesByRouteType = request.getBoardingPenaltiesByRouteType();
+            translation = translationMap.getWithFallBack(request.getLocale());
+            enter = request.getPoints().get(0);
+            exit = request.getPoints().get(1);
+            limitTripTime = request.getLimitTripTime() != null ? request.getLimitTripTime().toMillis() : Long.MAX_VALUE;
+            limitStreetTime = request.getLimitStreetTime() != null ? request.getLimitStreetTime().toMillis() : Long.MAX_VALUE;
+            requestedPathDetails = request.getPathDetails();
+            String connectingProfileName = request.getConnectingProfile() != null ? request.getConnectingProfile() : config.getString("pt.connecting_profile", "foot");
+            connectingProfile = config.getProfileByName(connectingProfileName).get();
+            connectingWeighting = weightingFactory.createWeighting(connectingProfile, new PMap(), false);
+            connectingSnapFilter = new DefaultSnapFilter(new FastestWeighting(graphHopperStorage.getEncodingManager().getEncoder(connectingProfile.getVehicle())),
+                    graphHopperStorage.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(connectingProfile.getVehicle())));
+            includeElevation = request.getEnableElevation();
+            includeEdges = request.getIncludeEdges();
+        }
+
+        GHResponse route() {
+            RaptorTimetable timetable = gtfsStorage.getRaptorTimetable();
+            if (timetable == null)
+                throw new IllegalStateException("The RAPTOR timetable was not created, set gtfs.raptor: true");
+            if (arriveBy) {
+                response.addError(new IllegalArgumentException("arrive_by is not supported by the RAPTOR router"));
+                return response;
+            }
+            StopWatch stopWatch = new StopWatch().start();
+            PtLocationSnapper.Result result = new PtLocationSnapper(graphHopperStorage, locationIndex, gtfsStorage).snapAll(Arrays.asList(enter, exit), Arrays.asList(connectingSnapFilter, connectingSnapFilter));
+            queryGraph = result.queryGraph;
+            response.addDebugInfo("idLookup time", stopWatch.stop().getSeconds());
+
+            stopWatch = new StopWatch().start();
+            Label.NodeId startNode = result.nodes.get(0);
+            Label.NodeId destNode = result.nodes.get(1);
+            List<Label> egressLabels = new ArrayList<>();
+            Label walkSolution = stationLabels(timetable, destNode, startNode, true, egressLabels);
+            List<Label> accessLabels = new ArrayList<>();
+            stationLabels(timetable, startNode, null, false, accessLabels);
+
+            List<Raptor.Access> accessWalks = toWalks(timetable, accessLabels, false);
+            List<Raptor.Access> egressWalks = toWalks(timetable, egressLabels, true);
+            Raptor raptor = new Raptor(timetable)
+                    .setMindTransfers(!ignoreTransfers)
+                    .setBlockedRouteTypes(blockedRouteTypes)
+                    .setBikesOnly(connectingProfile.isBike())
+                    .setBoardingPenaltyByRouteType(routeType -> transferPenaltiesByRouteType.getOrDefault(routeType, 0L))
+                    .setLimitTripTime(limitTripTime)
+                    .setMaxVisited(Math.max(0, maxVisitedNodesForRequest - visitedNodes));
+            int profileDuration = profileQuery ? (int) (maxProfileDuration / 1000) : 0;
+            List<Raptor.Journey> journeys = accessWalks.isEmpty() || egressWalks.isEmpty() ? Collections.emptyList() :
+                    raptor.route(accessWalks, egressWalks, initialTime, profileDuration);
+            visitedNodes += raptor.getVisited();
+            journeys = paretoFilter(journeys);
+            response.addDebugInfo("routing time", stopWatch.stop().getSeconds());
+
+            TripFromLabel tripFromLabel = new TripFromLabel(queryGraph, gtfsStorage, realtimeFeed, pathDetailsBuilderFactory, walkSpeedKmH);
+            // walking does not need a trip, so it is only dominated by faster journeys if transfers are ignored
+            boolean walkDominated = walkSolution != null && ignoreTransfers && !profileQuery && journeys.stream()
+                    .anyMatch(j -> j.arrivalTime * 1000L <= initialTime.toEpochMilli() + walkMillis(walkSolution, true));
+            if (walkSolution != null && !walkDominated) {
+                EdgeList edges = new EdgeList(translation);
+                List<Trip.Leg> legs = new ArrayList<>(tripFromLabel.parsePartitionToLegs(Label.getTransitions(walkSolution, true), egressRouter, queryGraph, connectingWeighting, translation, requestedPathDetails, edges, connectingProfile.getVehicle(), includeElevation, includeEdges));
+                if (!legs.isEmpty()) {
+                    legs.set(0, shift((Trip.ConnectingLeg) legs.get(0), initialTime.toEpochMilli()));
+                    ResponsePath responsePath = tripFromLabel.createResponsePath(translation, result.points, legs, edges, includeElevation);
+                    responsePath.setRouteWeight(betaStreetTime * walkMillis(walkSolution, true));
+                    response.add(responsePath);
+                }
+            }
+            for (Raptor.Journey journey : journeys) {
+                if (response.getAll().size() >= limitSolutions)
+                    break;
+                EdgeList edges = new EdgeList(translation);
+                List<Trip.Leg> legs = createLegs(timetable, tripFromLabel, journey, accessLabels.get(journey.access), egressLabels.get(journey.egress), edges);
+                ResponsePath responsePath = tripFromLabel.createResponsePath(translation, result.points, legs, edges, includeElevation);
+                responsePath.setRouteWeight(weight(journey, legs));
+                response.add(responsePath);
+            }
+            Comparator<ResponsePath> c = Comparator.comparingInt(p -> (p.isImpossible() ? 1 : 0));
+            Comparator<ResponsePath> d = Comparator.comparingDouble(ResponsePath::getTime);
+            response.getAll().sort(c.thenComparing(d));
+
+            if (visitedNodes >= maxVisitedNodesForRequest) {
+                response.addError(new MaximumNodesExceededException("Maximum number of nodes exceeded: " + maxVisitedNodesForRequest, maxVisitedNodesForRequest));
+            }
+            response.getHints().putObject("visited_nodes.sum", visitedNodes);
+            response.getHints().putObject("visited_nodes.average", visitedNodes);
+            if (response.getAll().isEmpty()) {
+                response.addError(new ConnectionNotFoundException("No route found", Collections.emptyMap()));
+            }
+            return response;
+        }
+
+        /**
+         * Collects the walks between the given node and the stations, like the station router of {@link PtRouterImpl}.
+         *
+         * @return the label of the walk to the other node, if it is found
+         */
+        private Label stationLabels(RaptorTimetable timetable, Label.NodeId node, Label.NodeId otherNode, boolean isEgress, List<Label> stationLabels) {
+            GraphExplorer explorer = new GraphExplorer(queryGraph, ptGraph, connectingWeighting, gtfsStorage, realtimeFeed, isEgress, true, false, connectingProfile.isBike(), false, blockedRouteTypes);
+            MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(explorer, isEgress, false, false, 0, new ArrayList<>());
+            router.setBetaStreetTime(betaStreetTime);
+            router.setLimitStreetTime(limitStreetTime);
+            if (isEgress)
+                egressRouter = router;
+            else
+                accessRouter = router;
+            GtfsStorage.EdgeType edgeType = isEgress ? GtfsStorage.EdgeType.EXIT_PT : GtfsStorage.EdgeType.ENTER_PT;
+            Map<Integer, Label> bestLabels = new LinkedHashMap<>();
+            Label otherNodeLabel = null;
+            for (Label label : router.calcLabels(node, initialTime)) {
+                visitedNodes++;
+                if (label.node.equals(otherNode)) {
+                    otherNodeLabel = label;
+                    break;
+                } else if (label.edge != null && label.edge.getType() == edgeType) {
+                    GtfsStorage.PlatformDescriptor platform = label.edge.getPlatformDescriptor();
+                    int stop = timetable.getStop(platform.feed_id, platform.stop_id);
+                    if (stop >= 0)
+                        bestLabels.merge(stop, label, (a, b) -> walkMillis(a, isEgress) <= walkMillis(b, isEgress) ? a : b);
+                }
+            }
+            stationLabels.addAll(bestLabels.values());
+            return otherNodeLabel;
+        }
+
+        private List<Raptor.Access> toWalks(RaptorTimetable timetable, List<Label> stationLabels, boolean isEgress) {
+            List<Raptor.Access> walks = new ArrayList<>(stationLabels.size());
+            for (Label label : stationLabels) {
+                GtfsStorage.PlatformDescriptor platform = label.edge.getPlatformDescriptor();
+                walks.add(new Raptor.Access(timetable.getStop(platform.feed_id, platform.stop_id), (int) ((walkMillis(label, isEgress) + 999) / 1000)));
+            }
+            return walks;
+        }
+
+        private long walkMillis(Label label, boolean isEgress) {
+            return isEgress ? initialTime.toEpochMilli() - label.currentTime : label.currentTime - initialTime.toEpochMilli();
+        }
+
+        /**
+         * Raptor returns the Pareto optimal journeys of every departure, but after the access walk is moved to the
+         * latest possible time, the journeys of a profile can dominate each other.
+         */
+        private List<Raptor.Journey> paretoFilter(List<Raptor.Journey> journeys) {
+            if (!profileQuery)
+                return journeys;
+            List<Raptor.Journey> result = new ArrayList<>();
+            for (Raptor.Journey journey : journeys) {
+                if (result.stream().noneMatch(other -> dominates(other, journey))) {
+                    result.removeIf(other -> dominates(journey, other));
+                    result.add(journey);
+                }
+            }
+            return result;
+        }
+
+        private boolean dominates(Raptor.Journey a, Raptor.Journey b) {
+            return a.departureTime >= b.departureTime && a.arrivalTime <= b.arrivalTime && a.penalty <= b.penalty
+                    && (ignoreTransfers || a.rides.size() <= b.rides.size());
+        }
+
+        private double weight(Raptor.Journey journey, List<Trip.Leg> legs) {
+            long streetMillis = legs.stream().filter(l -> l instanceof Trip.ConnectingLeg)
+                    .mapToLong(l -> l.getArrivalTime().getTime() - l.getDepartureTime().getTime()).sum();
+            return (journey.arrivalTime - journey.departureTime) * 1000L + (betaStreetTime - 1.0) * streetMillis
+                    + journey.rides.size() * betaTransfers * 60 * 1000 + journey.penalty;
+        }
+
+        private List<Trip.Leg> createLegs(RaptorTimetable timetable, TripFromLabel tripFromLabel, Raptor.Journey journey, Label accessLabel, Label egressLabel, EdgeList edges) {
+            List<Trip.Leg> legs = new ArrayList<>();
+            // the access walk without the edge into the station
+            List<Label.Transition> accessPath = Label.getTransitions(accessLabel, false);
+            legs.addAll(tripFromLabel.parsePartitionToLegs(accessPath.subList(0, accessPath.size() - 1), accessRouter, queryGraph, connectingWeighting, translation, requestedPathDetails, edges, connectingProfile.getVehicle(), includeElevation, includeEdges));
+            Trip.Leg previous = null;
+            for (Raptor.Ride ride : journey.rides) {
+                if (previous != null && ride.footpathBefore >= 0) {
+                    int[] edgeKeys = timetable.footpaths[ride.footpathBefore].edgeKeys;
+                    if (edgeKeys != null && edgeKeys.length > 0) {
+                        List<Trip.Leg> transferLegs = tripFromLabel.parsePartitionToLegs(tripFromLabel.transferPath(edgeKeys, connectingWeighting, previous.getArrivalTime().getTime(), connectingProfile.isBike()), accessRouter, queryGraph, connectingWeighting, translation, requestedPathDetails, edges, connectingProfile.getVehicle(), includeElevation, includeEdges);
+                        Trip.Leg interpolatedLeg = transferLegs.get(0);
+                        interpolatedLeg.flagAsInterpolated();
+                        legs.add(interpolatedLeg);
+                    }
+                }
+                previous = createPtLeg(timetable, ride);
+                legs.add(previous);
+            }
+            // the egress walk without the edge out of the station
+            List<Label.Transition> egressPath = Label.getTransitions(egressLabel, true);
+            if (egressPath.size() > 2) {
+                List<Label.Transition> walk = new ArrayList<>();
+                walk.add(new Label.Transition(egressPath.get(1).label, null));
+                walk.addAll(egressPath.subList(2, egressPath.size()));
+                legs.addAll(tripFromLabel.parsePartitionToLegs(walk, egressRouter, queryGraph, connectingWeighting, translation, requestedPathDetails, edges, connectingProfile.getVehicle(), includeElevation, includeEdges));
+            }
+            return legs;
+        }
+
+        private Trip.PtLeg createPtLeg(RaptorTimetable timetable, Raptor.Ride ride) {
+            String feedId = timetable.tripFeedIds[ride.trip];
+            GTFSFeed feed = gtfsStorage.getGtfsFeeds().get(feedId);
+            String tripId = gtfsStorage.getStopTimeTables().get(feedId).getTripId(timetable.tripSources[ride.trip]);
+            com.conveyal.gtfs.model.Trip trip = feed.trips.get(tripId);
+            Route route = feed.routes.get(trip.route_id);
+            Agency agency = feed.agency.get(route.agency_id);
+            List<Trip.Stop> stops = new ArrayList<>();
+            double distance = 0;
+            Stop previousStop = null;
+            for (int position = ride.boardPosition; position <= ride.alightPosition; position++) {
+                Stop stop = feed.stops.get(timetable.stopIds[timetable.patternStops[timetable.patternStopOffsets[ride.pattern] + position]]);
+                Date arrival = position == ride.boardPosition ? null : date(ride, timetable.arrivals[timetable.tripTimeOffsets[ride.trip] + position]);
+                Date departure = position == ride.alightPosition ? null : date(ride, timetable.departures[timetable.tripTimeOffsets[ride.trip] + position]);
+                stops.add(new Trip.Stop(stop.stop_id, stop.stop_name, geometryFactory.createPoint(new Coordinate(stop.stop_lon, stop.stop_lat)),
+                        arrival, arrival, null, false, departure, departure, null, false));
+                if (previousStop != null)
+                    distance += DistanceCalcEarth.DIST_EARTH.calcDist(previousStop.stop_lat, previousStop.stop_lon, stop.stop_lat, stop.stop_lon);
+                previousStop = stop;
+            }
+            long travelTime = stops.get(stops.size() - 1).arrivalTime.getTime() - stops.get(0).departureTime.getTime();
+            return new Trip.PtLeg(
+                    feedId, false,
+                    tripId,
+                    route.route_id,
+                    trip.trip_headsign,
+                    route.route_color,
+                    route.route_short_name == null || route.route_short_name.isEmpty() ? route.route_long_name : route.route_short_name,
+                    route.route_type,
+                    trip.bikes_allowed,
+                    agency.agency_id,
+                    agency.agency_name,
+                    stops,
+                    distance,
+                    travelTime,
+                    travelTime,
+                    geometryFactory.createLineString(stops.stream().map(s -> s.geometry.getCoordinate()).toArray(Coordinate[]::new)));
+        }
+
+        private Date date(Raptor.Ride ride, int secondsOfServiceDay) {
+            return new Date((ride.serviceDayStart + secondsOfServiceDay) * 1000L);
+        }
+
+        private Trip.ConnectingLeg shift(Trip.ConnectingLeg leg, long departureTime) {
+            long duration = leg.getArrivalTime().getTime() - leg.getDepartureTime().getTime();
+            return new Trip.ConnectingLeg(leg.type, leg.departureLocation, new Date(departureTime), leg.geometry, leg.distance,
+                    leg.weight, leg.instructions, leg.details, new Date(departureTime + duration), leg.ascend, leg.descend);
+        }
+    }
+}
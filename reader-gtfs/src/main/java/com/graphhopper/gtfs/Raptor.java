@@ -0,0 +1,616 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Round based public transit router (McRAPTOR) on a {@link RaptorTimetable}. In round k all journeys with k trips are
+ * found by scanning the patterns of the stops that were improved in round k-1. The journeys are Pareto optimal with
+ * respect to the arrival time, the boarding penalties and, unless transfers are ignored, the number of trips.
+ * <p>
+ * Profile queries are answered like in range RAPTOR: the query is repeated for every possible departure in the time
+ * window, from the latest to the earliest, and the labels of later departures are kept, so every run only has to
+ * find the journeys that are better than the ones that depart later.
+ * <p>
+ * Every stop has two bags: the labels of arriving vehicles, which can be used to leave the network, and the labels
+ * of passengers that are ready to board, which already include the walk to another stop or the time it takes to
+ * change at the same stop. Only the static schedule is used.
+ */
+public class Raptor {
+
+    private static final int DAY = 24 * 60 * 60;
+    private static final byte ACCESS = 0, RIDE = 1, TRANSFER = 2;
+
+    /**
+     * A walk from the origin to a stop or from a stop to the destination
+     */
+    public static class Access {
+        final int stop;
+        final int seconds;
+
+        public Access(int stop, int seconds) {
+            if (seconds < 0)
+                throw new IllegalArgumentException("Walk time must not be negative: " + seconds);
+            this.stop = stop;
+            this.seconds = seconds;
+        }
+    }
+
+    /**
+     * A ride with a trip from the stop at boardPosition to the stop at alightPosition of its pattern
+     */
+    public static class Ride {
+        public final int pattern;
+        public final int trip;
+        public final int boardPosition;
+        public final int alightPosition;
+        /**
+         * The start of the service day of the trip in seconds since the epoch
+         */
+        public final long serviceDayStart;
+        /**
+         * The footpath that leads to the stop where this ride starts, -1 for a change at the same stop or for the
+         * first ride of a journey
+         */
+        public final int footpathBefore;
+
+        Ride(int pattern, int trip, int boardPosition, int alightPosition, long serviceDayStart, int footpathBefore) {
+            this.pattern = pattern;
+            this.trip = trip;
+            this.boardPosition = boardPosition;
+            this.alightPosition = alightPosition;
+            this.serviceDayStart = serviceDayStart;
+            this.footpathBefore = footpathBefore;
+        }
+    }
+
+    public static class Journey {
+        /**
+         * The indices of the access and egress walks
+         */
+        public final int access;
+        public final int egress;
+        /**
+         * Departure at the origin and arrival at the destination in seconds since the epoch
+         */
+        public final long departureTime;
+        public final long arrivalTime;
+        /**
+         * The sum of the boarding penalties in milliseconds
+         */
+        public final long penalty;
+        public final List<Ride> rides;
+
+        Journey(int access, int egress, long departureTime, long arrivalTime, long penalty, List<Ride> rides) {
+            this.access = access;
+            this.egress = egress;
+            this.departureTime = departureTime;
+            this.arrivalTime = arrivalTime;
+            this.penalty = penalty;
+            this.rides = rides;
+        }
+    }
+
+    private final RaptorTimetable timetable;
+    private boolean mindTransfers = true;
+    private int blockedRouteTypes;
+    private boolean bikesOnly;
+    private IntToLongFunction boardingPenaltyByRouteType = routeType -> 0L;
+    private long limitTripTime = Long.MAX_VALUE;
+    private int maxVisited = Integer.MAX_VALUE;
+
+    // label pool
+    private int labelCount;
+    private int[] labelStop = new int[64];
+    private int[] labelTime = new int[64];
+    private long[] labelPenalty = new long[64];
+    private int[] labelRound = new int[64];
+    private int[] labelParent = new int[64];
+    private byte[] labelType = new byte[64];
+    // the access index for ACCESS, the footpath (or -1) for TRANSFER and the trip for RIDE labels
+    private int[] labelRef = new int[64];
+    private int[] labelPattern = new int[64];
+    private int[] labelBoardPosition = new int[64];
+    private int[] labelAlightPosition = new int[64];
+    private int[] labelDay = new int[64];
+    private int[] labelIteration = new int[64];
+    private boolean[] labelRemoved = new boolean[64];
+
+    private IntArrayList[] rideBags;
+    private IntArrayList[] boardBags;
+    // egress walks of each stop
+    private IntArrayList[] egressOfStop;
+    private int[] firstPositions;
+    private int iteration;
+    private int visited;
+
+    // per query: seconds since the departure, at which the service days start, and if the validities are active
+    private int dayCount;
+    private int[][] dayStarts;
+    private boolean[][] activeDays;
+
+    public Raptor(RaptorTimetable timetable) {
+        this.timetable = timetable;
+    }
+
+    /**
+     * If false, the number of trips is not a criterion and only the earliest arrival (and the lowest boarding penalty)
+     * counts.
+     */
+    public Raptor setMindTransfers(boolean mindTransfers) {
+        this.mindTransfers = mindTransfers;
+        return this;
+    }
+
+    /**
+     * @param blockedRouteTypes a bit mask of the GTFS route types that must not be used
+     */
+    public Raptor setBlockedRouteTypes(int blockedRouteTypes) {
+        this.blockedRouteTypes = blockedRouteTypes;
+        return this;
+    }
+
+    /**
+     * Only use trips that allow bikes
+     */
+    public Raptor setBikesOnly(boolean bikesOnly) {
+        this.bikesOnly = bikesOnly;
+        return this;
+    }
+
+    /**
+     * @param boardingPenaltyByRouteType the penalty in milliseconds for every boarding of a trip with the given route
+     *                                   type
+     */
+    public Raptor setBoardingPenaltyByRouteType(IntToLongFunction boardingPenaltyByRouteType) {
+        this.boardingPenaltyByRouteType = boardingPenaltyByRouteType;
+        return this;
+    }
+
+    /**
+     * @param limitTripTime the maximum time in milliseconds between the departure and the arrival at the last stop
+     */
+    public Raptor setLimitTripTime(long limitTripTime) {
+        this.limitTripTime = limitTripTime;
+        return this;
+    }
+
+    public Raptor setMaxVisited(int maxVisited) {
+        this.maxVisited = maxVisited;
+        return this;
+    }
+
+    /**
+     * @return the number of scanned stops and created labels of the last query
+     */
+    public int getVisited() {
+        return visited;
+    }
+
+    public boolean isMaxVisitedReached() {
+        return visited >= maxVisited;
+    }
+
+    /**
+     * Finds the journeys from the given access walks to the given egress walks. For profile queries every departure
+     * in [departureTime, departureTime + profileDuration] is considered, otherwise the departure is fixed.
+     *
+     * @param profileDuration the length of the time window in seconds, 0 for a query with a fixed departure
+     */
+    public List<Journey> route(List<Access> accessWalks, List<Access> egressWalks, Instant departureTime, int profileDuration) {
+        if (profileDuration < 0)
+            throw new IllegalArgumentException("Profile duration must not be negative: " + profileDuration);
+        int stopCount = timetable.getStopCount();
+        rideBags = new IntArrayList[stopCount];
+        boardBags = new IntArrayList[stopCount];
+        egressOfStop = new IntArrayList[stopCount];
+        firstPositions = new int[timetable.getPatternCount()];
+        Arrays.fill(firstPositions, Integer.MAX_VALUE);
+        for (int i = 0; i < egressWalks.size(); i++) {
+            int stop = egressWalks.get(i).stop;
+            if (egressOfStop[stop] == null)
+                egressOfStop[stop] = new IntArrayList(1);
+            egressOfStop[stop].add(i);
+        }
+        labelCount = 0;
+        visited = 0;
+        long origin = departureTime.getEpochSecond();
+        initDays(origin, profileDuration);
+
+        TargetBag target = new TargetBag();
+        int[] departures = profileDuration == 0 ? new int[]{0} : departuresInWindow(accessWalks, profileDuration);
+        for (iteration = 0; iteration < departures.length && !isMaxVisitedReached(); iteration++) {
+            int departure = departures[iteration];
+            IntArrayList boardLabels = new IntArrayList();
+            for (int i = 0; i < accessWalks.size(); i++) {
+                Access access = accessWalks.get(i);
+                int label = newLabel(access.stop, departure + access.seconds, 0, 0, -1, ACCESS, i);
+                if (insert(boardBags, label, target))
+                    boardLabels.add(label);
+            }
+            for (int round = 1; !boardLabels.isEmpty() && !isMaxVisitedReached(); round++) {
+                IntArrayList rideLabels = scanPatterns(boardLabels, round, departure, target);
+                boardLabels = transfer(rideLabels, round, target, egressWalks);
+            }
+        }
+
+        List<Journey> journeys = new ArrayList<>();
+        for (int i = 0; i < target.size; i++) {
+            if (!target.removed[i])
+                journeys.add(createJourney(target.label[i], target.egress[i], target.time[i], origin, accessWalks));
+        }
+        journeys.sort(Comparator.comparingLong((Journey j) -> j.departureTime).thenComparingLong(j -> j.arrivalTime));
+        return journeys;
+    }
+
+    private void initDays(long origin, int profileDuration) {
+        // trips can belong to the service day before the departure, and they can end after midnight
+        dayCount = profileDuration / DAY + 4;
+        GtfsStorage.Validity[] validities = timetable.validities;
+        dayStarts = new int[validities.length][];
+        activeDays = new boolean[validities.length][];
+        Map<ZoneId, int[]> dayStartsByZone = new HashMap<>();
+        for (int v = 0; v < validities.length; v++) {
+            GtfsStorage.Validity validity = validities[v];
+            LocalDate firstDay = Instant.ofEpochSecond(origin).atZone(validity.zoneId).toLocalDate().minusDays(1);
+            dayStarts[v] = dayStartsByZone.computeIfAbsent(validity.zoneId, zoneId -> {
+                int[] starts = new int[dayCount];
+                for (int k = 0; k < dayCount; k++)
+                    starts[k] = (int) (firstDay.plusDays(k).atStartOfDay(zoneId).toEpochSecond() - origin);
+                return starts;
+            });
+            activeDays[v] = new boolean[dayCount];
+            long offset = firstDay.toEpochDay() - validity.start.toEpochDay();
+            for (int k = 0; k < dayCount; k++) {
+                long day = offset + k;
+                activeDays[v][k] = day >= 0 && day <= Integer.MAX_VALUE && validity.validity.get((int) day)
+                        && (!bikesOnly || validity.bikesAllowed);
+            }
+        }
+    }
+
+    /**
+     * @return the times (relative to the start of the window) at which one can leave the origin to catch a trip at
+     * one of the access stops, latest first
+     */
+    private int[] departuresInWindow(List<Access> accessWalks, int profileDuration) {
+        IntArrayList result = new IntArrayList();
+        for (Access access : accessWalks) {
+            for (int i = timetable.stopPatternOffsets[access.stop]; i < timetable.stopPatternOffsets[access.stop + 1]; i++) {
+                int pattern = timetable.stopPatterns[i];
+                if (isBlocked(pattern))
+                    continue;
+                int position = timetable.stopPatternPositions[i];
+                for (int trip = timetable.patternTripOffsets[pattern]; trip < timetable.patternTripOffsets[pattern + 1]; trip++) {
+                    int validity = timetable.tripValidities[trip];
+                    int departure = timetable.departures[timetable.tripTimeOffsets[trip] + position] - access.seconds;
+                    for (int k = 0; k < dayCount; k++) {
+                        int time = departure + dayStarts[validity][k];
+                        if (activeDays[validity][k] && time >= 0 && time <= profileDuration)
+                            result.add(time);
+                    }
+                }
+            }
+        }
+        int[] departures = result.toArray();
+        Arrays.sort(departures);
+        IntArrayList descending = new IntArrayList(departures.length);
+        for (int i = departures.length - 1; i >= 0; i--) {
+            if (descending.isEmpty() || descending.get(descending.size() - 1) != departures[i])
+                descending.add(departures[i]);
+        }
+        return descending.toArray();
+    }
+
+    private boolean isBlocked(int pattern) {
+        return (blockedRouteTypes & (1 << timetable.patternRouteTypes[pattern])) != 0;
+    }
+
+    private IntArrayList scanPatterns(IntArrayList boardLabels, int round, int departure, TargetBag target) {
+        // the first position of every pattern at which a new label can board
+        IntArrayList patterns = new IntArrayList();
+        for (int i = 0; i < boardLabels.size(); i++) {
+            int stop = labelStop[boardLabels.get(i)];
+            for (int j = timetable.stopPatternOffsets[stop]; j < timetable.stopPatternOffsets[stop + 1]; j++) {
+                int pattern = timetable.stopPatterns[j];
+                if (isBlocked(pattern))
+                    continue;
+                if (firstPositions[pattern] == Integer.MAX_VALUE)
+                    patterns.add(pattern);
+                firstPositions[pattern] = Math.min(firstPositions[pattern], timetable.stopPatternPositions[j]);
+            }
+        }
+        long limit = limitTripTime == Long.MAX_VALUE ? Long.MAX_VALUE : departure + limitTripTime / 1000;
+        IntArrayList rideLabels = new IntArrayList();
+        IntArrayList routeBag = new IntArrayList();
+        for (int p = 0; p < patterns.size(); p++) {
+            int pattern = patterns.get(p);
+            int firstPosition = firstPositions[pattern];
+            firstPositions[pattern] = Integer.MAX_VALUE;
+            int stopOffset = timetable.patternStopOffsets[pattern];
+            int stopEnd = timetable.patternStopOffsets[pattern + 1];
+            routeBag.clear();
+            for (int position = firstPosition; position < stopEnd - stopOffset; position++) {
+                int stop = timetable.patternStops[stopOffset + position];
+                visited++;
+                for (int i = 0; i < routeBag.size(); i++) {
+                    int riding = routeBag.get(i);
+                    int trip = labelRef[riding];
+                    int arrival = timetable.arrivals[timetable.tripTimeOffsets[trip] + position] + labelDay[riding];
+                    if (arrival > limit)
+                        continue;
+                    int label = newLabel(stop, arrival, labelPenalty[riding], round, labelParent[riding], RIDE, trip);
+                    labelPattern[label] = pattern;
+                    labelBoardPosition[label] = labelBoardPosition[riding];
+                    labelAlightPosition[label] = position;
+                    labelDay[label] = labelDay[riding];
+                    if (insert(rideBags, label, target))
+                        rideLabels.add(label);
+                }
+                IntArrayList bag = boardBags[stop];
+                if (bag == null || position == stopEnd - stopOffset - 1)
+                    continue;
+                for (int i = 0; i < bag.size(); i++) {
+                    int boardLabel = bag.get(i);
+                    if (labelIteration[boardLabel] != iteration || labelRound[boardLabel] != round - 1)
+                        continue;
+                    board(boardLabel, pattern, position, round, routeBag);
+                }
+            }
+        }
+        return rideLabels;
+    }
+
+    /**
+     * Finds the first trip of the pattern that departs at the given position after the given label and adds it to the
+     * route bag unless an earlier trip with a lower penalty is already in there.
+     */
+    private void board(int boardLabel, int pattern, int position, int round, IntArrayList routeBag) {
+        int earliest = labelTime[boardLabel];
+        int bestTrip = -1, bestDay = 0, bestDeparture = Integer.MAX_VALUE;
+        int firstTrip = timetable.patternTripOffsets[pattern];
+        int endTrip = timetable.patternTripOffsets[pattern + 1];
+        int[] patternDayStarts = dayStarts[timetable.tripValidities[firstTrip]];
+        for (int k = 0; k < dayCount; k++) {
+            int dayStart = patternDayStarts[k];
+            if (dayStart + departureAt(firstTrip, position) >= bestDeparture)
+                break;
+            int trip = firstTripDepartingAfter(firstTrip, endTrip, position, earliest - dayStart);
+            for (; trip < endTrip; trip++) {
+                int validity = timetable.tripValidities[trip];
+                int departure = departureAt(trip, position) + dayStarts[validity][k];
+                if (departure >= bestDeparture)
+                    break;
+                if (activeDays[validity][k] && departure >= earliest) {
+                    bestTrip = trip;
+                    bestDay = dayStarts[validity][k];
+                    bestDeparture = departure;
+                    break;
+                }
+            }
+        }
+        if (bestTrip < 0)
+            return;
+        long penalty = labelPenalty[boardLabel] + boardingPenaltyByRouteType.applyAsLong(timetable.patternRouteTypes[pattern]);
+        for (int i = 0; i < routeBag.size(); i++) {
+            int other = routeBag.get(i);
+            if (departureAt(labelRef[other], position) + labelDay[other] <= bestDeparture && labelPenalty[other] <= penalty)
+                return;
+        }
+        for (int i = routeBag.size() - 1; i >= 0; i--) {
+            int other = routeBag.get(i);
+            if (departureAt(labelRef[other], position) + labelDay[other] >= bestDeparture && labelPenalty[other] >= penalty)
+                routeBag.remove(i);
+        }
+        int riding = newLabel(labelStop[boardLabel], bestDeparture, penalty, round, boardLabel, RIDE, bestTrip);
+        labelPattern[riding] = pattern;
+        labelBoardPosition[riding] = position;
+        labelDay[riding] = bestDay;
+        routeBag.add(riding);
+    }
+
+    private int departureAt(int trip, int position) {
+        return timetable.departures[timetable.tripTimeOffsets[trip] + position];
+    }
+
+    private int firstTripDepartingAfter(int from, int to, int position, int time) {
+        int low = from, high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departureAt(mid, position) < time)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Moves the passengers of the given ride labels to the stops where they can board the next trip, and to the
+     * destination.
+     */
+    private IntArrayList transfer(IntArrayList rideLabels, int round, TargetBag target, List<Access> egressWalks) {
+        IntArrayList boardLabels = new IntArrayList();
+        for (int i = 0; i < rideLabels.size(); i++) {
+            int ride = rideLabels.get(i);
+            if (labelRemoved[ride])
+                continue;
+            int stop = labelStop[ride];
+            if (egressOfStop[stop] != null) {
+                for (int j = 0; j < egressOfStop[stop].size(); j++) {
+                    int egress = egressOfStop[stop].get(j);
+                    target.add(labelTime[ride] + egressWalks.get(egress).seconds, labelPenalty[ride], round, ride, egress);
+                }
+            }
+            int label = newLabel(stop, labelTime[ride] + timetable.stopChangeTimes[stop], labelPenalty[ride], round, ride, TRANSFER, -1);
+            if (insert(boardBags, label, target))
+                boardLabels.add(label);
+            for (int f = timetable.footpathOffsets[stop]; f < timetable.footpathOffsets[stop + 1]; f++) {
+                RaptorTimetable.Footpath footpath = timetable.footpaths[f];
+                label = newLabel(footpath.to, labelTime[ride] + footpath.seconds, labelPenalty[ride], round, ride, TRANSFER, f);
+                if (insert(boardBags, label, target))
+                    boardLabels.add(label);
+            }
+        }
+        return boardLabels;
+    }
+
+    private boolean dominates(int time, long penalty, int round, int otherTime, long otherPenalty, int otherRound) {
+        return time <= otherTime && penalty <= otherPenalty && (!mindTransfers || round <= otherRound);
+    }
+
+    /**
+     * Adds the label to the bag of its stop unless it is dominated by a label in there or by a journey to the
+     * destination. Removes the labels that are dominated by the new one.
+     */
+    private boolean insert(IntArrayList[] bags, int label, TargetBag target) {
+        if (target.dominates(labelTime[label], labelPenalty[label], labelRound[label]))
+            return false;
+        int stop = labelStop[label];
+        IntArrayList bag = bags[stop];
+        if (bag == null) {
+            bag = bags[stop] = new IntArrayList(2);
+        } else {
+            for (int i = 0; i < bag.size(); i++) {
+                int other = bag.get(i);
+                if (dominates(labelTime[other], labelPenalty[other], labelRound[other], labelTime[label], labelPenalty[label], labelRound[label]))
+                    return false;
+            }
+            for (int i = bag.size() - 1; i >= 0; i--) {
+                int other = bag.get(i);
+                if (dominates(labelTime[label], labelPenalty[label], labelRound[label], labelTime[other], labelPenalty[other], labelRound[other])) {
+                    labelRemoved[other] = true;
+                    bag.remove(i);
+                }
+            }
+        }
+        bag.add(label);
+        return true;
+    }
+
+    private int newLabel(int stop, int time, long penalty, int round, int parent, byte type, int ref) {
+        if (labelCount == labelStop.length) {
+            int capacity = labelCount * 2;
+            labelStop = Arrays.copyOf(labelStop, capacity);
+            labelTime = Arrays.copyOf(labelTime, capacity);
+            labelPenalty = Arrays.copyOf(labelPenalty, capacity);
+            labelRound = Arrays.copyOf(labelRound, capacity);
+            labelParent = Arrays.copyOf(labelParent, capacity);
+            labelType = Arrays.copyOf(labelType, capacity);
+            labelRef = Arrays.copyOf(labelRef, capacity);
+            labelPattern = Arrays.copyOf(labelPattern, capacity);
+            labelBoardPosition = Arrays.copyOf(labelBoardPosition, capacity);
+            labelAlightPosition = Arrays.copyOf(labelAlightPosition, capacity);
+            labelDay = Arrays.copyOf(labelDay, capacity);
+            labelIteration = Arrays.copyOf(labelIteration, capacity);
+            labelRemoved = Arrays.copyOf(labelRemoved, capacity);
+        }
+        int label = labelCount++;
+        visited++;
+        labelStop[label] = stop;
+        labelTime[label] = time;
+        labelPenalty[label] = penalty;
+        labelRound[label] = round;
+        labelParent[label] = parent;
+        labelType[label] = type;
+        labelRef[label] = ref;
+        labelIteration[label] = iteration;
+        labelRemoved[label] = false;
+        return label;
+    }
+
+    private Journey createJourney(int rideLabel, int egress, int arrival, long origin, List<Access> accessWalks) {
+        List<Ride> rides = new ArrayList<>();
+        int label = rideLabel;
+        while (labelType[label] == RIDE) {
+            int boardLabel = labelParent[label];
+            int footpathBefore = labelType[boardLabel] == TRANSFER ? labelRef[boardLabel] : -1;
+            rides.add(new Ride(labelPattern[label], labelRef[label], labelBoardPosition[label], labelAlightPosition[label],
+                    origin + labelDay[label], footpathBefore));
+            label = labelType[boardLabel] == TRANSFER ? labelParent[boardLabel] : boardLabel;
+        }
+        Collections.reverse(rides);
+        int access = labelRef[label];
+        Ride first = rides.get(0);
+        long departureTime = first.serviceDayStart + departureAt(first.trip, first.boardPosition) - accessWalks.get(access).seconds;
+        return new Journey(access, egress, departureTime, origin + arrival, labelPenalty[rideLabel], rides);
+    }
+
+    /**
+     * The journeys to the destination. A journey is only removed if it is dominated by a journey with the same
+     * departure, but all journeys are used to prune the search.
+     */
+    private class TargetBag {
+        int size;
+        int[] time = new int[8];
+        long[] penalty = new long[8];
+        int[] round = new int[8];
+        int[] label = new int[8];
+        int[] egress = new int[8];
+        int[] iterations = new int[8];
+        boolean[] removed = new boolean[8];
+        boolean[] pruning = new boolean[8];
+
+        boolean dominates(int otherTime, long otherPenalty, int otherRound) {
+            for (int i = 0; i < size; i++) {
+                if (pruning[i] && Raptor.this.dominates(time[i], penalty[i], round[i], otherTime, otherPenalty, otherRound))
+                    return true;
+            }
+            return false;
+        }
+
+        void add(int newTime, long newPenalty, int newRound, int newLabel, int newEgress) {
+            if (dominates(newTime, newPenalty, newRound))
+                return;
+            for (int i = 0; i < size; i++) {
+                if (pruning[i] && Raptor.this.dominates(newTime, newPenalty, newRound, time[i], penalty[i], round[i])) {
+                    pruning[i] = false;
+                    removed[i] |= iterations[i] == iteration;
+                }
+            }
+            if (size == time.length) {
+                int capacity = size * 2;
+                time = Arrays.copyOf(time, capacity);
+                penalty = Arrays.copyOf(penalty, capacity);
+                round = Arrays.copyOf(round, capacity);
+                label = Arrays.copyOf(label, capacity);
+                egress = Arrays.copyOf(egress, capacity);
+                iterations = Arrays.copyOf(iterations, capacity);
+                removed = Arrays.copyOf(removed, capacity);
+                pruning = Arrays.copyOf(pruning, capacity);
+            }
+            time[size] = newTime;
+            penalty[size] = newPenalty;
+            round[size] = newRound;
+            label[size] = newLabel;
+            egress[size] = newEgress;
+            iterations[size] = iteration;
+            removed[size] = false;
+            pruning[size] = true;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.Entity;
+import com.conveyal.gtfs.model.Frequency;
+import com.conveyal.gtfs.model.Route;
+import com.conveyal.gtfs.model.Service;
+import com.conveyal.gtfs.model.StopTime;
+import com.conveyal.gtfs.model.Transfer;
+import com.conveyal.gtfs.model.Trip;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+
+/**
+ * The timetable of all GTFS feeds in the flat array layout used by {@link Raptor}. Trips with the same route and the
+ * same sequence of stops are grouped into patterns (the 'routes' of RAPTOR). The trips of a pattern are sorted by
+ * their departure and do not overtake each other, so the first trip that can be boarded at a stop can be found with
+ * a binary search. Transfers between stops are stored as a list of footpaths per stop. The times are seconds since
+ * the start of the service day of a trip.
+ * <p>
+ * The timetable only contains the static schedule, realtime updates and block transfers are not part of it.
+ */
+public class RaptorTimetable {
+
+    /**
+     * A transfer between two different stops
+     */
+    public static class Footpath {
+        final int from;
+        final int to;
+        final int seconds;
+        final int[] edgeKeys;
+
+        /**
+         * @param edgeKeys the street edges of the walk, or null if the transfer does not have a geometry
+         */
+        public Footpath(int from, int to, int seconds, int[] edgeKeys) {
+            if (seconds < 0)
+                throw new IllegalArgumentException("Transfer time must not be negative: " + seconds);
+            this.from = from;
+            this.to = to;
+            this.seconds = seconds;
+            this.edgeKeys = edgeKeys;
+        }
+    }
+
+    /**
+     * A walk between two stops through the street network
+     */
+    public static class Walk {
+        final GtfsStorage.FeedIdWithStopId from;
+        final GtfsStorage.FeedIdWithStopId to;
+        final int seconds;
+        final int[] edgeKeys;
+
+        public Walk(GtfsStorage.FeedIdWithStopId from, GtfsStorage.FeedIdWithStopId to, int seconds, int[] edgeKeys) {
+            this.from = from;
+            this.to = to;
+            this.seconds = seconds;
+            this.edgeKeys = edgeKeys;
+        }
+    }
+
+    // stops
+    final String[] stopFeedIds;
+    final String[] stopIds;
+    final int[] stopChangeTimes;
+    private final Map<GtfsStorage.FeedIdWithStopId, Integer> stopsById;
+    // patterns
+    final int[] patternStopOffsets;
+    final int[] patternStops;
+    final int[] patternTripOffsets;
+    final int[] patternRouteTypes;
+    // trips, the times of trip t are stored from tripTimeOffsets[t] on
+    final int[] tripTimeOffsets;
+    final int[] arrivals;
+    final int[] departures;
+    final int[] tripValidities;
+    final int[] tripSources;
+    final String[] tripFeedIds;
+    final GtfsStorage.Validity[] validities;
+    // the patterns of each stop and the position of the stop in the pattern
+    final int[] stopPatternOffsets;
+    final int[] stopPatterns;
+    final int[] stopPatternPositions;
+    // footpaths
+    final int[] footpathOffsets;
+    final Footpath[] footpaths;
+
+    private RaptorTimetable(Builder b) {
+        int stopCount = b.stopIds.size();
+        stopFeedIds = b.stopFeedIds.toArray(new String[0]);
+        stopIds = b.stopIds.toArray(new String[0]);
+        stopChangeTimes = b.stopChangeTimes.toArray();
+        stopsById = b.stopsById;
+        validities = b.validities.toArray(new GtfsStorage.Validity[0]);
+
+        // group the trips into patterns
+        Map<PatternKey, List<List<Integer>>> patternsByKey = new LinkedHashMap<>();
+        Integer[] sortedTrips = new Integer[b.trips.size()];
+        for (int i = 0; i < sortedTrips.length; i++)
+            sortedTrips[i] = i;
+        Arrays.sort(sortedTrips, Comparator.comparingInt(t -> b.trips.get(t).departures[0]));
+        for (int t : sortedTrips) {
+            TripData trip = b.trips.get(t);
+            List<List<Integer>> patterns = patternsByKey.computeIfAbsent(new PatternKey(trip), k -> new ArrayList<>());
+            List<Integer> pattern = null;
+            for (List<Integer> candidate : patterns) {
+                if (!overtakes(b.trips.get(candidate.get(candidate.size() - 1)), trip)) {
+                    pattern = candidate;
+                    break;
+                }
+            }
+            if (pattern == null) {
+                pattern = new ArrayList<>();
+                patterns.add(pattern);
+            }
+            pattern.add(t);
+        }
+        List<List<Integer>> patterns = new ArrayList<>();
+        patternsByKey.values().forEach(patterns::addAll);
+
+        patternStopOffsets = new int[patterns.size() + 1];
+        patternTripOffsets = new int[patterns.size() + 1];
+        patternRouteTypes = new int[patterns.size()];
+        IntArrayList patternStopList = new IntArrayList();
+        int tripCount = b.trips.size();
+        tripTimeOffsets = new int[tripCount + 1];
+        tripValidities = new int[tripCount];
+        tripSources = new int[tripCount];
+        tripFeedIds = new String[tripCount];
+        IntArrayList arrivalList = new IntArrayList();
+        IntArrayList departureList = new IntArrayList();
+        List<IntArrayList> patternsOfStop = new ArrayList<>(stopCount);
+        List<IntArrayList> positionsOfStop = new ArrayList<>(stopCount);
+        for (int s = 0; s < stopCount; s++) {
+            patternsOfStop.add(new IntArrayList(2));
+            positionsOfStop.add(new IntArrayList(2));
+        }
+        int trip = 0;
+        for (int p = 0; p < patterns.size(); p++) {
+            List<Integer> pattern = patterns.get(p);
+            TripData first = b.trips.get(pattern.get(0));
+            patternStopOffsets[p] = patternStopList.size();
+            patternTripOffsets[p] = trip;
+            patternRouteTypes[p] = first.routeType;
+            for (int pos = 0; pos < first.stops.length; pos++) {
+                patternStopList.add(first.stops[pos]);
+                patternsOfStop.get(first.stops[pos]).add(p);
+                positionsOfStop.get(first.stops[pos]).add(pos);
+            }
+            for (int t : pattern) {
+                TripData data = b.trips.get(t);
+                tripTimeOffsets[trip] = arrivalList.size();
+                tripValidities[trip] = data.validity;
+                tripSources[trip] = data.source;
+                tripFeedIds[trip] = data.feedId;
+                arrivalList.add(data.arrivals);
+                departureList.add(data.departures);
+                trip++;
+            }
+        }
+        patternStopOffsets[patterns.size()] = patternStopList.size();
+        patternTripOffsets[patterns.size()] = trip;
+        tripTimeOffsets[tripCount] = arrivalList.size();
+        patternStops = patternStopList.toArray();
+        arrivals = arrivalList.toArray();
+        departures = departureList.toArray();
+
+        stopPatternOffsets = new int[stopCount + 1];
+        IntArrayList stopPatternList = new IntArrayList();
+        IntArrayList stopPositionList = new IntArrayList();
+        for (int s = 0; s < stopCount; s++) {
+            stopPatternOffsets[s] = stopPatternList.size();
+            stopPatternList.addAll(patternsOfStop.get(s));
+            stopPositionList.addAll(positionsOfStop.get(s));
+        }
+        stopPatternOffsets[stopCount] = stopPatternList.size();
+        stopPatterns = stopPatternList.toArray();
+        stopPatternPositions = stopPositionList.toArray();
+
+        footpathOffsets = new int[stopCount + 1];
+        List<Footpath> sortedFootpaths = new ArrayList<>(b.footpaths);
+        sortedFootpaths.sort(Comparator.comparingInt(f -> f.from));
+        footpaths = sortedFootpaths.toArray(new Footpath[0]);
+        int f = 0;
+        for (int s = 0; s <= stopCount; s++) {
+            while (f < footpaths.length && footpaths[f].from < s)
+                f++;
+            footpathOffsets[s] = f;
+        }
+    }
+
+    private static boolean overtakes(TripData before, TripData after) {
+        for (int pos = 0; pos < before.stops.length; pos++) {
+            if (after.arrivals[pos] < before.arrivals[pos] || after.departures[pos] < before.departures[pos])
+                return true;
+        }
+        return false;
+    }
+
+    public int getStopCount() {
+        return stopIds.length;
+    }
+
+    public int getPatternCount() {
+        return patternRouteTypes.length;
+    }
+
+    public int getTripCount() {
+        return tripValidities.length;
+    }
+
+    public int getFootpathCount() {
+        return footpaths.length;
+    }
+
+    /**
+     * @return the index of the given stop, or -1 if it is not part of this timetable
+     */
+    public int getStop(String feedId, String stopId) {
+        Integer stop = stopsById.get(new GtfsStorage.FeedIdWithStopId(feedId, stopId));
+        return stop == null ? -1 : stop;
+    }
+
+    /**
+     * Creates the timetable from the stop time tables of the given storage. Transfers between stops are taken from
+     * the transfers of each feed (only the stop to stop rules, route and trip specific rules are ignored) and from
+     * the given walks through the street network. For two stops of the same feed the transfer rules of the feed take
+     * precedence over walking.
+     */
+    public static RaptorTimetable create(GtfsStorage gtfsStorage, List<Walk> walks) {
+        Builder builder = new Builder();
+        for (String feedId : new TreeSet<>(gtfsStorage.getGtfsFeeds().keySet())) {
+            GTFSFeed feed = gtfsStorage.getGtfsFeeds().get(feedId);
+            StopTimeTable stopTimeTable = gtfsStorage.getStopTimeTables().get(feedId);
+            LocalDate startDate = feed.getStartDate();
+            LocalDate endDate = feed.getEndDate();
+            Map<String, Integer> validityByService = new HashMap<>();
+            for (int t = 0; t < stopTimeTable.getTripCount(); t++) {
+                String tripId = stopTimeTable.getTripId(t);
+                Trip trip = feed.trips.get(tripId);
+                if (trip == null)
+                    continue;
+                Route route = feed.routes.get(trip.route_id);
+                boolean bikesAllowed = trip.bikes_allowed != 2;
+                int validity = validityByService.computeIfAbsent(trip.service_id + "|" + bikesAllowed, k -> {
+                    Service service = feed.services.get(trip.service_id);
+                    BitSet validOnDay = new BitSet((int) DAYS.between(startDate, endDate));
+                    for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+                        if (service.activeOn(date))
+                            validOnDay.set((int) DAYS.between(startDate, date));
+                    }
+                    ZoneId zoneId = ZoneId.of(feed.agency.get(route.agency_id).agency_timezone);
+                    return builder.addValidity(new GtfsStorage.Validity(validOnDay, zoneId, startDate, bikesAllowed));
+                });
+                int firstRow = stopTimeTable.getFirstRow(t);
+                int n = stopTimeTable.getEndRow(t) - firstRow;
+                int[] stops = new int[n];
+                int[] arrivals = new int[n];
+                int[] departures = new int[n];
+                boolean missingTimes = false;
+                for (int i = 0; i < n; i++) {
+                    int row = firstRow + i;
+                    stops[i] = builder.addStop(feedId, stopTimeTable.getStopId(row));
+                    arrivals[i] = stopTimeTable.getArrivalTime(row);
+                    departures[i] = stopTimeTable.getDepartureTime(row);
+                    missingTimes |= arrivals[i] == Entity.INT_MISSING || departures[i] == Entity.INT_MISSING;
+                }
+                if (missingTimes) {
+                    int i = 0;
+                    for (StopTime stopTime : feed.getInterpolatedStopTimesForTrip(tripId)) {
+                        arrivals[i] = stopTime.arrival_time;
+                        departures[i] = stopTime.departure_time;
+                        i++;
+                    }
+                }
+                Collection<Frequency> frequencies = feed.getFrequencies(tripId);
+                if (frequencies.isEmpty()) {
+                    builder.addTrip(feedId, t, route.route_id, route.route_type, validity, stops, arrivals, departures);
+                } else {
+                    // the same expansion as in GtfsReader
+                    for (Frequency frequency : frequencies) {
+                        for (int time = frequency.start_time; time < frequency.end_time; time += frequency.headway_secs) {
+                            int[] shiftedArrivals = new int[n];
+                            int[] shiftedDepartures = new int[n];
+                            for (int i = 0; i < n; i++) {
+                                shiftedArrivals[i] = arrivals[i] + time;
+                                shiftedDepartures[i] = departures[i] + time;
+                            }
+                            builder.addTrip(feedId, t, route.route_id, route.route_type, validity, stops, shiftedArrivals, shiftedDepartures);
+                        }
+                    }
+                }
+            }
+            Set<List<String>> gtfsTransfers = new HashSet<>();
+            for (Transfer transfer : new Transfers(feed, stopTimeTable).getStopTransfers()) {
+                int from = builder.getStop(feedId, transfer.from_stop_id);
+                int to = builder.getStop(feedId, transfer.to_stop_id);
+                if (from < 0 || to < 0)
+                    continue;
+                int seconds = Math.max(0, transfer.min_transfer_time);
+                if (from == to)
+                    builder.setChangeTime(from, seconds);
+                else if (gtfsTransfers.add(Arrays.asList(transfer.from_stop_id, transfer.to_stop_id)))
+                    builder.addFootpath(new Footpath(from, to, seconds, null));
+            }
+            for (Walk walk : walks) {
+                if (walk.from.feedId.equals(feedId) && walk.to.feedId.equals(feedId) && !walk.from.stopId.equals(walk.to.stopId)
+                        && !gtfsTransfers.contains(Arrays.asList(walk.from.stopId, walk.to.stopId)))
+                    addWalk(builder, walk);
+            }
+        }
+        for (Walk walk : walks) {
+            if (!walk.from.feedId.equals(walk.to.feedId))
+                addWalk(builder, walk);
+        }
+        return builder.build();
+    }
+
+    private static void addWalk(Builder builder, Walk walk) {
+        int from = builder.getStop(walk.from.feedId, walk.from.stopId);
+        int to = builder.getStop(walk.to.feedId, walk.to.stopId);
+        if (from >= 0 && to >= 0)
+            builder.addFootpath(new Footpath(from, to, walk.seconds, walk.edgeKeys));
+    }
+
+    private static class TripData {
+        final String feedId;
+        final int source;
+        final String routeId;
+        final int routeType;
+        final int validity;
+        final int[] stops;
+        final int[] arrivals;
+        final int[] departures;
+
+        TripData(String feedId, int source, String routeId, int routeType, int validity, int[] stops, int[] arrivals, int[] departures) {
+            this.feedId = feedId;
+            this.source = source;
+            this.routeId = routeId;
+            this.routeType = routeType;
+            this.validity = validity;
+            this.stops = stops;
+            this.arrivals = arrivals;
+            this.departures = departures;
+        }
+    }
+
+    private static class PatternKey {
+        final String routeId;
+        final int routeType;
+        final int[] stops;
+
+        PatternKey(TripData trip) {
+            this.routeId = trip.feedId + "|" + trip.routeId;
+            this.routeType = trip.routeType;
+            this.stops = trip.stops;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PatternKey)) return false;
+            PatternKey that = (PatternKey) o;
+            return routeType == that.routeType && routeId.equals(that.routeId) && Arrays.equals(stops, that.stops);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hash(routeId, routeType) + Arrays.hashCode(stops);
+        }
+    }
+
+    /**
+     * Collects the stops, trips and transfers of a timetable. The stops are numbered in the order they are added.
+     */
+    public static class Builder {
+        private final List<String> stopFeedIds = new ArrayList<>();
+        private final List<String> stopIds = new ArrayList<>();
+        private final IntArrayList stopChangeTimes = new IntArrayList();
+        private final Map<GtfsStorage.FeedIdWithStopId, Integer> stopsById = new HashMap<>();
+        private final List<GtfsStorage.Validity> validities = new ArrayList<>();
+        private final List<TripData> trips = new ArrayList<>();
+        private final List<Footpath> footpaths = new ArrayList<>();
+
+        /**
+         * @return the index of the given stop, which is added if it does not exist yet
+         */
+        public int addStop(String feedId, String stopId) {
+            return stopsById.computeIfAbsent(new GtfsStorage.FeedIdWithStopId(feedId, stopId), k -> {
+                stopFeedIds.add(feedId);
+                stopIds.add(stopId);
+                stopChangeTimes.add(0);
+                return stopIds.size() - 1;
+            });
+        }
+
+        /**
+         * @return the index of the given stop or -1 if it has not been added
+         */
+        public int getStop(String feedId, String stopId) {
+            Integer stop = stopsById.get(new GtfsStorage.FeedIdWithStopId(feedId, stopId));
+            return stop == null ? -1 : stop;
+        }
+
+        /**
+         * Sets the minimum time to change between two trips at the given stop
+         */
+        public Builder setChangeTime(int stop, int seconds) {
+            if (seconds < 0)
+                throw new IllegalArgumentException("Change time must not be negative: " + seconds);
+            stopChangeTimes.set(stop, seconds);
+            return this;
+        }
+
+        public int addValidity(GtfsStorage.Validity validity) {
+            validities.add(validity);
+            return validities.size() - 1;
+        }
+
+        /**
+         * @param source the index of the trip in the stop time table of its feed
+         */
+        public Builder addTrip(String feedId, int source, String routeId, int routeType, int validity, int[] stops, int[] arrivals, int[] departures) {
+            if (stops.length < 2 || arrivals.length != stops.length || departures.length != stops.length)
+                throw new IllegalArgumentException("A trip needs at least two stops and an arrival and departure time for every stop");
+            if (validity < 0 || validity >= validities.size())
+                throw new IllegalArgumentException("Unknown validity: " + validity);
+            for (int i = 0; i < stops.length; i++) {
+                if (departures[i] < arrivals[i] || i > 0 && arrivals[i] < departures[i - 1])
+                    throw new IllegalArgumentException("The times of a trip must not decrease, trip " + source + " of feed " + feedId);
+            }
+            trips.add(new TripData(feedId, source, routeId, routeType, validity, stops, arrivals, departures));
+            return this;
+        }
+
+        public Builder addFootpath(Footpath footpath) {
+            footpaths.add(footpath);
+            return this;
+        }
+
+        public RaptorTimetable build() {
+            return new RaptorTimetable(this);
+        }
+    }
+}
@@ -68,6 +68,18 @@ public class RealtimeFeed {
     }
 
     public static RealtimeFeed fromProtobuf(GraphHopperStorage graphHopperStorage, GtfsStorage staticGtfs, Map<String, Transfers> transfers, Map<String, GtfsRealtime.FeedMessage> feedMessages) {
+        return fromProtobuf(graphHopperStorage, staticGtfs, transfers, feedMessages, Collections.emptyMap(), new HashMap<>());
+    }
+
+    /**
+     * Creates the RealtimeFeed for the given feed messages and reuses the changes of the scheduled trip updates that
+     * are equal to a trip update in previousTripUpdates. The changes of all scheduled trip updates of the given messages
+     * are put into tripUpdates, so they can be passed as previousTripUpdates for the next feed messages. Both maps are
+     * keyed by {@link #tripUpdateKey}.
+     */
+    static RealtimeFeed fromProtobuf(GraphHopperStorage graphHopperStorage, GtfsStorage staticGtfs, Map<String, Transfers> transfers, Map<String, GtfsRealtime.FeedMessage> feedMessages,
+                                     Map<String, Map<GtfsRealtime.TripUpdate, ScheduledTripUpdate>> previousTripUpdates,
+                                     Map<String, Map<GtfsRealtime.TripUpdate, ScheduledTripUpdate>> tripUpdates) {
         final IntHashSet blockedEdges = new IntHashSet();
         final IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
         final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
@@ -100,43 +112,27 @@ public class RealtimeFeed {
             BitSet validOnDay = new BitSet();
             LocalDate startDate = feed.getStartDate();
             validOnDay.set((int) DAYS.between(startDate, dateToChange));
+            Map<GtfsRealtime.TripUpdate, ScheduledTripUpdate> previousTripUpdatesOfFeed = previousTripUpdates.getOrDefault(feedKey, Collections.emptyMap());
+            Map<GtfsRealtime.TripUpdate, ScheduledTripUpdate> tripUpdatesOfFeed = tripUpdates.computeIfAbsent(feedKey, k -> new HashMap<>());
             feedMessage.getEntityList().stream()
                     .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
                     .map(GtfsRealtime.FeedEntity::getTripUpdate)
                     .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED)
                     .forEach(tripUpdate -> {
-                        Collection<Frequency> frequencies = feed.getFrequencies(tripUpdate.getTrip().getTripId());
-                        int timeOffset = (tripUpdate.getTrip().hasStartTime() && !frequencies.isEmpty()) ? LocalTime.parse(tripUpdate.getTrip().getStartTime()).toSecondOfDay() : 0;
-                        final int[] boardEdges = findBoardEdgesForTrip(staticGtfs, feedKey, feed, tripUpdate);
-                        final int[] leaveEdges = findLeaveEdgesForTrip(staticGtfs, feedKey, feed, tripUpdate);
-                        if (boardEdges == null || leaveEdges == null) {
+                        ScheduledTripUpdate scheduledTripUpdate = tripUpdatesOfFeed.computeIfAbsent(tripUpdateKey(tripUpdate), key -> {
+                            ScheduledTripUpdate previous = previousTripUpdatesOfFeed.get(key);
+                            return previous != null ? previous : ScheduledTripUpdate.create(staticGtfs, feedKey, feed, tripUpdate);
+                        });
+                        if (scheduledTripUpdate.tripNotFound) {
                             logger.warn("Trip not found: {}", tripUpdate.getTrip());
                             return;
                         }
-                        tripUpdate.getStopTimeUpdateList().stream()
-                                .filter(stopTimeUpdate -> stopTimeUpdate.getScheduleRelationship() == SKIPPED)
-                                .mapToInt(GtfsRealtime.TripUpdate.StopTimeUpdate::getStopSequence)
-                                .forEach(skippedStopSequenceNumber -> {
-                                    blockedEdges.add(boardEdges[skippedStopSequenceNumber]);
-                                    blockedEdges.add(leaveEdges[skippedStopSequenceNumber]);
-                                });
-                        GtfsReader.TripWithStopTimes tripWithStopTimes = toTripWithStopTimes(feed, tripUpdate);
-                        tripWithStopTimes.stopTimes.forEach(stopTime -> {
-                            if (stopTime.stop_sequence > leaveEdges.length - 1) {
-                                logger.warn("Stop sequence number too high {} vs {}", stopTime.stop_sequence, leaveEdges.length);
-                                return;
-                            }
-                            final StopTime originalStopTime = feed.stop_times.get(new Fun.Tuple2(tripUpdate.getTrip().getTripId(), stopTime.stop_sequence));
-                            int arrivalDelay = stopTime.arrival_time - originalStopTime.arrival_time;
-                            delaysForAlightEdges.put(leaveEdges[stopTime.stop_sequence], arrivalDelay * 1000);
-                            int departureDelay = stopTime.departure_time - originalStopTime.departure_time;
-                            if (departureDelay > 0) {
-                                int boardEdge = boardEdges[stopTime.stop_sequence];
-                                int departureNode = ptGraphNodesAndEdges.edge(boardEdge).getAdjNode();
-                                int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(timezone, tripUpdate.getTrip(), stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, validOnDay);
-                                delaysForBoardEdges.put(delayedBoardEdge, departureDelay * 1000);
-                            }
-                        });
+                        scheduledTripUpdate.addBlockedEdgesTo(blockedEdges);
+                        scheduledTripUpdate.addDelaysForAlightEdgesTo(delaysForAlightEdges);
+                        for (ScheduledTripUpdate.DelayedDeparture d : scheduledTripUpdate.getDelayedDepartures()) {
+                            int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(timezone, tripUpdate.getTrip(), d.stopSequence, d.departureTime, d.departureNode, validOnDay);
+                            delaysForBoardEdges.put(delayedBoardEdge, d.delay);
+                        }
                     });
             feedMessage.getEntityList().stream()
                     .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
@@ -168,10 +164,109 @@ public class RealtimeFeed {
         return new RealtimeFeed(feedMessages, blockedEdges, delaysForBoardEdges, delaysForAlightEdges, additionalEdges);
     }
 
-    private static int[] findLeaveEdgesForTrip(GtfsStorage staticGtfs, String feedKey, GTFSFeed feed, GtfsRealtime.TripUpdate tripUpdate) {
-        Trip trip = feed.trips.get(tripUpdate.getTrip().getTripId());
-        StopTime next = feed.getOrderedStopTimesForTrip(trip.trip_id).iterator().next();
-        int station = staticGtfs.getStationNodes().get(new GtfsStorage.FeedIdWithStopId(feedKey, next.stop_id));
+    /**
+     * @return the part of the given trip update the changes of a scheduled trip depend on: the trip descriptor and the
+     * stop time updates. The timestamp, delay and vehicle of a trip update usually change with every feed message
+     * while the stop time updates stay the same.
+     */
+    static GtfsRealtime.TripUpdate tripUpdateKey(GtfsRealtime.TripUpdate tripUpdate) {
+        return GtfsRealtime.TripUpdate.newBuilder()
+                .setTrip(tripUpdate.getTrip())
+                .addAllStopTimeUpdate(tripUpdate.getStopTimeUpdateList())
+                .build();
+    }
+
+    /**
+     * The changes of a single scheduled trip update to the static timetable. They only depend on the trip update and
+     * the static GTFS data, so they can be reused as long as the trip update does not change. Immutable, the changes
+     * are only handed out as copies or read-only views, because the same instance is shared by consecutive feeds.
+     */
+    static class ScheduledTripUpdate {
+        private static final ScheduledTripUpdate TRIP_NOT_FOUND = new ScheduledTripUpdate(true, new IntArrayList(), new IntLongHashMap(), new ArrayList<>());
+        final boolean tripNotFound;
+        private final IntArrayList blockedEdges;
+        private final IntLongHashMap delaysForAlightEdges;
+        private final List<DelayedDeparture> delayedDepartures;
+
+        private ScheduledTripUpdate(boolean tripNotFound, IntArrayList blockedEdges, IntLongHashMap delaysForAlightEdges, List<DelayedDeparture> delayedDepartures) {
+            this.tripNotFound = tripNotFound;
+            this.blockedEdges = blockedEdges;
+            this.delaysForAlightEdges = delaysForAlightEdges;
+            this.delayedDepartures = Collections.unmodifiableList(delayedDepartures);
+        }
+
+        void addBlockedEdgesTo(IntHashSet target) {
+            target.addAll(blockedEdges);
+        }
+
+        void addDelaysForAlightEdgesTo(IntLongHashMap target) {
+            target.putAll(delaysForAlightEdges);
+        }
+
+        List<DelayedDeparture> getDelayedDepartures() {
+            return delayedDepartures;
+        }
+
+        static ScheduledTripUpdate create(GtfsStorage staticGtfs, String feedKey, GTFSFeed feed, GtfsRealtime.TripUpdate tripUpdate) {
+            StopTimeTable stopTimeTable = staticGtfs.getStopTimeTables().get(feedKey);
+            Collection<Frequency> frequencies = feed.getFrequencies(tripUpdate.getTrip().getTripId());
+            int timeOffset = (tripUpdate.getTrip().hasStartTime() && !frequencies.isEmpty()) ? LocalTime.parse(tripUpdate.getTrip().getStartTime()).toSecondOfDay() : 0;
+            final int[] boardEdges = findBoardEdgesForTrip(staticGtfs, feedKey, tripUpdate);
+            final int[] leaveEdges = findLeaveEdgesForTrip(staticGtfs, feedKey, tripUpdate);
+            if (boardEdges == null || leaveEdges == null) {
+                return TRIP_NOT_FOUND;
+            }
+            IntArrayList blockedEdges = new IntArrayList();
+            IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
+            List<DelayedDeparture> delayedDepartures = new ArrayList<>();
+            tripUpdate.getStopTimeUpdateList().stream()
+                    .filter(stopTimeUpdate -> stopTimeUpdate.getScheduleRelationship() == SKIPPED)
+                    .mapToInt(GtfsRealtime.TripUpdate.StopTimeUpdate::getStopSequence)
+                    .forEach(skippedStopSequenceNumber -> {
+                        blockedEdges.add(boardEdges[skippedStopSequenceNumber]);
+                        blockedEdges.add(leaveEdges[skippedStopSequenceNumber]);
+                    });
+            GtfsReader.TripWithStopTimes tripWithStopTimes = toTripWithStopTimes(feed, tripUpdate);
+            tripWithStopTimes.stopTimes.forEach(stopTime -> {
+                if (stopTime.stop_sequence > leaveEdges.length - 1) {
+                    logger.warn("Stop sequence number too high {} vs {}", stopTime.stop_sequence, leaveEdges.length);
+                    return;
+                }
+                final int originalRow = stopTimeTable.getRow(stopTimeTable.getTrip(tripUpdate.getTrip().getTripId()), stopTime.stop_sequence);
+                int arrivalDelay = stopTime.arrival_time - stopTimeTable.getArrivalTime(originalRow);
+                delaysForAlightEdges.put(leaveEdges[stopTime.stop_sequence], arrivalDelay * 1000);
+                int departureDelay = stopTime.departure_time - stopTimeTable.getDepartureTime(originalRow);
+                if (departureDelay > 0) {
+                    int boardEdge = boardEdges[stopTime.stop_sequence];
+                    int departureNode = staticGtfs.getPtGraph().edge(boardEdge).getAdjNode();
+                    delayedDepartures.add(new DelayedDeparture(stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, departureDelay * 1000));
+                }
+            });
+            return new ScheduledTripUpdate(false, blockedEdges, delaysForAlightEdges, delayedDepartures);
+        }
+
+        static class DelayedDeparture {
+            final int stopSequence;
+            final int departureTime;
+            final int departureNode;
+            final long delay;
+
+            DelayedDeparture(int stopSequence, int departureTime, int departureNode, long delay) {
+                this.stopSequence = stopSequence;
+                this.departureTime = departureTime;
+                this.departureNode = departureNode;
+                this.delay = delay;
+            }
+        }
+    }
+
+    private static int[] findLeaveEdgesForTrip(GtfsStorage staticGtfs, String feedKey, GtfsRealtime.TripUpdate tripUpdate) {
+        StopTimeTable stopTimeTable = staticGtfs.getStopTimeTables().get(feedKey);
+        int trip = stopTimeTable.getTrip(tripUpdate.getTrip().getTripId());
+        if (trip < 0)
+            return null;
+        String firstStopId = stopTimeTable.getStopId(stopTimeTable.getFirstRow(trip));
+        int station = staticGtfs.getStationNodes().get(new GtfsStorage.FeedIdWithStopId(feedKey, firstStopId));
         Optional<PtGraph.PtEdge> firstBoarding = StreamSupport.stream(staticGtfs.getPtGraph().backEdgesAround(station).spliterator(), false)
                 .flatMap(e -> StreamSupport.stream(staticGtfs.getPtGraph().backEdgesAround(e.getAdjNode()).spliterator(), false))
                 .flatMap(e -> StreamSupport.stream(staticGtfs.getPtGraph().backEdgesAround(e.getAdjNode()).spliterator(), false))
@@ -184,10 +279,13 @@ public class RealtimeFeed {
         return collectWithPadding(boardEdges);
     }
 
-    private static int[] findBoardEdgesForTrip(GtfsStorage staticGtfs, String feedKey, GTFSFeed feed, GtfsRealtime.TripUpdate tripUpdate) {
-        Trip trip = feed.trips.get(tripUpdate.getTrip().getTripId());
-        StopTime next = feed.getOrderedStopTimesForTrip(trip.trip_id).iterator().next();
-        int station = staticGtfs.getStationNodes().get(new GtfsStorage.FeedIdWithStopId(feedKey, next.stop_id));
+    private static int[] findBoardEdgesForTrip(GtfsStorage staticGtfs, String feedKey, GtfsRealtime.TripUpdate tripUpdate) {
+        StopTimeTable stopTimeTable = staticGtfs.getStopTimeTables().get(feedKey);
+        int trip = stopTimeTable.getTrip(tripUpdate.getTrip().getTripId());
+        if (trip < 0)
+            return null;
+        String firstStopId = stopTimeTable.getStopId(stopTimeTable.getFirstRow(trip));
+        int station = staticGtfs.getStationNodes().get(new GtfsStorage.FeedIdWithStopId(feedKey, firstStopId));
         Optional<PtGraph.PtEdge> firstBoarding = StreamSupport.stream(staticGtfs.getPtGraph().edgesAround(station).spliterator(), false)
                 .flatMap(e -> StreamSupport.stream(staticGtfs.getPtGraph().edgesAround(e.getAdjNode()).spliterator(), false))
                 .flatMap(e -> StreamSupport.stream(staticGtfs.getPtGraph().edgesAround(e.getAdjNode()).spliterator(), false))
@@ -426,8 +524,8 @@ public class RealtimeFeed {
         }).findFirst().orElse(Instant.now());
     }
 
-    public StopTime getStopTime(GTFSFeed staticFeed, GtfsRealtime.TripDescriptor tripDescriptor, Label.Transition t, Instant boardTime, int stopSequence) {
-        StopTime stopTime = staticFeed.stop_times.get(new Fun.Tuple2<>(tripDescriptor.getTripId(), stopSequence));
+    public StopTime getStopTime(GTFSFeed staticFeed, StopTimeTable stopTimeTable, GtfsRealtime.TripDescriptor tripDescriptor, Label.Transition t, Instant boardTime, int stopSequence) {
+        StopTime stopTime = stopTimeTable.getStopTime(tripDescriptor.getTripId(), stopSequence);
         if (stopTime == null) {
             return getTripUpdate(staticFeed, tripDescriptor, boardTime).get().stopTimes.get(stopSequence - 1);
         } else {
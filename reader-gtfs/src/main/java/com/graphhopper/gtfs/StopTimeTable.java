@@ -0,0 +1,316 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.StopTime;
+import com.conveyal.gtfs.model.Trip;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The stop times of a single GTFS feed in a compact, columnar layout on top of {@link DataAccess}. The stop times of a
+ * trip are stored in consecutive rows ordered by their stop sequence, and the trips are ordered by their id. Every
+ * column (stop sequence, stop, arrival and departure time) is a plain int array, the trip, stop and route ids are
+ * stored once in a string table. With a memory-mapped directory this can be used right after opening the files,
+ * without deserializing StopTime objects from the MapDB of the feed.
+ */
+public class StopTimeTable {
+    private static final int TRIP_BYTES = 8;
+    private static final int T_FIRST_ROW = 0, T_ROUTE = 4;
+    private static final int TRIP_IDS = 0, STOP_IDS = 1, ROUTE_IDS = 2;
+
+    private final DataAccess columns;
+    private final DataAccess ids;
+    private int tripCount;
+    private int rowCount;
+    private long columnStart;
+    private final long[] idTables = new long[3];
+    private final int[] idCounts = new int[3];
+
+    public StopTimeTable(Directory dir, String feedId) {
+        String columnsName = "pt_stop_times_" + feedId;
+        String idsName = "pt_stop_time_ids_" + feedId;
+        columns = dir.create(columnsName, dir.getDefaultType(columnsName, true), -1);
+        ids = dir.create(idsName, dir.getDefaultType(idsName, false), -1);
+    }
+
+    /**
+     * Fills this table with the stop times of the given feed.
+     */
+    public void create(GTFSFeed feed) {
+        List<String> tripIds = new ArrayList<>();
+        Map<String, Integer> stopIndices = new HashMap<>();
+        Map<String, Integer> routeIndices = new HashMap<>();
+        List<int[]> tripRows = new ArrayList<>();
+        // the stop times are ordered by (trip_id, stop_sequence), so we only have to count the rows for now
+        int rows = 0;
+        String prevTripId = null;
+        for (StopTime stopTime : feed.stop_times.values()) {
+            if (!stopTime.trip_id.equals(prevTripId)) {
+                if (prevTripId != null && prevTripId.compareTo(stopTime.trip_id) > 0)
+                    throw new IllegalStateException("Stop times are not ordered by trip: " + prevTripId + ", " + stopTime.trip_id);
+                Trip trip = feed.trips.get(stopTime.trip_id);
+                int route = trip == null ? -1 : routeIndices.computeIfAbsent(trip.route_id, r -> routeIndices.size());
+                tripIds.add(stopTime.trip_id);
+                tripRows.add(new int[]{rows, route});
+                prevTripId = stopTime.trip_id;
+            }
+            rows++;
+        }
+        tripCount = tripIds.size();
+        rowCount = rows;
+        columnStart = (long) (tripCount + 1) * TRIP_BYTES;
+
+        columns.create(columnStart + 4L * 4 * rowCount);
+        columns.ensureCapacity(columnStart + 4L * 4 * rowCount);
+        for (int trip = 0; trip < tripCount; trip++) {
+            columns.setInt((long) trip * TRIP_BYTES + T_FIRST_ROW, tripRows.get(trip)[0]);
+            columns.setInt((long) trip * TRIP_BYTES + T_ROUTE, tripRows.get(trip)[1]);
+        }
+        columns.setInt((long) tripCount * TRIP_BYTES + T_FIRST_ROW, rowCount);
+        columns.setInt((long) tripCount * TRIP_BYTES + T_ROUTE, -1);
+        int row = 0;
+        for (StopTime stopTime : feed.stop_times.values()) {
+            columns.setInt(columnPointer(0, row), stopTime.stop_sequence);
+            columns.setInt(columnPointer(1, row), stopIndices.computeIfAbsent(stopTime.stop_id, s -> stopIndices.size()));
+            columns.setInt(columnPointer(2, row), stopTime.arrival_time);
+            columns.setInt(columnPointer(3, row), stopTime.departure_time);
+            row++;
+        }
+        if (row != rowCount)
+            throw new IllegalStateException("Stop times changed while creating the table: " + row + " vs. " + rowCount);
+
+        ids.create(1000);
+        long pointer = 0;
+        pointer = writeIds(TRIP_IDS, pointer, tripIds);
+        pointer = writeIds(STOP_IDS, pointer, toList(stopIndices));
+        writeIds(ROUTE_IDS, pointer, toList(routeIndices));
+    }
+
+    private static List<String> toList(Map<String, Integer> indices) {
+        String[] result = new String[indices.size()];
+        indices.forEach((id, index) -> result[index] = id);
+        return Arrays.asList(result);
+    }
+
+    private long writeIds(int table, long pointer, List<String> values) {
+        idTables[table] = pointer;
+        idCounts[table] = values.size();
+        long bytePointer = pointer + 4L * (values.size() + 1);
+        ids.ensureCapacity(bytePointer);
+        int offset = 0;
+        for (int i = 0; i < values.size(); i++) {
+            byte[] bytes = values.get(i).getBytes(StandardCharsets.UTF_8);
+            ids.setInt(pointer + 4L * i, offset);
+            ids.ensureCapacity(bytePointer + offset + bytes.length);
+            ids.setBytes(bytePointer + offset, bytes, bytes.length);
+            offset += bytes.length;
+        }
+        ids.setInt(pointer + 4L * values.size(), offset);
+        return bytePointer + offset;
+    }
+
+    public boolean loadExisting() {
+        if (!columns.loadExisting() || !ids.loadExisting())
+            return false;
+        tripCount = columns.getHeader(0);
+        rowCount = columns.getHeader(4);
+        columnStart = (long) (tripCount + 1) * TRIP_BYTES;
+        for (int table = 0; table < idTables.length; table++) {
+            idTables[table] = ((long) ids.getHeader(8 * table) << 32) | (ids.getHeader(8 * table + 4) & 0xFFFFFFFFL);
+            idCounts[table] = ids.getHeader(8 * idTables.length + 4 * table);
+        }
+        return true;
+    }
+
+    public void flush() {
+        columns.setHeader(0, tripCount);
+        columns.setHeader(4, rowCount);
+        for (int table = 0; table < idTables.length; table++) {
+            ids.setHeader(8 * table, (int) (idTables[table] >>> 32));
+            ids.setHeader(8 * table + 4, (int) idTables[table]);
+            ids.setHeader(8 * idTables.length + 4 * table, idCounts[table]);
+        }
+        columns.flush();
+        ids.flush();
+    }
+
+    public void close() {
+        columns.close();
+        ids.close();
+    }
+
+    public int getTripCount() {
+        return tripCount;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the index of the trip with the given id, or -1 if this feed has no stop times for it
+     */
+    public int getTrip(String tripId) {
+        // trip ids are sorted, see create
+        int low = 0, high = tripCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = getId(TRIP_IDS, mid).compareTo(tripId);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    public String getTripId(int trip) {
+        return getId(TRIP_IDS, trip);
+    }
+
+    /**
+     * @return the route id of the given trip, or null if the trip is not part of the feed's trips
+     */
+    public String getRouteId(int trip) {
+        int route = columns.getInt((long) trip * TRIP_BYTES + T_ROUTE);
+        return route < 0 ? null : getId(ROUTE_IDS, route);
+    }
+
+    /**
+     * @return the first row of the given trip. The rows of the trip end at the first row of the next trip.
+     */
+    public int getFirstRow(int trip) {
+        return columns.getInt((long) trip * TRIP_BYTES + T_FIRST_ROW);
+    }
+
+    public int getEndRow(int trip) {
+        return getFirstRow(trip + 1);
+    }
+
+    /**
+     * @return the row of the stop time with the given stop sequence of the given trip or -1 if there is none
+     */
+    public int getRow(int trip, int stopSequence) {
+        int low = getFirstRow(trip), high = getEndRow(trip) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midSequence = getStopSequence(mid);
+            if (midSequence < stopSequence)
+                low = mid + 1;
+            else if (midSequence > stopSequence)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    public int getStopSequence(int row) {
+        return columns.getInt(columnPointer(0, row));
+    }
+
+    public int getStop(int row) {
+        return columns.getInt(columnPointer(1, row));
+    }
+
+    public String getStopId(int row) {
+        return getId(STOP_IDS, getStop(row));
+    }
+
+    public int getStopCount() {
+        return idCounts[STOP_IDS];
+    }
+
+    public String getStopIdOfStop(int stop) {
+        return getId(STOP_IDS, stop);
+    }
+
+    public int getArrivalTime(int row) {
+        return columns.getInt(columnPointer(2, row));
+    }
+
+    public int getDepartureTime(int row) {
+        return columns.getInt(columnPointer(3, row));
+    }
+
+    /**
+     * @return a new StopTime with the trip, stop, stop sequence, arrival and departure time of the given trip and stop
+     * sequence, or null if there is no such stop time. Other fields are not stored in this table.
+     */
+    public StopTime getStopTime(String tripId, int stopSequence) {
+        int trip = getTrip(tripId);
+        if (trip < 0)
+            return null;
+        int row = getRow(trip, stopSequence);
+        if (row < 0)
+            return null;
+        StopTime stopTime = new StopTime();
+        stopTime.trip_id = tripId;
+        stopTime.stop_sequence = getStopSequence(row);
+        stopTime.stop_id = getStopId(row);
+        stopTime.arrival_time = getArrivalTime(row);
+        stopTime.departure_time = getDepartureTime(row);
+        return stopTime;
+    }
+
+    /**
+     * @return the route ids of the trips that stop at each stop
+     */
+    public Map<String, Set<String>> getRoutesByStop() {
+        List<Set<String>> routesByStop = new ArrayList<>(getStopCount());
+        for (int stop = 0; stop < getStopCount(); stop++)
+            routesByStop.add(new HashSet<>());
+        for (int trip = 0; trip < tripCount; trip++) {
+            String routeId = getRouteId(trip);
+            if (routeId == null)
+                continue;
+            for (int row = getFirstRow(trip); row < getEndRow(trip); row++)
+                routesByStop.get(getStop(row)).add(routeId);
+        }
+        Map<String, Set<String>> result = new HashMap<>(getStopCount());
+        for (int stop = 0; stop < getStopCount(); stop++)
+            result.put(getStopIdOfStop(stop), routesByStop.get(stop));
+        return result;
+    }
+
+    private long columnPointer(int column, int row) {
+        return columnStart + 4L * ((long) column * rowCount + row);
+    }
+
+    private String getId(int table, int index) {
+        long pointer = idTables[table];
+        int offset = ids.getInt(pointer + 4L * index);
+        int length = ids.getInt(pointer + 4L * (index + 1)) - offset;
+        byte[] bytes = new byte[length];
+        ids.getBytes(pointer + 4L * (idCounts[table] + 1) + offset, bytes, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
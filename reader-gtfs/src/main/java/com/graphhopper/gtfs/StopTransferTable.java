@@ -0,0 +1,244 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The street travel times between nearby stations for one profile, calculated when the graph is imported, in a compact
+ * layout on top of {@link DataAccess}. The transfers are stored twice, once by the station where they start and once by
+ * the station where they end, so a forward and a backward search can both look up the transfers of a station with two
+ * reads. The street edges of a transfer are only needed to create the path, they are stored in a separate file.
+ * <p>
+ * A transfer is identified by an int: the transfers starting at a station are numbered from 0, the transfers ending at
+ * a station from {@link #getTransferCount()}. The adjacent station of a transfer is the station where it ends or starts,
+ * respectively.
+ */
+public class StopTransferTable {
+    private static final int TRANSFER_BYTES = 24;
+    private static final int T_ADJ_NODE = 0, T_ADJ_STREET_NODE = 4, T_MILLIS = 8, T_WEIGHT = 12, T_FIRST_EDGE_KEY = 16, T_EDGE_KEY_COUNT = 20;
+
+    private final DataAccess transfers;
+    private final DataAccess edgeKeys;
+    private int nodeCount;
+    private int transferCount;
+    private long maxMillis;
+    private long transferStart;
+
+    public StopTransferTable(Directory dir, String profile) {
+        String transfersName = "pt_transfers_" + profile;
+        String edgeKeysName = "pt_transfer_edges_" + profile;
+        transfers = dir.create(transfersName, dir.getDefaultType(transfersName, true), -1);
+        edgeKeys = dir.create(edgeKeysName, dir.getDefaultType(edgeKeysName, false), -1);
+    }
+
+    /**
+     * A walk (or ride) through the street network from one station to another.
+     */
+    public static class StreetTransfer {
+        final int fromNode;
+        final int fromStreetNode;
+        final int toNode;
+        final int toStreetNode;
+        final int millis;
+        final float weight;
+        final int[] edgeKeys;
+
+        /**
+         * @param fromNode the station node in the {@link PtGraph} where the transfer starts
+         * @param edgeKeys the edge keys of the street path from fromStreetNode to toStreetNode
+         */
+        public StreetTransfer(int fromNode, int fromStreetNode, int toNode, int toStreetNode, long millis, double weight, int[] edgeKeys) {
+            if (millis < 0 || millis > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Transfer time out of range: " + millis);
+            if (edgeKeys.length == 0)
+                throw new IllegalArgumentException("Transfer from " + fromNode + " to " + toNode + " has no street edges");
+            this.fromNode = fromNode;
+            this.fromStreetNode = fromStreetNode;
+            this.toNode = toNode;
+            this.toStreetNode = toStreetNode;
+            this.millis = (int) millis;
+            this.weight = (float) weight;
+            this.edgeKeys = edgeKeys;
+        }
+    }
+
+    /**
+     * Fills this table with the given transfers.
+     *
+     * @param nodeCount the number of nodes of the {@link PtGraph}, all station nodes must be smaller
+     * @param maxMillis the time limit of the search which found the transfers, all transfers must be shorter
+     */
+    public void create(int nodeCount, long maxMillis, List<StreetTransfer> streetTransfers) {
+        if (maxMillis < 0 || maxMillis > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Maximum transfer time out of range: " + maxMillis);
+        for (StreetTransfer transfer : streetTransfers)
+            if (transfer.millis > maxMillis)
+                throw new IllegalArgumentException("Transfer from " + transfer.fromNode + " to " + transfer.toNode + " takes longer than " + maxMillis + "ms");
+        this.nodeCount = nodeCount;
+        this.maxMillis = maxMillis;
+        this.transferCount = streetTransfers.size();
+        transferStart = 2L * 4 * (nodeCount + 1);
+        long bytes = transferStart + 2L * TRANSFER_BYTES * transferCount;
+        transfers.create(bytes);
+        transfers.ensureCapacity(bytes);
+        edgeKeys.create(1000);
+
+        int[] firstEdgeKeys = new int[transferCount];
+        int edgeKeyCount = 0;
+        for (int i = 0; i < transferCount; i++) {
+            int[] keys = streetTransfers.get(i).edgeKeys;
+            edgeKeys.ensureCapacity(4L * (edgeKeyCount + keys.length));
+            for (int j = 0; j < keys.length; j++)
+                edgeKeys.setInt(4L * (edgeKeyCount + j), keys[j]);
+            firstEdgeKeys[i] = edgeKeyCount;
+            edgeKeyCount += keys.length;
+        }
+        List<Integer> byFromNode = new ArrayList<>(transferCount);
+        for (int i = 0; i < transferCount; i++)
+            byFromNode.add(i);
+        List<Integer> byToNode = new ArrayList<>(byFromNode);
+        byFromNode.sort(Comparator.comparingInt((Integer i) -> streetTransfers.get(i).fromNode).thenComparingInt(i -> streetTransfers.get(i).toNode));
+        byToNode.sort(Comparator.comparingInt((Integer i) -> streetTransfers.get(i).toNode).thenComparingInt(i -> streetTransfers.get(i).fromNode));
+        writeOffsets(0, byFromNode, i -> streetTransfers.get(i).fromNode);
+        writeOffsets(nodeCount + 1, byToNode, i -> streetTransfers.get(i).toNode);
+        for (int i = 0; i < transferCount; i++) {
+            StreetTransfer transfer = streetTransfers.get(byFromNode.get(i));
+            writeTransfer(i, transfer.toNode, transfer.toStreetNode, transfer, firstEdgeKeys[byFromNode.get(i)]);
+        }
+        // the transfers ending at a station point to the same edge keys
+        for (int i = 0; i < transferCount; i++) {
+            StreetTransfer transfer = streetTransfers.get(byToNode.get(i));
+            writeTransfer(transferCount + i, transfer.fromNode, transfer.fromStreetNode, transfer, firstEdgeKeys[byToNode.get(i)]);
+        }
+    }
+
+    private void writeOffsets(int firstOffset, List<Integer> sorted, IntUnaryOperator nodeOfTransfer) {
+        int index = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            transfers.setInt(4L * (firstOffset + node), index);
+            while (index < sorted.size() && nodeOfTransfer.applyAsInt(sorted.get(index)) == node)
+                index++;
+        }
+        transfers.setInt(4L * (firstOffset + nodeCount), index);
+        if (index != sorted.size())
+            throw new IllegalArgumentException("Station nodes must be smaller than the node count " + nodeCount);
+    }
+
+    private void writeTransfer(int transfer, int adjNode, int adjStreetNode, StreetTransfer streetTransfer, int firstEdgeKey) {
+        long pointer = transferPointer(transfer);
+        transfers.setInt(pointer + T_ADJ_NODE, adjNode);
+        transfers.setInt(pointer + T_ADJ_STREET_NODE, adjStreetNode);
+        transfers.setInt(pointer + T_MILLIS, streetTransfer.millis);
+        transfers.setInt(pointer + T_WEIGHT, Float.floatToRawIntBits(streetTransfer.weight));
+        transfers.setInt(pointer + T_FIRST_EDGE_KEY, firstEdgeKey);
+        transfers.setInt(pointer + T_EDGE_KEY_COUNT, streetTransfer.edgeKeys.length);
+    }
+
+    public boolean loadExisting() {
+        if (!transfers.loadExisting() || !edgeKeys.loadExisting())
+            return false;
+        nodeCount = transfers.getHeader(0);
+        transferCount = transfers.getHeader(4);
+        maxMillis = transfers.getHeader(8);
+        transferStart = 2L * 4 * (nodeCount + 1);
+        return true;
+    }
+
+    public void flush() {
+        transfers.setHeader(0, nodeCount);
+        transfers.setHeader(4, transferCount);
+        transfers.setHeader(8, (int) maxMillis);
+        transfers.flush();
+        edgeKeys.flush();
+    }
+
+    public void close() {
+        transfers.close();
+        edgeKeys.close();
+    }
+
+    public int getTransferCount() {
+        return transferCount;
+    }
+
+    /**
+     * @return the time limit of the search which found the transfers. Stations which are further apart have no
+     * transfer in this table.
+     */
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * @param reverse if true, the transfers ending at the given node, otherwise the ones starting there
+     * @return the first transfer of the given station node. The transfers of the node end at {@link #getEndTransfer}.
+     */
+    public int getFirstTransfer(int node, boolean reverse) {
+        if (node < 0 || node >= nodeCount)
+            return 0;
+        return transfers.getInt(4L * ((reverse ? nodeCount + 1 : 0) + node)) + (reverse ? transferCount : 0);
+    }
+
+    public int getEndTransfer(int node, boolean reverse) {
+        if (node < 0 || node >= nodeCount)
+            return 0;
+        return transfers.getInt(4L * ((reverse ? nodeCount + 1 : 0) + node + 1)) + (reverse ? transferCount : 0);
+    }
+
+    public int getAdjNode(int transfer) {
+        return transfers.getInt(transferPointer(transfer) + T_ADJ_NODE);
+    }
+
+    public int getAdjStreetNode(int transfer) {
+        return transfers.getInt(transferPointer(transfer) + T_ADJ_STREET_NODE);
+    }
+
+    public long getMillis(int transfer) {
+        return transfers.getInt(transferPointer(transfer) + T_MILLIS);
+    }
+
+    public double getWeight(int transfer) {
+        return Float.intBitsToFloat(transfers.getInt(transferPointer(transfer) + T_WEIGHT));
+    }
+
+    /**
+     * @return the edge keys of the street path, in the direction of travel (also for the transfers ending at a node)
+     */
+    public int[] getEdgeKeys(int transfer) {
+        int first = getFirstEdgeKey(transfer);
+        int[] result = new int[transfers.getInt(transferPointer(transfer) + T_EDGE_KEY_COUNT)];
+        for (int i = 0; i < result.length; i++)
+            result[i] = edgeKeys.getInt(4L * (first + i));
+        return result;
+    }
+
+    private int getFirstEdgeKey(int transfer) {
+        return transfers.getInt(transferPointer(transfer) + T_FIRST_EDGE_KEY);
+    }
+
+    private long transferPointer(int transfer) {
+        return transferStart + (long) transfer * TRANSFER_BYTES;
+    }
+}
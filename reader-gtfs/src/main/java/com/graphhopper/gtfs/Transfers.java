@@ -40,6 +40,16 @@ public class Transfers {
                         Collectors.mapping(stopTime -> feed.trips.get(stopTime.trip_id).route_id, Collectors.toSet())));
     }
 
+    /**
+     * Same as {@link #Transfers(GTFSFeed)}, but takes the routes of each stop from the given table instead of
+     * iterating over all stop times of the feed.
+     */
+    public Transfers(GTFSFeed feed, StopTimeTable stopTimeTable) {
+        this.transfersToStop = explodeTransfers(feed).collect(Collectors.groupingBy(t -> t.to_stop_id));
+        this.transfersFromStop = explodeTransfers(feed).collect(Collectors.groupingBy(t -> t.from_stop_id));
+        this.routesByStop = stopTimeTable.getRoutesByStop();
+    }
+
     private Stream<Transfer> explodeTransfers(GTFSFeed feed) {
         return feed.transfers.values().stream()
                 .flatMap(t -> {
@@ -139,6 +149,16 @@ public class Transfers {
         return result;
     }
 
+    /**
+     * @return the possible transfers (transfer_type 0 or 2) which are neither route nor trip specific
+     */
+    List<Transfer> getStopTransfers() {
+        return transfersFromStop.values().stream().flatMap(List::stream)
+                .filter(t -> t.transfer_type == 0 || t.transfer_type == 2)
+                .filter(t -> t.from_route_id == null && t.to_route_id == null && t.from_trip_id == null && t.to_trip_id == null)
+                .collect(Collectors.toList());
+    }
+
     private Transfer findMostSpecificRule(List<Transfer> transfers, String fromRouteId, String toRouteId) {
         final ArrayList<Transfer> transfersBySpecificity = new ArrayList<>(transfers);
         transfersBySpecificity.sort(Comparator.comparingInt(t -> {
@@ -80,12 +80,20 @@ class TripFromLabel {
     ResponsePath createResponsePath(Translation tr, PointList waypoints, MultiCriteriaLabelSetting router, Graph queryGraph, Weighting connectingWeighting, List<Label.Transition> solution, List<String> requestedPathDetails, String connectingVehicle, boolean includeElevation, boolean includeEdges) {
         final List<List<Label.Transition>> partitions = parsePathToPartitions(solution);
 
-        final List<Trip.Leg> legs = new ArrayList<>();
+        List<Trip.Leg> legs = new ArrayList<>();
         EdgeList edges = new EdgeList(tr);
         for (int i = 0; i < partitions.size(); i++) {
             legs.addAll(parsePartitionToLegs(partitions.get(i), router, queryGraph, connectingWeighting, tr, requestedPathDetails, edges, connectingVehicle, includeElevation, includeEdges));
         }
+        return createResponsePath(tr, waypoints, legs, edges, includeElevation);
+    }
 
+    /**
+     * Creates the response path for the given legs. The times of the access and egress legs are shifted so that the
+     * walk ends when the first vehicle departs and begins when the last vehicle arrives.
+     */
+    ResponsePath createResponsePath(Translation tr, PointList waypoints, List<Trip.Leg> legs, EdgeList edges, boolean includeElevation) {
+        legs = new ArrayList<>(legs);
         if (legs.size() > 1 && legs.get(0) instanceof Trip.ConnectingLeg) {
             final Trip.ConnectingLeg accessLeg = (Trip.ConnectingLeg) legs.get(0);
             legs.set(0, new Trip.ConnectingLeg(accessLeg.type, accessLeg.departureLocation, new Date(legs.get(1).getDepartureTime().getTime() - (accessLeg.getArrivalTime().getTime() - accessLeg.getDepartureTime().getTime())),
@@ -202,7 +210,7 @@ class TripFromLabel {
         }).collect(Collectors.toList()));
     }
 
-    private List<List<Label.Transition>> parsePathToPartitions(List<Label.Transition> path) {
+    List<List<Label.Transition>> parsePathToPartitions(List<Label.Transition> path) {
         List<List<Label.Transition>> partitions = new ArrayList<>();
         partitions.add(new ArrayList<>());
         final Iterator<Label.Transition> iterator = path.iterator();
@@ -225,6 +233,7 @@ class TripFromLabel {
         private final GtfsRealtime.TripDescriptor tripDescriptor;
         private final List<Trip.Stop> stops = new ArrayList<>();
         private final GTFSFeed gtfsFeed;
+        private final StopTimeTable stopTimeTable;
         private Instant boardTime;
         private Instant arrivalTimeFromHopEdge;
         private Optional<Instant> updatedArrival;
@@ -235,6 +244,7 @@ class TripFromLabel {
         StopsFromBoardHopDwellEdges(String feedId, GtfsRealtime.TripDescriptor tripDescriptor) {
             this.tripDescriptor = tripDescriptor;
             this.gtfsFeed = gtfsStorage.getGtfsFeeds().get(feedId);
+            this.stopTimeTable = gtfsStorage.getStopTimeTables().get(feedId);
             if (this.tripUpdate != null) {
                 validateTripUpdate(this.tripUpdate);
             }
@@ -245,7 +255,7 @@ class TripFromLabel {
                 case BOARD: {
                     boardTime = Instant.ofEpochMilli(t.label.currentTime);
                     stopSequence = t.edge.getStopSequence();
-                    stopTime = realtimeFeed.getStopTime(gtfsFeed, tripDescriptor, t, boardTime, stopSequence);
+                    stopTime = realtimeFeed.getStopTime(gtfsFeed, stopTimeTable, tripDescriptor, t, boardTime, stopSequence);
                     tripUpdate = realtimeFeed.getTripUpdate(gtfsFeed, tripDescriptor, boardTime).orElse(null);
                     Instant plannedDeparture = Instant.ofEpochMilli(t.label.currentTime);
                     Optional<Instant> updatedDeparture = getDepartureDelay(stopSequence).map(delay -> plannedDeparture.plus(delay, SECONDS));
@@ -258,7 +268,7 @@ class TripFromLabel {
                 }
                 case HOP: {
                     stopSequence = t.edge.getStopSequence();
-                    stopTime = realtimeFeed.getStopTime(gtfsFeed, tripDescriptor, t, boardTime, stopSequence);
+                    stopTime = realtimeFeed.getStopTime(gtfsFeed, stopTimeTable, tripDescriptor, t, boardTime, stopSequence);
                     arrivalTimeFromHopEdge = Instant.ofEpochMilli(t.label.currentTime);
                     updatedArrival = getArrivalDelay(stopSequence).map(delay -> arrivalTimeFromHopEdge.plus(delay, SECONDS));
                     break;
@@ -346,7 +356,7 @@ class TripFromLabel {
     // One could argue that one should never write a parser
     // by hand, because it is always ugly, but use a parser library.
     // The code would then read like a specification of what paths through the graph mean.
-    private List<Trip.Leg> parsePartitionToLegs(List<Label.Transition> path, MultiCriteriaLabelSetting router, Graph graph, Weighting weighting, Translation tr, List<String> requestedPathDetails, EdgeList edges, String connectingVehicle, boolean includeElevation, boolean includeEdges) {
+    List<Trip.Leg> parsePartitionToLegs(List<Label.Transition> path, MultiCriteriaLabelSetting router, Graph graph, Weighting weighting, Translation tr, List<String> requestedPathDetails, EdgeList edges, String connectingVehicle, boolean includeElevation, boolean includeEdges) {
         if (path.size() <= 1) {
             return Collections.emptyList();
         }
@@ -412,7 +422,9 @@ class TripFromLabel {
         } else {
             InstructionList instructions = new InstructionList(tr);
             FlagEncoder encoder = weighting.getFlagEncoder();
-            DecimalEncodedValue penaltyEnc = encoder.getDecimalEncodedValue(EncodingManager.getKey(encoder, "penalty"));
+            // only the bike encoders have a penalty
+            String penaltyKey = EncodingManager.getKey(encoder, "penalty");
+            DecimalEncodedValue penaltyEnc = encoder.hasEncodedValue(penaltyKey) ? encoder.getDecimalEncodedValue(penaltyKey) : null;
             InstructionsFromEdges instructionsFromEdges = new InstructionsFromEdges(graph,
                     weighting, encoder, instructions);
             int prevEdgeId = -1;
@@ -425,7 +437,7 @@ class TripFromLabel {
                 if (includeEdges) {
                     Edge edgeDetail = new Edge(edge.getName(), edge.getDistance(), edge.getGrade(), edge.isReversed(),
                             weighting.calcEdgeMillis(edge, false), weighting.calcEdgeWeight(edge, false),
-                            edge.get(penaltyEnc), edge.fetchWayGeometry(FetchMode.ALL));
+                            penaltyEnc == null ? 0 : edge.get(penaltyEnc), edge.fetchWayGeometry(FetchMode.ALL));
                     edges.add(edgeDetail);
                 }
                 prevEdgeId = edge.getEdge();
@@ -462,7 +474,7 @@ class TripFromLabel {
         }
     }
 
-    private List<Label.Transition> transferPath(int[] skippedEdgesForTransfer, Weighting connectingWeighting, long currentTime, boolean isBike) {
+    List<Label.Transition> transferPath(int[] skippedEdgesForTransfer, Weighting connectingWeighting, long currentTime, boolean isBike) {
         GraphExplorer graphExplorer = new GraphExplorer(graph, gtfsStorage.getPtGraph(), connectingWeighting, gtfsStorage, realtimeFeed, false, true, false, isBike, false, 0);
         return graphExplorer.walkPath(skippedEdgesForTransfer, currentTime);
     }
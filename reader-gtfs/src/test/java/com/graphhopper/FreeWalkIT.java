@@ -24,7 +24,8 @@ import com.graphhopper.util.Helper;
 import com.graphhopper.util.TranslationMap;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
-import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKTReader;
@@ -32,6 +33,7 @@ import org.locationtech.jts.io.WKTReader;
 import java.io.File;
 import java.time.*;
 import java.util.Arrays;
+import java.util.List;
 import java.util.stream.Collectors;
 
 import static com.graphhopper.gtfs.GtfsHelper.time;
@@ -42,14 +44,33 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 public class FreeWalkIT {
 
     private static final String GRAPH_LOC = "target/FreeWalkIT";
+    private static final String GRAPH_LOC_TRANSFER_TABLE = "target/FreeWalkIT-transfer-table";
     private static PtRouter ptRouter;
+    private static PtRouter ptRouterWithTransferTable;
     private static final ZoneId zoneId = ZoneId.of("America/Los_Angeles");
     private static GraphHopperGtfs graphHopperGtfs;
+    private static GraphHopperGtfs graphHopperGtfsWithTransferTable;
 
     @BeforeAll
     public static void init() {
+        GraphHopperConfig ghConfig = createConfig(GRAPH_LOC);
+        graphHopperGtfs = importOrLoad(ghConfig);
+        ptRouter = new PtRouterFreeWalkImpl.Factory(ghConfig, new TranslationMap().doImport(), graphHopperGtfs.getGraphHopperStorage(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage())
+                .createWithoutRealtimeFeed();
+
+        // the same, but with the transfers between stations taken from a table. The limit is shorter than the walks
+        // to the destinations below, which must not be limited by it.
+        GraphHopperConfig transferTableConfig = createConfig(GRAPH_LOC_TRANSFER_TABLE);
+        transferTableConfig.putObject("gtfs.transfer_profiles", "foot");
+        transferTableConfig.putObject("gtfs.max_transfer_table_time_seconds", 120);
+        graphHopperGtfsWithTransferTable = importOrLoad(transferTableConfig);
+        ptRouterWithTransferTable = new PtRouterFreeWalkImpl.Factory(transferTableConfig, new TranslationMap().doImport(), graphHopperGtfsWithTransferTable.getGraphHopperStorage(), graphHopperGtfsWithTransferTable.getLocationIndex(), graphHopperGtfsWithTransferTable.getGtfsStorage())
+                .createWithoutRealtimeFeed();
+    }
+
+    private static GraphHopperConfig createConfig(String graphLocation) {
         GraphHopperConfig ghConfig = new GraphHopperConfig();
-        ghConfig.putObject("graph.location", GRAPH_LOC);
+        ghConfig.putObject("graph.location", graphLocation);
         ghConfig.putObject("datareader.file", "files/beatty.osm");
         ghConfig.putObject("gtfs.file", "files/sample-feed,files/another-sample-feed");
         ghConfig.putObject("gtfs.max_transfer_interpolation_walk_time_seconds", 0);
@@ -60,21 +81,27 @@ public class FreeWalkIT {
         ghConfig.setProfiles(Arrays.asList(
                 new Profile("foot").setVehicle("foot").setWeighting("fastest"),
                 new Profile("car").setVehicle("car").setWeighting("fastest")));
-        Helper.removeDir(new File(GRAPH_LOC));
-        graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+        return ghConfig;
+    }
+
+    private static GraphHopperGtfs importOrLoad(GraphHopperConfig ghConfig) {
+        Helper.removeDir(new File(ghConfig.getString("graph.location", "")));
+        GraphHopperGtfs graphHopperGtfs = new GraphHopperGtfs(ghConfig);
         graphHopperGtfs.init(ghConfig);
         graphHopperGtfs.importOrLoad();
-        ptRouter = new PtRouterFreeWalkImpl.Factory(ghConfig, new TranslationMap().doImport(), graphHopperGtfs.getGraphHopperStorage(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage())
-                .createWithoutRealtimeFeed();
+        return graphHopperGtfs;
     }
 
     @AfterAll
     public static void close() {
         graphHopperGtfs.close();
+        graphHopperGtfsWithTransferTable.close();
     }
 
-    @Test
-    public void testWalkTransferBetweenFeeds() {
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testWalkTransferBetweenFeeds(boolean transferTable) {
+        PtRouter ptRouter = transferTable ? ptRouterWithTransferTable : FreeWalkIT.ptRouter;
         Request ghRequest = new Request(
                 Arrays.asList(
                         new GHStationLocation("JUSTICE_COURT"),
@@ -104,8 +131,10 @@ public class FreeWalkIT {
         assertEquals(time(1, 15), transitSolution.getTime(), "Expected total travel time == scheduled travel time + wait time");
     }
 
-    @Test
-    public void testFastWalking() {
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testFastWalking(boolean transferTable) {
+        PtRouter ptRouter = transferTable ? ptRouterWithTransferTable : FreeWalkIT.ptRouter;
         Request ghRequest = new Request(
                 36.91311729030539, -116.76769495010377,
                 36.91260259593356, -116.76149368286134
@@ -124,6 +153,47 @@ public class FreeWalkIT {
         assertThat(walkSolution.getNumChanges()).isEqualTo(-1);
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"2007-01-01T09:00", "2007-01-01T10:30"})
+    public void testTransferTableGivesSameResults(String departure) {
+        Request ghRequest = new Request(Arrays.asList(
+                new GHStationLocation("JUSTICE_COURT"),
+                new GHStationLocation("DADAN")),
+                LocalDateTime.parse(departure).atZone(zoneId).toInstant());
+        // too short for the walk solution, so we have to walk from MUSEUM to EMSI
+        ghRequest.setLimitStreetTime(Duration.ofMinutes(5));
+        GHResponse response = ptRouter.route(ghRequest);
+        assertSameLegs(response, ptRouterWithTransferTable.route(ghRequest));
+        assertEquals(1, response.getBest().getNumChanges());
+
+        // a destination a few minutes walk behind the last stop, longer than the time limit of the transfer table
+        ghRequest = new Request(36.901, -116.766, 36.9115, -116.7715);
+        ghRequest.setEarliestDepartureTime(LocalDateTime.parse(departure).atZone(zoneId).toInstant());
+        ghRequest.setLimitStreetTime(Duration.ofMinutes(8));
+        assertSameLegs(ptRouter.route(ghRequest), ptRouterWithTransferTable.route(ghRequest));
+    }
+
+    private void assertSameLegs(GHResponse expected, GHResponse actual) {
+        assertFalse(expected.hasErrors(), expected.getErrors().toString());
+        assertFalse(actual.hasErrors(), actual.getErrors().toString());
+        assertEquals(expected.getAll().size(), actual.getAll().size());
+        for (int i = 0; i < expected.getAll().size(); i++) {
+            List<Trip.Leg> expectedLegs = expected.getAll().get(i).getLegs();
+            List<Trip.Leg> actualLegs = actual.getAll().get(i).getLegs();
+            assertEquals(expectedLegs.size(), actualLegs.size());
+            for (int j = 0; j < expectedLegs.size(); j++) {
+                Trip.Leg expectedLeg = expectedLegs.get(j);
+                Trip.Leg actualLeg = actualLegs.get(j);
+                assertEquals(expectedLeg.type, actualLeg.type);
+                assertEquals(expectedLeg.getDepartureTime(), actualLeg.getDepartureTime());
+                assertEquals(expectedLeg.getArrivalTime(), actualLeg.getArrivalTime());
+                assertEquals(expectedLeg.geometry, actualLeg.geometry);
+                if (expectedLeg instanceof Trip.PtLeg)
+                    assertEquals(((Trip.PtLeg) expectedLeg).trip_id, ((Trip.PtLeg) actualLeg).trip_id);
+            }
+        }
+    }
+
     private LineString readWktLineString(String wkt) {
         WKTReader wktReader = new WKTReader();
         LineString expectedGeometry = null;
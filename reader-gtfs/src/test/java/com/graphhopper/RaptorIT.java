@@ -0,0 +1,124 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper;
+
+import com.graphhopper.config.Profile;
+import com.graphhopper.gtfs.*;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.TranslationMap;
+import com.graphhopper.util.details.PathDetailsBuilderFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RaptorIT {
+
+    private static final String GRAPH_LOC = "target/RaptorIT";
+    private static PtRouter ptRouter;
+    private static final ZoneId zoneId = ZoneId.of("America/Los_Angeles");
+    private static GraphHopperGtfs graphHopperGtfs;
+
+    @BeforeAll
+    public static void init() {
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("graph.location", GRAPH_LOC);
+        ghConfig.putObject("gtfs.file", "files/sample-feed");
+        ghConfig.putObject("gtfs.raptor", true);
+        ghConfig.setProfiles(Arrays.asList(
+                new Profile("foot").setVehicle("foot").setWeighting("fastest"),
+                new Profile("car").setVehicle("car").setWeighting("fastest")));
+        Helper.removeDir(new File(GRAPH_LOC));
+        graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+        graphHopperGtfs.init(ghConfig);
+        graphHopperGtfs.importOrLoad();
+        ptRouter = new PtRouterRaptorImpl(ghConfig, new TranslationMap().doImport(), graphHopperGtfs.getGraphHopperStorage(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage(),
+                RealtimeFeed.empty(), new PathDetailsBuilderFactory());
+    }
+
+    @AfterAll
+    public static void close() {
+        graphHopperGtfs.close();
+    }
+
+    private static Request request(String from, String to, LocalDateTime departure) {
+        return new Request(Arrays.asList(new GHStationLocation(from), new GHStationLocation(to)), departure.atZone(zoneId).toInstant());
+    }
+
+    private static LocalDateTime arrival(ResponsePath path) {
+        List<Trip.Leg> legs = path.getLegs();
+        return LocalDateTime.ofInstant(legs.get(legs.size() - 1).getArrivalTime().toInstant(), zoneId);
+    }
+
+    @Test
+    public void testRoute1() {
+        Request ghRequest = request("NADAV", "NANAA", LocalDateTime.of(2007, 1, 1, 0, 0));
+        ghRequest.setIgnoreTransfers(true);
+        GHResponse route = ptRouter.route(ghRequest);
+        assertFalse(route.hasErrors());
+        assertEquals(1, route.getAll().size());
+        assertEquals(LocalDateTime.of(2007, 1, 1, 6, 49), arrival(route.getBest()));
+        Trip.PtLeg ptLeg = (Trip.PtLeg) route.getBest().getLegs().get(0);
+        assertEquals("CITY2", ptLeg.trip_id);
+        assertEquals(Arrays.asList("NADAV", "NANAA"), Arrays.asList(ptLeg.stops.get(0).stop_id, ptLeg.stops.get(1).stop_id));
+    }
+
+    @Test
+    public void testRoute1DoesNotGoAt654() {
+        GHResponse route = ptRouter.route(request("NADAV", "NANAA", LocalDateTime.of(2007, 1, 1, 6, 54)));
+        assertFalse(route.hasErrors());
+        assertEquals(1, route.getAll().size());
+        assertEquals(LocalDateTime.of(2007, 1, 1, 7, 19), arrival(route.getBest()));
+    }
+
+    @Test
+    public void testNoSolutionIfIDontLikeBusses() {
+        Request ghRequest = request("NADAV", "NANAA", LocalDateTime.of(2007, 1, 1, 7, 44));
+        ghRequest.setBlockedRouteTypes(8);
+        GHResponse response = ptRouter.route(ghRequest);
+        assertTrue(response.getAll().isEmpty(), "When I block busses, there is no solution");
+    }
+
+    @Test
+    public void testProfile() {
+        Request ghRequest = request("NADAV", "NANAA", LocalDateTime.of(2007, 1, 1, 6, 0));
+        ghRequest.setProfileQuery(true);
+        ghRequest.setMaxProfileDuration(Duration.ofHours(2));
+        GHResponse response = ptRouter.route(ghRequest);
+        assertFalse(response.hasErrors());
+        // CITY2 leaves NADAV at 6:44, 7:14 and 7:44
+        assertEquals(3, response.getAll().size());
+        assertTrue(response.getAll().stream().allMatch(p -> p.getTime() == Duration.ofMinutes(5).toMillis()));
+    }
+
+    @Test
+    public void testArriveByIsNotSupported() {
+        Request ghRequest = request("NADAV", "NANAA", LocalDateTime.of(2007, 1, 1, 6, 49));
+        ghRequest.setArriveBy(true);
+        assertTrue(ptRouter.route(ghRequest).hasErrors());
+    }
+}
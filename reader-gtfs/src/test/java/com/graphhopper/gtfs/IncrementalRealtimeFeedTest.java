@@ -0,0 +1,180 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import com.google.transit.realtime.GtfsRealtime;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.config.Profile;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.*;
+import java.util.*;
+
+import static com.google.transit.realtime.GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED;
+import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SCHEDULED;
+import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class IncrementalRealtimeFeedTest {
+
+    private static final String GRAPH_LOC = "target/IncrementalRealtimeFeedTest";
+    private static final ZoneId zoneId = ZoneId.of("America/Los_Angeles");
+    private static GraphHopperGtfs graphHopperGtfs;
+    private static Map<String, Transfers> transfers;
+
+    @BeforeAll
+    public static void init() {
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("gtfs.file", "files/sample-feed");
+        ghConfig.putObject("graph.location", GRAPH_LOC);
+        ghConfig.setProfiles(Collections.singletonList(new Profile("foot").setVehicle("foot").setWeighting("fastest")));
+        Helper.removeDir(new File(GRAPH_LOC));
+        graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+        graphHopperGtfs.init(ghConfig);
+        graphHopperGtfs.importOrLoad();
+        GtfsStorage gtfsStorage = graphHopperGtfs.getGtfsStorage();
+        transfers = new HashMap<>();
+        gtfsStorage.getGtfsFeeds().forEach((id, feed) -> transfers.put(id, new Transfers(feed, gtfsStorage.getStopTimeTables().get(id))));
+    }
+
+    @AfterAll
+    public static void close() {
+        graphHopperGtfs.close();
+        Helper.removeDir(new File(GRAPH_LOC));
+    }
+
+    @Test
+    public void testOnlyChangedTripUpdatesAreProcessed() {
+        IncrementalRealtimeFeed incremental = new IncrementalRealtimeFeed(graphHopperGtfs.getGraphHopperStorage(), graphHopperGtfs.getGtfsStorage(), transfers);
+
+        GtfsRealtime.FeedMessage.Builder feedMessage = feedMessage();
+        addDelay(feedMessage, "1", "CITY2", "06:00:00", 3, 600);
+        addSkippedStop(feedMessage, "2", "CITY1", "06:00:00", 2);
+        RealtimeFeed first = incremental.update(Collections.singletonMap("gtfs_0", feedMessage.build()));
+        assertSame(first, incremental.get());
+        assertEquals(0, incremental.getReusedTripUpdates());
+        assertEquals(2, incremental.getCreatedTripUpdates());
+        assertSameFeed(RealtimeFeed.fromProtobuf(graphHopperGtfs.getGraphHopperStorage(), graphHopperGtfs.getGtfsStorage(), transfers, first.feedMessages), first);
+
+        // the skipped stop stays, the delay changes and there is an additional trip
+        feedMessage = feedMessage();
+        addDelay(feedMessage, "1", "CITY2", "06:00:00", 3, 1200);
+        addSkippedStop(feedMessage, "2", "CITY1", "06:00:00", 2);
+        addExtraTrip(feedMessage, "3");
+        RealtimeFeed second = incremental.update(Collections.singletonMap("gtfs_0", feedMessage.build()));
+        assertEquals(1, incremental.getReusedTripUpdates());
+        assertEquals(1, incremental.getCreatedTripUpdates());
+        assertSameFeed(RealtimeFeed.fromProtobuf(graphHopperGtfs.getGraphHopperStorage(), graphHopperGtfs.getGtfsStorage(), transfers, second.feedMessages), second);
+
+        // the previous feed is not modified by an update
+        assertSameFeed(RealtimeFeed.fromProtobuf(graphHopperGtfs.getGraphHopperStorage(), graphHopperGtfs.getGtfsStorage(), transfers, first.feedMessages), first);
+    }
+
+    @Test
+    public void testTripUpdatesWithNewTimestampAreReused() {
+        IncrementalRealtimeFeed incremental = new IncrementalRealtimeFeed(graphHopperGtfs.getGraphHopperStorage(), graphHopperGtfs.getGtfsStorage(), transfers);
+
+        GtfsRealtime.FeedMessage.Builder feedMessage = feedMessage();
+        addDelay(feedMessage, "1", "CITY2", "06:00:00", 3, 600);
+        feedMessage.getEntityBuilder(0).getTripUpdateBuilder().setTimestamp(1000);
+        incremental.update(Collections.singletonMap("gtfs_0", feedMessage.build()));
+        assertEquals(1, incremental.getCreatedTripUpdates());
+
+        // only the timestamp of the trip update changes, like with every poll of a realtime feed
+        feedMessage = feedMessage();
+        addDelay(feedMessage, "1", "CITY2", "06:00:00", 3, 600);
+        feedMessage.getEntityBuilder(0).getTripUpdateBuilder().setTimestamp(1030);
+        RealtimeFeed second = incremental.update(Collections.singletonMap("gtfs_0", feedMessage.build()));
+        assertEquals(1, incremental.getReusedTripUpdates());
+        assertEquals(0, incremental.getCreatedTripUpdates());
+        assertSameFeed(RealtimeFeed.fromProtobuf(graphHopperGtfs.getGraphHopperStorage(), graphHopperGtfs.getGtfsStorage(), transfers, second.feedMessages), second);
+    }
+
+    private static void assertSameFeed(RealtimeFeed expected, RealtimeFeed actual) {
+        Instant now = Instant.ofEpochSecond(expected.feedMessages.get("gtfs_0").getHeader().getTimestamp());
+        PtGraph ptGraph = graphHopperGtfs.getGtfsStorage().getPtGraph();
+        List<PtGraph.PtEdge> edges = new ArrayList<>();
+        for (int edge = 0; edge < ptGraph.getEdgeCount(); edge++)
+            edges.add(ptGraph.edge(edge));
+        assertEquals(expected.getAdditionalEdges().size(), actual.getAdditionalEdges().size());
+        for (int i = 0; i < expected.getAdditionalEdges().size(); i++) {
+            PtGraph.PtEdge e = expected.getAdditionalEdges().get(i), a = actual.getAdditionalEdges().get(i);
+            // the node ids of the departure timelines are not comparable, because both feeds get new ones
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getType(), a.getType());
+            edges.add(a);
+        }
+        for (PtGraph.PtEdge edge : edges) {
+            assertEquals(expected.isBlocked(edge.getId()), actual.isBlocked(edge.getId()));
+            assertEquals(expected.getDelayForBoardEdge(edge, now), actual.getDelayForBoardEdge(edge, now));
+            assertEquals(expected.getDelayForAlightEdge(edge, now), actual.getDelayForAlightEdge(edge, now));
+        }
+    }
+
+    private static GtfsRealtime.FeedMessage.Builder feedMessage() {
+        GtfsRealtime.FeedMessage.Builder feedMessageBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        feedMessageBuilder.setHeader(GtfsRealtime.FeedHeader.newBuilder()
+                .setGtfsRealtimeVersion("1")
+                .setTimestamp(ZonedDateTime.of(LocalDate.of(2007, 1, 1), LocalTime.of(0, 0), zoneId).toEpochSecond()));
+        return feedMessageBuilder;
+    }
+
+    private static void addDelay(GtfsRealtime.FeedMessage.Builder feedMessageBuilder, String id, String tripId, String startTime, int stopSequence, int delay) {
+        feedMessageBuilder.addEntityBuilder()
+                .setId(id)
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId(tripId).setStartTime(startTime))
+                .addStopTimeUpdateBuilder()
+                .setScheduleRelationship(SCHEDULED)
+                .setStopSequence(stopSequence)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(delay))
+                .setDeparture(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(delay));
+    }
+
+    private static void addSkippedStop(GtfsRealtime.FeedMessage.Builder feedMessageBuilder, String id, String tripId, String startTime, int stopSequence) {
+        feedMessageBuilder.addEntityBuilder()
+                .setId(id)
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId(tripId).setStartTime(startTime))
+                .addStopTimeUpdateBuilder()
+                .setStopSequence(stopSequence)
+                .setScheduleRelationship(SKIPPED);
+    }
+
+    private static void addExtraTrip(GtfsRealtime.FeedMessage.Builder feedMessageBuilder, String id) {
+        GtfsRealtime.TripUpdate.Builder extraTripUpdate = feedMessageBuilder.addEntityBuilder()
+                .setId(id)
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setScheduleRelationship(ADDED).setTripId("EXTRA").setRouteId("CITY").setStartTime("06:45:00"));
+        extraTripUpdate.addStopTimeUpdateBuilder()
+                .setStopSequence(1)
+                .setStopId("NADAV")
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setTime(LocalDateTime.of(2007, 1, 1, 6, 45).atZone(zoneId).toEpochSecond()))
+                .setDeparture(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setTime(LocalDateTime.of(2007, 1, 1, 6, 45).atZone(zoneId).toEpochSecond()));
+        extraTripUpdate.addStopTimeUpdateBuilder()
+                .setStopSequence(2)
+                .setStopId("BEATTY_AIRPORT")
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setTime(LocalDateTime.of(2007, 1, 1, 7, 15).atZone(zoneId).toEpochSecond()))
+                .setDeparture(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setTime(LocalDateTime.of(2007, 1, 1, 7, 15).atZone(zoneId).toEpochSecond()));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LabelHeapTest {
+
+    // the handles are indices into this array of times
+    private final long[] times = new long[10_000];
+
+    private LabelHeap createHeap() {
+        return new LabelHeap((a, b) -> Long.compare(times[a], times[b]));
+    }
+
+    @Test
+    public void testPollInOrder() {
+        LabelHeap heap = createHeap();
+        assertTrue(heap.isEmpty());
+        assertThrows(IllegalStateException.class, heap::poll);
+        times[0] = 3;
+        times[1] = 1;
+        times[2] = 2;
+        heap.add(0);
+        heap.add(1);
+        heap.add(2);
+        assertEquals(3, heap.size());
+        assertEquals(1, heap.peek());
+        assertEquals(1, heap.poll());
+        assertEquals(2, heap.poll());
+        assertEquals(0, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        LabelHeap heap = createHeap();
+        times[0] = 1;
+        times[1] = 2;
+        times[2] = 3;
+        heap.add(0);
+        heap.add(1);
+        heap.add(2);
+        assertTrue(heap.remove(1));
+        assertFalse(heap.contains(1));
+        assertFalse(heap.remove(1));
+        assertEquals(0, heap.poll());
+        assertEquals(2, heap.poll());
+        assertTrue(heap.isEmpty());
+        // a removed label can be added again
+        heap.add(1);
+        assertEquals(1, heap.poll());
+        assertThrows(IllegalStateException.class, () -> {
+            heap.add(1);
+            heap.add(1);
+        });
+        // handles beyond the initial capacity
+        times[5000] = 0;
+        heap.add(5000);
+        assertEquals(5000, heap.poll());
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(42);
+        LabelHeap heap = createHeap();
+        PriorityQueue<Integer> reference = new PriorityQueue<>((a, b) -> Long.compare(times[a], times[b]));
+        List<Integer> contained = new ArrayList<>();
+        int nextLabel = 0;
+        for (int i = 0; i < 10_000; i++) {
+            int action = random.nextInt(3);
+            if (action == 0 || contained.isEmpty()) {
+                int label = nextLabel++;
+                times[label] = random.nextInt(1000);
+                heap.add(label);
+                reference.add(label);
+                contained.add(label);
+            } else if (action == 1) {
+                Integer label = contained.remove(random.nextInt(contained.size()));
+                assertTrue(heap.remove(label));
+                reference.remove(label);
+            } else {
+                int polled = heap.poll();
+                assertEquals(times[reference.poll()], times[polled]);
+                contained.remove((Integer) polled);
+            }
+            assertEquals(reference.size(), heap.size());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LabelStoreTest {
+
+    @Test
+    public void testToLabel() {
+        LabelStore store = new LabelStore(1);
+        Label parent = new Label(0, 100, null, new Label.NodeId(0, -1), 0, Label.NO_DEPARTURE_TIME, 0, 0, 0, false, null);
+        Label.NodeId node = new Label.NodeId(3, 4);
+        int first = store.create(1.5, 200, null, node, 1, 150, 30, 7, 5, false, parent);
+        int second = store.create(2.5, 300, null, node, 2, Label.NO_DEPARTURE_TIME, 40, 0, 0, true, parent);
+        assertNotEquals(first, second);
+        assertEquals(2, store.getLabels());
+
+        Label label = store.toLabel(first);
+        assertEquals(1.5, label.edgeWeight);
+        assertEquals(200, label.currentTime);
+        assertSame(node, label.node);
+        assertEquals(1, label.nTransfers);
+        assertEquals(150, label.departureTime);
+        assertEquals(30, label.streetTime);
+        assertEquals(7, label.extraWeight);
+        assertEquals(5, label.residualDelay);
+        assertFalse(label.impossible);
+        assertSame(parent, label.parent);
+
+        assertFalse(store.toLabel(second).hasDepartureTime());
+        assertTrue(store.isImpossible(second));
+    }
+
+    @Test
+    public void testReleasedHandlesAreReused() {
+        LabelStore store = new LabelStore(4);
+        Label.NodeId node = new Label.NodeId(0, -1);
+        int first = store.create(0, 0, null, node, 0, Label.NO_DEPARTURE_TIME, 0, 0, 0, false, null);
+        Label label = store.toLabel(first);
+        store.release(first);
+        assertEquals(0, store.getLabels());
+        for (int i = 0; i < 100; i++) {
+            int handle = store.create(i, i, null, node, 0, Label.NO_DEPARTURE_TIME, 0, 0, 0, false, null);
+            assertEquals(first, handle);
+            assertEquals(i, store.getCurrentTime(handle));
+            store.release(handle);
+        }
+        assertEquals(1, store.getCapacityUsed());
+        // labels created from a handle are not affected when it is reused
+        assertEquals(0, label.currentTime);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RaptorTest {
+    private static final LocalDate START = LocalDate.of(2020, 1, 1);
+    private static final int BUS = 3, RAIL = 2;
+
+    private RaptorTimetable.Builder builder;
+    private int a, b, c, d, e;
+    private int withBikes, withoutBikes;
+
+    @BeforeEach
+    public void setUp() {
+        builder = new RaptorTimetable.Builder();
+        BitSet allDays = new BitSet();
+        allDays.set(0, 366);
+        withBikes = builder.addValidity(new GtfsStorage.Validity(allDays, ZoneOffset.UTC, START, true));
+        withoutBikes = builder.addValidity(new GtfsStorage.Validity(allDays, ZoneOffset.UTC, START, false));
+        a = builder.addStop("gtfs_0", "A");
+        b = builder.addStop("gtfs_0", "B");
+        c = builder.addStop("gtfs_0", "C");
+        d = builder.addStop("gtfs_0", "D");
+        e = builder.addStop("gtfs_0", "E");
+        // A -> B -> C, then B -> D is the fastest way to D, but the direct train is one trip less
+        addTrip(0, "r1", BUS, withBikes, new int[]{a, b, c}, 8 * 60, 8 * 60 + 10, 8 * 60 + 20);
+        addTrip(1, "r2", BUS, withBikes, new int[]{b, d}, 8 * 60 + 15, 8 * 60 + 30);
+        addTrip(2, "r3", RAIL, withoutBikes, new int[]{a, d}, 8 * 60 + 5, 8 * 60 + 40);
+        addTrip(3, "r4", BUS, withBikes, new int[]{e, d}, 8 * 60 + 25, 8 * 60 + 35);
+    }
+
+    private void addTrip(int source, String routeId, int routeType, int validity, int[] stops, int... minutes) {
+        int[] times = new int[minutes.length];
+        for (int i = 0; i < minutes.length; i++)
+            times[i] = minutes[i] * 60;
+        builder.addTrip("gtfs_0", source, routeId, routeType, validity, stops, times, times);
+    }
+
+    private List<Raptor.Journey> route(Raptor raptor, int from, int to, LocalDateTime departure, int profileDuration) {
+        return raptor.route(Collections.singletonList(new Raptor.Access(from, 0)), Collections.singletonList(new Raptor.Access(to, 0)),
+                departure.toInstant(ZoneOffset.UTC), profileDuration);
+    }
+
+    private static long time(int day, int hours, int minutes) {
+        return START.plusDays(day).atTime(hours, minutes).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static List<Long> arrivals(List<Raptor.Journey> journeys) {
+        return journeys.stream().map(j -> j.arrivalTime).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testParetoOptimalJourneys() {
+        RaptorTimetable timetable = builder.build();
+        Raptor raptor = new Raptor(timetable);
+        List<Raptor.Journey> journeys = route(raptor, a, d, START.plusDays(2).atTime(7, 50), 0);
+        assertEquals(2, journeys.size());
+        // the train departs later but needs only one trip
+        assertEquals(time(2, 8, 0), journeys.get(0).departureTime);
+        assertEquals(time(2, 8, 30), journeys.get(0).arrivalTime);
+        assertEquals(2, journeys.get(0).rides.size());
+        assertEquals(time(2, 8, 5), journeys.get(1).departureTime);
+        assertEquals(time(2, 8, 40), journeys.get(1).arrivalTime);
+        assertEquals(1, journeys.get(1).rides.size());
+
+        // the trips are renumbered by pattern
+        Raptor.Ride ride = journeys.get(0).rides.get(1);
+        assertEquals(1, timetable.tripSources[ride.trip]);
+        assertEquals(0, ride.boardPosition);
+        assertEquals(1, ride.alightPosition);
+        assertEquals(-1, ride.footpathBefore);
+    }
+
+    @Test
+    public void testEarliestArrival() {
+        Raptor raptor = new Raptor(builder.build()).setMindTransfers(false);
+        List<Raptor.Journey> journeys = route(raptor, a, d, START.plusDays(2).atTime(7, 50), 0);
+        assertEquals(Collections.singletonList(time(2, 8, 30)), arrivals(journeys));
+    }
+
+    @Test
+    public void testNextDay() {
+        Raptor raptor = new Raptor(builder.build()).setMindTransfers(false);
+        List<Raptor.Journey> journeys = route(raptor, a, d, START.plusDays(2).atTime(9, 0), 0);
+        assertEquals(Collections.singletonList(time(3, 8, 30)), arrivals(journeys));
+    }
+
+    @Test
+    public void testNotValid() {
+        BitSet firstDay = new BitSet();
+        firstDay.set(0);
+        RaptorTimetable.Builder builder = new RaptorTimetable.Builder();
+        int validity = builder.addValidity(new GtfsStorage.Validity(firstDay, ZoneOffset.UTC, START, true));
+        int from = builder.addStop("gtfs_0", "A");
+        int to = builder.addStop("gtfs_0", "B");
+        builder.addTrip("gtfs_0", 0, "r", BUS, validity, new int[]{from, to}, new int[]{3600, 7200}, new int[]{3600, 7200});
+        Raptor raptor = new Raptor(builder.build());
+        assertEquals(Collections.singletonList(time(0, 2, 0)), arrivals(route(raptor, from, to, START.atTime(0, 0), 0)));
+        assertTrue(route(raptor, from, to, START.atTime(1, 1), 0).isEmpty());
+        // trips of the previous service day can still be caught after midnight
+        builder.addTrip("gtfs_0", 1, "r", BUS, validity, new int[]{from, to}, new int[]{25 * 3600, 26 * 3600}, new int[]{25 * 3600, 26 * 3600});
+        raptor = new Raptor(builder.build());
+        assertEquals(Collections.singletonList(time(1, 2, 0)), arrivals(route(raptor, from, to, START.plusDays(1).atTime(0, 30), 0)));
+    }
+
+    @Test
+    public void testBlockedRouteTypes() {
+        Raptor raptor = new Raptor(builder.build()).setBlockedRouteTypes(1 << BUS);
+        List<Raptor.Journey> journeys = route(raptor, a, d, START.plusDays(2).atTime(7, 50), 0);
+        assertEquals(Collections.singletonList(time(2, 8, 40)), arrivals(journeys));
+    }
+
+    @Test
+    public void testBikes() {
+        Raptor raptor = new Raptor(builder.build()).setBikesOnly(true);
+        List<Raptor.Journey> journeys = route(raptor, a, d, START.plusDays(2).atTime(7, 50), 0);
+        assertEquals(Collections.singletonList(time(2, 8, 30)), arrivals(journeys));
+    }
+
+    @Test
+    public void testChangeTimeAndFootpath() {
+        builder.setChangeTime(b, 10 * 60);
+        Raptor raptor = new Raptor(builder.build()).setMindTransfers(false);
+        assertEquals(Collections.singletonList(time(2, 8, 40)), arrivals(route(raptor, a, d, START.plusDays(2).atTime(7, 50), 0)));
+
+        builder.addFootpath(new RaptorTimetable.Footpath(c, e, 3 * 60, null));
+        raptor = new Raptor(builder.build()).setMindTransfers(false);
+        List<Raptor.Journey> journeys = route(raptor, a, d, START.plusDays(2).atTime(7, 50), 0);
+        assertEquals(Collections.singletonList(time(2, 8, 35)), arrivals(journeys));
+        assertEquals(2, journeys.get(0).rides.size());
+        assertTrue(journeys.get(0).rides.get(1).footpathBefore >= 0);
+    }
+
+    @Test
+    public void testBoardingPenalty() {
+        Raptor raptor = new Raptor(builder.build()).setMindTransfers(false)
+                .setBoardingPenaltyByRouteType(routeType -> routeType == BUS ? 60_000L : 0L);
+        List<Raptor.Journey> journeys = route(raptor, a, d, START.plusDays(2).atTime(7, 50), 0);
+        assertEquals(2, journeys.size());
+        assertEquals(time(2, 8, 30), journeys.get(0).arrivalTime);
+        assertEquals(120_000L, journeys.get(0).penalty);
+        assertEquals(time(2, 8, 40), journeys.get(1).arrivalTime);
+        assertEquals(0L, journeys.get(1).penalty);
+    }
+
+    @Test
+    public void testProfile() {
+        for (int hour = 9; hour < 12; hour++)
+            addTrip(10 + hour, "r5", BUS, withBikes, new int[]{a, d}, hour * 60, hour * 60 + 50);
+        Raptor raptor = new Raptor(builder.build()).setMindTransfers(false);
+        List<Raptor.Journey> journeys = route(raptor, a, d, START.plusDays(2).atTime(7, 0), 3 * 60 * 60);
+        // the train at 8:05 is not faster than the bus at 8:00 and departs later, so both are in the profile
+        assertEquals(4, journeys.size());
+        assertEquals(time(2, 8, 0), journeys.get(0).departureTime);
+        assertEquals(time(2, 8, 30), journeys.get(0).arrivalTime);
+        assertEquals(time(2, 8, 5), journeys.get(1).departureTime);
+        assertEquals(time(2, 8, 40), journeys.get(1).arrivalTime);
+        for (int i = 2; i < 4; i++) {
+            assertEquals(time(2, 7 + i, 0), journeys.get(i).departureTime);
+            assertEquals(time(2, 7 + i, 50), journeys.get(i).arrivalTime);
+        }
+    }
+
+    @Test
+    public void testOvertakingTripsAreSplitIntoPatterns() {
+        // the express departs later but arrives earlier, so it cannot be in the same pattern
+        addTrip(20, "r6", BUS, withBikes, new int[]{a, b, c}, 9 * 60, 10 * 60, 11 * 60);
+        addTrip(21, "r6", BUS, withBikes, new int[]{a, b, c}, 9 * 60 + 10, 9 * 60 + 20, 9 * 60 + 30);
+        RaptorTimetable timetable = builder.build();
+        assertEquals(6, timetable.getPatternCount());
+        Raptor raptor = new Raptor(timetable).setMindTransfers(false);
+        assertEquals(Collections.singletonList(time(2, 9, 30)), arrivals(route(raptor, a, c, START.plusDays(2).atTime(8, 30), 0)));
+    }
+
+    @Test
+    public void testInvalidTrip() {
+        assertThrows(IllegalArgumentException.class, () -> builder.addTrip("gtfs_0", 30, "r", BUS, withBikes, new int[]{a, b}, new int[]{60, 30}, new int[]{60, 30}));
+        assertThrows(IllegalArgumentException.class, () -> builder.addTrip("gtfs_0", 30, "r", BUS, 7, new int[]{a, b}, new int[]{0, 30}, new int[]{0, 30}));
+    }
+}
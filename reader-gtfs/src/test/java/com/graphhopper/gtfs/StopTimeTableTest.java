@@ -0,0 +1,79 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.StopTime;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.graphhopper.storage.DAType.MMAP;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StopTimeTableTest {
+    private static final String dir = "./target/stop-time-table-gh";
+
+    @AfterEach
+    public void tearDown() {
+        Helper.removeDir(new File(dir));
+    }
+
+    @Test
+    public void testStopTimesEqualFeed() throws IOException {
+        GTFSFeed feed = new GTFSFeed();
+        feed.loadFromZipfileOrDirectory(new File("files/sample-feed"), "");
+        StopTimeTable created = new StopTimeTable(new GHDirectory(dir, MMAP).create(), "gtfs_0");
+        created.create(feed);
+        created.flush();
+        created.close();
+
+        StopTimeTable table = new StopTimeTable(new GHDirectory(dir, MMAP), "gtfs_0");
+        assertTrue(table.loadExisting());
+        assertEquals(feed.stop_times.size(), table.getRowCount());
+        assertEquals(feed.stop_times.values().stream().map(st -> st.trip_id).distinct().count(), table.getTripCount());
+        for (StopTime expected : feed.stop_times.values()) {
+            int trip = table.getTrip(expected.trip_id);
+            assertEquals(expected.trip_id, table.getTripId(trip));
+            assertEquals(feed.trips.get(expected.trip_id).route_id, table.getRouteId(trip));
+            int row = table.getRow(trip, expected.stop_sequence);
+            assertTrue(row >= table.getFirstRow(trip) && row < table.getEndRow(trip));
+            assertEquals(expected.stop_id, table.getStopId(row));
+            assertEquals(expected.arrival_time, table.getArrivalTime(row));
+            assertEquals(expected.departure_time, table.getDepartureTime(row));
+
+            StopTime stopTime = table.getStopTime(expected.trip_id, expected.stop_sequence);
+            assertEquals(expected.stop_id, stopTime.stop_id);
+            assertEquals(expected.stop_sequence, stopTime.stop_sequence);
+        }
+        assertEquals(-1, table.getTrip("no_such_trip"));
+        assertNull(table.getStopTime("AB1", 1000));
+
+        Map<String, Set<String>> routesByStop = feed.stop_times.values().stream()
+                .collect(Collectors.groupingBy(st -> st.stop_id, Collectors.mapping(st -> feed.trips.get(st.trip_id).route_id, Collectors.toSet())));
+        assertEquals(routesByStop, table.getRoutesByStop());
+        table.close();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.graphhopper.storage.DAType.MMAP;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StopTransferTableTest {
+    private static final String dir = "./target/stop-transfer-table-gh";
+
+    @AfterEach
+    public void tearDown() {
+        Helper.removeDir(new File(dir));
+    }
+
+    @Test
+    public void testTransfersInBothDirections() {
+        StopTransferTable created = new StopTransferTable(new GHDirectory(dir, MMAP).create(), "foot");
+        created.create(10, 120_000, Arrays.asList(
+                new StopTransferTable.StreetTransfer(7, 70, 2, 20, 60_000, 60.5, new int[]{4, 6}),
+                new StopTransferTable.StreetTransfer(2, 20, 7, 70, 50_000, 50, new int[]{7, 5}),
+                new StopTransferTable.StreetTransfer(2, 20, 3, 30, 10_000, 10, new int[]{8})));
+        created.flush();
+        created.close();
+
+        StopTransferTable table = new StopTransferTable(new GHDirectory(dir, MMAP), "foot");
+        assertTrue(table.loadExisting());
+        assertEquals(3, table.getTransferCount());
+        assertEquals(120_000, table.getMaxMillis());
+
+        // from station 2, ordered by the adjacent station
+        int first = table.getFirstTransfer(2, false);
+        assertEquals(2, table.getEndTransfer(2, false) - first);
+        assertEquals(3, table.getAdjNode(first));
+        assertEquals(30, table.getAdjStreetNode(first));
+        assertEquals(10_000, table.getMillis(first));
+        assertArrayEquals(new int[]{8}, table.getEdgeKeys(first));
+        assertEquals(7, table.getAdjNode(first + 1));
+        assertArrayEquals(new int[]{7, 5}, table.getEdgeKeys(first + 1));
+
+        // to station 2
+        first = table.getFirstTransfer(2, true);
+        assertEquals(1, table.getEndTransfer(2, true) - first);
+        assertEquals(7, table.getAdjNode(first));
+        assertEquals(70, table.getAdjStreetNode(first));
+        assertEquals(60_000, table.getMillis(first));
+        assertEquals(60.5, table.getWeight(first), 1.e-6);
+        // the edges are in the direction of travel
+        assertArrayEquals(new int[]{4, 6}, table.getEdgeKeys(first));
+
+        assertEquals(table.getFirstTransfer(3, false), table.getEndTransfer(3, false));
+        assertEquals(1, table.getEndTransfer(3, true) - table.getFirstTransfer(3, true));
+        // nodes added after the import, e.g. for realtime updates, have no transfers
+        assertEquals(table.getFirstTransfer(10, false), table.getEndTransfer(10, false));
+        table.close();
+    }
+
+    @Test
+    public void testInvalidTransfers() {
+        assertThrows(IllegalArgumentException.class, () -> new StopTransferTable.StreetTransfer(1, 10, 2, 20, 1000, 1, new int[0]));
+        StopTransferTable table = new StopTransferTable(new GHDirectory(dir, MMAP).create(), "foot");
+        assertThrows(IllegalArgumentException.class, () -> table.create(2, 120_000, Collections.singletonList(new StopTransferTable.StreetTransfer(1, 10, 2, 20, 1000, 1, new int[]{1}))));
+        assertThrows(IllegalArgumentException.class, () -> table.create(10, 500, Collections.singletonList(new StopTransferTable.StreetTransfer(1, 10, 2, 20, 1000, 1, new int[]{1}))));
+        table.close();
+    }
+}
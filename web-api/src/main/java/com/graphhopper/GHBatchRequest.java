@@ -0,0 +1,87 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request object to calculate many independent routes for the same profile at once. Every route consists of at least
+ * two points (the start, optional via points and the destination). All routes share the profile, the hints and the
+ * snap preventions.
+ */
+public class GHBatchRequest {
+    private List<List<GHPoint>> routes = new ArrayList<>();
+    private String profile = "";
+    private final PMap hints = new PMap();
+    private List<String> snapPreventions = new ArrayList<>();
+
+    @JsonProperty("routes")
+    public GHBatchRequest setRoutes(List<List<GHPoint>> routes) {
+        this.routes = routes;
+        return this;
+    }
+
+    public List<List<GHPoint>> getRoutes() {
+        return routes;
+    }
+
+    public GHBatchRequest addRoute(List<GHPoint> points) {
+        routes.add(points);
+        return this;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public GHBatchRequest setProfile(String profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    public PMap getHints() {
+        return hints;
+    }
+
+    @JsonAnySetter
+    public GHBatchRequest putHint(String fieldName, Object value) {
+        this.hints.putObject(fieldName, value);
+        return this;
+    }
+
+    @JsonProperty("snap_preventions")
+    public GHBatchRequest setSnapPreventions(List<String> snapPreventions) {
+        this.snapPreventions = snapPreventions;
+        return this;
+    }
+
+    public List<String> getSnapPreventions() {
+        return snapPreventions;
+    }
+
+    @Override
+    public String toString() {
+        return "routes: " + routes.size() + ", profile: " + profile;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.PMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wrapper containing one {@link GHResponse} per route of a {@link GHBatchRequest}, in the same order. Errors that only
+ * concern a single route (e.g. a point that could not be found) are added to the response of this route, errors that
+ * concern the whole batch are added to this object.
+ */
+public class GHBatchResponse {
+    private final List<Throwable> errors = new ArrayList<>(4);
+    private final PMap hints = new PMap();
+    private final List<GHResponse> responses;
+
+    public GHBatchResponse() {
+        this(new ArrayList<>());
+    }
+
+    public GHBatchResponse(List<GHResponse> responses) {
+        this.responses = responses;
+    }
+
+    public List<GHResponse> getResponses() {
+        return responses;
+    }
+
+    public PMap getHints() {
+        return hints;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public List<Throwable> getErrors() {
+        return errors;
+    }
+
+    public GHBatchResponse addError(Throwable error) {
+        errors.add(error);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        if (hasErrors())
+            return "errors: " + errors;
+        return "responses: " + responses.size();
+    }
+}
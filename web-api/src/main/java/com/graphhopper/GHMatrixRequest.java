@@ -0,0 +1,132 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request object to calculate the weights, times and/or distances between many 'from' and many 'to' points with
+ * GraphHopper.
+ */
+public class GHMatrixRequest {
+    private List<GHPoint> fromPoints = new ArrayList<>();
+    private List<GHPoint> toPoints = new ArrayList<>();
+    private String profile = "";
+    private final PMap hints = new PMap();
+    private List<String> snapPreventions = new ArrayList<>();
+    private List<String> outArrays = new ArrayList<>();
+    private boolean failFast = true;
+
+    /**
+     * Uses the given points as 'from' and as 'to' points, i.e. calculates a symmetric matrix
+     */
+    @JsonProperty("points")
+    public GHMatrixRequest setPoints(List<GHPoint> points) {
+        this.fromPoints = points;
+        this.toPoints = points;
+        return this;
+    }
+
+    @JsonProperty("from_points")
+    public GHMatrixRequest setFromPoints(List<GHPoint> fromPoints) {
+        this.fromPoints = fromPoints;
+        return this;
+    }
+
+    public List<GHPoint> getFromPoints() {
+        return fromPoints;
+    }
+
+    @JsonProperty("to_points")
+    public GHMatrixRequest setToPoints(List<GHPoint> toPoints) {
+        this.toPoints = toPoints;
+        return this;
+    }
+
+    public List<GHPoint> getToPoints() {
+        return toPoints;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public GHMatrixRequest setProfile(String profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    public PMap getHints() {
+        return hints;
+    }
+
+    @JsonAnySetter
+    public GHMatrixRequest putHint(String fieldName, Object value) {
+        this.hints.putObject(fieldName, value);
+        return this;
+    }
+
+    @JsonProperty("snap_preventions")
+    public GHMatrixRequest setSnapPreventions(List<String> snapPreventions) {
+        this.snapPreventions = snapPreventions;
+        return this;
+    }
+
+    public List<String> getSnapPreventions() {
+        return snapPreventions;
+    }
+
+    /**
+     * @param outArrays the arrays that should be calculated, possible values are 'weights', 'times' and 'distances'.
+     *                  If empty only the weights are returned.
+     */
+    @JsonProperty("out_arrays")
+    public GHMatrixRequest setOutArrays(List<String> outArrays) {
+        this.outArrays = outArrays;
+        return this;
+    }
+
+    public List<String> getOutArrays() {
+        return outArrays;
+    }
+
+    /**
+     * @param failFast if true the request fails if any of the from/to pairs are not connected. Otherwise, the result
+     *                 contains infinite weights for these pairs.
+     */
+    @JsonProperty("fail_fast")
+    public GHMatrixRequest setFailFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
+    public boolean getFailFast() {
+        return failFast;
+    }
+
+    @Override
+    public String toString() {
+        return "from_points: " + fromPoints.size() + ", to_points: " + toPoints.size() + ", profile: " + profile;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.PMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wrapper containing the weights, times and distances between the from and to points of a {@link GHMatrixRequest}.
+ * The first index of each array is the index of the from point and the second is the index of the to point. For
+ * pairs that are not connected the weight is infinite.
+ */
+public class GHMatrixResponse {
+    private final List<Throwable> errors = new ArrayList<>(4);
+    private final PMap hints = new PMap();
+    private double[][] weights;
+    private long[][] times;
+    private double[][] distances;
+
+    public GHMatrixResponse() {
+    }
+
+    public GHMatrixResponse(double[][] weights, long[][] times, double[][] distances) {
+        this.weights = weights;
+        this.times = times;
+        this.distances = distances;
+    }
+
+    public double[][] getWeights() {
+        return weights;
+    }
+
+    /**
+     * @return the times in milliseconds
+     */
+    public long[][] getTimes() {
+        return times;
+    }
+
+    /**
+     * @return the distances in meters
+     */
+    public double[][] getDistances() {
+        return distances;
+    }
+
+    public boolean isConnected(int from, int to) {
+        return Double.isFinite(weights[from][to]);
+    }
+
+    public PMap getHints() {
+        return hints;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public List<Throwable> getErrors() {
+        return errors;
+    }
+
+    public GHMatrixResponse addError(Throwable error) {
+        errors.add(error);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        if (hasErrors())
+            return "errors: " + errors;
+        return "from_points: " + weights.length + ", to_points: " + (weights.length == 0 ? 0 : weights[0].length);
+    }
+}
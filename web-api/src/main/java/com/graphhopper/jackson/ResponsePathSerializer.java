@@ -18,18 +18,27 @@
 
 package com.graphhopper.jackson;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GHResponse;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.InstructionList;
 import com.graphhopper.util.PointList;
+import com.graphhopper.util.details.PathDetail;
 
+import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Code which constructs the JSON response of the routing API, including polyline encoding.
@@ -126,4 +135,133 @@ public class ResponsePathSerializer {
         }
         return json;
     }
+
+    /**
+     * Same as {@link #jsonObject} but the returned object writes the JSON directly into the JsonGenerator when it is
+     * serialized, i.e. no JSON tree is built in memory. The points, instructions and path details are written straight
+     * from the PointList, InstructionList and PathDetail lists. This reduces the allocations for long routes
+     * considerably and the response can be streamed to the client.
+     */
+    public static JsonSerializable jsonStream(GHResponse ghRsp, boolean enableInstructions, boolean includeEdges, boolean calcPoints, boolean enableElevation, boolean pointsEncoded, float took) {
+        return new JsonSerializable.Base() {
+            @Override
+            public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+                writeJson(gen, ghRsp, enableInstructions, includeEdges, calcPoints, enableElevation, pointsEncoded, took);
+            }
+
+            @Override
+            public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+                serialize(gen, serializers);
+            }
+        };
+    }
+
+    public static void writeJson(JsonGenerator gen, GHResponse ghRsp, boolean enableInstructions, boolean includeEdges, boolean calcPoints, boolean enableElevation, boolean pointsEncoded, float took) throws IOException {
+        gen.writeStartObject();
+        gen.writeObjectField("hints", ghRsp.getHints().toMap());
+        gen.writeObjectField("debug", ghRsp.getDebugInfo().toMap());
+        gen.writeObjectField("errors", ghRsp.getErrors());
+        gen.writeObjectFieldStart("info");
+        gen.writeObjectField("copyrights", COPYRIGHTS);
+        gen.writeNumberField("took", Math.round(took));
+        gen.writeEndObject();
+        gen.writeArrayFieldStart("paths");
+        for (ResponsePath p : ghRsp.getAll()) {
+            gen.writeStartObject();
+            gen.writeNumberField("distance", Helper.round(p.getDistance(), 3));
+            gen.writeNumberField("weight", Helper.round6(p.getRouteWeight()));
+            gen.writeNumberField("time", p.getTime());
+            gen.writeNumberField("transfers", p.getNumChanges());
+            if (!p.getDescription().isEmpty()) {
+                gen.writeObjectField("description", p.getDescription());
+            }
+            if (calcPoints) {
+                gen.writeBooleanField("points_encoded", pointsEncoded);
+                gen.writeObjectField("bbox", p.calcBBox2D());
+                gen.writeFieldName("points");
+                writePoints(gen, p.getPoints(), enableElevation, pointsEncoded);
+                if (enableInstructions) {
+                    gen.writeFieldName("instructions");
+                    writeInstructions(gen, p.getInstructions());
+                }
+                if (includeEdges) {
+                    gen.writeObjectField("edges", p.getEdges());
+                }
+                gen.writeObjectField("legs", p.getLegs());
+                gen.writeObjectFieldStart("details");
+                for (Map.Entry<String, List<PathDetail>> entry : p.getPathDetails().entrySet()) {
+                    gen.writeArrayFieldStart(entry.getKey());
+                    for (PathDetail detail : entry.getValue()) {
+                        gen.writeObject(detail);
+                    }
+                    gen.writeEndArray();
+                }
+                gen.writeEndObject();
+                gen.writeNumberField("ascend", p.getAscend());
+                gen.writeNumberField("descend", p.getDescend());
+            }
+            gen.writeFieldName("snapped_waypoints");
+            writePoints(gen, p.getWaypoints(), enableElevation, pointsEncoded);
+            if (p.getFare() != null) {
+                gen.writeStringField("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(p.getFare()));
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    /**
+     * Writes the points either as encoded polyline or as GeoJSON LineString, equivalent to
+     * {@link PointList#toLineString(boolean)} but without creating the intermediate geometry.
+     */
+    private static void writePoints(JsonGenerator gen, PointList points, boolean enableElevation, boolean pointsEncoded) throws IOException {
+        if (pointsEncoded) {
+            gen.writeString(encodePolyline(points, enableElevation, 1e5));
+            return;
+        }
+        gen.writeStartObject();
+        gen.writeStringField("type", "LineString");
+        gen.writeArrayFieldStart("coordinates");
+        // special case as just 1 point is not supported in the specification #1412
+        int size = points.size() == 1 ? 2 : points.size();
+        for (int i = 0; i < size; i++) {
+            int index = Math.min(i, points.size() - 1);
+            gen.writeStartArray();
+            gen.writeNumber(Helper.round6(points.getLon(index)));
+            gen.writeNumber(Helper.round6(points.getLat(index)));
+            if (enableElevation)
+                gen.writeNumber(Helper.round2(points.getEle(index)));
+            gen.writeEndArray();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    /**
+     * Writes the same JSON as {@link InstructionListSerializer} but without the intermediate maps.
+     */
+    private static void writeInstructions(JsonGenerator gen, InstructionList instructions) throws IOException {
+        gen.writeStartArray();
+        int pointsIndex = 0;
+        for (Instruction instruction : instructions) {
+            gen.writeStartObject();
+            gen.writeStringField("text", Helper.firstBig(instruction.getTurnDescription(instructions.getTr())));
+            gen.writeStringField("street_name", instruction.getName());
+            gen.writeNumberField("time", instruction.getTime());
+            gen.writeNumberField("distance", Helper.round(instruction.getDistance(), 3));
+            gen.writeNumberField("sign", instruction.getSign());
+            for (Map.Entry<String, Object> entry : instruction.getExtraInfoJSON().entrySet()) {
+                gen.writeObjectField(entry.getKey(), entry.getValue());
+            }
+            int tmpIndex = pointsIndex + instruction.getLength();
+            gen.writeArrayFieldStart("interval");
+            gen.writeNumber(pointsIndex);
+            gen.writeNumber(tmpIndex);
+            gen.writeEndArray();
+            pointsIndex = tmpIndex;
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
 }
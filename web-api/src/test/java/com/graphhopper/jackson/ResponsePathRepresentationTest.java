@@ -17,10 +17,19 @@
  */
 package com.graphhopper.jackson;
 
-import com.graphhopper.util.Helper;
-import com.graphhopper.util.PointList;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
@@ -79,4 +88,86 @@ public class ResponsePathRepresentationTest {
     public void testEncode1e6() {
         assertEquals("ohdfzAgt}bVoEL", ResponsePathSerializer.encodePolyline(Helper.createPointList(47.827608, 12.123476, 47.827712, 12.123469), false, 1e6));
     }
+
+    @Test
+    public void testStreamingEqualsTree() throws Exception {
+        ObjectMapper objectMapper = Jackson.newObjectMapper();
+        for (boolean elevation : new boolean[]{false, true}) {
+            for (boolean pointsEncoded : new boolean[]{false, true}) {
+                GHResponse rsp = createResponse(elevation);
+                JsonNode tree = objectMapper.readTree(objectMapper.writeValueAsString(ResponsePathSerializer.jsonObject(rsp, true, false, true, elevation, pointsEncoded, 12.4f)));
+                JsonNode streamed = objectMapper.readTree(objectMapper.writeValueAsString(ResponsePathSerializer.jsonStream(rsp, true, false, true, elevation, pointsEncoded, 12.4f)));
+                assertEquals(tree, streamed);
+            }
+        }
+
+        // a single point is duplicated for the GeoJSON LineString
+        GHResponse rsp = new GHResponse();
+        ResponsePath path = new ResponsePath();
+        path.setPoints(Helper.createPointList(52.51, 13.35));
+        path.setWaypoints(Helper.createPointList(52.51, 13.35));
+        rsp.add(path);
+        JsonNode tree = objectMapper.readTree(objectMapper.writeValueAsString(ResponsePathSerializer.jsonObject(rsp, false, false, true, false, false, 1)));
+        JsonNode streamed = objectMapper.readTree(objectMapper.writeValueAsString(ResponsePathSerializer.jsonStream(rsp, false, false, true, false, false, 1)));
+        assertEquals(tree, streamed);
+        assertEquals(2, streamed.get("paths").get(0).get("points").get("coordinates").size());
+    }
+
+    private static GHResponse createResponse(boolean elevation) {
+        PointList points = elevation
+                ? Helper.createPointList3D(52.514, 13.349, 34.1, 52.5135, 13.35, 35.2, 52.514, 13.351, 36)
+                : Helper.createPointList(52.514, 13.349, 52.5135, 13.35, 52.514, 13.351);
+        ResponsePath path = new ResponsePath();
+        path.setPoints(points);
+        path.setWaypoints(elevation
+                ? Helper.createPointList3D(52.514, 13.349, 34.1, 52.514, 13.351, 36)
+                : Helper.createPointList(52.514, 13.349, 52.514, 13.351));
+        path.setDistance(123.4567).setTime(45_000).setRouteWeight(50.1234567).setAscend(1.9).setDescend(0);
+
+        InstructionList il = new InstructionList(TR);
+        PointList pl = points.clone(false);
+        pl.removeLastPoint();
+        il.add(new Instruction(Instruction.CONTINUE_ON_STREET, "street", pl).setDistance(123.4567).setTime(45_000));
+        RoundaboutInstruction roundabout = new RoundaboutInstruction(Instruction.USE_ROUNDABOUT, "streetname", points.clone(false))
+                .setRadian(-Math.PI + 1)
+                .setExitNumber(2)
+                .setExited();
+        il.add(roundabout);
+        path.setInstructions(il);
+
+        PathDetail speed = new PathDetail(50.0);
+        speed.setFirst(0);
+        speed.setLast(1);
+        PathDetail name = new PathDetail("street");
+        name.setFirst(1);
+        name.setLast(2);
+        path.addPathDetails(Collections.singletonMap("details", Arrays.asList(speed, name)));
+
+        GHResponse rsp = new GHResponse();
+        rsp.add(path);
+        rsp.getHints().putObject("visited_nodes.sum", 10);
+        return rsp;
+    }
+
+    private static final Translation TR = new Translation() {
+        @Override
+        public String tr(String key, Object... params) {
+            return key;
+        }
+
+        @Override
+        public Map<String, String> asMap() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Locale getLocale() {
+            return Locale.US;
+        }
+
+        @Override
+        public String getLanguage() {
+            return "en";
+        }
+    };
 }
@@ -18,6 +18,7 @@
 
 package com.graphhopper.http;
 
+import com.codahale.metrics.Gauge;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
@@ -30,6 +31,8 @@ import com.graphhopper.isochrone.algorithm.Triangulator;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.resources.*;
 import com.graphhopper.routing.ProfileResolver;
+import com.graphhopper.routing.RouteCache;
+import com.graphhopper.routing.SearchStatePool;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.index.LocationIndex;
@@ -229,11 +232,15 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         final GraphHopperManaged graphHopperManaged = new GraphHopperManaged(configuration.getGraphHopperConfiguration());
         environment.lifecycle().manage(graphHopperManaged);
         final GraphHopper graphHopper = graphHopperManaged.getGraphHopper();
+        final MapMatchingSessions mapMatchingSessions = new MapMatchingSessions(
+                configuration.getGraphHopperConfiguration().getInt("map_matching.online.max_sessions", 1000),
+                configuration.getGraphHopperConfiguration().getLong("map_matching.online.session_timeout", 300) * 1000);
         environment.jersey().register(new AbstractBinder() {
             @Override
             protected void configure() {
                 bind(configuration.getGraphHopperConfiguration()).to(GraphHopperConfig.class);
                 bind(graphHopper).to(GraphHopper.class);
+                bind(mapMatchingSessions).to(MapMatchingSessions.class);
 
                 bind(new JTSTriangulator(graphHopper.getRouterConfig())).to(Triangulator.class);
                 bindFactory(PathDetailsBuilderFactoryFactory.class).to(PathDetailsBuilderFactory.class);
@@ -250,6 +257,8 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(MVTResource.class);
         environment.jersey().register(NearestResource.class);
         environment.jersey().register(RouteResource.class);
+        environment.jersey().register(MatrixResource.class);
+        environment.jersey().register(BatchRouteResource.class);
         environment.jersey().register(IsochroneResource.class);
         environment.jersey().register(MapMatchingResource.class);
         if (configuration.getGraphHopperConfiguration().has("gtfs.file")) {
@@ -261,6 +270,8 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
                 protected void configure() {
                     if (configuration.getGraphHopperConfiguration().getBool("gtfs.free_walk", false)) {
                         bind(PtRouterFreeWalkImpl.class).to(PtRouter.class);
+                    } else if (configuration.getGraphHopperConfiguration().getBool("gtfs.raptor", false)) {
+                        bind(PtRouterRaptorImpl.class).to(PtRouter.class);
                     } else {
                         bind(PtRouterImpl.class).to(PtRouter.class);
                     }
@@ -274,6 +285,24 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(SPTResource.class);
         environment.jersey().register(I18NResource.class);
         environment.jersey().register(InfoResource.class);
+        RouteCache routeCache = graphHopper.getRouteCache();
+        if (routeCache != null) {
+            environment.metrics().register("graphhopper.route_cache.hits", (Gauge<Long>) routeCache::getHits);
+            environment.metrics().register("graphhopper.route_cache.misses", (Gauge<Long>) routeCache::getMisses);
+            environment.metrics().register("graphhopper.route_cache.evictions", (Gauge<Long>) routeCache::getEvictions);
+            environment.metrics().register("graphhopper.route_cache.size", (Gauge<Integer>) routeCache::getSize);
+            environment.metrics().register("graphhopper.route_cache.points", (Gauge<Long>) routeCache::getPoints);
+        }
+        environment.metrics().register("graphhopper.map_matching_sessions.created", (Gauge<Long>) mapMatchingSessions::getCreated);
+        environment.metrics().register("graphhopper.map_matching_sessions.evictions", (Gauge<Long>) mapMatchingSessions::getEvictions);
+        environment.metrics().register("graphhopper.map_matching_sessions.size", (Gauge<Integer>) mapMatchingSessions::getSize);
+        SearchStatePool searchStatePool = graphHopper.getSearchStatePool();
+        if (searchStatePool != null) {
+            environment.metrics().register("graphhopper.search_state_pool.leases", (Gauge<Long>) searchStatePool::getLeases);
+            environment.metrics().register("graphhopper.search_state_pool.created", (Gauge<Long>) searchStatePool::getCreated);
+            environment.metrics().register("graphhopper.search_state_pool.reused", (Gauge<Long>) searchStatePool::getReused);
+            environment.metrics().register("graphhopper.search_state_pool.idle", (Gauge<Integer>) searchStatePool::getIdle);
+        }
         environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopper));
         environment.jersey().register(environment.healthChecks());
         environment.jersey().register(HealthCheckResource.class);
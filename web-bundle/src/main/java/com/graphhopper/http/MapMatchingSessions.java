@@ -0,0 +1,128 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.matching.OnlineMapMatching;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The open sessions of the online map matching API. A session expires if it is not used for the given time. If there
+ * are too many sessions, the least recently used one is removed. Thread safe, but the OnlineMapMatching instances are
+ * not, so the callers have to synchronize on them.
+ */
+public class MapMatchingSessions {
+    private final int maxSessions;
+    private final long timeoutMillis;
+    private final LinkedHashMap<String, Session> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxSessions   the maximum number of open sessions
+     * @param timeoutMillis the time after the last request after which a session expires
+     */
+    public MapMatchingSessions(int maxSessions, long timeoutMillis) {
+        if (maxSessions <= 0)
+            throw new IllegalArgumentException("maxSessions must be positive, but was: " + maxSessions);
+        if (timeoutMillis <= 0)
+            throw new IllegalArgumentException("timeoutMillis must be positive, but was: " + timeoutMillis);
+        this.maxSessions = maxSessions;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return the id of the new session
+     */
+    public String add(OnlineMapMatching onlineMapMatching) {
+        String id = UUID.randomUUID().toString();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            removeExpired(now);
+            map.put(id, new Session(onlineMapMatching, now));
+            Iterator<Session> iter = map.values().iterator();
+            while (map.size() > maxSessions && iter.hasNext()) {
+                iter.next();
+                iter.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        created.incrementAndGet();
+        return id;
+    }
+
+    /**
+     * @return the session with the given id or null if there is no such session or if it expired
+     */
+    public synchronized OnlineMapMatching get(String id) {
+        long now = System.currentTimeMillis();
+        removeExpired(now);
+        Session session = map.get(id);
+        if (session == null)
+            return null;
+        session.lastAccess = now;
+        return session.onlineMapMatching;
+    }
+
+    /**
+     * @return the removed session or null if there is no such session or if it expired
+     */
+    public synchronized OnlineMapMatching remove(String id) {
+        removeExpired(System.currentTimeMillis());
+        Session session = map.remove(id);
+        return session == null ? null : session.onlineMapMatching;
+    }
+
+    private void removeExpired(long now) {
+        // the map is in access order, so the sessions which were not used for the longest time come first
+        Iterator<Map.Entry<String, Session>> iter = map.entrySet().iterator();
+        while (iter.hasNext()) {
+            Session session = iter.next().getValue();
+            if (now - session.lastAccess <= timeoutMillis)
+                break;
+            iter.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public synchronized int getSize() {
+        return map.size();
+    }
+
+    public long getCreated() {
+        return created.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private static class Session {
+        final OnlineMapMatching onlineMapMatching;
+        long lastAccess;
+
+        Session(OnlineMapMatching onlineMapMatching, long lastAccess) {
+            this.onlineMapMatching = onlineMapMatching;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
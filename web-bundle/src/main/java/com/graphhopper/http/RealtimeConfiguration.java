@@ -20,6 +20,7 @@ package com.graphhopper.http;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.client.HttpClientConfiguration;
+import io.dropwizard.util.Duration;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -36,6 +37,16 @@ public class RealtimeConfiguration {
     @JsonProperty
     private List<FeedConfiguration> feeds = new ArrayList<>();
 
+    @NotNull
+    @JsonProperty("refresh_interval")
+    private Duration refreshInterval = Duration.minutes(1);
+
+    /**
+     * If true, only the trip updates that changed since the last refresh are processed.
+     */
+    @JsonProperty
+    private boolean incremental = false;
+
     public List<FeedConfiguration> getFeeds() {
         return feeds;
     }
@@ -43,4 +54,12 @@ public class RealtimeConfiguration {
     public HttpClientConfiguration getHttpClientConfiguration() {
         return httpClient;
     }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
 }
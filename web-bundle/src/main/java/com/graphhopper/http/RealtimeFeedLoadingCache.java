@@ -26,6 +26,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableFutureTask;
 import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.gtfs.GtfsStorage;
+import com.graphhopper.gtfs.IncrementalRealtimeFeed;
 import com.graphhopper.gtfs.RealtimeFeed;
 import com.graphhopper.gtfs.Transfers;
 import com.graphhopper.storage.GraphHopperStorage;
@@ -36,7 +37,9 @@ import org.glassfish.hk2.api.Factory;
 
 import javax.inject.Inject;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -53,6 +56,7 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
     private ExecutorService executor;
     private LoadingCache<String, RealtimeFeed> cache;
     private Map<String, Transfers> transfers;
+    private IncrementalRealtimeFeed incrementalRealtimeFeed;
 
     @Inject
     RealtimeFeedLoadingCache(GraphHopperStorage graphHopperStorage, GtfsStorage gtfsStorage, HttpClient httpClient, RealtimeBundleConfiguration bundleConfiguration) {
@@ -66,12 +70,14 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
     public void start() {
         this.transfers = new HashMap<>();
         for (Map.Entry<String, GTFSFeed> entry : this.gtfsStorage.getGtfsFeeds().entrySet()) {
-            this.transfers.put(entry.getKey(), new Transfers(entry.getValue()));
+            this.transfers.put(entry.getKey(), new Transfers(entry.getValue(), this.gtfsStorage.getStopTimeTables().get(entry.getKey())));
         }
+        if (bundleConfiguration.gtfsrealtime().isIncremental())
+            this.incrementalRealtimeFeed = new IncrementalRealtimeFeed(graphHopperStorage, gtfsStorage, transfers);
         this.executor = Executors.newSingleThreadExecutor();
         this.cache = CacheBuilder.newBuilder()
                 .maximumSize(1)
-                .refreshAfterWrite(1, TimeUnit.MINUTES)
+                .refreshAfterWrite(bundleConfiguration.gtfsrealtime().getRefreshInterval().toMilliseconds(), TimeUnit.MILLISECONDS)
                 .build(new CacheLoader<String, RealtimeFeed>() {
                     public RealtimeFeed load(String key) {
                         return fetchFeedsAndCreateGraph();
@@ -108,14 +114,23 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
     private RealtimeFeed fetchFeedsAndCreateGraph() {
         Map<String, GtfsRealtime.FeedMessage> feedMessageMap = new HashMap<>();
         for (FeedConfiguration configuration : bundleConfiguration.gtfsrealtime().getFeeds()) {
-            try {
-                GtfsRealtime.FeedMessage feedMessage = GtfsRealtime.FeedMessage.parseFrom(httpClient.execute(new HttpGet(configuration.getUrl().toURI())).getEntity().getContent());
+            try (InputStream is = openFeed(configuration.getUrl())) {
+                GtfsRealtime.FeedMessage feedMessage = GtfsRealtime.FeedMessage.parseFrom(is);
                 feedMessageMap.put(configuration.getFeedId(), feedMessage);
             } catch (IOException | URISyntaxException e) {
                 throw new RuntimeException(e);
             }
         }
+        if (incrementalRealtimeFeed != null)
+            return incrementalRealtimeFeed.update(feedMessageMap);
         return RealtimeFeed.fromProtobuf(graphHopperStorage, gtfsStorage, this.transfers, feedMessageMap);
     }
 
+    private InputStream openFeed(URL url) throws IOException, URISyntaxException {
+        // a local file can stand in for a feed, e.g. for testing
+        if ("file".equals(url.getProtocol()))
+            return url.openStream();
+        return httpClient.execute(new HttpGet(url.toURI())).getEntity().getContent();
+    }
+
 }
@@ -0,0 +1,105 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GHBatchRequest;
+import com.graphhopper.GHBatchResponse;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.jackson.MultiException;
+import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import static com.graphhopper.util.Parameters.Routing.CALC_POINTS;
+import static com.graphhopper.util.Parameters.Routing.INSTRUCTIONS;
+
+/**
+ * Resource to calculate many independent routes for the same profile in one request. The routes share the snapping
+ * and the query graph and are calculated in parallel, see {@link com.graphhopper.routing.Router#routeBatch}. Every
+ * entry of the 'routes' array of the response has the same format as a /route response, or contains the error
+ * message if this route could not be calculated.
+ */
+@Path("route-batch")
+public class BatchRouteResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchRouteResource.class);
+
+    private final GraphHopper graphHopper;
+
+    @Inject
+    public BatchRouteResource(GraphHopper graphHopper) {
+        this.graphHopper = graphHopper;
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response doPost(@NotNull GHBatchRequest request, @Context HttpServletRequest httpReq) {
+        StopWatch sw = new StopWatch().start();
+        if (Helper.isEmpty(request.getProfile()))
+            throw new IllegalArgumentException("The 'profile' parameter is required for batch requests");
+        GHBatchResponse batchResponse = graphHopper.routeBatch(request);
+        boolean instructions = request.getHints().getBool(INSTRUCTIONS, true);
+        boolean enableElevation = request.getHints().getBool("elevation", false);
+        boolean calcPoints = request.getHints().getBool(CALC_POINTS, true);
+        boolean pointsEncoded = request.getHints().getBool("points_encoded", true);
+
+        long took = sw.stop().getNanos() / 1_000_000;
+        String infoStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent");
+        String logStr = infoStr + " " + request + ", took: " + String.format("%.1f", (double) took) + " ms";
+        if (batchResponse.hasErrors()) {
+            logger.error(logStr + ", errors:" + batchResponse.getErrors());
+            throw new MultiException(batchResponse.getErrors());
+        }
+        logger.info(logStr + ", " + batchResponse.getHints().toMap());
+
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        json.putPOJO("hints", batchResponse.getHints().toMap());
+        ObjectNode info = json.putObject("info");
+        info.putPOJO("copyrights", ResponsePathSerializer.COPYRIGHTS);
+        info.put("took", Math.round(took));
+        ArrayNode routes = json.putArray("routes");
+        for (GHResponse rsp : batchResponse.getResponses()) {
+            if (rsp.hasErrors())
+                routes.addPOJO(new MultiException(rsp.getErrors()));
+            else
+                routes.add(ResponsePathSerializer.jsonObject(rsp, instructions, false, calcPoints, enableElevation, pointsEncoded, took));
+        }
+        return Response.ok(json).
+                header("X-GH-Took", "" + Math.round(took)).
+                type(MediaType.APPLICATION_JSON).
+                build();
+    }
+}
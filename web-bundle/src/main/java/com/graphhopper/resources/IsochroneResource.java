@@ -6,6 +6,7 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.isochrone.algorithm.ContourBuilder;
+import com.graphhopper.isochrone.algorithm.PhastShortestPathTree;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.isochrone.algorithm.Triangulator;
 import com.graphhopper.jackson.ResponsePathSerializer;
@@ -13,6 +14,7 @@ import com.graphhopper.routing.ProfileResolver;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.Subnetwork;
 import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.FiniteWeightFilter;
 import com.graphhopper.routing.util.TraversalMode;
@@ -20,6 +22,7 @@ import com.graphhopper.routing.weighting.BlockAreaWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphEdgeIdFinder;
+import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
@@ -40,6 +43,7 @@ import javax.ws.rs.core.UriInfo;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.function.IntToDoubleFunction;
 import java.util.function.ToDoubleFunction;
 
 import static com.graphhopper.resources.IsochroneResource.ResponseType.geojson;
@@ -83,6 +87,7 @@ public class IsochroneResource {
         StopWatch sw = new StopWatch().start();
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        boolean disableCH = hintsMap.getBool(Parameters.CH.DISABLE, false);
         hintsMap.putObject(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.Landmark.DISABLE, true);
         if (Helper.isEmpty(profileName)) {
@@ -107,19 +112,17 @@ public class IsochroneResource {
         if (!snap.isValid())
             throw new IllegalArgumentException("Point not found:" + point);
         QueryGraph queryGraph = QueryGraph.create(graph, snap);
-        TraversalMode traversalMode = profile.isTurnCosts() ? EDGE_BASED : NODE_BASED;
-        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
 
-        double limit;
+        double limit, bufferedLimit;
         if (weightLimit.get() > 0) {
             limit = weightLimit.get();
-            shortestPathTree.setWeightLimit(limit + Math.max(limit * 0.14, 2_000));
+            bufferedLimit = limit + Math.max(limit * 0.14, 2_000);
         } else if (distanceLimitInMeter.get() > 0) {
             limit = distanceLimitInMeter.get();
-            shortestPathTree.setDistanceLimit(limit + Math.max(limit * 0.14, 2_000));
+            bufferedLimit = limit + Math.max(limit * 0.14, 2_000);
         } else {
             limit = timeLimitInSeconds.get() * 1000;
-            shortestPathTree.setTimeLimit(limit + Math.max(limit * 0.14, 200_000));
+            bufferedLimit = limit + Math.max(limit * 0.14, 200_000);
         }
         ArrayList<Double> zs = new ArrayList<>();
         double delta = limit / nBuckets.get();
@@ -127,17 +130,46 @@ public class IsochroneResource {
             zs.add((i + 1) * delta);
         }
 
-        ToDoubleFunction<ShortestPathTree.IsoLabel> fz;
-        if (weightLimit.get() > 0) {
-            fz = l -> l.weight;
-        } else if (distanceLimitInMeter.get() > 0) {
-            fz = l -> l.distance;
+        Triangulator.Result result;
+        int visitedNodes;
+        RoutingCHGraph chGraph = findCHGraphForTree(graphHopper, profile, hintsMap, disableCH);
+        if (chGraph != null) {
+            PhastShortestPathTree shortestPathTree = new PhastShortestPathTree(new QueryRoutingCHGraph(chGraph, queryGraph), graphHopper.getPhastPreparation(profile.getName()), reverseFlow);
+            IntToDoubleFunction fz;
+            if (weightLimit.get() > 0) {
+                shortestPathTree.setWeightLimit(bufferedLimit);
+                fz = shortestPathTree::getWeight;
+            } else if (distanceLimitInMeter.get() > 0) {
+                shortestPathTree.setDistanceLimit(bufferedLimit);
+                fz = shortestPathTree::getDistance;
+            } else {
+                shortestPathTree.setTimeLimit(bufferedLimit);
+                fz = shortestPathTree::getTime;
+            }
+            try {
+                result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
+                visitedNodes = shortestPathTree.getVisitedNodes();
+            } finally {
+                shortestPathTree.release();
+            }
         } else {
-            fz = l -> l.time;
+            TraversalMode traversalMode = profile.isTurnCosts() ? EDGE_BASED : NODE_BASED;
+            ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+            ToDoubleFunction<ShortestPathTree.IsoLabel> fz;
+            if (weightLimit.get() > 0) {
+                shortestPathTree.setWeightLimit(bufferedLimit);
+                fz = l -> l.weight;
+            } else if (distanceLimitInMeter.get() > 0) {
+                shortestPathTree.setDistanceLimit(bufferedLimit);
+                fz = l -> l.distance;
+            } else {
+                shortestPathTree.setTimeLimit(bufferedLimit);
+                fz = l -> l.time;
+            }
+            result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
+            visitedNodes = shortestPathTree.getVisitedNodes();
         }
 
-        Triangulator.Result result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
-
         ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
         ArrayList<Geometry> isochrones = new ArrayList<>();
         for (Double z : zs) {
@@ -178,11 +210,21 @@ public class IsochroneResource {
             finalJson = json;
         }
 
-        logger.info("took: " + sw.getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes());
+        logger.info("took: " + sw.getSeconds() + ", visited nodes:" + visitedNodes);
         return Response.ok(finalJson).header("X-GH-Took", "" + sw.getSeconds() * 1000).
                 build();
     }
 
+    /**
+     * @return the CH graph of the given profile if the shortest path tree can be calculated on it using PHAST, i.e. if
+     * the profile was prepared without turn costs and the request does not change the weighting, otherwise null
+     */
+    static RoutingCHGraph findCHGraphForTree(GraphHopper graphHopper, Profile profile, PMap hintsMap, boolean disableCH) {
+        if (disableCH || profile.isTurnCosts() || hintsMap.has(Parameters.Routing.BLOCK_AREA))
+            return null;
+        return graphHopper.getCHGraphs().get(profile.getName());
+    }
+
     private Polygon heuristicallyFindMainConnectedComponent(MultiPolygon multiPolygon, Point point) {
         int maxPoints = 0;
         Polygon maxPolygon = null;
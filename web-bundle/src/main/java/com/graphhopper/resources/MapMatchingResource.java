@@ -25,11 +25,13 @@ import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.gpx.GpxConversions;
+import com.graphhopper.http.MapMatchingSessions;
 import com.graphhopper.jackson.Gpx;
 import com.graphhopper.jackson.ResponsePathSerializer;
 import com.graphhopper.matching.*;
 import com.graphhopper.routing.ProfileResolver;
 import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.GHPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,12 +57,15 @@ public class MapMatchingResource {
     private final GraphHopper graphHopper;
     private final ProfileResolver profileResolver;
     private final TranslationMap trMap;
+    private final MapMatchingSessions mapMatchingSessions;
 
     @Inject
-    public MapMatchingResource(GraphHopper graphHopper, ProfileResolver profileResolver, TranslationMap trMap) {
+    public MapMatchingResource(GraphHopper graphHopper, ProfileResolver profileResolver, TranslationMap trMap,
+                               MapMatchingSessions mapMatchingSessions) {
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
         this.trMap = trMap;
+        this.mapMatchingSessions = mapMatchingSessions;
     }
 
     @POST
@@ -101,15 +106,7 @@ public class MapMatchingResource {
         // add values that are not in hints because they were explicitly listed in query params
         hints.putObject(MAX_VISITED_NODES, maxVisitedNodes);
         String weightingVehicleLogStr = "weighting: " + hints.getString("weighting", "") + ", vehicle: " + hints.getString("vehicle", "");
-        if (Helper.isEmpty(profile)) {
-            // resolve profile and remove legacy vehicle/weighting parameters
-            // we need to explicitly disable CH here because map matching does not use it
-            PMap pMap = new PMap(hints).putObject(Parameters.CH.DISABLE, true);
-            profile = profileResolver.resolveProfile(pMap).getName();
-            removeLegacyParameters(hints);
-        }
-        hints.putObject("profile", profile);
-        errorIfLegacyParameters(hints);
+        profile = resolveProfile(hints, profile);
 
         MapMatching matching = new MapMatching(graphHopper, hints);
         matching.setMeasurementErrorSigma(gpsAccuracy);
@@ -177,6 +174,86 @@ public class MapMatchingResource {
         }
     }
 
+    /**
+     * Starts a session to match the observations of a single vehicle while it is moving. The observations are sent
+     * with {@link #matchOnline} and the matched edges are returned as soon as they are certain.
+     */
+    @POST
+    @javax.ws.rs.Path("online")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ObjectNode createOnlineSession(
+            @Context UriInfo uriInfo,
+            @QueryParam("profile") String profile,
+            @QueryParam("gps_accuracy") @DefaultValue("40") double gpsAccuracy,
+            @QueryParam(MAX_VISITED_NODES) @DefaultValue("3000") int maxVisitedNodes,
+            @QueryParam("max_pending") @DefaultValue("50") int maxPending) {
+        PMap hints = createHintsMap(uriInfo.getQueryParameters());
+        hints.putObject(MAX_VISITED_NODES, maxVisitedNodes);
+        resolveProfile(hints, profile);
+
+        OnlineMapMatching onlineMapMatching = new OnlineMapMatching(graphHopper, hints);
+        onlineMapMatching.setMeasurementErrorSigma(gpsAccuracy);
+        onlineMapMatching.setMaxPendingTimeSteps(maxPending);
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        json.put("session_id", mapMatchingSessions.add(onlineMapMatching));
+        return json;
+    }
+
+    /**
+     * Adds the given points, as [lon, lat] arrays, to the session and returns the links which were matched since the
+     * last request. With finish=true the remaining links are returned and the session is closed. An unknown or expired
+     * session results in a 404.
+     */
+    @POST
+    @javax.ws.rs.Path("online/{session_id}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public ObjectNode matchOnline(
+            List<GHPoint> points,
+            @PathParam("session_id") String sessionId,
+            @QueryParam("finish") @DefaultValue("false") boolean finish,
+            @QueryParam("elevation") @DefaultValue("false") boolean enableElevation,
+            @QueryParam("points_encoded") @DefaultValue("true") boolean pointsEncoded) {
+        OnlineMapMatching onlineMapMatching = finish ? mapMatchingSessions.remove(sessionId) : mapMatchingSessions.get(sessionId);
+        if (onlineMapMatching == null)
+            throw new NotFoundException("Map matching session " + sessionId + " not found, it might have expired");
+
+        List<EdgeMatch> edgeMatches = new ArrayList<>();
+        synchronized (onlineMapMatching) {
+            if (points != null) {
+                for (GHPoint point : points) {
+                    edgeMatches.addAll(onlineMapMatching.add(new Observation(point)));
+                }
+            }
+            if (finish)
+                edgeMatches.addAll(onlineMapMatching.finish());
+        }
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        ArrayNode links = json.putArray("links");
+        // the links of a response do not necessarily continue the links of the previous response, e.g. if the
+        // sequence broke in between, so every link gets its full geometry
+        for (EdgeMatch edgeMatch : edgeMatches) {
+            addLink(links, edgeMatch, FetchMode.ALL, enableElevation, pointsEncoded);
+        }
+        return json;
+    }
+
+    /**
+     * Resolves the profile if it is not given and puts it into the hints.
+     */
+    private String resolveProfile(PMap hints, String profile) {
+        if (Helper.isEmpty(profile)) {
+            // resolve profile and remove legacy vehicle/weighting parameters
+            // we need to explicitly disable CH here because map matching does not use it
+            PMap pMap = new PMap(hints).putObject(Parameters.CH.DISABLE, true);
+            profile = profileResolver.resolveProfile(pMap).getName();
+            removeLegacyParameters(hints);
+        }
+        hints.putObject("profile", profile);
+        errorIfLegacyParameters(hints);
+        return profile;
+    }
+
     private void removeLegacyParameters(PMap hints) {
         hints.remove("vehicle");
         hints.remove("weighting");
@@ -210,26 +287,29 @@ public class MapMatchingResource {
         ObjectNode route = entries.addObject();
         ArrayNode links = route.putArray("links");
         for (int emIndex = 0; emIndex < result.getEdgeMatches().size(); emIndex++) {
-            ObjectNode link = links.addObject();
-            EdgeMatch edgeMatch = result.getEdgeMatches().get(emIndex);
-            PointList pointList = edgeMatch.getEdgeState().fetchWayGeometry(emIndex == 0 ? FetchMode.ALL : FetchMode.PILLAR_AND_ADJ);
-            final ObjectNode geometry = link.putObject("geometry");
-            if (pointList.size() < 2) {
-                geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, 1e5) : pointList.toLineString(elevation));
-                geometry.put("type", "Point");
-            } else {
-                geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, 1e5) : pointList.toLineString(elevation));
-                geometry.put("type", "LineString");
-            }
-            link.put("id", edgeMatch.getEdgeState().getEdge());
-            ArrayNode wpts = link.putArray("wpts");
-            for (State extension : edgeMatch.getStates()) {
-                ObjectNode wpt = wpts.addObject();
-                wpt.put("x", extension.getSnap().getSnappedPoint().lon);
-                wpt.put("y", extension.getSnap().getSnappedPoint().lat);
-            }
+            addLink(links, result.getEdgeMatches().get(emIndex), emIndex == 0 ? FetchMode.ALL : FetchMode.PILLAR_AND_ADJ, elevation, pointsEncoded);
         }
         return root;
     }
 
+    private static void addLink(ArrayNode links, EdgeMatch edgeMatch, FetchMode fetchMode, boolean elevation, boolean pointsEncoded) {
+        ObjectNode link = links.addObject();
+        PointList pointList = edgeMatch.getEdgeState().fetchWayGeometry(fetchMode);
+        final ObjectNode geometry = link.putObject("geometry");
+        if (pointList.size() < 2) {
+            geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, 1e5) : pointList.toLineString(elevation));
+            geometry.put("type", "Point");
+        } else {
+            geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, 1e5) : pointList.toLineString(elevation));
+            geometry.put("type", "LineString");
+        }
+        link.put("id", edgeMatch.getEdgeState().getEdge());
+        ArrayNode wpts = link.putArray("wpts");
+        for (State extension : edgeMatch.getStates()) {
+            ObjectNode wpt = wpts.addObject();
+            wpt.put("x", extension.getSnap().getSnappedPoint().lon);
+            wpt.put("y", extension.getSnap().getSnappedPoint().lat);
+        }
+    }
+
 }
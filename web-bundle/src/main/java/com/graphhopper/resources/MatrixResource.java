@@ -0,0 +1,153 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.http.GHPointParam;
+import com.graphhopper.jackson.MultiException;
+import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import io.dropwizard.jersey.params.AbstractParam;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.graphhopper.util.Parameters.Routing.SNAP_PREVENTION;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Resource to calculate the weights, times and distances between many points in one request. The response uses the
+ * same format as the GraphHopper Matrix API, so it can be used with GraphHopperMatrixWeb from the client-hc module.
+ */
+@Path("matrix")
+public class MatrixResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatrixResource.class);
+    private static final List<String> SUPPORTED_OUT_ARRAYS = Arrays.asList("weights", "times", "distances");
+
+    private final GraphHopper graphHopper;
+
+    @Inject
+    public MatrixResource(GraphHopper graphHopper) {
+        this.graphHopper = graphHopper;
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response doGet(
+            @Context HttpServletRequest httpReq,
+            @QueryParam("point") List<GHPointParam> pointParams,
+            @QueryParam("from_point") List<GHPointParam> fromPointParams,
+            @QueryParam("to_point") List<GHPointParam> toPointParams,
+            @QueryParam("profile") String profileName,
+            @QueryParam(SNAP_PREVENTION) List<String> snapPreventions,
+            @QueryParam("out_array") List<String> outArrays,
+            @QueryParam("fail_fast") @DefaultValue("true") boolean failFast) {
+        GHMatrixRequest request = new GHMatrixRequest();
+        if (!pointParams.isEmpty()) {
+            if (!fromPointParams.isEmpty() || !toPointParams.isEmpty())
+                throw new IllegalArgumentException("Use either point or from_point/to_point, but not both");
+            request.setPoints(pointParams.stream().map(AbstractParam::get).collect(toList()));
+        } else {
+            request.setFromPoints(fromPointParams.stream().map(AbstractParam::get).collect(toList()));
+            request.setToPoints(toPointParams.stream().map(AbstractParam::get).collect(toList()));
+        }
+        request.setProfile(profileName).
+                setSnapPreventions(snapPreventions).
+                setOutArrays(outArrays).
+                setFailFast(failFast);
+        return doMatrix(request, httpReq);
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response doPost(@NotNull GHMatrixRequest request, @Context HttpServletRequest httpReq) {
+        return doMatrix(request, httpReq);
+    }
+
+    private Response doMatrix(GHMatrixRequest request, HttpServletRequest httpReq) {
+        StopWatch sw = new StopWatch().start();
+        if (Helper.isEmpty(request.getProfile()))
+            throw new IllegalArgumentException("The 'profile' parameter is required for matrix requests");
+        // check the parameters before the matrix is calculated, which can take a while for many points
+        List<String> outArrays = request.getOutArrays().isEmpty() ? Arrays.asList("weights") : request.getOutArrays();
+        for (String outArray : outArrays) {
+            if (!SUPPORTED_OUT_ARRAYS.contains(outArray))
+                throw new IllegalArgumentException("Unknown out_array: " + outArray + ", supported are: weights, times and distances");
+        }
+        GHMatrixResponse matrixResponse = graphHopper.matrix(request);
+        long took = sw.stop().getNanos() / 1_000_000;
+        String infoStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent");
+        String logStr = infoStr + " " + request + ", took: " + String.format("%.1f", (double) took) + " ms";
+        if (matrixResponse.hasErrors()) {
+            logger.error(logStr + ", errors:" + matrixResponse.getErrors());
+            throw new MultiException(matrixResponse.getErrors());
+        }
+        logger.info(logStr + ", " + matrixResponse.getHints().toMap());
+        return Response.ok(jsonObject(matrixResponse, outArrays, took)).
+                header("X-GH-Took", "" + Math.round(took)).
+                type(MediaType.APPLICATION_JSON).
+                build();
+    }
+
+    /**
+     * Creates the JSON response. Times are returned in seconds and distances in meters. Pairs that are not connected
+     * are written as null.
+     *
+     * @param outArrays the arrays to be written, must only contain 'weights', 'times' and 'distances'
+     */
+    public static ObjectNode jsonObject(GHMatrixResponse rsp, List<String> outArrays, long took) {
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        for (String outArray : outArrays) {
+            ArrayNode rows = json.putArray(outArray);
+            for (int from = 0; from < rsp.getWeights().length; from++) {
+                ArrayNode row = rows.addArray();
+                for (int to = 0; to < rsp.getWeights()[from].length; to++) {
+                    if (!rsp.isConnected(from, to))
+                        row.addNull();
+                    else if (outArray.equals("weights"))
+                        row.add(Helper.round(rsp.getWeights()[from][to], 3));
+                    else if (outArray.equals("times"))
+                        row.add(Math.round(rsp.getTimes()[from][to] / 1000.0));
+                    else
+                        row.add(Helper.round(rsp.getDistances()[from][to], 1));
+                }
+            }
+        }
+        ObjectNode info = json.putObject("info");
+        info.putPOJO("copyrights", ResponsePathSerializer.COPYRIGHTS);
+        info.put("took", took);
+        return json;
+    }
+}
@@ -3,10 +3,12 @@ package com.graphhopper.resources;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
+import com.graphhopper.isochrone.algorithm.PhastShortestPathTree;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.routing.ProfileResolver;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FiniteWeightFilter;
@@ -16,6 +18,7 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphEdgeIdFinder;
 import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
@@ -36,6 +39,7 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static com.graphhopper.resources.RouteResource.errorIfLegacyParameters;
 import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
@@ -84,6 +88,7 @@ public class SPTResource {
         StopWatch sw = new StopWatch().start();
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        boolean disableCH = hintsMap.getBool(Parameters.CH.DISABLE, false);
         hintsMap.putObject(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.Landmark.DISABLE, true);
         if (Helper.isEmpty(profileName)) {
@@ -109,15 +114,27 @@ public class SPTResource {
             throw new IllegalArgumentException("Point not found:" + point);
         QueryGraph queryGraph = QueryGraph.create(graph, snap);
         NodeAccess nodeAccess = queryGraph.getNodeAccess();
-        TraversalMode traversalMode = profile.isTurnCosts() ? EDGE_BASED : NODE_BASED;
-        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
-
-        if (distanceInMeter.get() > 0) {
-            shortestPathTree.setDistanceLimit(distanceInMeter.get());
+        RoutingCHGraph chGraph = IsochroneResource.findCHGraphForTree(graphHopper, profile, hintsMap, disableCH);
+        ShortestPathTree shortestPathTree = null;
+        PhastShortestPathTree phastTree = null;
+        if (chGraph != null) {
+            phastTree = new PhastShortestPathTree(new QueryRoutingCHGraph(chGraph, queryGraph), graphHopper.getPhastPreparation(profile.getName()), reverseFlow);
+            if (distanceInMeter.get() > 0)
+                phastTree.setDistanceLimit(distanceInMeter.get());
+            else
+                phastTree.setTimeLimit(timeLimitInSeconds.get() * 1000);
         } else {
-            double limit = timeLimitInSeconds.get() * 1000;
-            shortestPathTree.setTimeLimit(limit);
+            TraversalMode traversalMode = profile.isTurnCosts() ? EDGE_BASED : NODE_BASED;
+            shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+            if (distanceInMeter.get() > 0) {
+                shortestPathTree.setDistanceLimit(distanceInMeter.get());
+            } else {
+                double limit = timeLimitInSeconds.get() * 1000;
+                shortestPathTree.setTimeLimit(limit);
+            }
         }
+        final ShortestPathTree finalShortestPathTree = shortestPathTree;
+        final PhastShortestPathTree finalPhastTree = phastTree;
 
         final String COL_SEP = ",", LINE_SEP = "\n";
         List<String> columns;
@@ -145,8 +162,7 @@ public class SPTResource {
                 }
                 sb.append(LINE_SEP);
                 writer.write(sb.toString());
-                shortestPathTree.search(snap.getClosestNode(), l -> {
-                    IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
+                Consumer<IsoLabelWithCoordinates> labelWriter = label -> {
                     sb.setLength(0);
                     for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
                         String col = columns.get(colIndex);
@@ -227,9 +243,21 @@ public class SPTResource {
                     } catch (IOException ex) {
                         throw new RuntimeException(ex);
                     }
-                });
+                };
+                int visitedNodes;
+                if (finalPhastTree != null) {
+                    try {
+                        finalPhastTree.search(snap.getClosestNode(), node -> labelWriter.accept(isoLabelWithCoordinates(nodeAccess, finalPhastTree, node)));
+                        visitedNodes = finalPhastTree.getVisitedNodes();
+                    } finally {
+                        finalPhastTree.release();
+                    }
+                } else {
+                    finalShortestPathTree.search(snap.getClosestNode(), l -> labelWriter.accept(isoLabelWithCoordinates(nodeAccess, l)));
+                    visitedNodes = finalShortestPathTree.getVisitedNodes();
+                }
 
-                logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes() + ", " + uriInfo.getQueryParameters());
+                logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + visitedNodes + ", " + uriInfo.getQueryParameters());
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -260,4 +288,22 @@ public class SPTResource {
         }
         return isoLabelWC;
     }
+
+    private IsoLabelWithCoordinates isoLabelWithCoordinates(NodeAccess na, PhastShortestPathTree tree, int node) {
+        IsoLabelWithCoordinates isoLabelWC = new IsoLabelWithCoordinates();
+        isoLabelWC.nodeId = node;
+        isoLabelWC.coordinate = new GHPoint(na.getLat(node), na.getLon(node));
+        isoLabelWC.timeMillis = (int) tree.getTime(node);
+        isoLabelWC.distance = (int) Math.round(tree.getDistance(node));
+        isoLabelWC.edgeId = tree.getEdge(node);
+        int prevNodeId = tree.getParentNode(node);
+        if (prevNodeId >= 0) {
+            isoLabelWC.prevNodeId = prevNodeId;
+            isoLabelWC.prevEdgeId = tree.getEdge(prevNodeId);
+            isoLabelWC.prevCoordinate = new GHPoint(na.getLat(prevNodeId), na.getLon(prevNodeId));
+            isoLabelWC.prevDistance = (int) Math.round(tree.getParentDistance(node));
+            isoLabelWC.prevTimeMillis = (int) tree.getParentTime(node);
+        }
+        return isoLabelWC;
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.Profile;
+import com.graphhopper.gpx.GpxConversions;
+import com.graphhopper.jackson.Gpx;
+import com.graphhopper.matching.*;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OnlineMapMatchingTest {
+    private static final String GH_LOCATION = "../target/onlinemapmatchingtest-gh";
+    private static GraphHopper hopper;
+    private final XmlMapper xmlMapper = new XmlMapper();
+
+    @BeforeAll
+    public static void setup() {
+        Helper.removeDir(new File(GH_LOCATION));
+        hopper = new GraphHopper();
+        hopper.setOSMFile("../map-matching/files/map-issue13.osm.gz");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setProfiles(new Profile("my_profile").setVehicle("car").setWeighting("fastest"));
+        hopper.importOrLoad();
+    }
+
+    @AfterAll
+    public static void clean() {
+        hopper.close();
+        Helper.removeDir(new File(GH_LOCATION));
+    }
+
+    @Test
+    public void testSameResultAsMapMatching() throws IOException {
+        List<Observation> observations = readObservations();
+        PMap hints = new PMap().putObject("profile", "my_profile");
+        // a small sigma, so more observations are used
+        MapMatching mapMatching = new MapMatching(hopper, hints);
+        mapMatching.setMeasurementErrorSigma(10);
+        MatchResult mr = mapMatching.match(observations);
+
+        OnlineMapMatching onlineMapMatching = new OnlineMapMatching(hopper, hints);
+        onlineMapMatching.setMeasurementErrorSigma(10);
+        List<EdgeMatch> edgeMatches = new ArrayList<>();
+        int returnedBeforeFinish = 0;
+        for (Observation observation : observations) {
+            edgeMatches.addAll(onlineMapMatching.add(observation));
+            returnedBeforeFinish = edgeMatches.size();
+        }
+        edgeMatches.addAll(onlineMapMatching.finish());
+
+        // most edges are returned while the observations are added
+        assertTrue(returnedBeforeFinish > edgeMatches.size() / 2, returnedBeforeFinish + " of " + edgeMatches.size());
+        assertEquals(toString(mr.getEdgeMatches()), toString(edgeMatches));
+        assertEquals(observationCount(mr.getEdgeMatches()), observationCount(edgeMatches));
+
+        // observations added after finish start a new sequence
+        for (Observation observation : observations)
+            onlineMapMatching.add(observation);
+        assertFalse(onlineMapMatching.finish().isEmpty());
+    }
+
+    @Test
+    public void testMaxPendingTimeSteps() throws IOException {
+        List<Observation> observations = readObservations();
+        OnlineMapMatching onlineMapMatching = new OnlineMapMatching(hopper, new PMap().putObject("profile", "my_profile"));
+        onlineMapMatching.setMaxPendingTimeSteps(1);
+        List<EdgeMatch> edgeMatches = new ArrayList<>();
+        for (Observation observation : observations) {
+            edgeMatches.addAll(onlineMapMatching.add(observation));
+        }
+        edgeMatches.addAll(onlineMapMatching.finish());
+
+        assertFalse(edgeMatches.isEmpty());
+        for (int i = 1; i < edgeMatches.size(); i++) {
+            assertEquals(edgeMatches.get(i - 1).getEdgeState().getAdjNode(), edgeMatches.get(i).getEdgeState().getBaseNode());
+        }
+        assertThrows(IllegalArgumentException.class, () -> onlineMapMatching.setMaxPendingTimeSteps(-1));
+    }
+
+    private List<Observation> readObservations() throws IOException {
+        Gpx gpx = xmlMapper.readValue(getClass().getResourceAsStream("/issue-13.gpx"), Gpx.class);
+        return GpxConversions.getEntries(gpx.trk.get(0));
+    }
+
+    private static List<String> toString(List<EdgeMatch> edgeMatches) {
+        return edgeMatches.stream()
+                .map(em -> em.getEdgeState().getBaseNode() + "-" + em.getEdgeState().getAdjNode())
+                .collect(Collectors.toList());
+    }
+
+    private static int observationCount(List<EdgeMatch> edgeMatches) {
+        return edgeMatches.stream().mapToInt(em -> em.getStates().size()).sum();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.Profile;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.util.Collections;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class BatchRouteResourceTest {
+    private static final String DIR = "./target/batch-route-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("graph.flag_encoders", "car").
+                putObject("prepare.min_network_size", 0).
+                putObject("routing.batch_threads", 2).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR).
+                setProfiles(Collections.singletonList(new Profile("my_car").setVehicle("car").setWeighting("fastest"))).
+                setCHProfiles(Collections.singletonList(new CHProfile("my_car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testPost() {
+        String body = "{\"profile\": \"my_car\", \"points_encoded\": false, \"instructions\": false, " +
+                "\"routes\": [[[1.536198,42.554851], [1.548128,42.510071]], [[1.548128,42.510071], [1.5265,42.5349]], [[1.5265,42.5349]]]}";
+        final Response response = clientTarget(app, "/route-batch").request().post(Entity.json(body));
+        assertEquals(200, response.getStatus());
+        JsonNode json = response.readEntity(JsonNode.class);
+        JsonNode routes = json.get("routes");
+        assertEquals(3, routes.size());
+        JsonNode path = routes.get(0).get("paths").get(0);
+        assertFalse(path.has("instructions"));
+        assertTrue(path.get("points").has("coordinates"), path.toString());
+
+        // compare with the route endpoint
+        JsonNode routeJson = clientTarget(app, "/route?profile=my_car&point=42.554851,1.536198&point=42.510071,1.548128").
+                request().get(JsonNode.class);
+        assertEquals(routeJson.get("paths").get(0).get("distance").asDouble(), path.get("distance").asDouble(), 1);
+        assertTrue(routes.get(1).get("paths").get(0).get("distance").asDouble() > 1000);
+
+        // a route with a single point fails, but this does not affect the other routes
+        assertTrue(routes.get(2).get("message").asText().contains("At least 2 points"), routes.get(2).toString());
+    }
+
+    @Test
+    public void testMissingProfile() {
+        final Response response = clientTarget(app, "/route-batch").request().post(Entity.json("{\"routes\": [[[1.536198,42.554851], [1.548128,42.510071]]]}"));
+        assertEquals(400, response.getStatus());
+        JsonNode json = response.readEntity(JsonNode.class);
+        assertTrue(json.get("message").asText().contains("profile"), json.toString());
+    }
+
+    @Test
+    public void testUnknownProfile() {
+        final Response response = clientTarget(app, "/route-batch").request().post(Entity.json("{\"profile\": \"bike\", \"routes\": [[[1.536198,42.554851], [1.548128,42.510071]]]}"));
+        assertEquals(400, response.getStatus());
+        JsonNode json = response.readEntity(JsonNode.class);
+        assertTrue(json.get("message").asText().contains("does not exist"), json.toString());
+    }
+}
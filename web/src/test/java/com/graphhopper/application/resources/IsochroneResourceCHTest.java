@@ -0,0 +1,110 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.application.resources;
+
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.Profile;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.JsonFeature;
+import com.graphhopper.util.JsonFeatureCollection;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Isochrones for a profile with a CH preparation are calculated with PHAST and should match the ones calculated
+ * without CH.
+ */
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class IsochroneResourceCHTest {
+    private static final String DIR = "./target/andorra-isochrone-ch-gh/";
+    public static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("graph.flag_encoders", "car").
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR).
+                setProfiles(Collections.singletonList(new Profile("fast_car").setVehicle("car").setWeighting("fastest"))).
+                setCHProfiles(Collections.singletonList(new CHProfile("fast_car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void requestByTimeLimit(boolean reverseFlow) {
+        List<Geometry> expected = requestIsochrones(true, reverseFlow);
+        List<Geometry> given = requestIsochrones(false, reverseFlow);
+        assertEquals(2, given.size());
+        Coordinate[] coordinates = {new Coordinate(1.587224, 42.5386), new Coordinate(1.589756, 42.558012),
+                new Coordinate(1.635246, 42.53841), new Coordinate(1.57937, 42.531706)};
+        for (Coordinate coordinate : coordinates) {
+            for (int bucket = 0; bucket < 2; bucket++) {
+                assertEquals(expected.get(bucket).contains(geometryFactory.createPoint(coordinate)),
+                        given.get(bucket).contains(geometryFactory.createPoint(coordinate)), coordinate + ", bucket: " + bucket);
+            }
+        }
+    }
+
+    private List<Geometry> requestIsochrones(boolean disableCH, boolean reverseFlow) {
+        Response rsp = clientTarget(app, "/isochrone")
+                .queryParam("profile", "fast_car")
+                .queryParam("ch.disable", disableCH)
+                .queryParam("reverse_flow", reverseFlow)
+                .queryParam("point", "42.531073,1.573792")
+                .queryParam("time_limit", 5 * 60)
+                .queryParam("buckets", 2)
+                .queryParam("type", "geojson")
+                .request().buildGet().invoke();
+        assertEquals(200, rsp.getStatus());
+        JsonFeatureCollection featureCollection = rsp.readEntity(JsonFeatureCollection.class);
+        List<Geometry> result = new ArrayList<>();
+        for (JsonFeature feature : featureCollection.getFeatures())
+            result.add(feature.getGeometry());
+        return result;
+    }
+}
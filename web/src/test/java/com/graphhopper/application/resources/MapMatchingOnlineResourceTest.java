@@ -0,0 +1,111 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.config.Profile;
+import com.graphhopper.gpx.GpxConversions;
+import com.graphhopper.jackson.Gpx;
+import com.graphhopper.matching.Observation;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class MapMatchingOnlineResourceTest {
+
+    private static final String DIR = "../target/mapmatchingonlinetest";
+    public static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("graph.flag_encoders", "car").
+                putObject("datareader.file", "../map-matching/files/map-issue13.osm.gz").
+                putObject("graph.location", DIR).
+                setProfiles(Collections.singletonList(new Profile("fast_car").setVehicle("car").setWeighting("fastest")));
+        return config;
+    }
+
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testOnlineSession() throws IOException {
+        Gpx gpx = new XmlMapper().readValue(getClass().getResourceAsStream("/issue-13.gpx"), Gpx.class);
+        List<double[]> points = new ArrayList<>();
+        for (Observation observation : GpxConversions.getEntries(gpx.trk.get(0))) {
+            points.add(new double[]{observation.getPoint().lon, observation.getPoint().lat});
+        }
+
+        Response response = app.client().target("http://localhost:8080/match/online?profile=fast_car&gps_accuracy=10").
+                request().post(Entity.json(""));
+        assertEquals(200, response.getStatus());
+        String sessionId = response.readEntity(JsonNode.class).get("session_id").asText();
+
+        int links = 0;
+        int wpts = 0;
+        int half = points.size() / 2;
+        for (List<double[]> batch : Arrays.asList(points.subList(0, half), points.subList(half, points.size()))) {
+            response = app.client().target("http://localhost:8080/match/online/" + sessionId).
+                    request().post(Entity.json(batch));
+            assertEquals(200, response.getStatus());
+            JsonNode json = response.readEntity(JsonNode.class);
+            links += json.get("links").size();
+            for (JsonNode link : json.get("links"))
+                wpts += link.get("wpts").size();
+        }
+        assertTrue(links > 0);
+
+        response = app.client().target("http://localhost:8080/match/online/" + sessionId + "?finish=true").
+                request().post(Entity.json(Collections.emptyList()));
+        assertEquals(200, response.getStatus());
+        JsonNode json = response.readEntity(JsonNode.class);
+        assertTrue(json.get("links").size() > 0);
+        for (JsonNode link : json.get("links"))
+            wpts += link.get("wpts").size();
+        // the observations which are less than 2 * gps_accuracy away from the previous one are filtered
+        assertTrue(wpts > 1 && wpts <= points.size(), "wpts: " + wpts);
+
+        // the session is closed
+        response = app.client().target("http://localhost:8080/match/online/" + sessionId).
+                request().post(Entity.json(Collections.emptyList()));
+        assertEquals(404, response.getStatus());
+        assertTrue(response.readEntity(JsonNode.class).get("message").asText().contains("not found"));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.Profile;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.util.Collections;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class MatrixResourceTest {
+    private static final String DIR = "./target/matrix-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("graph.flag_encoders", "car").
+                putObject("prepare.min_network_size", 0).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR).
+                setProfiles(Collections.singletonList(new Profile("my_car").setVehicle("car").setWeighting("fastest"))).
+                setCHProfiles(Collections.singletonList(new CHProfile("my_car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testGet() {
+        JsonNode json = clientTarget(app, "/matrix?profile=my_car&point=42.554851,1.536198&point=42.510071,1.548128" +
+                "&out_array=weights&out_array=times&out_array=distances").request().get(JsonNode.class);
+        assertEquals(2, json.get("distances").size());
+        assertEquals(0, json.get("distances").get(0).get(0).asDouble(), 1.e-6);
+        assertEquals(0, json.get("times").get(1).get(1).asLong());
+        // compare with the route endpoint
+        JsonNode routeJson = clientTarget(app, "/route?profile=my_car&point=42.554851,1.536198&point=42.510071,1.548128").
+                request().get(JsonNode.class);
+        JsonNode path = routeJson.get("paths").get(0);
+        assertEquals(path.get("distance").asDouble(), json.get("distances").get(0).get(1).asDouble(), 1);
+        assertEquals(path.get("time").asLong() / 1000.0, json.get("times").get(0).get(1).asLong(), 1);
+        assertTrue(json.get("distances").get(1).get(0).asDouble() > 9000);
+    }
+
+    @Test
+    public void testPost() {
+        String body = "{\"profile\": \"my_car\", " +
+                "\"from_points\": [[1.536198,42.554851], [1.548128,42.510071]], " +
+                "\"to_points\": [[1.548128,42.510071], [1.536198,42.554851], [1.5265,42.5349]], " +
+                "\"out_arrays\": [\"times\"]}";
+        final Response response = clientTarget(app, "/matrix").request().post(Entity.json(body));
+        assertEquals(200, response.getStatus());
+        JsonNode json = response.readEntity(JsonNode.class);
+        assertFalse(json.has("weights"));
+        assertEquals(2, json.get("times").size());
+        assertEquals(3, json.get("times").get(0).size());
+        assertEquals(0, json.get("times").get(0).get(1).asLong());
+        assertEquals(0, json.get("times").get(1).get(0).asLong());
+        assertTrue(json.get("times").get(0).get(0).asLong() > 300, json.toString());
+    }
+
+    @Test
+    public void testMissingProfile() {
+        final Response response = clientTarget(app, "/matrix?point=42.554851,1.536198&point=42.510071,1.548128").request().get();
+        assertEquals(400, response.getStatus());
+        JsonNode json = response.readEntity(JsonNode.class);
+        assertTrue(json.get("message").asText().contains("profile"), json.toString());
+    }
+
+    @Test
+    public void testUnknownOutArray() {
+        final Response response = clientTarget(app, "/matrix?profile=my_car&point=42.554851,1.536198&point=42.510071,1.548128" +
+                "&out_array=weights&out_array=speeds").request().get();
+        assertEquals(400, response.getStatus());
+        JsonNode json = response.readEntity(JsonNode.class);
+        assertTrue(json.get("message").asText().contains("Unknown out_array: speeds"), json.toString());
+    }
+
+    @Test
+    public void testPointOutOfBounds() {
+        final Response response = clientTarget(app, "/matrix?profile=my_car&point=42.554851,1.536198&point=52.510071,1.548128").request().get();
+        assertEquals(400, response.getStatus());
+    }
+}
@@ -22,6 +22,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.graphhopper.application.GraphHopperApplication;
 import com.graphhopper.application.GraphHopperServerConfiguration;
 import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.Profile;
 import com.graphhopper.util.Helper;
 import io.dropwizard.testing.junit5.DropwizardAppExtension;
@@ -34,7 +35,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import javax.ws.rs.core.Response;
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.graphhopper.application.util.TestUtils.clientTarget;
 import static org.junit.jupiter.api.Assertions.*;
@@ -53,8 +57,10 @@ public class SPTResourceTest {
                 putObject("graph.location", DIR).
                 setProfiles(Arrays.asList(
                         new Profile("car_without_turncosts").setVehicle("car").setWeighting("fastest"),
-                        new Profile("car_with_turncosts").setVehicle("car").setWeighting("fastest").setTurnCosts(true)
-                ));
+                        new Profile("car_with_turncosts").setVehicle("car").setWeighting("fastest").setTurnCosts(true),
+                        new Profile("car_ch").setVehicle("car").setWeighting("fastest")
+                )).
+                setCHProfiles(Collections.singletonList(new CHProfile("car_ch")));
         return config;
     }
 
@@ -89,6 +95,32 @@ public class SPTResourceTest {
         assertEquals(41, Integer.parseInt(row[prevTimeIndex]) / 1000);
     }
 
+    @Test
+    public void requestSPTCH() {
+        Map<Integer, String> expected = readNodes("/spt?profile=car_ch&ch.disable=true&point=42.531073,1.573792&time_limit=300&columns=node_id,time,distance");
+        Map<Integer, String> given = readNodes("/spt?profile=car_ch&point=42.531073,1.573792&time_limit=300&columns=node_id,time,distance");
+        assertTrue(expected.size() > 300);
+        assertEquals(expected.size(), given.size(), 5);
+        int differences = 0;
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            if (!entry.getValue().equals(given.get(entry.getKey())))
+                differences++;
+        }
+        assertTrue(differences < 0.02 * expected.size(), "too many differences: " + differences);
+    }
+
+    private Map<Integer, String> readNodes(String url) {
+        Response rsp = clientTarget(app, url).request().buildGet().invoke();
+        String[] lines = rsp.readEntity(String.class).split("\n");
+        assertEquals("node_id,time,distance", lines[0]);
+        Map<Integer, String> result = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            String[] row = lines[i].split(",", 2);
+            result.put(Integer.parseInt(row[0]), row[1]);
+        }
+        return result;
+    }
+
     @Test
     public void requestSPTEdgeBased() {
         Response rsp = clientTarget(app, "/spt?profile=car_with_turncosts&point=42.531073,1.573792&time_limit=300&columns=prev_node_id,edge_id,node_id,time,distance").request().buildGet().invoke();